@@ -68,17 +68,28 @@ public abstract class AbstractXMLObject implements XMLObject {
     /** The value of the <code>xsi:nil</code> attribute. */
     private  XSBooleanValue nil;
     
-    /** The namespace manager for this XML object. */
+    /**
+     * The namespace manager for this XML object.
+     * 
+     * <p>Unlike the ID index and object metadata this is allocated up front, since the constructor registers the
+     * element name with it for every namespace-qualified element.</p>
+     */
     private NamespaceManager nsManager;
     
-    /** The multimap holding class-indexed instances of additional info associated with this XML object. */
-    @Nonnull private final LockableClassToInstanceMultiMap<Object> objectMetadata;
+    /**
+     * The multimap holding class-indexed instances of additional info associated with this XML object.
+     * 
+     * <p>Allocated on first use, since the vast majority of objects in a large tree never carry any.</p>
+     */
+    @Nullable private volatile LockableClassToInstanceMultiMap<Object> objectMetadata;
 
     /**
      * Mapping of ID attributes to XMLObjects in the subtree rooted at this object. This allows constant-time
      * dereferencing of ID-typed attributes within the subtree.
+     * 
+     * <p>Allocated on first registration of an ID within the subtree.</p>
      */
-    private final IDIndex idIndex;
+    @Nullable private IDIndex idIndex;
 
     /**
      * Constructor.
@@ -90,12 +101,26 @@ public abstract class AbstractXMLObject implements XMLObject {
     protected AbstractXMLObject(@Nullable final String namespaceURI, @Nonnull @NotEmpty final String elementLocalName,
             @Nullable final String namespacePrefix) {
         nsManager = new NamespaceManager(this);
-        idIndex = new IDIndex(this);
         elementQname = QNameSupport.constructQName(namespaceURI, elementLocalName, namespacePrefix);
         if(namespaceURI != null){
             setElementNamespacePrefix(namespacePrefix);
         }
-        objectMetadata = new LockableClassToInstanceMultiMap<>(true);
+    }
+
+    /**
+     * Return whether the supplied object indexes any IDs within its subtree, without forcing the allocation
+     * of an empty {@link IDIndex}.
+     * 
+     * @param xmlObject the object to check
+     * 
+     * @return true if the object's ID index is non-empty
+     */
+    public static boolean hasIDMappings(@Nonnull final XMLObject xmlObject) {
+        if (xmlObject instanceof AbstractXMLObject) {
+            final IDIndex index = ((AbstractXMLObject) xmlObject).idIndex;
+            return index != null && !index.isEmpty();
+        }
+        return !xmlObject.getIDIndex().isEmpty();
     }
 
     /** {@inheritDoc} */
@@ -116,6 +141,9 @@ public abstract class AbstractXMLObject implements XMLObject {
 
     /** {@inheritDoc} */
     @Nonnull public IDIndex getIDIndex() {
+        if (idIndex == null) {
+            idIndex = new IDIndex(this);
+        }
         return idIndex;
     }
     
@@ -346,7 +374,9 @@ public abstract class AbstractXMLObject implements XMLObject {
             if (newValue != null) {
                 releaseThisandParentDOM();
                 newValue.setParent(this);
-                idIndex.registerIDMappings(newValue.getIDIndex());
+                if (hasIDMappings(newValue)) {
+                    getIDIndex().registerIDMappings(newValue.getIDIndex());
+                }
                 return newValue;
 
             } else {
@@ -357,10 +387,14 @@ public abstract class AbstractXMLObject implements XMLObject {
         if (!oldValue.equals(newValue)) {
             oldValue.setParent(null);
             releaseThisandParentDOM();
-            idIndex.deregisterIDMappings(oldValue.getIDIndex());
+            if (hasIDMappings(oldValue)) {
+                getIDIndex().deregisterIDMappings(oldValue.getIDIndex());
+            }
             if (newValue != null) {
                 newValue.setParent(this);
-                idIndex.registerIDMappings(newValue.getIDIndex());
+                if (hasIDMappings(newValue)) {
+                    getIDIndex().registerIDMappings(newValue.getIDIndex());
+                }
             }
         }
 
@@ -379,12 +413,12 @@ public abstract class AbstractXMLObject implements XMLObject {
         final String newString = StringSupport.trimOrNull(newID);
 
         if (!Objects.equals(oldID, newString)) {
-            if (oldID != null) {
+            if (oldID != null && idIndex != null) {
                 idIndex.deregisterIDMapping(oldID);
             }
 
             if (newString != null) {
-                idIndex.registerIDMapping(newString, this);
+                getIDIndex().registerIDMapping(newString, this);
             }
         }
     }
@@ -409,9 +443,10 @@ public abstract class AbstractXMLObject implements XMLObject {
     public void releaseDOM() {
         log.trace("Releasing cached DOM reprsentation for {}", getElementQName());
         setDOM(null);
-        if (getObjectMetadata().containsKey(XMLObjectSource.class)) {
+        final LockableClassToInstanceMultiMap<Object> metadata = objectMetadata;
+        if (metadata != null && metadata.containsKey(XMLObjectSource.class)) {
             log.trace("Releasing cached XMLObjectSource for {}", getElementQName());
-            getObjectMetadata().remove(XMLObjectSource.class);
+            metadata.remove(XMLObjectSource.class);
         }
     }
 
@@ -452,6 +487,9 @@ public abstract class AbstractXMLObject implements XMLObject {
 
     /** {@inheritDoc} */
     @Nullable public XMLObject resolveID(@Nonnull @NotEmpty final String id) {
+        if (idIndex == null) {
+            return null;
+        }
         return idIndex.lookup(id);
     }
 
@@ -557,7 +595,17 @@ public abstract class AbstractXMLObject implements XMLObject {
 
     /** {@inheritDoc} */
     @Nonnull public LockableClassToInstanceMultiMap<Object> getObjectMetadata() {
-        return objectMetadata;
+        LockableClassToInstanceMultiMap<Object> metadata = objectMetadata;
+        if (metadata == null) {
+            synchronized (this) {
+                metadata = objectMetadata;
+                if (metadata == null) {
+                    metadata = new LockableClassToInstanceMultiMap<>(true);
+                    objectMetadata = metadata;
+                }
+            }
+        }
+        return metadata;
     }
 
 }
\ No newline at end of file
@@ -35,6 +35,8 @@ import net.shibboleth.utilities.java.support.primitive.StringSupport;
 import net.shibboleth.utilities.java.support.xml.XMLConstants;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 /**
  * A class which is responsible for managing XML namespace-related data for an {@link XMLObject}.
@@ -57,6 +59,9 @@ public class NamespaceManager {
     private static final Namespace XSI_NAMESPACE = 
         new Namespace(XMLConstants.XSI_NS, XMLConstants.XSI_PREFIX);
     
+    /** Interner for the Namespace instances built from registered names, which are heavily duplicated. */
+    private static final Interner<Namespace> NAMESPACE_INTERNER = Interners.newWeakInterner();
+    
     /** The owning XMLObject. */
     @Nonnull private final XMLObject owner;
     
@@ -368,7 +373,7 @@ public class NamespaceManager {
         final String uri = Constraint.isNotNull(StringSupport.trimOrNull(name.getNamespaceURI()),
                 "Namespace URI of QName cannot be null");
         final String prefix = StringSupport.trimOrNull(name.getPrefix());
-        return new Namespace(uri, prefix);
+        return NAMESPACE_INTERNER.intern(new Namespace(uri, prefix));
     }
     
     /**
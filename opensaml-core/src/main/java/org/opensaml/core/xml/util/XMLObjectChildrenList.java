@@ -27,6 +27,7 @@ import javax.annotation.Nullable;
 import net.shibboleth.utilities.java.support.collection.LazyList;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 
+import org.opensaml.core.xml.AbstractXMLObject;
 import org.opensaml.core.xml.XMLObject;
 
 import com.google.common.base.Predicates;
@@ -126,13 +127,17 @@ public class XMLObjectChildrenList<ElementType extends XMLObject> extends Abstra
         final ElementType removedElement = elements.set(index, element);
         if (removedElement != null) {
             removedElement.setParent(null);
-            parent.getIDIndex().deregisterIDMappings(removedElement.getIDIndex());
+            if (AbstractXMLObject.hasIDMappings(removedElement)) {
+                parent.getIDIndex().deregisterIDMappings(removedElement.getIDIndex());
+            }
         }
         
         // Note: to avoid ordering problems, this needs to be called after
         // the deregistration, in case the added element has a same ID string 
         // value as the removed one, else you will lose it.
-        parent.getIDIndex().registerIDMappings(element.getIDIndex());
+        if (AbstractXMLObject.hasIDMappings(element)) {
+            parent.getIDIndex().registerIDMappings(element.getIDIndex());
+        }
 
         modCount++;
         return removedElement;
@@ -154,7 +159,9 @@ public class XMLObjectChildrenList<ElementType extends XMLObject> extends Abstra
         }
 
         setParent(element);
-        parent.getIDIndex().registerIDMappings(element.getIDIndex());
+        if (AbstractXMLObject.hasIDMappings(element)) {
+            parent.getIDIndex().registerIDMappings(element.getIDIndex());
+        }
 
         modCount++;
         elements.add(index, element);
@@ -167,7 +174,9 @@ public class XMLObjectChildrenList<ElementType extends XMLObject> extends Abstra
         if (element != null) {
             element.releaseParentDOM(true);
             element.setParent(null);
-            parent.getIDIndex().deregisterIDMappings(element.getIDIndex());
+            if (AbstractXMLObject.hasIDMappings(element)) {
+                parent.getIDIndex().deregisterIDMappings(element.getIDIndex());
+            }
         }
 
         modCount++;
@@ -188,7 +197,9 @@ public class XMLObjectChildrenList<ElementType extends XMLObject> extends Abstra
             if (element != null) {
                 element.releaseParentDOM(true);
                 element.setParent(null);
-                parent.getIDIndex().deregisterIDMappings(element.getIDIndex());
+                if (AbstractXMLObject.hasIDMappings(element)) {
+                    parent.getIDIndex().deregisterIDMappings(element.getIDIndex());
+                }
             }
         }
 
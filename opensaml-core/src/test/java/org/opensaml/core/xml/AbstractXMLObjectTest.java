@@ -114,4 +114,60 @@ public class AbstractXMLObjectTest extends XMLObjectBaseTestCase {
         Assert.assertNull(sxo.getDOM());
     }
 
+    /**
+     * Tests that element name prefixes are retained per instance.
+     */
+    @Test
+    public void testElementNamespacePrefix() {
+        final SimpleXMLObject sxo1 = buildXMLObject(simpleXMLObjectQName);
+        final SimpleXMLObject sxo2 = buildXMLObject(simpleXMLObjectQName);
+        
+        sxo2.setElementNamespacePrefix("foo");
+        Assert.assertEquals(sxo2.getElementQName().getPrefix(), "foo");
+        Assert.assertEquals(sxo1.getElementQName().getPrefix(), simpleXMLObjectQName.getPrefix());
+        
+        final SimpleXMLObject sxo3 = buildXMLObject(simpleXMLObjectQName);
+        sxo3.setElementNamespacePrefix(null);
+        Assert.assertEquals(sxo3.getElementQName().getPrefix(), "");
+        Assert.assertEquals(sxo2.getElementQName().getPrefix(), "foo");
+    }
+
+    /**
+     * Tests that lazily-allocated ID indexes are populated correctly when children are attached and detached.
+     */
+    @Test
+    public void testLazyIDIndex() {
+        final SimpleXMLObject parent = buildXMLObject(simpleXMLObjectQName);
+        final SimpleXMLObject child = buildXMLObject(simpleXMLObjectQName);
+        final SimpleXMLObject grandchild = buildXMLObject(simpleXMLObjectQName);
+        
+        Assert.assertFalse(AbstractXMLObject.hasIDMappings(parent));
+        Assert.assertNull(parent.resolveID("foo"));
+        
+        child.getSimpleXMLObjects().add(grandchild);
+        Assert.assertFalse(AbstractXMLObject.hasIDMappings(child));
+        
+        parent.getSimpleXMLObjects().add(child);
+        grandchild.setId("foo");
+        Assert.assertTrue(AbstractXMLObject.hasIDMappings(parent));
+        Assert.assertSame(parent.resolveID("foo"), grandchild);
+        Assert.assertSame(child.resolveID("foo"), grandchild);
+        
+        parent.getSimpleXMLObjects().remove(child);
+        Assert.assertFalse(AbstractXMLObject.hasIDMappings(parent));
+        Assert.assertNull(parent.resolveID("foo"));
+        Assert.assertSame(child.resolveID("foo"), grandchild);
+    }
+
+    /**
+     * Tests that object metadata is usable without prior allocation.
+     */
+    @Test
+    public void testLazyObjectMetadata() {
+        final SimpleXMLObject sxo = buildXMLObject(simpleXMLObjectQName);
+        sxo.releaseDOM();
+        Assert.assertTrue(sxo.getObjectMetadata().isEmpty());
+        Assert.assertSame(sxo.getObjectMetadata(), sxo.getObjectMetadata());
+    }
+
 }
@@ -19,8 +19,6 @@ package org.opensaml.saml.common.binding;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 import javax.annotation.Nonnull;
@@ -34,8 +32,8 @@ import net.shibboleth.utilities.java.support.resolver.ResolverException;
 
 import org.opensaml.saml.criterion.EndpointCriterion;
 import org.opensaml.saml.criterion.RoleDescriptorCriterion;
+import org.opensaml.saml.metadata.RoleDescriptorSnapshot;
 import org.opensaml.saml.saml2.metadata.Endpoint;
-import org.opensaml.saml.saml2.metadata.IndexedEndpoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,6 +63,11 @@ import org.slf4j.LoggerFactory;
  * <p>Subclasses should override the {{@link #doCheckEndpoint(CriteriaSet, Endpoint)} method to implement
  * further criteria.</p>
  * 
+ * <p>If a {@link RoleDescriptorSnapshot} is attached to the role, its precomputed, default-ordered endpoint
+ * tables are used in place of copying and sorting the role's endpoints, and subclasses may override
+ * {@link #getCandidatesFromSnapshot(CriteriaSet, RoleDescriptorSnapshot, QName)} to narrow the candidates
+ * further via the tables' binding and index keys.</p>
+ * 
  * @param <EndpointType> type of endpoint
  */
 public abstract class AbstractEndpointResolver<EndpointType extends Endpoint>
@@ -93,11 +96,10 @@ public abstract class AbstractEndpointResolver<EndpointType extends Endpoint>
             return Collections.emptyList();
         }
         
-        final List<EndpointType> candidates = getCandidatesFromMetadata(criteria);
-        final Iterator<EndpointType> i = candidates.iterator();
-        while (i.hasNext()) {
-            if (!doCheckEndpoint(criteria, i.next())) {
-                i.remove();
+        final List<EndpointType> candidates = new ArrayList<>();
+        for (final EndpointType candidate : getCandidatesFromMetadata(criteria)) {
+            if (doCheckEndpoint(criteria, candidate)) {
+                candidates.add(candidate);
             }
         }
         
@@ -141,6 +143,28 @@ public abstract class AbstractEndpointResolver<EndpointType extends Endpoint>
         return true;
     }
 
+    /**
+     * Get the candidate endpoints of the given type from a role's {@link RoleDescriptorSnapshot}.
+     * 
+     * <p>The default implementation returns all the endpoints of the type, with the default first. Subclasses
+     * whose {@link #doCheckEndpoint(CriteriaSet, Endpoint)} only accepts endpoints with a particular binding or
+     * index may instead return the corresponding subset via
+     * {@link RoleDescriptorSnapshot#getOrderedEndpoints(QName, String)} or
+     * {@link RoleDescriptorSnapshot#getIndexedEndpoints(QName, Integer)}, which preserve the same order.
+     * Every returned candidate is still evaluated by {@link #doCheckEndpoint(CriteriaSet, Endpoint)}.</p>
+     * 
+     * @param criteria input criteria set
+     * @param snapshot the snapshot of the role from which to obtain candidates
+     * @param endpointType the type of endpoint to obtain
+     * 
+     * @return the candidate endpoints, with the default first
+     */
+    @Nonnull @NonnullElements protected List<Endpoint> getCandidatesFromSnapshot(
+            @Nonnull final CriteriaSet criteria, @Nonnull final RoleDescriptorSnapshot snapshot,
+            @Nonnull final QName endpointType) {
+        return snapshot.getOrderedEndpoints(endpointType);
+    }
+
     /**
      * Verify that the required {@link EndpointCriterion} is present.
      * 
@@ -182,7 +206,7 @@ public abstract class AbstractEndpointResolver<EndpointType extends Endpoint>
     }
     
     /**
-     * Get a mutable list of endpoints of a given type found in the metadata role contained in a
+     * Get a list of endpoints of a given type found in the metadata role contained in a
      * {@link RoleDescriptorCriterion} (or an empty list if no metadata exists).
      * 
      * <p>The endpoint type to extract is based on the candidate endpoint in an
@@ -191,7 +215,7 @@ public abstract class AbstractEndpointResolver<EndpointType extends Endpoint>
      * 
      * @param criteria input criteria set
      * 
-     * @return mutable list of endpoints from the metadata
+     * @return list of endpoints from the metadata
      */
     @Nonnull @NonnullElements private List<EndpointType> getCandidatesFromMetadata(
             @Nonnull final CriteriaSet criteria) {
@@ -200,7 +224,7 @@ public abstract class AbstractEndpointResolver<EndpointType extends Endpoint>
         final RoleDescriptorCriterion role = criteria.get(RoleDescriptorCriterion.class);
         if (role == null) {
             log.debug("{} No metadata supplied, no candidate endpoints to return", getLogPrefix());
-            return new ArrayList<>();
+            return Collections.emptyList();
         }
         
         // Determine the QName type of endpoints to extract based on candidate type.
@@ -210,8 +234,11 @@ public abstract class AbstractEndpointResolver<EndpointType extends Endpoint>
             endpointType = epCriterion.getEndpoint().getElementQName();
         }
         
-        // Return the endpoints in the metadata of the candidate type.
-        final List<Endpoint> endpoints = role.getRole().getEndpoints(endpointType);
+        // Return the endpoints in the metadata of the candidate type, from the precomputed tables if available.
+        final RoleDescriptorSnapshot snapshot = RoleDescriptorSnapshot.get(role.getRole());
+        final List<Endpoint> endpoints = snapshot != null
+                ? getCandidatesFromSnapshot(criteria, snapshot, endpointType)
+                : RoleDescriptorSnapshot.orderByDefault(role.getRole().getEndpoints(endpointType));
         if (endpoints.isEmpty()) {
             log.debug("{} No endpoints in metadata of type {}", getLogPrefix(), endpointType);
         } else {
@@ -219,60 +246,9 @@ public abstract class AbstractEndpointResolver<EndpointType extends Endpoint>
                     endpointType);
         }
         
-        return sortCandidates(endpoints);
+        return (List<EndpointType>) (List<?>) endpoints;
     }
     
-    /**
-     * Copy and sort the endpoints such that the default endpoint by SAML rules comes first.
-     * 
-     * @param candidates input list of endpoints
-     * 
-     * @return a new list containing the endpoints such that the default is first
-     */
-    // Checkstyle: CyclomaticComplexity OFF
-    @Nonnull @NonnullElements private List<EndpointType> sortCandidates(
-            @Nonnull @NonnullElements final List<Endpoint> candidates) {
-        
-        // Use a linked list, and move the default endpoint to the head of the list.
-        // SAML defaulting rules apply to IndexedEnpdoint types, and require checking
-        // for the isDefault attribute. The default is the one marked true, or if none are,
-        // the first not marked false.
-        EndpointType hardDefault = null;
-        EndpointType softDefault = null;
-        final LinkedList<EndpointType> toReturn = new LinkedList<>();
-        for (final Endpoint endpoint : candidates) {
-            if (hardDefault == null && endpoint instanceof IndexedEndpoint) {
-                final Boolean flag = ((IndexedEndpoint) endpoint).isDefault();
-                if (flag != null) {
-                    if (flag.booleanValue()) {
-                        hardDefault = (EndpointType) endpoint;
-                        if (softDefault != null) {
-                            toReturn.addFirst(softDefault);
-                            softDefault = null;
-                        }
-                    } else {
-                        toReturn.addLast((EndpointType) endpoint);
-                    }
-                } else if (hardDefault == null && softDefault == null) {
-                    softDefault = (EndpointType) endpoint;
-                } else {
-                    toReturn.addLast((EndpointType) endpoint);
-                }
-            } else {
-                toReturn.addLast((EndpointType) endpoint);
-            }
-        }
-        
-        if (hardDefault != null) {
-            toReturn.addFirst(hardDefault);
-        } else if (softDefault != null) {
-            toReturn.addFirst(softDefault);
-        }
-       
-        return toReturn;
-    }
-    // Checkstyle: CyclomaticComplexity ON
-
     /**
      * Return a prefix for logging messages for this component.
      * 
@@ -110,6 +110,12 @@ public interface SAMLArtifactMap {
         /**
          * Gets SAML message the artifact maps to.
          * 
+         * <p>
+         * Implementations may defer unmarshalling of the message until this method is first called, in which
+         * case a stored message which can not be unmarshalled is reported by an unchecked
+         * {@link org.opensaml.core.xml.XMLRuntimeException} thrown from here.
+         * </p>
+         * 
          * @return SAML message the artifact maps to
          */
         @Nonnull SAMLObject getSamlMessage();
@@ -17,7 +17,6 @@
 
 package org.opensaml.saml.common.profile.logic;
 
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -28,14 +27,8 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.opensaml.core.xml.XMLObject;
-import org.opensaml.core.xml.schema.XSAny;
-import org.opensaml.core.xml.schema.XSBase64Binary;
-import org.opensaml.core.xml.schema.XSBoolean;
-import org.opensaml.core.xml.schema.XSDateTime;
-import org.opensaml.core.xml.schema.XSInteger;
-import org.opensaml.core.xml.schema.XSString;
-import org.opensaml.core.xml.schema.XSURI;
 import org.opensaml.saml.ext.saml2mdattr.EntityAttributes;
+import org.opensaml.saml.metadata.EntityAttributeTags;
 import org.opensaml.saml.saml2.core.Attribute;
 import org.opensaml.saml.saml2.metadata.EntitiesDescriptor;
 import org.opensaml.saml.saml2.metadata.EntityDescriptor;
@@ -56,11 +49,13 @@ import net.shibboleth.utilities.java.support.annotation.constraint.Unmodifiable;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 import net.shibboleth.utilities.java.support.logic.Predicate;
 import net.shibboleth.utilities.java.support.primitive.StringSupport;
-import net.shibboleth.utilities.java.support.xml.DOMTypeSupport;
 
 /**
  * Predicate to determine whether an {@link EntityDescriptor} or its parent groups contain an {@link EntityAttributes}
  * extension {@link Attribute} that matches the predicate's criteria. 
+ * 
+ * <p>If the entity carries precomputed {@link EntityAttributeTags}, those are used in place of walking the
+ * metadata.</p>
  */
 public class EntityAttributesPredicate implements Predicate<EntityDescriptor> {
 
@@ -164,6 +159,11 @@ public class EntityAttributesPredicate implements Predicate<EntityDescriptor> {
             return false;
         }
         
+        final EntityAttributeTags tags = EntityAttributeTags.get(input);
+        if (tags != null) {
+            return testTags(input, tags);
+        }
+        
         Collection<Attribute> entityAttributes = null;
 
         // Check for a tag match in the EntityAttributes extension of the entity and its parent(s).
@@ -214,6 +214,65 @@ public class EntityAttributesPredicate implements Predicate<EntityDescriptor> {
 
         return false;
     }
+// Checkstyle: CyclomaticComplexity ON
+    
+    /**
+     * Evaluate the candidates against precomputed {@link EntityAttributeTags}, which reduces value comparisons
+     * to hash lookups.
+     * 
+     * @param input the entity being evaluated
+     * @param tags the entity's precomputed tags
+     * 
+     * @return the result of the evaluation
+     */
+    private boolean testTags(@Nonnull final EntityDescriptor input, @Nonnull final EntityAttributeTags tags) {
+        if (tags.isEmpty()) {
+            log.trace("No Entity Attributes found for {}", input.getEntityID());
+            return false;
+        }
+        
+        log.trace("Checking for match against precomputed Entity Attribute tags for {}", input.getEntityID());
+        
+        if (matchAll) {
+            for (final Candidate candidate : candidateSet) {
+                if (!testTags(candidate, tags)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        for (final Candidate candidate : candidateSet) {
+            if (testTags(candidate, tags)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Determine whether a {@link Candidate} criterion is satisfied by precomputed {@link EntityAttributeTags}.
+     * 
+     * @param candidate the candidate to evaluate
+     * @param tags the entity's precomputed tags
+     * 
+     * @return true iff every value and regular expression of the candidate is matched
+     */
+    private boolean testTags(@Nonnull final Candidate candidate, @Nonnull final EntityAttributeTags tags) {
+        for (final String value : candidate.values) {
+            if (!tags.hasValue(candidate.getName(), candidate.getNameFormat(), value, trimTags)) {
+                return false;
+            }
+        }
+        
+        for (final Pattern regexp : candidate.regexps) {
+            if (!tags.hasMatchingValue(candidate.getName(), candidate.getNameFormat(), regexp)) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
     
     /**
      * An object to encapsulate the set of criteria that must be satisfied by an {@link EntityAttributes}
@@ -424,55 +483,8 @@ public class EntityAttributesPredicate implements Predicate<EntityDescriptor> {
          * @return all possible values, as string.
          */
         @Nonnull List<String> getPossibleAttributeValuesAsStrings(final @Nonnull Attribute attribute) {
-            final List<XMLObject> cvals = attribute.getAttributeValues();
-            final List<String> result = new ArrayList<>(cvals.size()*2);
-            for (final XMLObject cval : cvals) {
-                result.addAll(xmlObjectToStrings(cval));
-            }
-            return result;
-        }
-     
-        /**
-         * Convert an XMLObject to an array of String which can represent the type, if recognized.
-         * 
-         * @param object object to convert
-         * @return the converted value, or null
-         */
-        @Nullable private List<String> xmlObjectToStrings(@Nonnull final XMLObject object) {
-            String toMatch = null;
-            String toMatchAlt = null;
-            if (object instanceof XSString) {
-                toMatch = ((XSString) object).getValue();
-            } else if (object instanceof XSURI) {
-                toMatch = ((XSURI) object).getValue();
-            } else if (object instanceof XSBoolean) {
-                toMatch = ((XSBoolean) object).getValue().getValue() ? "1" : "0";
-                toMatchAlt = ((XSBoolean) object).getValue().getValue() ? "true" : "false";
-            } else if (object instanceof XSInteger) {
-                toMatch = ((XSInteger) object).getValue().toString();
-            } else if (object instanceof XSDateTime) {
-                final Instant dt = ((XSDateTime) object).getValue();
-                if (dt != null) {
-                    toMatch = DOMTypeSupport.instantToString(dt);
-                }
-            } else if (object instanceof XSBase64Binary) {
-                toMatch = ((XSBase64Binary) object).getValue();
-            } else if (object instanceof XSAny) {
-                final XSAny wc = (XSAny) object;
-                if (wc.getUnknownAttributes().isEmpty() && wc.getUnknownXMLObjects().isEmpty()) {
-                    toMatch = wc.getTextContent();
-                }
-            }
-            if (toMatchAlt != null) {
-                return List.of(toMatch, toMatchAlt);
-            } else if (toMatch != null) {
-                return Collections.singletonList(toMatch);
-            }
-            log.warn("Unrecognized XMLObject type ({}), unable to convert to a string for comparison",
-                    object.getClass().getName());
-            return Collections.emptyList();
+            return EntityAttributeTags.getPossibleAttributeValuesAsStrings(attribute);
         }
     }
-// Checkstyle: CyclomaticComplexity OFF
 
 }
\ No newline at end of file
@@ -0,0 +1,417 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.metadata;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.schema.XSAny;
+import org.opensaml.core.xml.schema.XSBase64Binary;
+import org.opensaml.core.xml.schema.XSBoolean;
+import org.opensaml.core.xml.schema.XSDateTime;
+import org.opensaml.core.xml.schema.XSInteger;
+import org.opensaml.core.xml.schema.XSString;
+import org.opensaml.core.xml.schema.XSURI;
+import org.opensaml.saml.ext.saml2mdattr.EntityAttributes;
+import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.metadata.EntitiesDescriptor;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.saml.saml2.metadata.Extensions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Unmodifiable;
+import net.shibboleth.utilities.java.support.xml.DOMTypeSupport;
+
+/**
+ * An immutable, precomputed set of the entity attribute "tags" which apply to an {@link EntityDescriptor},
+ * allowing entity attribute matching to be performed by hash lookups rather than by walking the metadata.
+ * 
+ * <p>
+ * It will typically be attached to an entity descriptor via its {@link XMLObject#getObjectMetadata()} when the
+ * metadata is indexed.
+ * </p>
+ */
+@Immutable
+public final class EntityAttributeTags {
+    
+    /** Class logger. */
+    @Nonnull private static final Logger LOG = LoggerFactory.getLogger(EntityAttributeTags.class);
+    
+    /** Whether there were any attributes at all. */
+    private final boolean empty;
+    
+    /** Tags, indexed by both the attribute's actual NameFormat and by a wildcard format. */
+    @Nonnull @NonnullElements private final Set<Tag> tags;
+    
+    /** Tags with trimmed values, indexed in the same way. */
+    @Nonnull @NonnullElements private final Set<Tag> trimmedTags;
+    
+    /** Untrimmed values of each attribute, indexed by both the actual NameFormat and a wildcard format. */
+    @Nonnull private final Map<Tag, List<String>> values;
+    
+    /**
+     * Constructor.
+     *
+     * @param attributes the effective entity attributes of an entity
+     */
+    public EntityAttributeTags(@Nonnull @NonnullElements final Collection<Attribute> attributes) {
+        empty = attributes.isEmpty();
+        
+        final Set<Tag> exact = new HashSet<>();
+        final Set<Tag> trimmed = new HashSet<>();
+        final Map<Tag, List<String>> byName = new HashMap<>();
+        
+        for (final Attribute attribute : attributes) {
+            final String name = attribute.getName();
+            if (name == null) {
+                continue;
+            }
+            final String format = attribute.getNameFormat();
+            final List<String> attributeValues = getPossibleAttributeValuesAsStrings(attribute);
+            addValues(byName, new Tag(name, null, null), attributeValues);
+            if (format != null) {
+                addValues(byName, new Tag(name, format, null), attributeValues);
+            }
+            for (final String value : attributeValues) {
+                if (value == null) {
+                    continue;
+                }
+                exact.add(new Tag(name, null, value));
+                trimmed.add(new Tag(name, null, value.trim()));
+                if (format != null) {
+                    exact.add(new Tag(name, format, value));
+                    trimmed.add(new Tag(name, format, value.trim()));
+                }
+            }
+        }
+        
+        tags = ImmutableSet.copyOf(exact);
+        trimmedTags = ImmutableSet.copyOf(trimmed);
+        final Map<Tag, List<String>> valueMap = new HashMap<>(byName.size());
+        for (final Map.Entry<Tag, List<String>> entry : byName.entrySet()) {
+            valueMap.put(entry.getKey(), ImmutableList.copyOf(entry.getValue()));
+        }
+        values = Collections.unmodifiableMap(valueMap);
+    }
+    
+    /**
+     * Get whether the entity had no entity attributes at all.
+     * 
+     * @return true if there were no entity attributes
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+    
+    /**
+     * Get the exact (untrimmed) tags.
+     * 
+     * <p>
+     * Each value is present both with the attribute's NameFormat and with a null NameFormat.
+     * </p>
+     * 
+     * @return the tags
+     */
+    @Nonnull @NonnullElements @Unmodifiable public Set<Tag> getTags() {
+        return tags;
+    }
+    
+    /**
+     * Get whether the specified value is present for an attribute with the specified name and format.
+     * 
+     * @param name the attribute name
+     * @param format the attribute NameFormat, or null to match any format
+     * @param value the value to look for
+     * @param trim whether to also match metadata values after trimming them
+     * 
+     * @return true if the value is present
+     */
+    public boolean hasValue(@Nonnull final String name, @Nullable final String format, @Nonnull final String value,
+            final boolean trim) {
+        final Tag tag = new Tag(name, format, value);
+        return tags.contains(tag) || (trim && trimmedTags.contains(tag));
+    }
+    
+    /**
+     * Get whether any value of an attribute with the specified name and format matches a regular expression.
+     * 
+     * @param name the attribute name
+     * @param format the attribute NameFormat, or null to match any format
+     * @param regexp the regular expression
+     * 
+     * @return true if a value matches
+     */
+    public boolean hasMatchingValue(@Nonnull final String name, @Nullable final String format,
+            @Nonnull final Pattern regexp) {
+        final List<String> candidates = values.get(new Tag(name, format, null));
+        if (candidates != null) {
+            for (final String value : candidates) {
+                if (value != null && regexp.matcher(value).matches()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("tags", tags).toString();
+    }
+    
+    /**
+     * Get the tags attached to the specified entity descriptor, if any.
+     * 
+     * @param entity the entity descriptor
+     * 
+     * @return the attached tags, or null
+     */
+    @Nullable public static EntityAttributeTags get(@Nonnull final EntityDescriptor entity) {
+        final List<EntityAttributeTags> attached = entity.getObjectMetadata().get(EntityAttributeTags.class);
+        return attached.isEmpty() ? null : attached.get(0);
+    }
+    
+    /**
+     * Collect the entity attributes of the entity and its ancestor groups.
+     * 
+     * @param entity the entity descriptor
+     * 
+     * @return the collected attributes
+     */
+    @Nonnull @NonnullElements public static List<Attribute> collectEntityAttributes(
+            @Nonnull final EntityDescriptor entity) {
+        final List<Attribute> result = new ArrayList<>();
+        addEntityAttributes(result, entity.getExtensions());
+        
+        XMLObject parent = entity.getParent();
+        while (parent instanceof EntitiesDescriptor) {
+            addEntityAttributes(result, ((EntitiesDescriptor) parent).getExtensions());
+            parent = parent.getParent();
+        }
+        return result;
+    }
+    
+    /**
+     * Add the attributes of the first {@link EntityAttributes} extension, if any, to the accumulator.
+     * 
+     * @param accumulator the attribute accumulator
+     * @param extensions the extensions to examine
+     */
+    private static void addEntityAttributes(@Nonnull final List<Attribute> accumulator,
+            @Nullable final Extensions extensions) {
+        if (extensions != null) {
+            final List<XMLObject> children = extensions.getUnknownXMLObjects(EntityAttributes.DEFAULT_ELEMENT_NAME);
+            if (!children.isEmpty() && children.get(0) instanceof EntityAttributes) {
+                accumulator.addAll(((EntityAttributes) children.get(0)).getAttributes());
+            }
+        }
+    }
+    
+    /**
+     * Get all possible string values for the attribute. This copes with the fact that an attribute can have
+     * multiple values, and that some types of value have multiple representations (for instance a boolean can be
+     * 1/0/true/false).
+     * 
+     * @param attribute what to inspect
+     * 
+     * @return all possible values, as strings
+     */
+    @Nonnull public static List<String> getPossibleAttributeValuesAsStrings(@Nonnull final Attribute attribute) {
+        final List<XMLObject> cvals = attribute.getAttributeValues();
+        final List<String> result = new ArrayList<>(cvals.size()*2);
+        for (final XMLObject cval : cvals) {
+            result.addAll(xmlObjectToStrings(cval));
+        }
+        return result;
+    }
+    
+    /**
+     * Convert an XMLObject to a list of strings which can represent the type, if recognized.
+     * 
+     * @param object object to convert
+     * 
+     * @return the converted values, or an empty list
+     */
+    @Nonnull private static List<String> xmlObjectToStrings(@Nonnull final XMLObject object) {
+        String toMatch = null;
+        String toMatchAlt = null;
+        if (object instanceof XSString) {
+            toMatch = ((XSString) object).getValue();
+        } else if (object instanceof XSURI) {
+            toMatch = ((XSURI) object).getValue();
+        } else if (object instanceof XSBoolean) {
+            toMatch = ((XSBoolean) object).getValue().getValue() ? "1" : "0";
+            toMatchAlt = ((XSBoolean) object).getValue().getValue() ? "true" : "false";
+        } else if (object instanceof XSInteger) {
+            toMatch = ((XSInteger) object).getValue().toString();
+        } else if (object instanceof XSDateTime) {
+            final Instant dt = ((XSDateTime) object).getValue();
+            if (dt != null) {
+                toMatch = DOMTypeSupport.instantToString(dt);
+            }
+        } else if (object instanceof XSBase64Binary) {
+            toMatch = ((XSBase64Binary) object).getValue();
+        } else if (object instanceof XSAny) {
+            final XSAny wc = (XSAny) object;
+            if (wc.getUnknownAttributes().isEmpty() && wc.getUnknownXMLObjects().isEmpty()) {
+                toMatch = wc.getTextContent();
+            }
+        }
+        if (toMatchAlt != null) {
+            return List.of(toMatch, toMatchAlt);
+        } else if (toMatch != null) {
+            return Collections.singletonList(toMatch);
+        }
+        LOG.warn("Unrecognized XMLObject type ({}), unable to convert to a string for comparison",
+                object.getClass().getName());
+        return Collections.emptyList();
+    }
+    
+    /**
+     * Add values to the list associated with a key.
+     * 
+     * @param map the map to update
+     * @param key the key
+     * @param newValues the values to add
+     */
+    private static void addValues(@Nonnull final Map<Tag, List<String>> map, @Nonnull final Tag key,
+            @Nonnull final List<String> newValues) {
+        List<String> existing = map.get(key);
+        if (existing == null) {
+            existing = new ArrayList<>(newValues.size());
+            map.put(key, existing);
+        }
+        existing.addAll(newValues);
+    }
+    
+    /**
+     * A single entity attribute name, NameFormat and value combination.
+     */
+    @Immutable
+    public static final class Tag {
+        
+        /** Attribute Name. */
+        @Nonnull @NotEmpty private final String name;
+        
+        /** Attribute NameFormat. */
+        @Nullable private final String nameFormat;
+        
+        /** Attribute value. */
+        @Nullable private final String value;
+        
+        /** Precomputed hash code. */
+        private final int hashCode;
+
+        /**
+         * Constructor.
+         *
+         * @param attributeName the attribute name
+         * @param format the attribute NameFormat, or null
+         * @param attributeValue the attribute value, or null
+         */
+        public Tag(@Nonnull @NotEmpty final String attributeName, @Nullable final String format,
+                @Nullable final String attributeValue) {
+            name = attributeName;
+            nameFormat = format;
+            value = attributeValue;
+            hashCode = Objects.hash(name, nameFormat, value);
+        }
+        
+        /**
+         * Get the attribute name.
+         * 
+         * @return the attribute name
+         */
+        @Nonnull @NotEmpty public String getName() {
+            return name;
+        }
+        
+        /**
+         * Get the attribute NameFormat.
+         * 
+         * @return the attribute NameFormat, or null if this tag matches any format
+         */
+        @Nullable public String getNameFormat() {
+            return nameFormat;
+        }
+        
+        /**
+         * Get the attribute value.
+         * 
+         * @return the attribute value
+         */
+        @Nullable public String getValue() {
+            return value;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            
+            if (obj instanceof Tag) {
+                final Tag other = (Tag) obj;
+                return name.equals(other.name) && Objects.equals(nameFormat, other.nameFormat)
+                        && Objects.equals(value, other.value);
+            }
+            
+            return false;
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("name", name)
+                    .add("nameFormat", nameFormat)
+                    .add("value", value)
+                    .toString();
+        }
+    }
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.metadata;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.xml.namespace.QName;
+
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.saml.saml2.metadata.RoleDescriptor;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.Unmodifiable;
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * An immutable, precomputed view of the information most frequently consulted from an {@link EntityDescriptor}.
+ * 
+ * <p>
+ * It will typically be attached to the entity descriptor via its {@link XMLObject#getObjectMetadata()} once
+ * metadata filtering is complete and before the metadata is published to a resolver's backing store, along with
+ * a {@link RoleDescriptorSnapshot} for each of its roles.
+ * </p>
+ * 
+ * <p>
+ * The entity's role descriptors are also indexed by role element name and schema type, and by those together with
+ * each supported protocol, so that the common role and protocol lookups do not need to scan the roles.
+ * </p>
+ */
+@Immutable
+public final class EntityDescriptorSnapshot {
+    
+    /** The entityID. */
+    @Nullable private final String entityID;
+    
+    /** The role snapshots, in document order. */
+    @Nonnull @NonnullElements private final List<RoleDescriptorSnapshot> roles;
+    
+    /** The role snapshots indexed by role type. */
+    @Nonnull private final ImmutableListMultimap<QName, RoleDescriptorSnapshot> rolesByType;
+    
+    /** The role descriptors, in document order. */
+    @Nonnull @NonnullElements private final List<RoleDescriptor> roleDescriptors;
+    
+    /** The role descriptors indexed by element name and by schema type. */
+    @Nonnull private final ImmutableListMultimap<QName, RoleDescriptor> roleDescriptorsByType;
+    
+    /** The role descriptors indexed by element name or schema type, paired with each supported protocol. */
+    @Nonnull private final ImmutableListMultimap<Pair<QName, String>, RoleDescriptor> roleDescriptorsByProtocol;
+    
+    /** The effective entity attributes of the entity and all its ancestor groups. */
+    @Nonnull @NonnullElements private final List<Attribute> entityAttributes;
+    
+    /** The precomputed entity attribute tags. */
+    @Nonnull private final EntityAttributeTags entityAttributeTags;
+    
+    /**
+     * Constructor.
+     *
+     * @param entity the entity descriptor being captured
+     * @param roleSnapshots the snapshots of the entity's roles
+     */
+    public EntityDescriptorSnapshot(@Nonnull final EntityDescriptor entity,
+            @Nonnull @NonnullElements final List<RoleDescriptorSnapshot> roleSnapshots) {
+        Constraint.isNotNull(entity, "EntityDescriptor cannot be null");
+        Constraint.isNotNull(roleSnapshots, "Role snapshots cannot be null");
+        
+        entityID = entity.getEntityID();
+        roles = ImmutableList.copyOf(roleSnapshots);
+        
+        final ImmutableListMultimap.Builder<QName, RoleDescriptorSnapshot> snapshotBuilder =
+                ImmutableListMultimap.builder();
+        for (final RoleDescriptorSnapshot role : roles) {
+            snapshotBuilder.put(role.getRoleType(), role);
+        }
+        rolesByType = snapshotBuilder.build();
+        
+        roleDescriptors = ImmutableList.copyOf(entity.getRoleDescriptors());
+        final ImmutableListMultimap.Builder<QName, RoleDescriptor> typeBuilder = ImmutableListMultimap.builder();
+        final ImmutableListMultimap.Builder<Pair<QName, String>, RoleDescriptor> protocolBuilder =
+                ImmutableListMultimap.builder();
+        for (final RoleDescriptor role : roleDescriptors) {
+            // Mirror the keys under which EntityDescriptor#getRoleDescriptors(QName) matches a role.
+            final QName elementName = role.getElementQName();
+            final QName schemaType = role.getSchemaType();
+            final List<QName> keys = schemaType == null || schemaType.equals(elementName)
+                    ? List.of(elementName) : List.of(elementName, schemaType);
+            for (final QName key : keys) {
+                typeBuilder.put(key, role);
+                for (final String protocol : role.getSupportedProtocols()) {
+                    protocolBuilder.put(new Pair<>(key, protocol), role);
+                }
+            }
+        }
+        roleDescriptorsByType = typeBuilder.build();
+        roleDescriptorsByProtocol = protocolBuilder.build();
+        
+        entityAttributes = ImmutableList.copyOf(EntityAttributeTags.collectEntityAttributes(entity));
+        entityAttributeTags = new EntityAttributeTags(entityAttributes);
+    }
+    
+    /**
+     * Get the entityID.
+     * 
+     * @return the entityID
+     */
+    @Nullable public String getEntityID() {
+        return entityID;
+    }
+    
+    /**
+     * Get the role snapshots, in document order.
+     * 
+     * @return the role snapshots
+     */
+    @Nonnull @NonnullElements @Unmodifiable public List<RoleDescriptorSnapshot> getRoles() {
+        return roles;
+    }
+    
+    /**
+     * Get the snapshots of the roles of the specified type, in document order.
+     * 
+     * @param roleType the role type, as returned by {@link RoleDescriptorSnapshot#getRoleType()}
+     * 
+     * @return the matching role snapshots
+     */
+    @Nonnull @NonnullElements @Unmodifiable public List<RoleDescriptorSnapshot> getRoles(
+            @Nonnull final QName roleType) {
+        return rolesByType.get(roleType);
+    }
+    
+    /**
+     * Get the entity's role descriptors, in document order.
+     * 
+     * @return the role descriptors
+     */
+    @Nonnull @NonnullElements @Unmodifiable public List<RoleDescriptor> getRoleDescriptors() {
+        return roleDescriptors;
+    }
+    
+    /**
+     * Get the role descriptors with the specified element name or schema type, in document order.
+     * 
+     * <p>
+     * This is equivalent to {@link EntityDescriptor#getRoleDescriptors(QName)} at the time the snapshot was taken.
+     * </p>
+     * 
+     * @param typeOrName the role element name or schema type
+     * 
+     * @return the matching role descriptors, possibly empty
+     */
+    @Nonnull @NonnullElements @Unmodifiable public List<RoleDescriptor> getRoleDescriptors(
+            @Nonnull final QName typeOrName) {
+        return roleDescriptorsByType.get(typeOrName);
+    }
+    
+    /**
+     * Get the role descriptors with the specified element name or schema type which support the specified
+     * protocol, in document order.
+     * 
+     * <p>
+     * This is equivalent to {@link EntityDescriptor#getRoleDescriptors(QName, String)} at the time the snapshot
+     * was taken.
+     * </p>
+     * 
+     * @param typeOrName the role element name or schema type
+     * @param protocol the supported protocol
+     * 
+     * @return the matching role descriptors, possibly empty
+     */
+    @Nonnull @NonnullElements @Unmodifiable public List<RoleDescriptor> getRoleDescriptors(
+            @Nonnull final QName typeOrName, @Nullable final String protocol) {
+        return roleDescriptorsByProtocol.get(new Pair<>(typeOrName, protocol));
+    }
+    
+    /**
+     * Get the effective entity attributes, those of the entity itself followed by those of each of its ancestor
+     * groups.
+     * 
+     * @return the entity attributes
+     */
+    @Nonnull @NonnullElements @Unmodifiable public List<Attribute> getEntityAttributes() {
+        return entityAttributes;
+    }
+    
+    /**
+     * Get the precomputed tags derived from the effective entity attributes.
+     * 
+     * @return the entity attribute tags
+     */
+    @Nonnull public EntityAttributeTags getEntityAttributeTags() {
+        return entityAttributeTags;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("entityID", entityID)
+                .add("roles", roles)
+                .add("entityAttributes", entityAttributes.size())
+                .toString();
+    }
+    
+    /**
+     * Get the snapshot attached to the specified entity descriptor, if any.
+     * 
+     * @param entity the entity descriptor
+     * 
+     * @return the attached snapshot, or null
+     */
+    @Nullable public static EntityDescriptorSnapshot get(@Nonnull final EntityDescriptor entity) {
+        final List<EntityDescriptorSnapshot> snapshots =
+                entity.getObjectMetadata().get(EntityDescriptorSnapshot.class);
+        return snapshots.isEmpty() ? null : snapshots.get(0);
+    }
+
+}
@@ -0,0 +1,380 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.metadata;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.xml.namespace.QName;
+
+import org.opensaml.saml.saml2.metadata.Endpoint;
+import org.opensaml.saml.saml2.metadata.IndexedEndpoint;
+import org.opensaml.saml.saml2.metadata.RoleDescriptor;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.credential.UsageType;
+import org.opensaml.xmlsec.keyinfo.KeyInfoCredentialResolver;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSet;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.Unmodifiable;
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * An immutable, precomputed view of the information most frequently consulted from a {@link RoleDescriptor}.
+ * 
+ * <p>
+ * It will typically be attached to the role descriptor via its
+ * {@link org.opensaml.core.xml.XMLObject#getObjectMetadata()} once metadata filtering is complete and before the
+ * metadata is published to a resolver's backing store. Since the instance never changes after construction,
+ * it may be read concurrently without acquiring the object metadata locks.
+ * </p>
+ * 
+ * <p>
+ * In addition to the endpoints in the order returned by {@link RoleDescriptor#getEndpoints()}, the endpoints of
+ * each type are captured in the order defined by the SAML defaulting rules for indexed endpoints (see
+ * {@link #orderByDefault(List)}), and further keyed by binding and by index, so that endpoint resolution does not
+ * need to copy and sort the endpoints on each use.
+ * </p>
+ */
+@Immutable
+public final class RoleDescriptorSnapshot {
+    
+    /** The role type, which is the schema type if present, otherwise the element name. */
+    @Nonnull private final QName roleType;
+    
+    /** The supported protocols. */
+    @Nonnull @NonnullElements private final Set<String> supportedProtocols;
+    
+    /** All endpoints, in the order returned by the role descriptor. */
+    @Nonnull @NonnullElements private final List<Endpoint> allEndpoints;
+    
+    /** Endpoints indexed by element name. */
+    @Nonnull private final ImmutableListMultimap<QName, Endpoint> endpoints;
+    
+    /** Endpoints indexed by element name, with the default endpoint of each type first. */
+    @Nonnull private final ImmutableListMultimap<QName, Endpoint> orderedEndpoints;
+    
+    /** Endpoints indexed by element name and binding, with the default endpoint of each type first. */
+    @Nonnull private final ImmutableListMultimap<Pair<QName, String>, Endpoint> endpointsByBinding;
+    
+    /** Indexed endpoints indexed by element name and index, with the default endpoint of each type first. */
+    @Nonnull private final ImmutableListMultimap<Pair<QName, Integer>, Endpoint> endpointsByIndex;
+    
+    /** The resolver used to precompute the credentials, or null if credentials were not precomputed. */
+    @Nullable private final KeyInfoCredentialResolver credentialResolver;
+    
+    /** Credentials paired with the usage of their key descriptor, or null if credentials were not precomputed. */
+    @Nullable private final List<Pair<UsageType, Credential>> credentials;
+
+    /**
+     * Constructor.
+     *
+     * @param role the role descriptor being captured
+     */
+    public RoleDescriptorSnapshot(@Nonnull final RoleDescriptor role) {
+        this(role, null, null);
+    }
+    
+    /**
+     * Constructor.
+     *
+     * @param role the role descriptor being captured
+     * @param resolver the resolver used to resolve the role's credentials, or null if credentials were not resolved
+     * @param roleCredentials the ordered credentials resolved from the role's key descriptors, each paired with the
+     *          effective usage of its key descriptor, or null if credentials were not resolved
+     */
+    public RoleDescriptorSnapshot(@Nonnull final RoleDescriptor role,
+            @Nullable final KeyInfoCredentialResolver resolver,
+            @Nullable @NonnullElements final List<Pair<UsageType, Credential>> roleCredentials) {
+        Constraint.isNotNull(role, "RoleDescriptor cannot be null");
+        
+        roleType = getRoleType(role);
+        supportedProtocols = ImmutableSet.copyOf(role.getSupportedProtocols());
+        
+        allEndpoints = ImmutableList.copyOf(role.getEndpoints());
+        final ImmutableListMultimap.Builder<QName, Endpoint> endpointBuilder = ImmutableListMultimap.builder();
+        for (final Endpoint endpoint : allEndpoints) {
+            endpointBuilder.put(endpoint.getElementQName(), endpoint);
+        }
+        endpoints = endpointBuilder.build();
+        
+        final ImmutableListMultimap.Builder<QName, Endpoint> orderedBuilder = ImmutableListMultimap.builder();
+        final ImmutableListMultimap.Builder<Pair<QName, String>, Endpoint> bindingBuilder =
+                ImmutableListMultimap.builder();
+        final ImmutableListMultimap.Builder<Pair<QName, Integer>, Endpoint> indexBuilder =
+                ImmutableListMultimap.builder();
+        for (final QName type : endpoints.keySet()) {
+            for (final Endpoint endpoint : orderByDefault(role.getEndpoints(type))) {
+                orderedBuilder.put(type, endpoint);
+                if (endpoint.getBinding() != null) {
+                    bindingBuilder.put(new Pair<>(type, endpoint.getBinding()), endpoint);
+                }
+                if (endpoint instanceof IndexedEndpoint && ((IndexedEndpoint) endpoint).getIndex() != null) {
+                    indexBuilder.put(new Pair<>(type, ((IndexedEndpoint) endpoint).getIndex()), endpoint);
+                }
+            }
+        }
+        orderedEndpoints = orderedBuilder.build();
+        endpointsByBinding = bindingBuilder.build();
+        endpointsByIndex = indexBuilder.build();
+        
+        if (resolver != null && roleCredentials != null) {
+            credentialResolver = resolver;
+            credentials = ImmutableList.copyOf(roleCredentials);
+        } else {
+            credentialResolver = null;
+            credentials = null;
+        }
+    }
+    
+    /**
+     * Get the role type, which is the role's schema type if present, otherwise its element name.
+     * 
+     * @return the role type
+     */
+    @Nonnull public QName getRoleType() {
+        return roleType;
+    }
+    
+    /**
+     * Get the role's supported protocols.
+     * 
+     * @return the supported protocols
+     */
+    @Nonnull @NonnullElements @Unmodifiable public Set<String> getSupportedProtocols() {
+        return supportedProtocols;
+    }
+    
+    /**
+     * Get whether the role supports the specified protocol.
+     * 
+     * @param protocol the protocol to check
+     * 
+     * @return true if the protocol is supported
+     */
+    public boolean isSupportedProtocol(@Nullable final String protocol) {
+        return protocol != null && supportedProtocols.contains(protocol);
+    }
+    
+    /**
+     * Get all the role's endpoints, in the order returned by {@link RoleDescriptor#getEndpoints()}.
+     * 
+     * <p>
+     * This is a copy of that list, not a concatenation of the endpoints grouped by type, so the order is
+     * preserved even where endpoints of different types are interleaved.
+     * </p>
+     * 
+     * @return the role's endpoints
+     */
+    @Nonnull @NonnullElements @Unmodifiable public List<Endpoint> getEndpoints() {
+        return allEndpoints;
+    }
+    
+    /**
+     * Get the role's endpoints of the specified type, in the order returned by
+     * {@link RoleDescriptor#getEndpoints(QName)}.
+     * 
+     * @param type the endpoint element name
+     * 
+     * @return the matching endpoints, possibly empty
+     */
+    @Nonnull @NonnullElements @Unmodifiable public List<Endpoint> getEndpoints(@Nonnull final QName type) {
+        return endpoints.get(type);
+    }
+    
+    /**
+     * Get the role's endpoints of the specified type, with the default endpoint first.
+     * 
+     * @param type the endpoint element name
+     * 
+     * @return the matching endpoints, ordered as by {@link #orderByDefault(List)}, possibly empty
+     */
+    @Nonnull @NonnullElements @Unmodifiable public List<Endpoint> getOrderedEndpoints(@Nonnull final QName type) {
+        return orderedEndpoints.get(type);
+    }
+    
+    /**
+     * Get the role's endpoints of the specified type with the specified binding, with the default endpoint first.
+     * 
+     * @param type the endpoint element name
+     * @param binding the endpoint binding
+     * 
+     * @return the matching endpoints, in the order of {@link #getOrderedEndpoints(QName)}, possibly empty
+     */
+    @Nonnull @NonnullElements @Unmodifiable public List<Endpoint> getOrderedEndpoints(@Nonnull final QName type,
+            @Nullable final String binding) {
+        return endpointsByBinding.get(new Pair<>(type, binding));
+    }
+    
+    /**
+     * Get the role's indexed endpoints of the specified type with the specified index.
+     * 
+     * <p>
+     * Indexes are required to be unique within a type, but this is not enforced, so more than one endpoint
+     * may be returned.
+     * </p>
+     * 
+     * @param type the endpoint element name
+     * @param index the endpoint index
+     * 
+     * @return the matching endpoints, in the order of {@link #getOrderedEndpoints(QName)}, possibly empty
+     */
+    @Nonnull @NonnullElements @Unmodifiable public List<Endpoint> getIndexedEndpoints(@Nonnull final QName type,
+            @Nullable final Integer index) {
+        return endpointsByIndex.get(new Pair<>(type, index));
+    }
+    
+    /**
+     * Get whether credentials were precomputed for this role.
+     * 
+     * <p>
+     * If not, callers should fall back to resolving credentials from the role's key descriptors.
+     * </p>
+     * 
+     * @return true iff credentials are available from {@link #getCredentials()}
+     */
+    public boolean isCredentialsResolved() {
+        return credentials != null;
+    }
+    
+    /**
+     * Get the resolver used to precompute the credentials.
+     * 
+     * <p>
+     * Callers which resolve credentials with a different {@link KeyInfoCredentialResolver} should not use the
+     * precomputed credentials, since they may differ from those the caller would resolve itself.
+     * </p>
+     * 
+     * @return the resolver, or null if credentials were not precomputed
+     */
+    @Nullable public KeyInfoCredentialResolver getCredentialResolver() {
+        return credentialResolver;
+    }
+    
+    /**
+     * Get the precomputed credentials, each paired with the effective usage of the key descriptor from which
+     * it was resolved.
+     * 
+     * @return the credentials, in key descriptor order, or an empty list if credentials were not precomputed
+     */
+    @Nonnull @NonnullElements @Unmodifiable public List<Pair<UsageType, Credential>> getCredentials() {
+        if (credentials == null) {
+            return ImmutableList.of();
+        }
+        return credentials;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("roleType", roleType)
+                .add("supportedProtocols", supportedProtocols)
+                .add("endpoints", endpoints.size())
+                .add("credentialsResolved", isCredentialsResolved())
+                .toString();
+    }
+    
+    /**
+     * Get the role type used to identify a role descriptor.
+     * 
+     * @param role the role descriptor
+     * 
+     * @return the schema type if present, otherwise the element name
+     */
+    @Nonnull public static QName getRoleType(@Nonnull final RoleDescriptor role) {
+        final QName type = role.getSchemaType();
+        return type != null ? type : role.getElementQName();
+    }
+    
+    /**
+     * Copy and order the endpoints such that the default endpoint by SAML rules comes first.
+     * 
+     * <p>
+     * SAML defaulting rules apply to {@link IndexedEndpoint} types, and require checking for the isDefault
+     * attribute. The default is the one marked true, or if none are, the first not marked false. The order of
+     * the remaining endpoints is otherwise preserved.
+     * </p>
+     * 
+     * @param candidates input list of endpoints
+     * 
+     * @return a new list containing the endpoints such that the default is first
+     */
+    // Checkstyle: CyclomaticComplexity OFF
+    @Nonnull @NonnullElements public static List<Endpoint> orderByDefault(
+            @Nonnull @NonnullElements final List<? extends Endpoint> candidates) {
+        
+        // Use a linked list, and move the default endpoint to the head of the list.
+        Endpoint hardDefault = null;
+        Endpoint softDefault = null;
+        final LinkedList<Endpoint> toReturn = new LinkedList<>();
+        for (final Endpoint endpoint : candidates) {
+            if (hardDefault == null && endpoint instanceof IndexedEndpoint) {
+                final Boolean flag = ((IndexedEndpoint) endpoint).isDefault();
+                if (flag != null) {
+                    if (flag.booleanValue()) {
+                        hardDefault = endpoint;
+                        if (softDefault != null) {
+                            toReturn.addFirst(softDefault);
+                            softDefault = null;
+                        }
+                    } else {
+                        toReturn.addLast(endpoint);
+                    }
+                } else if (softDefault == null) {
+                    softDefault = endpoint;
+                } else {
+                    toReturn.addLast(endpoint);
+                }
+            } else {
+                toReturn.addLast(endpoint);
+            }
+        }
+        
+        if (hardDefault != null) {
+            toReturn.addFirst(hardDefault);
+        } else if (softDefault != null) {
+            toReturn.addFirst(softDefault);
+        }
+       
+        return toReturn;
+    }
+    // Checkstyle: CyclomaticComplexity ON
+    
+    /**
+     * Get the snapshot attached to the specified role descriptor, if any.
+     * 
+     * @param role the role descriptor
+     * 
+     * @return the attached snapshot, or null
+     */
+    @Nullable public static RoleDescriptorSnapshot get(@Nonnull final RoleDescriptor role) {
+        final List<RoleDescriptorSnapshot> snapshots = role.getObjectMetadata().get(RoleDescriptorSnapshot.class);
+        return snapshots.isEmpty() ? null : snapshots.get(0);
+    }
+
+}
@@ -0,0 +1,362 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.common.binding.artifact.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.xml.ParserPool;
+import net.shibboleth.utilities.java.support.xml.SerializeSupport;
+import net.shibboleth.utilities.java.support.xml.XMLParserException;
+
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.XMLRuntimeException;
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.common.SAMLObject;
+import org.opensaml.saml.common.binding.artifact.SAMLArtifactMap.SAMLArtifactMapEntry;
+import org.opensaml.saml.saml2.binding.impl.DeflateSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+
+/**
+ * A factory and {@link org.opensaml.storage.StorageSerializer} for {@link SAMLArtifactMapEntry} instances
+ * which stores entries in a compact binary envelope.
+ * 
+ * <p>
+ * The envelope carries the issuer and relying party followed by the serialized message bytes, DEFLATE
+ * compressed when larger than the {@link #setCompressionThreshold(int)} value, and is stored Base64 encoded.
+ * Entries read back from storage parse and unmarshall the message only when
+ * {@link SAMLArtifactMapEntry#getSamlMessage()} is first called, so lookups which are rejected on the basis
+ * of the issuer or relying party never pay for DOM construction and unmarshalling.
+ * </p>
+ * 
+ * <p>
+ * So that corrupt stored data is still reported by {@link #deserialize(long, String, String, String, Long)},
+ * and hence by the artifact map's lookup, as an {@link IOException}, the envelope is decoded and the message
+ * is checked to be a well-formed XML document without a DTD before the entry is returned. A message which
+ * passes this check but can not be unmarshalled into a SAML message is instead reported by an unchecked
+ * {@link XMLRuntimeException} from {@link SAMLArtifactMapEntry#getSamlMessage()}.
+ * </p>
+ * 
+ * <p>
+ * Values written by {@link StorageServiceSAMLArtifactMapEntryFactory} are still readable, allowing this
+ * factory to be substituted without draining existing storage.
+ * </p>
+ */
+public class CompactStorageServiceSAMLArtifactMapEntryFactory extends StorageServiceSAMLArtifactMapEntryFactory {
+    
+    /** Default size in bytes above which serialized messages are compressed: {@value}. */
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+    
+    /** Default maximum size in bytes of a stored serialized message: {@value}. */
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 16 * 1024 * 1024;
+
+    /** Prefix identifying the compact format, which cannot begin an XML value. */
+    @Nonnull @NotEmpty private static final String PREFIX = "#1";
+    
+    /** Flag indicating the message bytes are compressed. */
+    private static final int FLAG_COMPRESSED = 0x01;
+
+    /** Class logger. */
+    @Nonnull private final Logger log =
+            LoggerFactory.getLogger(CompactStorageServiceSAMLArtifactMapEntryFactory.class);
+    
+    /** Size in bytes above which serialized messages are compressed. */
+    private int compressionThreshold;
+    
+    /** Maximum size in bytes of a stored serialized message. */
+    private int maxMessageSize;
+    
+    /** Factory for the readers used to check stored messages are well-formed, guarded by itself. */
+    @Nonnull private final XMLInputFactory inputFactory;
+    
+    /** Constructor. */
+    public CompactStorageServiceSAMLArtifactMapEntryFactory() {
+        compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+        maxMessageSize = DEFAULT_MAX_MESSAGE_SIZE;
+        inputFactory = XMLInputFactory.newFactory();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+    
+    /**
+     * Get the size in bytes above which serialized messages are compressed.
+     * 
+     * @return the compression threshold
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+    
+    /**
+     * Set the size in bytes above which serialized messages are compressed.
+     * 
+     * <p>Defaults to {@link #DEFAULT_COMPRESSION_THRESHOLD}. Use {@link Integer#MAX_VALUE} to disable
+     * compression.</p>
+     * 
+     * @param threshold the compression threshold
+     */
+    public void setCompressionThreshold(final int threshold) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        compressionThreshold = (int) Constraint.isGreaterThanOrEqual(0, threshold,
+                "Compression threshold cannot be negative");
+    }
+    
+    /**
+     * Get the maximum size in bytes of a stored serialized message.
+     * 
+     * @return the maximum message size
+     */
+    public int getMaxMessageSize() {
+        return maxMessageSize;
+    }
+    
+    /**
+     * Set the maximum size in bytes of a stored serialized message.
+     * 
+     * <p>Defaults to {@link #DEFAULT_MAX_MESSAGE_SIZE}. Stored compressed messages which would decompress
+     * beyond this size are rejected.</p>
+     * 
+     * @param size the maximum message size
+     */
+    public void setMaxMessageSize(final int size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        maxMessageSize = (int) Constraint.isGreaterThan(0, size, "Maximum message size must be greater than 0");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull public String serialize(@Nonnull final SAMLArtifactMapEntry instance) throws IOException {
+        log.debug("Serializing SAMLArtifactMapEntry for storage in compact format");
+        
+        final Element marshalledMessage;
+        try {
+            marshalledMessage = XMLObjectSupport.marshall(instance.getSamlMessage());
+        } catch (final MarshallingException e) {
+            throw new IOException("Error marshalling SAML message", e);
+        }
+        
+        final ByteArrayOutputStream messageBytes = new ByteArrayOutputStream(4096);
+        SerializeSupport.writeNode(marshalledMessage, messageBytes);
+        
+        final boolean compress = messageBytes.size() > compressionThreshold;
+        final byte[] raw = messageBytes.toByteArray();
+        final ByteBuffer payload = compress ? DeflateSupport.deflate(raw, 0, raw.length, Deflater.BEST_SPEED)
+                : ByteBuffer.wrap(raw);
+        
+        final ByteArrayOutputStream envelope = new ByteArrayOutputStream(payload.remaining() + 256);
+        try (final DataOutputStream out = new DataOutputStream(envelope)) {
+            out.writeByte(compress ? FLAG_COMPRESSED : 0);
+            out.writeUTF(instance.getIssuerId());
+            out.writeUTF(instance.getRelyingPartyId());
+            out.write(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+        }
+        
+        log.trace("Serialized SAMLArtifactMapEntry message of {} bytes, compressed: {}", raw.length, compress);
+        
+        return PREFIX + Base64.getEncoder().encodeToString(envelope.toByteArray());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull public SAMLArtifactMapEntry deserialize(final long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nonnull @NotEmpty final String value, @Nullable final Long expiration)
+                    throws IOException {
+        
+        if (!value.startsWith(PREFIX)) {
+            log.debug("Stored artifact mapping is not in compact format, deserializing as XML");
+            return super.deserialize(version, context, key, value, expiration);
+        }
+        
+        log.debug("Deserializing artifact mapping data from compact format");
+        
+        final byte[] envelope;
+        try {
+            envelope = Base64.getDecoder().decode(value.substring(PREFIX.length()));
+        } catch (final IllegalArgumentException e) {
+            throw new IOException("SAMLArtifactMapEntry data was not valid Base64", e);
+        }
+        
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(envelope))) {
+            final int flags = in.readUnsignedByte();
+            final String issuer = in.readUTF();
+            final String relyingParty = in.readUTF();
+            if (issuer.isEmpty() || relyingParty.isEmpty()) {
+                throw new IOException("SAMLArtifactMapEntry data missing issuer or relyingParty");
+            }
+            
+            final int offset = envelope.length - in.available();
+            final ByteBuffer message;
+            if ((flags & FLAG_COMPRESSED) != 0) {
+                try {
+                    final byte[] compressed = new byte[envelope.length - offset];
+                    in.readFully(compressed);
+                    message = DeflateSupport.inflate(compressed, maxMessageSize);
+                } catch (final DataFormatException e) {
+                    throw new IOException("Error decompressing SAMLArtifactMapEntry message", e);
+                }
+            } else {
+                message = ByteBuffer.wrap(envelope, offset, envelope.length - offset);
+            }
+            
+            checkWellFormed(message);
+            
+            return new LazySAMLArtifactMapEntry(key, issuer, relyingParty, message, getParserPool());
+        }
+    }
+    
+    /**
+     * Check that a serialized message is a well-formed XML document without a DTD, without building a DOM.
+     * 
+     * @param message the serialized message
+     * 
+     * @throws IOException if the message is not a well-formed XML document without a DTD
+     */
+    private void checkWellFormed(@Nonnull final ByteBuffer message) throws IOException {
+        final InputStream in = new ByteArrayInputStream(message.array(), message.arrayOffset() + message.position(),
+                message.remaining());
+        try {
+            final XMLStreamReader reader;
+            synchronized (inputFactory) {
+                reader = inputFactory.createXMLStreamReader(in);
+            }
+            try {
+                boolean hasElement = false;
+                while (reader.hasNext()) {
+                    final int event = reader.next();
+                    if (event == XMLStreamConstants.DTD) {
+                        throw new IOException("SAMLArtifactMapEntry message contains a DTD");
+                    } else if (event == XMLStreamConstants.START_ELEMENT) {
+                        hasElement = true;
+                    }
+                }
+                if (!hasElement) {
+                    throw new IOException("SAMLArtifactMapEntry message contains no document element");
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final XMLStreamException e) {
+            throw new IOException("SAMLArtifactMapEntry message is not well-formed XML", e);
+        }
+    }
+    
+    /**
+     * {@link SAMLArtifactMapEntry} which defers parsing and unmarshalling of its message until first use.
+     */
+    @ThreadSafe
+    private static final class LazySAMLArtifactMapEntry implements SAMLArtifactMapEntry {
+        
+        /** SAML artifact being mapped. */
+        @Nonnull @NotEmpty private final String artifact;
+
+        /** EntityID of the issuer of the artifact. */
+        @Nonnull @NotEmpty private final String issuer;
+
+        /** EntityID of the intended recipient of the artifact. */
+        @Nonnull @NotEmpty private final String relyingParty;
+        
+        /** Parser pool to use. */
+        @Nonnull private final ParserPool parserPool;
+        
+        /** Serialized message, released once unmarshalled. */
+        @Nullable private ByteBuffer serializedMessage;
+        
+        /** Unmarshalled message. */
+        @Nullable private SAMLObject message;
+
+        /**
+         * Constructor.
+         *
+         * @param samlArtifact artifact associated with the message
+         * @param issuerId issuer of the artifact
+         * @param relyingPartyId intended recipient of the artifact
+         * @param serialized serialized SAML message
+         * @param pool parser pool to use
+         */
+        LazySAMLArtifactMapEntry(@Nonnull @NotEmpty final String samlArtifact,
+                @Nonnull @NotEmpty final String issuerId, @Nonnull @NotEmpty final String relyingPartyId,
+                @Nonnull final ByteBuffer serialized, @Nonnull final ParserPool pool) {
+            artifact = samlArtifact;
+            issuer = issuerId;
+            relyingParty = relyingPartyId;
+            serializedMessage = serialized;
+            parserPool = pool;
+        }
+
+        /** {@inheritDoc} */
+        @Nonnull @NotEmpty public String getArtifact() {
+            return artifact;
+        }
+
+        /** {@inheritDoc} */
+        @Nonnull @NotEmpty public String getIssuerId() {
+            return issuer;
+        }
+
+        /** {@inheritDoc} */
+        @Nonnull @NotEmpty public String getRelyingPartyId() {
+            return relyingParty;
+        }
+
+        /** {@inheritDoc} */
+        @Nonnull public synchronized SAMLObject getSamlMessage() {
+            if (message == null) {
+                final ByteBuffer serialized = serializedMessage;
+                try (final InputStream in = new ByteArrayInputStream(serialized.array(),
+                        serialized.arrayOffset() + serialized.position(), serialized.remaining())) {
+                    final XMLObject xmlObject = XMLObjectSupport.unmarshallFromInputStream(parserPool, in);
+                    if (!(xmlObject instanceof SAMLObject)) {
+                        throw new XMLRuntimeException("SAMLArtifactMapEntry's XMLObject was not a SAML message");
+                    }
+                    message = (SAMLObject) xmlObject;
+                    serializedMessage = null;
+                } catch (final IOException | XMLParserException | UnmarshallingException e) {
+                    throw new XMLRuntimeException("Error unmarshalling SAMLArtifactMapEntry message", e);
+                }
+            }
+            return message;
+        }
+        
+    }
+
+}
@@ -17,15 +17,19 @@
 
 package org.opensaml.saml.common.binding.impl;
 
+import java.util.List;
 import java.util.Objects;
 
 import javax.annotation.Nonnull;
+import javax.xml.namespace.QName;
 
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
 import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
 
 import org.opensaml.saml.common.binding.AbstractEndpointResolver;
 import org.opensaml.saml.criterion.BindingCriterion;
 import org.opensaml.saml.criterion.EndpointCriterion;
+import org.opensaml.saml.metadata.RoleDescriptorSnapshot;
 import org.opensaml.saml.saml2.metadata.Endpoint;
 import org.opensaml.saml.saml2.metadata.IndexedEndpoint;
 import org.slf4j.Logger;
@@ -51,6 +55,28 @@ public class DefaultEndpointResolver<EndpointType extends Endpoint> extends Abst
     /** Class logger. */
     @Nonnull private Logger log = LoggerFactory.getLogger(DefaultEndpointResolver.class);
 
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>Since {@link EndpointCriterion} requires an exact match on the index and binding if either is supplied,
+     * this implementation looks up the candidates by index, or failing that by binding.</p>
+     */
+    @Override
+    @Nonnull @NonnullElements protected List<Endpoint> getCandidatesFromSnapshot(
+            @Nonnull final CriteriaSet criteria, @Nonnull final RoleDescriptorSnapshot snapshot,
+            @Nonnull final QName endpointType) {
+        
+        final EndpointCriterion<EndpointType> epCriterion = criteria.get(EndpointCriterion.class);
+        final EndpointType comparisonEndpoint = epCriterion.getEndpoint();
+        if (comparisonEndpoint instanceof IndexedEndpoint
+                && ((IndexedEndpoint) comparisonEndpoint).getIndex() != null) {
+            return snapshot.getIndexedEndpoints(endpointType, ((IndexedEndpoint) comparisonEndpoint).getIndex());
+        } else if (comparisonEndpoint.getBinding() != null) {
+            return snapshot.getOrderedEndpoints(endpointType, comparisonEndpoint.getBinding());
+        }
+        return super.getCandidatesFromSnapshot(criteria, snapshot, endpointType);
+    }
+
     /** {@inheritDoc} */
     @Override
     protected boolean doCheckEndpoint(@Nonnull final CriteriaSet criteria, @Nonnull final EndpointType endpoint) {
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.metadata.criteria.entity.impl;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+import org.opensaml.saml.common.profile.logic.EntityAttributesPredicate;
+import org.opensaml.saml.metadata.criteria.entity.EvaluableEntityDescriptorCriterion;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+
+import com.google.common.base.MoreObjects;
+
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * Implementation of {@link EvaluableEntityDescriptorCriterion} which evaluates that an entity descriptor
+ * satisfies an {@link EntityAttributesPredicate}.
+ * 
+ * <p>
+ * Resolvers configured with an
+ * {@link org.opensaml.saml.metadata.resolver.index.impl.EntityAttributesMetadataIndex} will use it to narrow the
+ * candidates before the predicate is evaluated.
+ * </p>
+ */
+public class EvaluableEntityAttributesEntityDescriptorCriterion implements EvaluableEntityDescriptorCriterion {
+    
+    /** The entity attributes predicate. */
+    @Nonnull private final EntityAttributesPredicate predicate;
+    
+    /**
+     * Constructor.
+     *
+     * @param entityAttributesPredicate the predicate to evaluate
+     */
+    public EvaluableEntityAttributesEntityDescriptorCriterion(
+            @Nonnull final EntityAttributesPredicate entityAttributesPredicate) {
+        predicate = Constraint.isNotNull(entityAttributesPredicate, "EntityAttributesPredicate was null");
+    }
+    
+    /**
+     * Get the entity attributes predicate.
+     * 
+     * @return the predicate
+     */
+    @Nonnull public EntityAttributesPredicate getPredicate() {
+        return predicate;
+    }
+
+    /** {@inheritDoc} */
+    public boolean test(final EntityDescriptor entityDescriptor) {
+        return predicate.test(entityDescriptor);
+    }
+
+    /** {@inheritDoc} */
+    public int hashCode() {
+        return predicate.hashCode();
+    }
+
+    /** {@inheritDoc} */
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+        
+        if (other instanceof EvaluableEntityAttributesEntityDescriptorCriterion) {
+            return Objects.equals(predicate,
+                    ((EvaluableEntityAttributesEntityDescriptorCriterion) other).predicate);
+        }
+        
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("candidates", predicate.getCandidates())
+                .add("matchAll", predicate.getMatchAll())
+                .toString();
+    }
+    
+}
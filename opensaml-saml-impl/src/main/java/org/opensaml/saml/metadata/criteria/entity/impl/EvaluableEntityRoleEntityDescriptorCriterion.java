@@ -57,6 +57,15 @@ public class EvaluableEntityRoleEntityDescriptorCriterion implements EvaluableEn
     public EvaluableEntityRoleEntityDescriptorCriterion(final QName entityRole) {
         role = Constraint.isNotNull(entityRole, "Entity Role QName was null");
     }
+    
+    /**
+     * Get the entity role.
+     * 
+     * @return the entity role
+     */
+    public QName getRole() {
+        return role;
+    }
 
     /** {@inheritDoc} */
     public boolean test(final EntityDescriptor entityDescriptor) {
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.metadata.resolver.filter.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.saml.metadata.EntityAttributeTags;
+import org.opensaml.saml.metadata.EntityDescriptorSnapshot;
+import org.opensaml.saml.metadata.RoleDescriptorSnapshot;
+import org.opensaml.saml.metadata.resolver.filter.FilterException;
+import org.opensaml.saml.metadata.resolver.filter.MetadataNodeProcessor;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.saml.saml2.metadata.KeyDescriptor;
+import org.opensaml.saml.saml2.metadata.RoleDescriptor;
+import org.opensaml.saml.security.impl.SAMLMDCredentialContext;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.credential.MutableCredential;
+import org.opensaml.security.credential.UsageType;
+import org.opensaml.xmlsec.keyinfo.KeyInfoCredentialResolver;
+import org.opensaml.xmlsec.keyinfo.KeyInfoCriterion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+
+/**
+ * A metadata node processor implementation which attaches an immutable {@link EntityDescriptorSnapshot} and its
+ * {@link EntityAttributeTags} to each {@link EntityDescriptor}, and a {@link RoleDescriptorSnapshot} to each of its
+ * {@link RoleDescriptor}s.
+ * 
+ * <p>
+ * If a {@link KeyInfoCredentialResolver} is supplied, the credentials of each role's key descriptors are resolved
+ * up front and captured in the role snapshot, so that credential resolution at runtime does not need to lock
+ * the key descriptors' object metadata. The resolved credentials are also cached on each {@link KeyDescriptor}
+ * in the same manner as {@link org.opensaml.saml.security.impl.MetadataCredentialResolver}. The precomputed
+ * credentials are only used by credential resolvers configured with the same {@link KeyInfoCredentialResolver}
+ * instance.
+ * </p>
+ * 
+ * <p>
+ * Since the snapshots are not updated if the metadata is subsequently modified, this processor should be
+ * run after all other filters which might modify the entity descriptors.
+ * </p>
+ */
+public class MetadataSnapshotProcessor implements MetadataNodeProcessor {
+    
+    /** Logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(MetadataSnapshotProcessor.class);
+    
+    /** Credential resolver used to resolve credentials from role descriptor KeyInfo elements. */
+    @Nullable private final KeyInfoCredentialResolver keyInfoCredentialResolver;
+    
+    /** Constructor. */
+    public MetadataSnapshotProcessor() {
+        this(null);
+    }
+    
+    /**
+     * Constructor.
+     *
+     * @param resolver the KeyInfo credential resolver used to precompute role credentials, may be null
+     */
+    public MetadataSnapshotProcessor(@Nullable final KeyInfoCredentialResolver resolver) {
+        keyInfoCredentialResolver = resolver;
+    }
+    
+    /**
+     * Get the KeyInfo credential resolver used to precompute role credentials.
+     * 
+     * @return the KeyInfo credential resolver, or null
+     */
+    @Nullable public KeyInfoCredentialResolver getKeyInfoCredentialResolver() {
+        return keyInfoCredentialResolver;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void process(final XMLObject metadataNode) throws FilterException {
+        if (metadataNode instanceof EntityDescriptor) {
+            final EntityDescriptor entity = (EntityDescriptor) metadataNode;
+            
+            final List<RoleDescriptorSnapshot> roleSnapshots = new ArrayList<>();
+            for (final RoleDescriptor role : entity.getRoleDescriptors()) {
+                final RoleDescriptorSnapshot roleSnapshot = new RoleDescriptorSnapshot(role,
+                        keyInfoCredentialResolver, resolveCredentials(role, entity.getEntityID()));
+                role.getObjectMetadata().remove(RoleDescriptorSnapshot.class);
+                role.getObjectMetadata().put(roleSnapshot);
+                roleSnapshots.add(roleSnapshot);
+            }
+            
+            final EntityDescriptorSnapshot snapshot = new EntityDescriptorSnapshot(entity, roleSnapshots);
+            log.trace("Attaching snapshot to EntityDescriptor: {}", snapshot);
+            entity.getObjectMetadata().remove(EntityDescriptorSnapshot.class);
+            entity.getObjectMetadata().put(snapshot);
+            entity.getObjectMetadata().remove(EntityAttributeTags.class);
+            entity.getObjectMetadata().put(snapshot.getEntityAttributeTags());
+        }
+    }
+    
+    /**
+     * Resolve the credentials from each of the role's key descriptors.
+     * 
+     * @param role the role descriptor
+     * @param entityID the entityID of the role's owner
+     * 
+     * @return the credentials paired with the effective usage of their key descriptor, or null if
+     *          credentials could not be resolved
+     */
+    @Nullable protected List<Pair<UsageType, Credential>> resolveCredentials(@Nonnull final RoleDescriptor role,
+            @Nullable final String entityID) {
+        if (keyInfoCredentialResolver == null) {
+            return null;
+        }
+        
+        final List<Pair<UsageType, Credential>> result = new ArrayList<>();
+        for (final KeyDescriptor keyDescriptor : role.getKeyDescriptors()) {
+            if (keyDescriptor.getKeyInfo() == null) {
+                continue;
+            }
+            final UsageType mdUsage = keyDescriptor.getUse() != null ? keyDescriptor.getUse() : UsageType.UNSPECIFIED;
+            
+            final List<Credential> creds = new ArrayList<>();
+            try {
+                final Iterable<Credential> resolvedCreds =
+                        keyInfoCredentialResolver.resolve(new CriteriaSet(new KeyInfoCriterion(
+                                keyDescriptor.getKeyInfo())));
+                for (final Credential cred : resolvedCreds) {
+                    if (cred instanceof MutableCredential) {
+                        final MutableCredential mutableCred = (MutableCredential) cred;
+                        mutableCred.setEntityId(entityID);
+                        mutableCred.setUsageType(mdUsage);
+                    }
+                    cred.getCredentialContextSet().add(new SAMLMDCredentialContext(keyDescriptor));
+                    creds.add(cred);
+                }
+            } catch (final ResolverException e) {
+                log.warn("Unable to resolve credentials from KeyDescriptor of entity '{}', "
+                        + "credentials will be resolved on demand", entityID, e);
+                return null;
+            }
+            
+            keyDescriptor.getObjectMetadata().remove(Credential.class);
+            keyDescriptor.getObjectMetadata().putAll(creds);
+            for (final Credential cred : creds) {
+                result.add(new Pair<>(mdUsage, cred));
+            }
+        }
+        return result;
+    }
+
+}
@@ -199,9 +199,18 @@ public abstract class AbstractBatchMetadataResolver extends AbstractMetadataReso
         
         if (indexedCandidates.isPresent()) {
             log.debug("{} Performing predicate filtering of resolved secondary indexed candidates", getLogPrefix());
+            getPredicateEvaluationPlanner().markIndexPlan();
             return predicateFilterCandidates(indexedCandidates.get(), criteria, false);
         } else if (isResolveViaPredicatesOnly()) {
+            final Optional<Set<EntityDescriptor>> mappedCandidates = lookupByMappedIndexes(criteria);
+            if (mappedCandidates.isPresent()) {
+                log.debug("{} Performing predicate filtering of {} candidates resolved via secondary indexes "
+                        + "for evaluable criteria", getLogPrefix(), mappedCandidates.get().size());
+                getPredicateEvaluationPlanner().markMappedIndexPlan();
+                return predicateFilterCandidates(mappedCandidates.get(), criteria, true);
+            }
             log.debug("{} Performing predicate filtering of entire metadata collection", getLogPrefix());
+            getPredicateEvaluationPlanner().markScanPlan();
             return predicateFilterCandidates(this, criteria, true);
         } else {
             log.debug("{} Resolved no secondary indexed candidates, returning empty result", getLogPrefix());
@@ -226,6 +235,30 @@ public abstract class AbstractBatchMetadataResolver extends AbstractMetadataReso
         return getBackingStore().getSecondaryIndexManager().lookupIndexedItems(criteria);
     }
     
+    /**
+     * Resolve the set of descriptors based on the indexes currently held, using the criteria mapped from the
+     * evaluable criteria in the supplied set by the {@link #getPredicateEvaluationPlanner()}.
+     * 
+     * <p>
+     * This allows predicate-only resolution to narrow the candidates via the indexes before evaluating the
+     * predicates over them, rather than evaluating the predicates over the entire metadata collection.
+     * </p>
+     * 
+     * @param criteria the criteria set to process
+     * 
+     * @return an {@link Optional} instance as for {@link #lookupByIndexes(CriteriaSet)}, which is 'absent'
+     *          if no criteria could be mapped
+     */
+    @Nonnull @NonnullElements
+    protected Optional<Set<EntityDescriptor>> lookupByMappedIndexes(@Nonnull final CriteriaSet criteria) {
+        final CriteriaSet indexCriteria =
+                getPredicateEvaluationPlanner().getIndexCriteria(criteria, isSatisfyAnyPredicates(criteria));
+        if (indexCriteria == null) {
+            return Optional.absent();
+        }
+        return lookupByIndexes(indexCriteria);
+    }
+    
     /** {@inheritDoc} */
     @Override protected void indexEntityDescriptor(@Nonnull final EntityDescriptor entityDescriptor, 
             @Nonnull final EntityBackingStore backingStore) {
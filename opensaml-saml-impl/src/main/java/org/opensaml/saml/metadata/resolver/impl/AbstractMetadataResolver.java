@@ -52,8 +52,10 @@ import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
 import org.opensaml.core.xml.io.Unmarshaller;
 import org.opensaml.core.xml.io.UnmarshallerFactory;
 import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.saml.criterion.EntityRoleCriterion;
 import org.opensaml.saml.metadata.criteria.entity.EvaluableEntityDescriptorCriterion;
 import org.opensaml.saml.metadata.criteria.entity.impl.EntityDescriptorCriterionPredicateRegistry;
+import org.opensaml.saml.metadata.criteria.entity.impl.EvaluableEntityRoleEntityDescriptorCriterion;
 import org.opensaml.saml.metadata.resolver.MetadataResolver;
 import org.opensaml.saml.metadata.resolver.filter.FilterException;
 import org.opensaml.saml.metadata.resolver.filter.MetadataFilter;
@@ -110,12 +112,19 @@ public abstract class AbstractMetadataResolver extends AbstractIdentifiableIniti
      * Defaults to true. */
     private boolean useDefaultPredicateRegistry;
     
+    /** Planner of predicate evaluation. */
+    @Nonnull private PredicateEvaluationPlanner<EntityDescriptor> predicateEvaluationPlanner;
+    
     /** Constructor. */
     public AbstractMetadataResolver() {
         failFastInitialization = true;
         requireValidMetadata = true;
         unmarshallerFactory = XMLObjectProviderRegistrySupport.getUnmarshallerFactory();
         useDefaultPredicateRegistry = true;
+        
+        predicateEvaluationPlanner = new PredicateEvaluationPlanner<>();
+        predicateEvaluationPlanner.registerIndexCriterionMapping(EvaluableEntityRoleEntityDescriptorCriterion.class,
+                criterion -> new EntityRoleCriterion(criterion.getRole()));
     }
 
     /** {@inheritDoc} */
@@ -606,20 +615,12 @@ public abstract class AbstractMetadataResolver extends AbstractIdentifiableIniti
         
         log.trace("{} Resolved {} Predicates: {}", getLogPrefix(), predicates.size(), predicates);
         
-        final boolean satisfyAny;
-        final SatisfyAnyCriterion satisfyAnyCriterion = criteria.get(SatisfyAnyCriterion.class);
-        if (satisfyAnyCriterion  != null) {
-            log.trace("{} CriteriaSet contained SatisfyAnyCriterion", getLogPrefix());
-            satisfyAny = satisfyAnyCriterion.isSatisfyAny();
-        } else {
-            log.trace("{} CriteriaSet did NOT contain SatisfyAnyCriterion", getLogPrefix());
-            satisfyAny = isSatisfyAnyPredicates();
-        }
+        final boolean satisfyAny = isSatisfyAnyPredicates(criteria);
         
         log.trace("{} Effective satisyAny value: {}", getLogPrefix(), satisfyAny);
         
-        final Iterable<EntityDescriptor> result = 
-                ResolverSupport.getFilteredIterable(candidates, predicates, satisfyAny, onEmptyPredicatesReturnEmpty);
+        final Iterable<EntityDescriptor> result = getPredicateEvaluationPlanner().getFilteredIterable(candidates,
+                predicates, satisfyAny, onEmptyPredicatesReturnEmpty);
         if (log.isDebugEnabled()) {
             log.debug("{} After predicate filtering {} EntityDescriptors remain", 
                     getLogPrefix(), Iterables.size(result));
@@ -627,6 +628,36 @@ public abstract class AbstractMetadataResolver extends AbstractIdentifiableIniti
         return result;
     }
     
+    /**
+     * Get the effective flag indicating whether the predicates resolved from the supplied criteria
+     * may be satisfied by any predicate (i.e. connected by logical 'OR') or must all be satisfied.
+     * 
+     * <p>A {@link SatisfyAnyCriterion} in the criteria takes precedence over {@link #isSatisfyAnyPredicates()}.</p>
+     * 
+     * @param criteria the criteria set to evaluate
+     * 
+     * @return true if any predicate may be satisfied, false if all must be
+     */
+    protected boolean isSatisfyAnyPredicates(@Nonnull final CriteriaSet criteria) {
+        final SatisfyAnyCriterion satisfyAnyCriterion = criteria.get(SatisfyAnyCriterion.class);
+        if (satisfyAnyCriterion  != null) {
+            log.trace("{} CriteriaSet contained SatisfyAnyCriterion", getLogPrefix());
+            return satisfyAnyCriterion.isSatisfyAny();
+        }
+        log.trace("{} CriteriaSet did NOT contain SatisfyAnyCriterion", getLogPrefix());
+        return isSatisfyAnyPredicates();
+    }
+    
+    /**
+     * Get the planner of predicate evaluation, which also exposes the statistics of the plans and predicates
+     * evaluated by this resolver as metrics.
+     * 
+     * @return the predicate evaluation planner
+     */
+    @Nonnull public PredicateEvaluationPlanner<EntityDescriptor> getPredicateEvaluationPlanner() {
+        return predicateEvaluationPlanner;
+    }
+    
     /**
      * Return a prefix for logging messages for this component.
      * 
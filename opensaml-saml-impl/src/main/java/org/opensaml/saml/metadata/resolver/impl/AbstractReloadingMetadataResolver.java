@@ -18,12 +18,16 @@
 package org.opensaml.saml.metadata.resolver.impl;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
+import java.util.Arrays;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -63,6 +67,12 @@ import net.shibboleth.utilities.java.support.resolver.ResolverException;
 public abstract class AbstractReloadingMetadataResolver extends AbstractBatchMetadataResolver 
         implements RefreshableMetadataResolver {
 
+    /**
+     * Size of the slices in which files are read and written by {@link #fileToByteArray(File)} and
+     * {@link #byteArrayToFile(byte[], File)}.
+     */
+    private static final int FILE_IO_CHUNK_SIZE = 64 * 1024;
+
     /** Class logger. */
     @Nonnull private final Logger log = LoggerFactory.getLogger(AbstractReloadingMetadataResolver.class);
 
@@ -632,20 +642,67 @@ public abstract class AbstractReloadingMetadataResolver extends AbstractBatchMet
      * @throws ResolverException thrown if there is a problem reading the resultant byte array
      */
     protected byte[] inputstreamToByteArray(final InputStream ins) throws ResolverException {
-        try {
-            // 1 MB read buffer
-            final byte[] buffer = new byte[1024 * 1024];
-            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ins) {
+            return ins.readAllBytes();
+        } catch (final IOException e) {
+            throw new ResolverException(e);
+        }
+    }
 
-            int n = 0;
-            while (-1 != (n = ins.read(buffer))) {
-                output.write(buffer, 0, n);
+    /**
+     * Reads the contents of a file into a byte array.
+     * 
+     * <p>The array is allocated at the size of the file and filled directly from a {@link FileChannel}, so unlike
+     * {@link #inputstreamToByteArray(InputStream)} no intermediate buffers proportional to the file size are
+     * needed. Reads are issued in bounded slices, which keeps the temporary native buffers used by the channel
+     * small.</p>
+     * 
+     * @param file file to read
+     * 
+     * @return the contents of the file
+     * 
+     * @throws IOException thrown if there is a problem reading the file
+     */
+    @Nonnull protected byte[] fileToByteArray(@Nonnull final File file) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("File " + file.getAbsolutePath() + " is too large to be read");
+            }
+            final byte[] bytes = new byte[(int) size];
+            int offset = 0;
+            while (offset < bytes.length) {
+                final int n = channel.read(
+                        ByteBuffer.wrap(bytes, offset, Math.min(FILE_IO_CHUNK_SIZE, bytes.length - offset)));
+                if (n < 0) {
+                    // The file was truncated while being read.
+                    return Arrays.copyOf(bytes, offset);
+                }
+                offset += n;
             }
+            return bytes;
+        }
+    }
 
-            ins.close();
-            return output.toByteArray();
-        } catch (final IOException e) {
-            throw new ResolverException(e);
+    /**
+     * Writes a byte array to a file, replacing any existing content.
+     * 
+     * <p>As with {@link #fileToByteArray(File)}, the data is written through a {@link FileChannel} in bounded
+     * slices, rather than handed to the native layer in a single call which would copy all of it at once.</p>
+     * 
+     * @param bytes data to write
+     * @param file file to write
+     * 
+     * @throws IOException thrown if there is a problem writing the file
+     */
+    protected void byteArrayToFile(@Nonnull final byte[] bytes, @Nonnull final File file) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += channel.write(
+                        ByteBuffer.wrap(bytes, offset, Math.min(FILE_IO_CHUNK_SIZE, bytes.length - offset)));
+            }
         }
     }
 
@@ -20,8 +20,14 @@ package org.opensaml.saml.metadata.resolver.impl;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -43,6 +49,10 @@ import org.opensaml.saml.saml2.metadata.EntityDescriptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Predicates;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
@@ -51,9 +61,37 @@ import com.google.common.collect.Iterables;
 /**
  * A {@link MetadataResolver} implementation that answers requests by composing the answers of child
  * {@link MetadataResolver}s.
+ * 
+ * <p>
+ * By default the children are consulted one after another, in order. If an {@link Executor} is supplied via
+ * {@link #setParallelExecutor(Executor)}, children which may be slow to answer (by default, dynamic resolvers) are
+ * instead queried concurrently on that executor as soon as a request arrives, while the others are consulted on
+ * the calling thread. Results are still taken in child order, so the answer is the same as in sequential mode, but
+ * the latency of a lookup that misses the first children is bounded by the slowest child consulted rather than by
+ * the sum of them.
+ * </p>
+ * 
+ * <p>
+ * Note that in parallel mode every candidate child is queried for every request, including children which
+ * sequential mode would never have reached because an earlier child answered. Once the answer is known, queries
+ * which have not yet started are cancelled, but cancellation does not interrupt a query which is already running:
+ * a dynamic child such as an MDQ resolver will complete its remote fetch regardless. Enabling parallel mode
+ * therefore increases the load placed on the remote sources of those children.
+ * </p>
+ * 
+ * <p>
+ * The resolver is a {@link MetricSet} exposing, for each child, a timer of its lookups and a meter of the lookups
+ * for which it produced a result.
+ * </p>
  */
 public class CompositeMetadataResolver extends AbstractIdentifiedInitializableComponent implements MetadataResolver,
-        RefreshableMetadataResolver, ClearableMetadataResolver {
+        RefreshableMetadataResolver, ClearableMetadataResolver, MetricSet {
+
+    /** Prefix of the metric name for the timer of a child resolver's lookups. The child ID is appended. */
+    @Nonnull public static final String METRIC_TIMER_RESOLVE_PREFIX = "timer.resolve.";
+
+    /** Prefix of the metric name for the meter of a child resolver's hits. The child ID is appended. */
+    @Nonnull public static final String METRIC_METER_HITS_PREFIX = "meter.hits.";
 
     /** Class logger. */
     @Nonnull private final Logger log = LoggerFactory.getLogger(CompositeMetadataResolver.class);
@@ -61,9 +99,16 @@ public class CompositeMetadataResolver extends AbstractIdentifiedInitializableCo
     /** Resolvers composed by this resolver. */
     @Nonnull @NonnullElements private List<MetadataResolver> resolvers;
 
+    /** Executor used to query children concurrently, or null to query them sequentially. */
+    @Nullable private Executor parallelExecutor;
+
+    /** Lookup metrics for each child resolver. */
+    @Nonnull @NonnullElements private Map<MetadataResolver, ChildMetrics> childMetrics;
+
     /** Constructor. */
     public CompositeMetadataResolver() {
         resolvers = Collections.emptyList();
+        childMetrics = Collections.emptyMap();
     }
 
     /**
@@ -95,6 +140,39 @@ public class CompositeMetadataResolver extends AbstractIdentifiedInitializableCo
         resolvers = new ArrayList<>(Collections2.filter(newResolvers, Predicates.notNull()));
     }
 
+    /**
+     * Get the executor used to query children concurrently.
+     * 
+     * @return the executor, or null if children are queried sequentially
+     */
+    @Nullable public Executor getParallelExecutor() {
+        return parallelExecutor;
+    }
+
+    /**
+     * Set the executor used to query children concurrently.
+     * 
+     * <p>Defaults to null, meaning children are queried sequentially on the calling thread.</p>
+     * 
+     * @param executor the executor, or null
+     */
+    public void setParallelExecutor(@Nullable final Executor executor) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        parallelExecutor = executor;
+    }
+
+    /** {@inheritDoc} */
+    @Nonnull @NonnullElements @Unmodifiable @NotLive public Map<String, Metric> getMetrics() {
+        final Map<String, Metric> metrics = new HashMap<>(childMetrics.size() * 2);
+        for (final Map.Entry<MetadataResolver, ChildMetrics> entry : childMetrics.entrySet()) {
+            metrics.put(METRIC_TIMER_RESOLVE_PREFIX + entry.getKey().getId(), entry.getValue().timer);
+            metrics.put(METRIC_METER_HITS_PREFIX + entry.getKey().getId(), entry.getValue().hits);
+        }
+        return Map.copyOf(metrics);
+    }
+
     /** {@inheritDoc} */
     @Override public boolean isRequireValidMetadata() {
         log.warn("Attempt to access unsupported requireValidMetadata property on ChainingMetadataResolver");
@@ -120,23 +198,149 @@ public class CompositeMetadataResolver extends AbstractIdentifiedInitializableCo
     /** {@inheritDoc} */
     @Override public Iterable<EntityDescriptor> resolve(@Nullable final CriteriaSet criteria) throws ResolverException {
         ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
-        return new CompositeMetadataResolverIterable(resolvers, criteria);
+        return new CompositeMetadataResolverIterable(criteria);
     }
 
     /** {@inheritDoc} */
     @Override public EntityDescriptor resolveSingle(@Nullable final CriteriaSet criteria) throws ResolverException {
         ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
-        EntityDescriptor metadata = null;
-        for (final MetadataResolver resolver : resolvers) {
-            metadata = resolver.resolveSingle(criteria);
-            if (metadata != null) {
-                return metadata;
+        final List<CompletableFuture<EntityDescriptor>> futures = new ArrayList<>(resolvers.size());
+        if (parallelExecutor != null) {
+            for (final MetadataResolver resolver : resolvers) {
+                futures.add(isParallelCandidate(resolver)
+                        ? CompletableFuture.supplyAsync(() -> resolveSingleUnchecked(resolver, criteria),
+                                parallelExecutor)
+                        : null);
+            }
+        }
+
+        try {
+            for (int i = 0; i < resolvers.size(); i++) {
+                final CompletableFuture<EntityDescriptor> future = futures.isEmpty() ? null : futures.get(i);
+                final EntityDescriptor metadata = future != null ? join(future)
+                        : resolveSingle(resolvers.get(i), criteria);
+                if (metadata != null) {
+                    return metadata;
+                }
+            }
+        } finally {
+            for (final CompletableFuture<EntityDescriptor> future : futures) {
+                if (future != null) {
+                    future.cancel(false);
+                }
             }
         }
 
         return null;
     }
 
+    /**
+     * Get whether a child resolver should be queried concurrently when a parallel executor is set.
+     * 
+     * <p>The default implementation selects the dynamic resolvers, which may need to fetch metadata remotely to
+     * answer a request.</p>
+     * 
+     * @param resolver the child resolver
+     * 
+     * @return true if the child should be queried concurrently
+     */
+    protected boolean isParallelCandidate(@Nonnull final MetadataResolver resolver) {
+        return resolver instanceof AbstractDynamicMetadataResolver;
+    }
+
+    /**
+     * Query a child resolver for a single result, updating its metrics.
+     * 
+     * @param resolver the child resolver
+     * @param criteria the criteria
+     * 
+     * @return the result, or null
+     * 
+     * @throws ResolverException if the child fails
+     */
+    @Nullable private EntityDescriptor resolveSingle(@Nonnull final MetadataResolver resolver,
+            @Nullable final CriteriaSet criteria) throws ResolverException {
+        final ChildMetrics metrics = childMetrics.get(resolver);
+        final long start = System.nanoTime();
+        try {
+            final EntityDescriptor metadata = resolver.resolveSingle(criteria);
+            if (metadata != null && metrics != null) {
+                metrics.hits.mark();
+            }
+            return metadata;
+        } finally {
+            if (metrics != null) {
+                metrics.timer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Query a child resolver for a single result, wrapping any {@link ResolverException} for use in a
+     * {@link CompletableFuture}.
+     * 
+     * @param resolver the child resolver
+     * @param criteria the criteria
+     * 
+     * @return the result, or null
+     */
+    @Nullable private EntityDescriptor resolveSingleUnchecked(@Nonnull final MetadataResolver resolver,
+            @Nullable final CriteriaSet criteria) {
+        try {
+            return resolveSingle(resolver, criteria);
+        } catch (final ResolverException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Query a child resolver for all results, updating its metrics.
+     * 
+     * @param resolver the child resolver
+     * @param criteria the criteria
+     * 
+     * @return the results
+     * 
+     * @throws ResolverException if the child fails
+     */
+    @Nonnull private Iterable<EntityDescriptor> resolve(@Nonnull final MetadataResolver resolver,
+            @Nullable final CriteriaSet criteria) throws ResolverException {
+        final ChildMetrics metrics = childMetrics.get(resolver);
+        final long start = System.nanoTime();
+        try {
+            final Iterable<EntityDescriptor> metadata = resolver.resolve(criteria);
+            if (metadata != null && metrics != null && metadata.iterator().hasNext()) {
+                metrics.hits.mark();
+            }
+            return metadata != null ? metadata : Collections.emptyList();
+        } finally {
+            if (metrics != null) {
+                metrics.timer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Wait for the result of a concurrent query, unwrapping any {@link ResolverException}.
+     * 
+     * @param <T> the result type
+     * @param future the pending result
+     * 
+     * @return the result
+     * 
+     * @throws ResolverException if the child failed
+     */
+    @Nullable private <T> T join(@Nonnull final CompletableFuture<T> future) throws ResolverException {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof ResolverException) {
+                throw (ResolverException) e.getCause();
+            }
+            throw new ResolverException("Error resolving metadata from child resolver", e.getCause());
+        }
+    }
+
     /** {@inheritDoc} */
     @Override protected void doInitialize() throws ComponentInitializationException {
         super.doInitialize();
@@ -144,6 +348,11 @@ public class CompositeMetadataResolver extends AbstractIdentifiedInitializableCo
             log.warn("CompositeMetadataResolver was not configured with any member MetadataResolvers");
             resolvers = Collections.emptyList();
         }
+        final Map<MetadataResolver, ChildMetrics> metrics = new HashMap<>(resolvers.size());
+        for (final MetadataResolver resolver : resolvers) {
+            metrics.put(resolver, new ChildMetrics());
+        }
+        childMetrics = metrics;
     }
 
     /** {@inheritDoc} */
@@ -151,6 +360,7 @@ public class CompositeMetadataResolver extends AbstractIdentifiedInitializableCo
         super.doDestroy();
 
         resolvers = Collections.emptyList();
+        childMetrics = Collections.emptyMap();
     }
     
     /** {@inheritDoc} */
@@ -241,34 +451,56 @@ public class CompositeMetadataResolver extends AbstractIdentifiedInitializableCo
         return true;
     }
 
+    /** Lookup metrics for a child resolver. */
+    private static class ChildMetrics {
+
+        /** Timer of lookups. */
+        @Nonnull private final Timer timer = new Timer();
+
+        /** Meter of lookups producing a result. */
+        @Nonnull private final Meter hits = new Meter();
+    }
+
     /**
      * {@link Iterable} implementation that provides an {@link Iterator} that lazily iterates over each composed
      * resolver.
+     * 
+     * <p>If a parallel executor is set, the candidate children are queried as soon as the iterable is created.
+     * Outstanding queries are cancelled as soon as a child produces results, or fails, since the caller commonly
+     * abandons the iteration at that point. If the caller does continue, any child whose query was cancelled is
+     * then consulted on the calling thread.</p>
      */
-    private static class CompositeMetadataResolverIterable implements Iterable<EntityDescriptor> {
-
-        /** Class logger. */
-        private final Logger log = LoggerFactory.getLogger(CompositeMetadataResolverIterable.class);
+    private class CompositeMetadataResolverIterable implements Iterable<EntityDescriptor> {
 
         /** Resolvers over which to iterate. */
-        private final List<MetadataResolver> resolvers;
+        private final List<MetadataResolver> composedResolvers;
 
         /** Criteria being search for. */
         private final CriteriaSet criteria;
 
+        /** Pending results of children queried concurrently, indexed as the resolvers, or empty. */
+        private final List<CompletableFuture<Iterable<EntityDescriptor>>> futures;
+
         /**
          * Constructor.
          * 
-         * @param composedResolvers resolvers from which results will be pulled
          * @param metadataCritiera criteria for the resolver query
          */
-        public CompositeMetadataResolverIterable(final List<MetadataResolver> composedResolvers,
-                final CriteriaSet metadataCritiera) {
-            resolvers =
+        public CompositeMetadataResolverIterable(final CriteriaSet metadataCritiera) {
+            composedResolvers =
                     ImmutableList.<MetadataResolver> builder()
-                            .addAll(Iterables.filter(composedResolvers, Predicates.notNull())).build();
+                            .addAll(Iterables.filter(resolvers, Predicates.notNull())).build();
 
             criteria = metadataCritiera;
+
+            futures = new ArrayList<>(composedResolvers.size());
+            if (parallelExecutor != null) {
+                for (final MetadataResolver resolver : composedResolvers) {
+                    futures.add(isParallelCandidate(resolver)
+                            ? CompletableFuture.supplyAsync(() -> resolveUnchecked(resolver), parallelExecutor)
+                            : null);
+                }
+            }
         }
 
         /** {@inheritDoc} */
@@ -276,21 +508,34 @@ public class CompositeMetadataResolver extends AbstractIdentifiedInitializableCo
             return new CompositeMetadataResolverIterator();
         }
 
+        /**
+         * Query a child resolver for all results, wrapping any {@link ResolverException} for use in a
+         * {@link CompletableFuture}.
+         * 
+         * @param resolver the child resolver
+         * 
+         * @return the results
+         */
+        @Nonnull private Iterable<EntityDescriptor> resolveUnchecked(@Nonnull final MetadataResolver resolver) {
+            try {
+                return resolve(resolver, criteria);
+            } catch (final ResolverException e) {
+                throw new CompletionException(e);
+            }
+        }
+
         /** {@link Iterator} implementation that lazily iterates over each composed resolver. */
         private class CompositeMetadataResolverIterator implements Iterator<EntityDescriptor> {
 
-            /** Iterator over the composed resolvers. */
-            private Iterator<MetadataResolver> resolverIterator;
-
-            /** Current resolver from which we are getting results. */
-            private MetadataResolver currentResolver;
+            /** Index of the next composed resolver to consult. */
+            private int resolverIndex;
 
             /** Iterator over the results of the current resolver. */
             private Iterator<EntityDescriptor> currentResolverMetadataIterator;
 
             /** Constructor. */
             public CompositeMetadataResolverIterator() {
-                resolverIterator = resolvers.iterator();
+                currentResolverMetadataIterator = Collections.emptyIterator();
             }
 
             /** {@inheritDoc} */
@@ -321,17 +566,34 @@ public class CompositeMetadataResolver extends AbstractIdentifiedInitializableCo
              */
             private void proceedToNextResolverIterator() {
                 try {
-                    while (resolverIterator.hasNext()) {
-                        currentResolver = resolverIterator.next();
-                        currentResolverMetadataIterator = currentResolver.resolve(criteria).iterator();
+                    while (resolverIndex < composedResolvers.size()) {
+                        final int index = resolverIndex++;
+                        final CompletableFuture<Iterable<EntityDescriptor>> future =
+                                futures.isEmpty() ? null : futures.get(index);
+                        currentResolverMetadataIterator = (future != null && !future.isCancelled() ? join(future)
+                                : resolve(composedResolvers.get(index), criteria)).iterator();
                         if (currentResolverMetadataIterator.hasNext()) {
+                            cancelOutstanding();
                             return;
                         }
                     }
                 } catch (final ResolverException e) {
                     log.debug("Error encountered attempting to fetch results from resolver", e);
+                    cancelOutstanding();
+                }
+            }
+            
+            /**
+             * Cancel the concurrent queries of the children not yet consulted.
+             */
+            private void cancelOutstanding() {
+                for (int i = resolverIndex; i < futures.size(); i++) {
+                    final CompletableFuture<Iterable<EntityDescriptor>> future = futures.get(i);
+                    if (future != null) {
+                        future.cancel(false);
+                    }
                 }
             }
         }
     }
-}
\ No newline at end of file
+}
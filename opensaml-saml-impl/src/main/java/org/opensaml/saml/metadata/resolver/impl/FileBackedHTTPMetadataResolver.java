@@ -18,7 +18,6 @@
 package org.opensaml.saml.metadata.resolver.impl;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
@@ -40,8 +39,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 
-import com.google.common.io.Files;
-
 /**
  * An HTTP metadata provider that caches a copy of the retrieved metadata to disk so that, in the event that
  * the metadata may not be pulled from the URL, it may be pulled from disk using the most recently fetched data.
@@ -282,7 +279,7 @@ public class FileBackedHTTPMetadataResolver extends HTTPMetadataResolver {
             log.debug("{} On initialization, detected existing backup file, attempting load from that: {}",
                         getLogPrefix(), metadataBackupFile.getAbsolutePath());
             try {
-                final byte[] backingData = Files.toByteArray(metadataBackupFile);
+                final byte[] backingData = fileToByteArray(metadataBackupFile);
                 log.debug("{} Successfully initialized from backup file: {}", 
                         getLogPrefix(), metadataBackupFile.getAbsolutePath());
                 initializedFromBackupFile = true;
@@ -306,7 +303,7 @@ public class FileBackedHTTPMetadataResolver extends HTTPMetadataResolver {
                 log.warn("{} Problem reading metadata from remote source, processing existing backup file: {}", 
                         getLogPrefix(), metadataBackupFile.getAbsolutePath());
                 try {
-                    return Files.toByteArray(metadataBackupFile);
+                    return fileToByteArray(metadataBackupFile);
                 } catch (final IOException ioe) {
                     final String errMsg = "Unable to retrieve metadata from backup file "
                             + metadataBackupFile.getAbsolutePath();
@@ -351,10 +348,7 @@ public class FileBackedHTTPMetadataResolver extends HTTPMetadataResolver {
             final XMLObject filteredMetadata) throws ResolverException {
         try {
             validateBackupFile(metadataBackupFile);
-            try (final FileOutputStream out = new FileOutputStream(metadataBackupFile)) {
-                out.write(metadataBytes);
-                out.flush();
-            }
+            byteArrayToFile(metadataBytes, metadataBackupFile);
         } catch (final ResolverException e) {
             log.error("{} Unable to write metadata to backup file: {}", 
                     getLogPrefix(), metadataBackupFile.getAbsoluteFile(), e);
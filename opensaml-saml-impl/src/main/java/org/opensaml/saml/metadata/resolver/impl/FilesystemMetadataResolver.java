@@ -18,14 +18,25 @@
 package org.opensaml.saml.metadata.resolver.impl;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Timer;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import net.shibboleth.utilities.java.support.component.ComponentSupport;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 import net.shibboleth.utilities.java.support.resolver.ResolverException;
@@ -47,6 +58,17 @@ import org.slf4j.LoggerFactory;
  * 1.0 and a min refresh delay that is not overly large, this refresh will likely occur a few times before the cache
  * expires.
  * 
+ * <p>
+ * If {@link #setWatchForChanges(boolean)} is enabled, the directory containing the metadata file is additionally
+ * monitored with a {@link WatchService}, and a refresh is triggered once changes to the file have been quiet for
+ * {@link #getChangeNotificationDelay()}. This allows local updates to take effect within seconds, independently of
+ * the refresh schedule described above.
+ * </p>
+ * 
+ * <p>
+ * Whenever the file's modification time changes, its content is compared against a digest of the metadata last
+ * processed, and metadata whose content is unchanged is not reprocessed.
+ * </p>
  */
 public class FilesystemMetadataResolver extends AbstractReloadingMetadataResolver {
 
@@ -56,6 +78,21 @@ public class FilesystemMetadataResolver extends AbstractReloadingMetadataResolve
     /** The metadata file. */
     @Nonnull private File metadataFile;
 
+    /** Whether to watch the metadata file for changes. */
+    private boolean watchForChanges;
+
+    /** Period without further changes to wait for before refreshing on a change notification. */
+    @Nonnull private Duration changeNotificationDelay;
+
+    /** Watch service for the metadata file's directory. */
+    @Nullable private WatchService watchService;
+
+    /** Digest of the metadata last processed. */
+    @Nullable private byte[] metadataDigest;
+    
+    /** Modification time of the file when its content was last found to be unchanged. */
+    @Nullable private Instant lastUnchangedModification;
+
     /**
      * Constructor.
      * 
@@ -66,6 +103,7 @@ public class FilesystemMetadataResolver extends AbstractReloadingMetadataResolve
     public FilesystemMetadataResolver(@Nonnull final File metadata) throws ResolverException {
         super();
         setMetadataFile(metadata);
+        changeNotificationDelay = Duration.ofSeconds(1);
     }
 
     /**
@@ -80,6 +118,7 @@ public class FilesystemMetadataResolver extends AbstractReloadingMetadataResolve
             throws ResolverException {
         super(backgroundTaskTimer);
         setMetadataFile(metadata);
+        changeNotificationDelay = Duration.ofSeconds(1);
     }
 
     /**
@@ -96,10 +135,79 @@ public class FilesystemMetadataResolver extends AbstractReloadingMetadataResolve
         metadataFile = Constraint.isNotNull(file, "Metadata file cannot be null");
     }
 
+    /**
+     * Get whether the metadata file is watched for changes.
+     * 
+     * @return whether the metadata file is watched for changes
+     */
+    public boolean isWatchForChanges() {
+        return watchForChanges;
+    }
+
+    /**
+     * Set whether the metadata file is watched for changes, in addition to being checked on the refresh schedule.
+     * 
+     * <p>Defaults to false.</p>
+     * 
+     * @param flag whether to watch the metadata file for changes
+     */
+    public void setWatchForChanges(final boolean flag) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        watchForChanges = flag;
+    }
+
+    /**
+     * Get the period without further changes to wait for before refreshing on a change notification.
+     * 
+     * @return the change notification delay
+     */
+    @Nonnull public Duration getChangeNotificationDelay() {
+        return changeNotificationDelay;
+    }
+
+    /**
+     * Set the period without further changes to wait for before refreshing on a change notification, so that
+     * a file being written in several steps is only processed once.
+     * 
+     * <p>Defaults to 1 second.</p>
+     * 
+     * @param delay the change notification delay
+     */
+    public void setChangeNotificationDelay(@Nonnull final Duration delay) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        Constraint.isNotNull(delay, "Change notification delay cannot be null");
+        Constraint.isFalse(delay.isNegative() || delay.isZero(), "Change notification delay must be positive");
+        changeNotificationDelay = delay;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void initMetadataResolver() throws ComponentInitializationException {
+        super.initMetadataResolver();
+
+        if (watchForChanges) {
+            startWatching();
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     protected void doDestroy() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (final IOException e) {
+                log.debug("{} Error closing watch service", getLogPrefix(), e);
+            }
+            watchService = null;
+        }
         metadataFile = null;
+        metadataDigest = null;
+        lastUnchangedModification = null;
           
         super.doDestroy();
     }
@@ -116,8 +224,19 @@ public class FilesystemMetadataResolver extends AbstractReloadingMetadataResolve
         try {
             validateMetadataFile(metadataFile);
             final Instant metadataUpdateTime = Instant.ofEpochMilli(metadataFile.lastModified());
-            if (getLastRefresh() == null || getLastUpdate() == null || metadataUpdateTime.isAfter(getLastUpdate())) {
-                return inputstreamToByteArray(new FileInputStream(metadataFile));
+            if (getLastRefresh() == null || getLastUpdate() == null || (metadataUpdateTime.isAfter(getLastUpdate())
+                    && (lastUnchangedModification == null || metadataUpdateTime.isAfter(lastUnchangedModification)))) {
+                final byte[] metadataBytes = fileToByteArray(metadataFile);
+                if (metadataDigest != null && getLastUpdate() != null
+                        && MessageDigest.isEqual(metadataDigest, digest(metadataBytes))) {
+                    log.debug("{} Metadata file '{}' was modified, but its content is unchanged", getLogPrefix(),
+                            metadataFile.getAbsolutePath());
+                    // The last update time is left alone since nothing was processed, so remember this
+                    // modification time to avoid re-reading the file until it is touched again.
+                    lastUnchangedModification = metadataUpdateTime;
+                    return null;
+                }
+                return metadataBytes;
             }
 
             return null;
@@ -128,6 +247,66 @@ public class FilesystemMetadataResolver extends AbstractReloadingMetadataResolve
         }
     }
     
+    /** {@inheritDoc} */
+    @Override
+    protected void processNewMetadata(final String metadataIdentifier, final Instant refreshStart,
+            final byte[] metadataBytes) throws ResolverException {
+        super.processNewMetadata(metadataIdentifier, refreshStart, metadataBytes);
+        metadataDigest = digest(metadataBytes);
+    }
+
+    /**
+     * Compute the digest used to detect unchanged metadata content.
+     * 
+     * @param metadataBytes the metadata content
+     * 
+     * @return the digest
+     * 
+     * @throws ResolverException if the digest algorithm is unavailable
+     */
+    @Nonnull private byte[] digest(@Nonnull final byte[] metadataBytes) throws ResolverException {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(metadataBytes);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new ResolverException(e);
+        }
+    }
+
+    /**
+     * Register a watch on the metadata file's directory and start the thread which processes its notifications.
+     * 
+     * <p>Failure to establish the watch is logged, and the resolver falls back to the refresh schedule alone.</p>
+     */
+    private void startWatching() {
+        final Path path = metadataFile.getAbsoluteFile().toPath();
+        final Path directory = path.getParent();
+        if (directory == null) {
+            log.warn("{} Unable to watch metadata file '{}', it has no parent directory", getLogPrefix(), path);
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (final IOException e) {
+            log.warn("{} Unable to watch metadata file '{}', relying on scheduled refresh", getLogPrefix(), path, e);
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (final IOException e2) {
+                    log.debug("{} Error closing watch service", getLogPrefix(), e2);
+                }
+                watchService = null;
+            }
+            return;
+        }
+        final Thread watcher = new Thread(new MetadataFileWatcher(watchService, path.getFileName()),
+                "FilesystemMetadataResolver watcher [" + getId() + "]");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.debug("{} Watching metadata file '{}' for changes", getLogPrefix(), path);
+    }
+
     /**
      * Validate the basic properties of the specified metadata file, for example that it exists; 
      * that it is a file; and that it is readable.
@@ -149,4 +328,71 @@ public class FilesystemMetadataResolver extends AbstractReloadingMetadataResolve
         }
     }
 
-}
\ No newline at end of file
+    /** Task which refreshes the metadata when notified of changes to the metadata file. */
+    private class MetadataFileWatcher implements Runnable {
+
+        /** Watch service delivering the notifications. */
+        @Nonnull private final WatchService service;
+
+        /** Name of the metadata file within the watched directory. */
+        @Nonnull private final Path fileName;
+
+        /**
+         * Constructor.
+         *
+         * @param watchService watch service delivering the notifications
+         * @param name name of the metadata file within the watched directory
+         */
+        public MetadataFileWatcher(@Nonnull final WatchService watchService, @Nonnull final Path name) {
+            service = watchService;
+            fileName = name;
+        }
+
+        /** {@inheritDoc} */
+        public void run() {
+            try {
+                boolean pending = false;
+                while (!isDestroyed()) {
+                    final WatchKey key = pending
+                            ? service.poll(changeNotificationDelay.toMillis(), TimeUnit.MILLISECONDS)
+                            : service.take();
+                    if (key != null) {
+                        pending |= isRelevant(key);
+                    } else {
+                        // Quiet for long enough since the last change.
+                        pending = false;
+                        if (!isDestroyed()) {
+                            log.debug("{} Metadata file '{}' changed, refreshing", getLogPrefix(), fileName);
+                            try {
+                                refresh();
+                            } catch (final ResolverException e) {
+                                // nothing to do, error message already logged by refresh()
+                            }
+                        }
+                    }
+                }
+            } catch (final InterruptedException | ClosedWatchServiceException e) {
+                log.debug("{} Stopped watching metadata file '{}'", getLogPrefix(), fileName);
+            }
+        }
+
+        /**
+         * Consume the events of a signalled key and report whether any concern the metadata file.
+         * 
+         * @param key the signalled key
+         * 
+         * @return whether any event concerns the metadata file
+         */
+        private boolean isRelevant(@Nonnull final WatchKey key) {
+            boolean relevant = false;
+            for (final WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                    relevant = true;
+                }
+            }
+            key.reset();
+            return relevant;
+        }
+    }
+
+}
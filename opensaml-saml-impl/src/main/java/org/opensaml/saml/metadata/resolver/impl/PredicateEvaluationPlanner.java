@@ -0,0 +1,482 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.saml.metadata.resolver.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.google.common.collect.Iterables;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotLive;
+import net.shibboleth.utilities.java.support.annotation.constraint.Unmodifiable;
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.Criterion;
+
+/**
+ * Component which plans the evaluation of the predicates used to filter resolution candidates.
+ * 
+ * <p>
+ * The planner plays two roles:
+ * </p>
+ * <ul>
+ *   <li>It maps evaluable criteria, which would otherwise only be applied as predicates over the candidates,
+ *   to equivalent criteria understood by the resolver's {@link org.opensaml.saml.metadata.resolver.index.MetadataIndex}
+ *   instances, so that the candidates may be narrowed via the indexes before any predicate is evaluated.</li>
+ *   <li>It records the pass rate and mean cost of each type of predicate it evaluates, and evaluates the
+ *   predicates of a query in order of increasing cost per rejected (or, when any predicate may be satisfied,
+ *   accepted) candidate.</li>
+ * </ul>
+ * 
+ * <p>
+ * To limit the overhead of measurement, only one in every {@link #getSamplingInterval()} evaluations of a predicate
+ * is timed and recorded, and once a predicate type has been sampled {@link #getMaximumSamples()} times its
+ * statistics are considered settled and its predicates are evaluated directly, without measurement.
+ * </p>
+ * 
+ * <p>
+ * The result of filtering does not depend on the order in which the predicates are evaluated, so this affects
+ * only the cost of resolution. The planner is a {@link MetricSet} exposing meters of the plans chosen and gauges
+ * of the statistics of each predicate type.
+ * </p>
+ * 
+ * @param <T> the type of candidate being filtered
+ */
+public class PredicateEvaluationPlanner<T> implements MetricSet {
+    
+    /** Metric name for the meter of resolutions narrowed by indexes from the original criteria. */
+    @Nonnull public static final String METRIC_METER_PLAN_INDEX = "meter.plan.index";
+
+    /** Metric name for the meter of resolutions narrowed by indexes from criteria mapped by the planner. */
+    @Nonnull public static final String METRIC_METER_PLAN_MAPPED_INDEX = "meter.plan.mappedIndex";
+
+    /** Metric name for the meter of resolutions which evaluated predicates over all candidates. */
+    @Nonnull public static final String METRIC_METER_PLAN_SCAN = "meter.plan.scan";
+    
+    /** Prefix of the metric name for the gauge of a predicate type's pass rate. The class name is appended. */
+    @Nonnull public static final String METRIC_GAUGE_PASS_RATE_PREFIX = "gauge.passRate.";
+
+    /** Prefix of the metric name for the gauge of a predicate type's mean cost in nanoseconds. The class name is
+     * appended. */
+    @Nonnull public static final String METRIC_GAUGE_MEAN_NANOS_PREFIX = "gauge.meanNanos.";
+    
+    /** Default minimum number of evaluations of a predicate type before its statistics are used for ordering. */
+    public static final long DEFAULT_MINIMUM_SAMPLES = 32;
+    
+    /** Default number of evaluations of a predicate per sampled evaluation. */
+    public static final int DEFAULT_SAMPLING_INTERVAL = 8;
+    
+    /** Default number of sampled evaluations of a predicate type after which its statistics are settled. */
+    public static final long DEFAULT_MAXIMUM_SAMPLES = 1024;
+    
+    /** Mappings from evaluable criterion types to equivalent criteria understood by indexes. */
+    @Nonnull private final Map<Class<? extends Criterion>, Function<Criterion, Criterion>> indexCriterionMappings;
+    
+    /** Statistics of each predicate type. */
+    @Nonnull private final Map<Class<?>, PredicateStatistics> statistics;
+    
+    /** Minimum number of evaluations of a predicate type before its statistics are used for ordering. */
+    private final long minimumSamples;
+    
+    /** Number of evaluations of a predicate per sampled evaluation. */
+    private final int samplingInterval;
+    
+    /** Number of sampled evaluations of a predicate type after which its statistics are settled. */
+    private final long maximumSamples;
+    
+    /** Meter of resolutions narrowed by indexes from the original criteria. */
+    @Nonnull private final Meter indexPlans;
+
+    /** Meter of resolutions narrowed by indexes from mapped criteria. */
+    @Nonnull private final Meter mappedIndexPlans;
+
+    /** Meter of resolutions which evaluated predicates over all candidates. */
+    @Nonnull private final Meter scanPlans;
+    
+    /** Constructor. */
+    public PredicateEvaluationPlanner() {
+        this(DEFAULT_MINIMUM_SAMPLES);
+    }
+    
+    /**
+     * Constructor.
+     *
+     * @param samples minimum number of evaluations of a predicate type before its statistics are used for ordering
+     */
+    public PredicateEvaluationPlanner(final long samples) {
+        this(samples, DEFAULT_SAMPLING_INTERVAL, Math.max(samples, DEFAULT_MAXIMUM_SAMPLES));
+    }
+    
+    /**
+     * Constructor.
+     *
+     * @param samples minimum number of evaluations of a predicate type before its statistics are used for ordering
+     * @param interval number of evaluations of a predicate per sampled evaluation
+     * @param maximum number of sampled evaluations of a predicate type after which its statistics are settled
+     */
+    public PredicateEvaluationPlanner(final long samples, final int interval, final long maximum) {
+        minimumSamples = Constraint.isGreaterThanOrEqual(0, samples, "Minimum samples must be >= 0");
+        Constraint.isGreaterThan(0, interval, "Sampling interval must be > 0");
+        samplingInterval = interval;
+        maximumSamples = Constraint.isGreaterThanOrEqual(samples, maximum,
+                "Maximum samples must be >= minimum samples");
+        indexCriterionMappings = new ConcurrentHashMap<>();
+        statistics = new ConcurrentHashMap<>();
+        indexPlans = new Meter();
+        mappedIndexPlans = new Meter();
+        scanPlans = new Meter();
+    }
+    
+    /**
+     * Get the number of evaluations of a predicate per sampled evaluation.
+     * 
+     * @return the sampling interval
+     */
+    public int getSamplingInterval() {
+        return samplingInterval;
+    }
+    
+    /**
+     * Get the number of sampled evaluations of a predicate type after which its statistics are settled and its
+     * predicates are no longer measured.
+     * 
+     * @return the maximum number of samples
+     */
+    public long getMaximumSamples() {
+        return maximumSamples;
+    }
+    
+    /**
+     * Register a mapping from an evaluable criterion type to an equivalent criterion understood by an index.
+     * 
+     * <p>
+     * The mapped criterion must be a necessary condition for the evaluable criterion's predicate, i.e. every
+     * candidate accepted by the predicate must be returned by the index lookup for the mapped criterion.
+     * </p>
+     * 
+     * @param <C> the evaluable criterion type
+     * @param type the evaluable criterion type
+     * @param mapping the function producing the equivalent criterion, which may return null if there is none
+     */
+    public <C extends Criterion> void registerIndexCriterionMapping(@Nonnull final Class<C> type,
+            @Nonnull final Function<? super C, ? extends Criterion> mapping) {
+        Constraint.isNotNull(type, "Criterion type cannot be null");
+        Constraint.isNotNull(mapping, "Criterion mapping cannot be null");
+        indexCriterionMappings.put(type, criterion -> mapping.apply(type.cast(criterion)));
+    }
+    
+    /**
+     * Get the criteria understood by indexes which are equivalent to the evaluable criteria in the supplied set.
+     * 
+     * <p>
+     * Since an index lookup intersects the results of the criteria it understands, the mapping is only valid
+     * when all predicates must be satisfied, so null is returned if any predicate may satisfy the query.
+     * </p>
+     * 
+     * @param criteria the criteria set to process
+     * @param satisfyAny whether the predicates are connected by logical 'OR'
+     * 
+     * @return the mapped criteria to be presented to the indexes, or null if no criteria were mapped
+     */
+    @Nullable public CriteriaSet getIndexCriteria(@Nonnull final CriteriaSet criteria, final boolean satisfyAny) {
+        if (satisfyAny || indexCriterionMappings.isEmpty()) {
+            return null;
+        }
+        
+        final CriteriaSet result = new CriteriaSet();
+        for (final Criterion criterion : criteria) {
+            final Function<Criterion, Criterion> mapping = indexCriterionMappings.get(criterion.getClass());
+            if (mapping != null) {
+                final Criterion mapped = mapping.apply(criterion);
+                if (mapped != null) {
+                    result.add(mapped);
+                }
+            }
+        }
+        return result.isEmpty() ? null : result;
+    }
+    
+    /**
+     * Order the supplied predicates for evaluation.
+     * 
+     * <p>
+     * Predicates are ordered by increasing mean cost per candidate rejected or, if any predicate may be satisfied,
+     * accepted, so that the cheapest and most decisive predicates are evaluated first. Predicates of a type without
+     * sufficient statistics are placed first, in their original order, so that statistics are gathered for them.
+     * </p>
+     * 
+     * @param predicates the predicates to order
+     * @param satisfyAny whether the predicates are connected by logical 'OR'
+     * 
+     * @return the ordered predicates
+     */
+    @Nonnull @NonnullElements public List<Predicate<T>> order(
+            @Nonnull @NonnullElements final Collection<Predicate<T>> predicates, final boolean satisfyAny) {
+        
+        // Snapshot the ranks before sorting, since the statistics may be updated concurrently.
+        final List<Pair<Predicate<T>, Double>> ranked = new ArrayList<>(predicates.size());
+        for (final Predicate<T> predicate : predicates) {
+            ranked.add(new Pair<>(predicate, rank(statistics.get(predicate.getClass()), satisfyAny)));
+        }
+        ranked.sort((first, second) -> Double.compare(first.getSecond(), second.getSecond()));
+        
+        final List<Predicate<T>> result = new ArrayList<>(ranked.size());
+        for (final Pair<Predicate<T>, Double> entry : ranked) {
+            result.add(entry.getFirst());
+        }
+        return result;
+    }
+    
+    /**
+     * Filter the supplied candidates by the supplied predicates, evaluated in the order
+     * established by {@link #order(Collection, boolean)}.
+     * 
+     * <p>
+     * Predicates whose statistics have not yet settled are sampled as they are evaluated; the others are
+     * evaluated directly.
+     * </p>
+     * 
+     * @param candidates the candidates to filter
+     * @param predicates the predicates to apply
+     * @param satisfyAny whether the predicates are connected by logical 'OR'
+     * @param onEmptyPredicatesReturnEmpty if true and no predicates are supplied, then return an empty iterable;
+     *          otherwise return the original input candidates
+     * 
+     * @return a lazily-filtered iterable of the candidates
+     */
+    @Nonnull @NonnullElements public Iterable<T> getFilteredIterable(
+            @Nonnull @NonnullElements final Iterable<T> candidates,
+            @Nonnull @NonnullElements final Collection<Predicate<T>> predicates, final boolean satisfyAny,
+            final boolean onEmptyPredicatesReturnEmpty) {
+        
+        if (predicates.isEmpty()) {
+            return onEmptyPredicatesReturnEmpty ? Collections.<T>emptySet() : candidates;
+        }
+        
+        final List<Predicate<T>> ordered = order(predicates, satisfyAny);
+        final List<Predicate<T>> measured = new ArrayList<>(ordered.size());
+        for (final Predicate<T> predicate : ordered) {
+            final PredicateStatistics stats = statistics.get(predicate.getClass());
+            if (stats != null && stats.getEvaluations() >= maximumSamples) {
+                measured.add(predicate);
+            } else {
+                measured.add(new MeasuredPredicate<>(predicate, samplingInterval, stats != null ? stats
+                        : statistics.computeIfAbsent(predicate.getClass(), type -> new PredicateStatistics())));
+            }
+        }
+        
+        final Predicate<T> composite;
+        if (satisfyAny) {
+            composite = input -> {
+                for (final Predicate<T> predicate : measured) {
+                    if (predicate.test(input)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        } else {
+            composite = input -> {
+                for (final Predicate<T> predicate : measured) {
+                    if (!predicate.test(input)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+        return Iterables.filter(candidates, composite::test);
+    }
+    
+    /** Record a resolution narrowed by indexes from the original criteria. */
+    public void markIndexPlan() {
+        indexPlans.mark();
+    }
+
+    /** Record a resolution narrowed by indexes from criteria mapped by {@link #getIndexCriteria}. */
+    public void markMappedIndexPlan() {
+        mappedIndexPlans.mark();
+    }
+
+    /** Record a resolution which evaluated predicates over all candidates. */
+    public void markScanPlan() {
+        scanPlans.mark();
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull @NonnullElements @Unmodifiable @NotLive public Map<String, Metric> getMetrics() {
+        final Map<String, Metric> metrics = new HashMap<>(3 + statistics.size() * 2);
+        metrics.put(METRIC_METER_PLAN_INDEX, indexPlans);
+        metrics.put(METRIC_METER_PLAN_MAPPED_INDEX, mappedIndexPlans);
+        metrics.put(METRIC_METER_PLAN_SCAN, scanPlans);
+        for (final Map.Entry<Class<?>, PredicateStatistics> entry : statistics.entrySet()) {
+            final PredicateStatistics stats = entry.getValue();
+            metrics.put(METRIC_GAUGE_PASS_RATE_PREFIX + entry.getKey().getName(), (Gauge<Double>) stats::getPassRate);
+            metrics.put(METRIC_GAUGE_MEAN_NANOS_PREFIX + entry.getKey().getName(),
+                    (Gauge<Double>) stats::getMeanNanos);
+        }
+        return Map.copyOf(metrics);
+    }
+    
+    /**
+     * Compute the rank of a predicate type, lower ranks being evaluated first.
+     * 
+     * @param stats the statistics of the predicate type, or null
+     * @param satisfyAny whether the predicates are connected by logical 'OR'
+     * 
+     * @return the rank
+     */
+    private double rank(@Nullable final PredicateStatistics stats, final boolean satisfyAny) {
+        if (stats == null || stats.getEvaluations() < minimumSamples) {
+            return 0;
+        }
+        
+        // A predicate which never decides the outcome is only evaluated after all others.
+        final double decisiveRate = satisfyAny ? stats.getPassRate() : 1 - stats.getPassRate();
+        if (decisiveRate <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.max(stats.getMeanNanos(), 1) / decisiveRate;
+    }
+    
+    /** Sampled evaluation statistics of a predicate type. */
+    private static final class PredicateStatistics {
+        
+        /** Number of sampled evaluations. */
+        @Nonnull private final LongAdder evaluations = new LongAdder();
+        
+        /** Number of evaluations which were satisfied. */
+        @Nonnull private final LongAdder passes = new LongAdder();
+        
+        /** Total time spent in evaluation. */
+        @Nonnull private final LongAdder nanos = new LongAdder();
+        
+        /**
+         * Record an evaluation.
+         * 
+         * @param passed whether the predicate was satisfied
+         * @param elapsed the time spent in evaluation
+         */
+        void record(final boolean passed, final long elapsed) {
+            evaluations.increment();
+            if (passed) {
+                passes.increment();
+            }
+            nanos.add(elapsed);
+        }
+        
+        /**
+         * Get the number of evaluations.
+         * 
+         * @return the number of evaluations
+         */
+        long getEvaluations() {
+            return evaluations.sum();
+        }
+        
+        /**
+         * Get the fraction of evaluations which were satisfied.
+         * 
+         * @return the pass rate, or 0 if there have been no evaluations
+         */
+        double getPassRate() {
+            final long count = evaluations.sum();
+            return count > 0 ? (double) passes.sum() / count : 0;
+        }
+        
+        /**
+         * Get the mean time spent in evaluation.
+         * 
+         * @return the mean time in nanoseconds, or 0 if there have been no evaluations
+         */
+        double getMeanNanos() {
+            final long count = evaluations.sum();
+            return count > 0 ? (double) nanos.sum() / count : 0;
+        }
+    }
+    
+    /**
+     * Predicate which records a sample of the evaluations of another.
+     * 
+     * <p>
+     * The first of every <code>interval</code> evaluations is recorded. The count is not synchronized, since
+     * a lost update only shifts which evaluations are sampled.
+     * </p>
+     * 
+     * @param <T> the type of input
+     */
+    private static final class MeasuredPredicate<T> implements Predicate<T> {
+        
+        /** The predicate being measured. */
+        @Nonnull private final Predicate<T> delegate;
+        
+        /** The statistics of the predicate's type. */
+        @Nonnull private final PredicateStatistics stats;
+        
+        /** Number of evaluations per sampled evaluation. */
+        private final int interval;
+        
+        /** Number of evaluations since the last sampled evaluation. */
+        private int count;
+        
+        /**
+         * Constructor.
+         *
+         * @param predicate the predicate being measured
+         * @param samplingInterval number of evaluations per sampled evaluation
+         * @param predicateStats the statistics of the predicate's type
+         */
+        MeasuredPredicate(@Nonnull final Predicate<T> predicate, final int samplingInterval,
+                @Nonnull final PredicateStatistics predicateStats) {
+            delegate = predicate;
+            interval = samplingInterval;
+            stats = predicateStats;
+        }
+
+        /** {@inheritDoc} */
+        public boolean test(final T input) {
+            if (count++ % interval != 0) {
+                return delegate.test(input);
+            }
+            final long start = System.nanoTime();
+            final boolean result = delegate.test(input);
+            stats.record(result, System.nanoTime() - start);
+            return result;
+        }
+    }
+
+}
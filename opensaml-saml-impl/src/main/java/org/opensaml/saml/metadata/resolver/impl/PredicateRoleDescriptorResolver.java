@@ -31,6 +31,7 @@ import org.opensaml.core.criterion.SatisfyAnyCriterion;
 import org.opensaml.core.xml.XMLObject;
 import org.opensaml.saml.criterion.EntityRoleCriterion;
 import org.opensaml.saml.criterion.ProtocolCriterion;
+import org.opensaml.saml.metadata.EntityDescriptorSnapshot;
 import org.opensaml.saml.metadata.criteria.role.EvaluableRoleDescriptorCriterion;
 import org.opensaml.saml.metadata.criteria.role.impl.RoleDescriptorCriterionPredicateRegistry;
 import org.opensaml.saml.metadata.resolver.MetadataResolver;
@@ -69,6 +70,12 @@ import net.shibboleth.utilities.java.support.resolver.ResolverSupport;
  * directly as instances of {@link EvaluableRoleDescriptorCriterion} in the criteria, or resolved dynamically
  * from other criteria via an instance of {@link CriterionPredicateRegistry}.
  * </p>
+ * 
+ * <p>
+ * Where an {@link EntityDescriptorSnapshot} is attached to a resolved entity, for example by
+ * {@link org.opensaml.saml.metadata.resolver.filter.impl.MetadataSnapshotProcessor}, its precomputed index of
+ * roles by type and protocol is used to select the candidate roles rather than scanning the entity's roles.
+ * </p>
  */
 public class PredicateRoleDescriptorResolver extends AbstractIdentifiedInitializableComponent 
         implements RoleDescriptorResolver {
@@ -326,7 +333,15 @@ public class PredicateRoleDescriptorResolver extends AbstractIdentifiedInitializ
         
         final ArrayList<Iterable<RoleDescriptor>> aggregate = new ArrayList<>();
         for (final EntityDescriptor entityDescriptor : entityDescriptors) {
-            if (protocolCriterion != null) {
+            final EntityDescriptorSnapshot snapshot = EntityDescriptorSnapshot.get(entityDescriptor);
+            if (snapshot != null) {
+                if (protocolCriterion != null) {
+                    aggregate.add(snapshot.getRoleDescriptors(roleCriterion.getRole(),
+                            protocolCriterion.getProtocol()));
+                } else {
+                    aggregate.add(snapshot.getRoleDescriptors(roleCriterion.getRole()));
+                }
+            } else if (protocolCriterion != null) {
                 aggregate.add(entityDescriptor.getRoleDescriptors(roleCriterion.getRole(), 
                         protocolCriterion.getProtocol()));
             } else {
@@ -348,7 +363,8 @@ public class PredicateRoleDescriptorResolver extends AbstractIdentifiedInitializ
         
         final ArrayList<Iterable<RoleDescriptor>> aggregate = new ArrayList<>();
         for (final EntityDescriptor entityDescriptor : entityDescriptors) {
-            aggregate.add(entityDescriptor.getRoleDescriptors());
+            final EntityDescriptorSnapshot snapshot = EntityDescriptorSnapshot.get(entityDescriptor);
+            aggregate.add(snapshot != null ? snapshot.getRoleDescriptors() : entityDescriptor.getRoleDescriptors());
         }
         return Iterables.concat(aggregate);
     }
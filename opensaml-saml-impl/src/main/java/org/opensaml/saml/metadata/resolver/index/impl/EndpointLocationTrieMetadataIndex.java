@@ -0,0 +1,747 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.saml.metadata.resolver.index.impl;
+
+import java.net.MalformedURLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.namespace.QName;
+
+import org.opensaml.saml.criterion.EndpointCriterion;
+import org.opensaml.saml.criterion.EntityRoleCriterion;
+import org.opensaml.saml.criterion.StartsWithLocationCriterion;
+import org.opensaml.saml.metadata.resolver.index.MetadataIndex;
+import org.opensaml.saml.metadata.resolver.index.MetadataIndexKey;
+import org.opensaml.saml.saml2.metadata.Endpoint;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.saml.saml2.metadata.RoleDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableSet;
+
+import net.shibboleth.utilities.java.support.annotation.ParameterName;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotLive;
+import net.shibboleth.utilities.java.support.annotation.constraint.Unmodifiable;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.primitive.StringSupport;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+
+/**
+ * An implementation of {@link MetadataIndex} which indexes entities by their role endpoint locations,
+ * storing the canonicalized locations in a radix trie.
+ * 
+ * <p>
+ * The indexed endpoint locations are scoped in the same way as {@link EndpointMetadataIndex}, by the containing
+ * {@link RoleDescriptor} type, {@link Endpoint} type, and whether or not the endpoint value was a standard
+ * location or a response location.
+ * </p>
+ * 
+ * <p>
+ * Unlike {@link EndpointMetadataIndex}, a {@link StartsWithLocationCriterion} does not cause the generation
+ * of all path-trimmed variants of the requested location. Instead a single lookup key is produced, and the
+ * store supplied by this index via {@link MetadataIndexStoreProvider} resolves both the exact match and
+ * all indexed locations which are a path segment prefix of the requested location in a single walk of the trie.
+ * </p>
+ * 
+ * <p>
+ * This index must be used with a {@link MetadataIndexManager}, or some other caller which honors
+ * {@link MetadataIndexStoreProvider}. If used with the default hash-based store, only exact matches
+ * will be resolved.
+ * </p>
+ */
+public class EndpointLocationTrieMetadataIndex implements MetadataIndex, MetadataIndexStoreProvider {
+    
+    /** Logger. */
+    private Logger log = LoggerFactory.getLogger(EndpointLocationTrieMetadataIndex.class);
+    
+    /** The predicate which selects which endpoints to index. */
+    @Nonnull private Predicate<Endpoint> endpointSelectionPredicate;
+    
+    /**
+     * Constructor.
+     * 
+     * <p>
+     * All entity descriptor endpoints will be indexed.
+     * </p>
+     */
+    public EndpointLocationTrieMetadataIndex() {
+        endpointSelectionPredicate = Predicates.alwaysTrue();
+    }
+    
+    /**
+     * Constructor.
+     *
+     * @param endpointPredicate the predicate which selects which endpoints to index
+     */
+    public EndpointLocationTrieMetadataIndex(@Nonnull @ParameterName(name="endpointPredicate")
+        final Predicate<Endpoint> endpointPredicate) {
+        endpointSelectionPredicate = Constraint.isNotNull(endpointPredicate, 
+                "Endpoint selection predicate may not be null");
+    }
+    
+    /** {@inheritDoc} */
+    @Nonnull public <T> MetadataIndexStore<T> createStore() {
+        return new LocationTrieIndexStore<>();
+    }
+
+    /** {@inheritDoc} */
+    @Nullable @NonnullElements @Unmodifiable @NotLive
+    public Set<MetadataIndexKey> generateKeys(@Nonnull final EntityDescriptor descriptor) {
+        Constraint.isNotNull(descriptor, "EntityDescriptor was null");
+        final HashSet<MetadataIndexKey> result = new HashSet<>();
+        for (final RoleDescriptor role : descriptor.getRoleDescriptors()) {
+            QName roleType = role.getSchemaType();
+            if (roleType == null) {
+                roleType = role.getElementQName();
+            }
+            
+            for (final Endpoint endpoint : role.getEndpoints()) {
+                QName endpointType = endpoint.getSchemaType();
+                if (endpointType == null) {
+                    endpointType = endpoint.getElementQName();
+                }
+                
+                if (endpointSelectionPredicate.test(endpoint)) {
+                    final String location = StringSupport.trimOrNull(endpoint.getLocation());
+                    if (location != null) {
+                        log.trace("Indexing Endpoint: role '{}', endpoint type '{}', location '{}'", 
+                                roleType, endpointType, location);
+                        result.add(new EndpointLocationIndexKey(roleType, endpointType, location, false, false));
+                    }
+                    final String responseLocation = StringSupport.trimOrNull(endpoint.getResponseLocation());
+                    if (responseLocation != null) {
+                        log.trace("Indexing response Endpoint - role '{}', endpoint type '{}', response location '{}'", 
+                                roleType, endpointType, responseLocation);
+                        result.add(new EndpointLocationIndexKey(roleType, endpointType, responseLocation, true, 
+                                false));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Nullable @NonnullElements @Unmodifiable @NotLive
+    public Set<MetadataIndexKey> generateKeys(@Nonnull final CriteriaSet criteriaSet) {
+        Constraint.isNotNull(criteriaSet, "CriteriaSet was null");
+        final EntityRoleCriterion roleCrit = criteriaSet.get(EntityRoleCriterion.class);
+        final EndpointCriterion<Endpoint> endpointCrit = criteriaSet.get(EndpointCriterion.class);
+        if (roleCrit == null || endpointCrit == null) {
+            return null;
+        }
+        
+        final StartsWithLocationCriterion startsWithCrit = criteriaSet.get(StartsWithLocationCriterion.class);
+        final boolean matchStartsWith = startsWithCrit != null && startsWithCrit.isMatchStartsWith();
+        
+        final QName roleType = roleCrit.getRole();
+        final Endpoint endpoint = endpointCrit.getEndpoint();
+        QName endpointType = endpoint.getSchemaType();
+        if (endpointType == null) {
+            endpointType = endpoint.getElementQName();
+        }
+        
+        final HashSet<MetadataIndexKey> result = new HashSet<>();
+        final String location = StringSupport.trimOrNull(endpoint.getLocation());
+        if (location != null) {
+            result.add(new EndpointLocationIndexKey(roleType, endpointType, location, false, matchStartsWith));
+        }
+        final String responseLocation = StringSupport.trimOrNull(endpoint.getResponseLocation());
+        if (responseLocation != null) {
+            result.add(new EndpointLocationIndexKey(roleType, endpointType, responseLocation, true, 
+                    matchStartsWith));
+        }
+        return result;
+    }
+    
+    /**
+     * An implementation of {@link MetadataIndexKey} representing a single SAML metadata endpoint location,
+     * optionally to be matched as a path segment prefix.
+     */
+    protected static class EndpointLocationIndexKey implements MetadataIndexKey {
+        
+        /** Logger. */
+        private final Logger log = LoggerFactory.getLogger(EndpointLocationIndexKey.class);
+        
+        /** The role type. */
+        @Nonnull private final QName role;
+        
+        /** The endpoint type. */
+        @Nonnull private final QName endpoint;
+        
+        /** The location. */
+        @Nonnull private final String location;
+        
+        /** Response location flag. */
+        private final boolean response;
+        
+        /** Starts with match flag. */
+        private final boolean startsWith;
+        
+        /** The canonicalized location. */
+        @Nonnull private final String canonicalizedLocation;
+        
+        /** Index of the start of the path within the canonicalized location, or -1 if not a parseable URL. */
+        private final int pathStart;
+        
+        /**
+         * Constructor.
+         * 
+         * @param roleType the role type
+         * @param endpointType the endpoint type
+         * @param endpointLocation the endpoint location
+         * @param isResponse flag indicating whether location is a response or not
+         * @param matchStartsWith flag indicating whether indexed locations which are a path segment prefix
+         *          of this location should also match
+         */
+        public EndpointLocationIndexKey(@Nonnull final QName roleType, 
+                @Nonnull final QName endpointType, 
+                @Nonnull @NotEmpty final String endpointLocation,
+                final boolean isResponse,
+                final boolean matchStartsWith) {
+            role = Constraint.isNotNull(roleType, "SAML role cannot be null");
+            endpoint = Constraint.isNotNull(endpointType, "SAML endpoint type cannot be null");
+            location = Constraint.isNotNull(StringSupport.trimOrNull(endpointLocation),
+                    "SAML endpoint location cannot be null or empty");
+            response = isResponse;
+            startsWith = matchStartsWith;
+            
+            String canonicalized = null;
+            try {
+                canonicalized = MetadataIndexSupport.canonicalizeLocationURI(location);
+            } catch (final MalformedURLException e) {
+                log.warn("Input location '{}' was a malformed URL, switching to lower case strategy", 
+                        location, e);
+            }
+            
+            if (canonicalized != null) {
+                canonicalizedLocation = canonicalized;
+                final int schemeEnd = canonicalized.indexOf("://");
+                final int slash = schemeEnd < 0 ? -1 : canonicalized.indexOf('/', schemeEnd + 3);
+                if (schemeEnd < 0) {
+                    pathStart = -1;
+                } else {
+                    pathStart = slash < 0 ? canonicalized.length() : slash;
+                }
+            } else {
+                canonicalizedLocation = location.toLowerCase();
+                pathStart = -1;
+            }
+        }
+
+        /**
+         * Gets the entity role.
+         * 
+         * @return the entity role
+         */
+        @Nonnull public QName getRoleType() {
+            return role;
+        }
+        
+        /**
+         * Gets the entity endpoint type.
+         * 
+         * @return the endpoint type
+         */
+        @Nonnull public QName getEndpointType() {
+            return endpoint;
+        }
+
+        /**
+         * Gets the location.
+         * 
+         * @return the location
+         */
+        @Nonnull public String getLocation() {
+            return location;
+        }
+        
+        /**
+         * Gets the response location flag.
+         * 
+         * @return true if endpoint is a response location, false otherwise
+         */
+        public boolean isResponse() {
+            return response;
+        }
+        
+        /**
+         * Gets the starts with match flag.
+         * 
+         * @return true if path segment prefixes of the location should match, false otherwise
+         */
+        public boolean isMatchStartsWith() {
+            return startsWith;
+        }
+        
+        /**
+         * Get the canonicalized representation of the location, as stored in the trie.
+         * 
+         * @return the canonicalized source location
+         */
+        @Nonnull public String getCanonicalizedLocation() {
+            return canonicalizedLocation;
+        }
+        
+        /**
+         * Get the index at which the path begins within the canonicalized location.
+         * 
+         * @return the path start index, or -1 if the location could not be parsed as a URL
+         */
+        public int getPathStart() {
+            return pathStart;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("role", role)
+                    .add("endpoint", endpoint)
+                    .add("location", location)
+                    .add("isResponse", response)
+                    .add("isMatchStartsWith", startsWith)
+                    .add("canonicalizedLocation", canonicalizedLocation)
+                    .toString();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return Objects.hash(role, endpoint, canonicalizedLocation, response, startsWith);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (obj instanceof EndpointLocationIndexKey) {
+                final EndpointLocationIndexKey other = (EndpointLocationIndexKey) obj;
+                return role.equals(other.role) 
+                        && endpoint.equals(other.endpoint) 
+                        && canonicalizedLocation.equals(other.canonicalizedLocation) 
+                        && response == other.response
+                        && startsWith == other.startsWith;
+            }
+
+            return false;
+        }
+
+    }
+    
+    /**
+     * Specialized {@link MetadataIndexStore} which stores data items in one radix trie per endpoint scope
+     * (role type, endpoint type and response flag), keyed by canonicalized location.
+     * 
+     * <p>
+     * Keys which are not instances of {@link EndpointLocationIndexKey} are handled by the default
+     * hash-based implementation.
+     * </p>
+     * 
+     * @param <T> the type of data being indexed
+     */
+    protected static class LocationTrieIndexStore<T> extends MetadataIndexStore<T> {
+        
+        /** The tries, one per endpoint scope. */
+        @Nonnull private final Map<Scope, TrieNode<T>> tries;
+        
+        /** Lock guarding the tries. */
+        @Nonnull private final ReadWriteLock lock;
+        
+        /** Constructor. */
+        public LocationTrieIndexStore() {
+            tries = new HashMap<>();
+            lock = new ReentrantReadWriteLock();
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        @Nonnull @NonnullElements @Unmodifiable @NotLive 
+        public Set<MetadataIndexKey> getKeys() {
+            final ImmutableSet.Builder<MetadataIndexKey> builder = ImmutableSet.builder();
+            builder.addAll(super.getKeys());
+            lock.readLock().lock();
+            try {
+                for (final Map.Entry<Scope, TrieNode<T>> entry : tries.entrySet()) {
+                    collectKeys(entry.getKey(), entry.getValue(), "", builder);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            return builder.build();
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        @Nonnull @NonnullElements @Unmodifiable @NotLive 
+        public Set<T> lookup(@Nonnull final MetadataIndexKey key) {
+            Constraint.isNotNull(key, "IndexKey was null");
+            if (!(key instanceof EndpointLocationIndexKey)) {
+                return super.lookup(key);
+            }
+            
+            final EndpointLocationIndexKey locationKey = (EndpointLocationIndexKey) key;
+            final String location = locationKey.getCanonicalizedLocation();
+            final int pathStart = locationKey.isMatchStartsWith() ? locationKey.getPathStart() : -1;
+            
+            lock.readLock().lock();
+            try {
+                TrieNode<T> node = tries.get(new Scope(locationKey));
+                if (node == null) {
+                    return ImmutableSet.of();
+                }
+                final ImmutableSet.Builder<T> builder = ImmutableSet.builder();
+                int pos = 0;
+                while (pos < location.length()) {
+                    node = node.getChild(location.charAt(pos));
+                    if (node == null || !location.startsWith(node.label, pos)) {
+                        break;
+                    }
+                    pos += node.label.length();
+                    if (node.items != null 
+                            && (pos == location.length() || isPathSegmentBoundary(location, pos, pathStart))) {
+                        builder.addAll(node.items);
+                    }
+                }
+                return builder.build();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public void add(final MetadataIndexKey key, final T item) {
+            Constraint.isNotNull(key, "IndexKey was null");
+            Constraint.isNotNull(item, "The indexed data element was null");
+            if (!(key instanceof EndpointLocationIndexKey)) {
+                super.add(key, item);
+                return;
+            }
+            
+            final EndpointLocationIndexKey locationKey = (EndpointLocationIndexKey) key;
+            final String location = locationKey.getCanonicalizedLocation();
+            lock.writeLock().lock();
+            try {
+                final TrieNode<T> root = tries.computeIfAbsent(new Scope(locationKey), k -> new TrieNode<>(""));
+                TrieNode<T> node = root;
+                int pos = 0;
+                while (pos < location.length()) {
+                    final char c = location.charAt(pos);
+                    TrieNode<T> child = node.getChild(c);
+                    if (child == null) {
+                        child = new TrieNode<>(location.substring(pos));
+                        node.putChild(child);
+                        node = child;
+                        break;
+                    }
+                    final int common = commonPrefixLength(child.label, location, pos);
+                    if (common < child.label.length()) {
+                        final TrieNode<T> split = new TrieNode<>(child.label.substring(0, common));
+                        child.label = child.label.substring(common);
+                        split.putChild(child);
+                        node.putChild(split);
+                        child = split;
+                    }
+                    node = child;
+                    pos += common;
+                }
+                if (node.items == null) {
+                    node.items = new HashSet<>();
+                }
+                node.items.add(item);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public void remove(final MetadataIndexKey key, final T item) {
+            Constraint.isNotNull(key, "IndexKey was null");
+            Constraint.isNotNull(item, "The indexed data element was null");
+            if (!(key instanceof EndpointLocationIndexKey)) {
+                super.remove(key, item);
+                return;
+            }
+            removeItems((EndpointLocationIndexKey) key, item);
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public void clear(final MetadataIndexKey key) {
+            Constraint.isNotNull(key, "IndexKey was null");
+            if (!(key instanceof EndpointLocationIndexKey)) {
+                super.clear(key);
+                return;
+            }
+            removeItems((EndpointLocationIndexKey) key, null);
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public void clear() {
+            super.clear();
+            lock.writeLock().lock();
+            try {
+                tries.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        
+        /**
+         * Remove the supplied item, or all items, stored at the exact location of the supplied key,
+         * pruning trie nodes which are no longer needed.
+         * 
+         * @param key the index key
+         * @param item the item to remove, or null to remove all items
+         */
+        private void removeItems(@Nonnull final EndpointLocationIndexKey key, @Nullable final T item) {
+            final Scope scope = new Scope(key);
+            lock.writeLock().lock();
+            try {
+                final TrieNode<T> root = tries.get(scope);
+                if (root == null) {
+                    return;
+                }
+                removeItems(root, key.getCanonicalizedLocation(), 0, item);
+                if (root.children == null) {
+                    tries.remove(scope);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        
+        /**
+         * Recursively remove the supplied item, or all items, stored at the supplied location.
+         * 
+         * @param node the current node
+         * @param location the canonicalized location
+         * @param pos the position within the location matched so far
+         * @param item the item to remove, or null to remove all items
+         * @return true if the node is now empty and may be pruned by its parent
+         */
+        private boolean removeItems(@Nonnull final TrieNode<T> node, @Nonnull final String location, final int pos,
+                @Nullable final T item) {
+            if (pos == location.length()) {
+                if (node.items != null) {
+                    if (item == null) {
+                        node.items = null;
+                    } else {
+                        node.items.remove(item);
+                        if (node.items.isEmpty()) {
+                            node.items = null;
+                        }
+                    }
+                }
+            } else {
+                final TrieNode<T> child = node.getChild(location.charAt(pos));
+                if (child != null && location.startsWith(child.label, pos)
+                        && removeItems(child, location, pos + child.label.length(), item)) {
+                    node.removeChild(child);
+                }
+            }
+            return node.items == null && node.children == null;
+        }
+        
+        /**
+         * Recursively collect keys for all locations with stored items.
+         * 
+         * @param scope the trie scope
+         * @param node the current node
+         * @param prefix the location prefix leading to the node
+         * @param builder the key accumulator
+         */
+        private void collectKeys(@Nonnull final Scope scope, @Nonnull final TrieNode<T> node,
+                @Nonnull final String prefix, @Nonnull final ImmutableSet.Builder<MetadataIndexKey> builder) {
+            final String location = prefix + node.label;
+            if (node.items != null && !node.items.isEmpty()) {
+                builder.add(new EndpointLocationIndexKey(scope.role, scope.endpoint, location, scope.response, 
+                        false));
+            }
+            if (node.children != null) {
+                for (final TrieNode<T> child : node.children.values()) {
+                    collectKeys(scope, child, location, builder);
+                }
+            }
+        }
+        
+        /**
+         * Evaluate whether the supplied position within a location falls on a path segment boundary,
+         * such that the preceding characters form one of the path-trimmed variants of the location.
+         * 
+         * @param location the canonicalized location
+         * @param pos the position to evaluate, which must be less than the length of the location
+         * @param pathStart the index of the start of the path, or -1 if boundaries should not be matched
+         * @return true if the position is a path segment boundary, false otherwise
+         */
+        private static boolean isPathSegmentBoundary(@Nonnull final String location, final int pos, 
+                final int pathStart) {
+            if (pathStart < 0 || pos < pathStart) {
+                return false;
+            }
+            return location.charAt(pos) == '/' || (pos > pathStart && location.charAt(pos - 1) == '/');
+        }
+        
+        /**
+         * Compute the length of the common prefix of a node label and the remainder of a location.
+         * 
+         * @param label the node label
+         * @param location the location
+         * @param pos the start position within the location
+         * @return the length of the common prefix
+         */
+        private static int commonPrefixLength(@Nonnull final String label, @Nonnull final String location,
+                final int pos) {
+            final int max = Math.min(label.length(), location.length() - pos);
+            int i = 0;
+            while (i < max && label.charAt(i) == location.charAt(pos + i)) {
+                i++;
+            }
+            return i;
+        }
+    }
+    
+    /**
+     * The scope of an indexed endpoint location.
+     */
+    private static final class Scope {
+        
+        /** The role type. */
+        @Nonnull private final QName role;
+        
+        /** The endpoint type. */
+        @Nonnull private final QName endpoint;
+        
+        /** Response location flag. */
+        private final boolean response;
+        
+        /**
+         * Constructor.
+         *
+         * @param key the key from which to take the scope
+         */
+        Scope(@Nonnull final EndpointLocationIndexKey key) {
+            role = key.getRoleType();
+            endpoint = key.getEndpointType();
+            response = key.isResponse();
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return Objects.hash(role, endpoint, response);
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof Scope) {
+                final Scope other = (Scope) obj;
+                return role.equals(other.role) && endpoint.equals(other.endpoint) && response == other.response;
+            }
+            return false;
+        }
+    }
+    
+    /**
+     * A node of the radix trie.
+     * 
+     * @param <T> the type of data being indexed
+     */
+    private static final class TrieNode<T> {
+        
+        /** The label of the edge leading to this node. */
+        @Nonnull private String label;
+        
+        /** The child nodes, keyed by the first character of their label. */
+        @Nullable private Map<Character, TrieNode<T>> children;
+        
+        /** The items stored at the location ending at this node. */
+        @Nullable private Set<T> items;
+        
+        /**
+         * Constructor.
+         *
+         * @param edgeLabel the label of the edge leading to this node
+         */
+        TrieNode(@Nonnull final String edgeLabel) {
+            label = edgeLabel;
+        }
+        
+        /**
+         * Get the child node whose label begins with the supplied character.
+         * 
+         * @param c the character
+         * @return the child node, or null
+         */
+        @Nullable TrieNode<T> getChild(final char c) {
+            return children != null ? children.get(c) : null;
+        }
+        
+        /**
+         * Add or replace a child node.
+         * 
+         * @param child the child node
+         */
+        void putChild(@Nonnull final TrieNode<T> child) {
+            if (children == null) {
+                children = new HashMap<>(4);
+            }
+            children.put(child.label.charAt(0), child);
+        }
+        
+        /**
+         * Remove a child node.
+         * 
+         * @param child the child node
+         */
+        void removeChild(@Nonnull final TrieNode<T> child) {
+            if (children != null) {
+                children.remove(child.label.charAt(0));
+                if (children.isEmpty()) {
+                    children = null;
+                }
+            }
+        }
+    }
+
+}
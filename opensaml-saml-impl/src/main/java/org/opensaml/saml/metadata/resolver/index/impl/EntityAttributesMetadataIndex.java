@@ -0,0 +1,210 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.metadata.resolver.index.impl;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotLive;
+import net.shibboleth.utilities.java.support.annotation.constraint.Unmodifiable;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+
+import org.opensaml.saml.common.profile.logic.EntityAttributesPredicate;
+import org.opensaml.saml.common.profile.logic.EntityAttributesPredicate.Candidate;
+import org.opensaml.saml.metadata.EntityAttributeTags;
+import org.opensaml.saml.metadata.criteria.entity.impl.EvaluableEntityAttributesEntityDescriptorCriterion;
+import org.opensaml.saml.metadata.resolver.index.MetadataIndex;
+import org.opensaml.saml.metadata.resolver.index.MetadataIndexKey;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * An implementation of {@link MetadataIndex} which indexes entities by their entity attribute names and values.
+ * 
+ * <p>
+ * Keys are generated from an {@link EvaluableEntityAttributesEntityDescriptorCriterion}. The keys only narrow
+ * the set of candidate entities; the criterion's predicate must still be applied to the result. 
+ * </p>
+ * 
+ * <p>
+ * As a side effect of indexing, an {@link EntityAttributeTags} instance is attached to each indexed entity
+ * which does not already carry one, allowing {@link EntityAttributesPredicate} to avoid re-walking
+ * the metadata on each evaluation.
+ * </p>
+ */
+public class EntityAttributesMetadataIndex implements MetadataIndex {
+
+    /** {@inheritDoc} */
+    @Nullable @NonnullElements @Unmodifiable @NotLive 
+    public Set<MetadataIndexKey> generateKeys(@Nonnull final CriteriaSet criteriaSet) {
+        Constraint.isNotNull(criteriaSet, "CriteriaSet was null");
+        final EvaluableEntityAttributesEntityDescriptorCriterion criterion =
+                criteriaSet.get(EvaluableEntityAttributesEntityDescriptorCriterion.class);
+        if (criterion == null) {
+            return null;
+        }
+        
+        final EntityAttributesPredicate predicate = criterion.getPredicate();
+        final Collection<Candidate> candidates = predicate.getCandidates();
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        
+        final HashSet<MetadataIndexKey> result = new HashSet<>();
+        if (predicate.getMatchAll()) {
+            // Every candidate must match, so any one of them is a necessary condition.
+            result.add(generateKey(candidates.iterator().next()));
+        } else {
+            for (final Candidate candidate : candidates) {
+                result.add(generateKey(candidate));
+            }
+        }
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Nullable @NonnullElements @Unmodifiable @NotLive 
+    public Set<MetadataIndexKey> generateKeys(@Nonnull final EntityDescriptor descriptor) {
+        Constraint.isNotNull(descriptor, "EntityDescriptor was null");
+        
+        EntityAttributeTags tags = EntityAttributeTags.get(descriptor);
+        if (tags == null) {
+            tags = new EntityAttributeTags(EntityAttributeTags.collectEntityAttributes(descriptor));
+            descriptor.getObjectMetadata().put(tags);
+        }
+        
+        if (tags.isEmpty()) {
+            return null;
+        }
+        
+        final HashSet<MetadataIndexKey> result = new HashSet<>();
+        result.add(new EntityAttributesIndexKey(null, null));
+        for (final EntityAttributeTags.Tag tag : tags.getTags()) {
+            if (tag.getNameFormat() == null) {
+                result.add(new EntityAttributesIndexKey(tag.getName(), null));
+                if (tag.getValue() != null) {
+                    result.add(new EntityAttributesIndexKey(tag.getName(), tag.getValue()));
+                    result.add(new EntityAttributesIndexKey(tag.getName(), tag.getValue().trim()));
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Generate the key representing a necessary condition for a candidate to be satisfied.
+     * 
+     * @param candidate the candidate
+     * 
+     * @return the index key
+     */
+    @Nonnull protected MetadataIndexKey generateKey(@Nonnull final Candidate candidate) {
+        final List<String> values = candidate.getValues();
+        if (!values.isEmpty()) {
+            return new EntityAttributesIndexKey(candidate.getName(), values.get(0));
+        } else if (!candidate.getRegexps().isEmpty()) {
+            return new EntityAttributesIndexKey(candidate.getName(), null);
+        } else {
+            // A candidate with neither values nor expressions is satisfied by any entity with entity attributes.
+            return new EntityAttributesIndexKey(null, null);
+        }
+    }
+    
+    /**
+     * An implementation of {@link MetadataIndexKey} representing an entity attribute name and value.
+     * 
+     * <p>
+     * A null value represents any value of the named attribute, and a null name represents the presence
+     * of any entity attribute at all.
+     * </p>
+     */
+    protected static class EntityAttributesIndexKey implements MetadataIndexKey {
+        
+        /** The attribute name. */
+        @Nullable private final String name;
+        
+        /** The attribute value. */
+        @Nullable private final String value;
+
+        /**
+         * Constructor.
+         * 
+         * @param attributeName the attribute name
+         * @param attributeValue the attribute value
+         */
+        public EntityAttributesIndexKey(@Nullable final String attributeName, @Nullable final String attributeValue) {
+            name = attributeName;
+            value = attributeValue;
+        }
+
+        /**
+         * Gets the attribute name.
+         * 
+         * @return the attribute name
+         */
+        @Nullable public String getName() {
+            return name;
+        }
+        
+        /**
+         * Gets the attribute value.
+         * 
+         * @return the attribute value
+         */
+        @Nullable public String getValue() {
+            return value;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this).add("name", name).add("value", value).toString();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, value);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (obj instanceof EntityAttributesIndexKey) {
+                final EntityAttributesIndexKey other = (EntityAttributesIndexKey) obj;
+                return Objects.equals(name, other.name) && Objects.equals(value, other.value);
+            }
+
+            return false;
+        }
+    }
+
+}
@@ -80,10 +80,29 @@ public class MetadataIndexManager<T> {
         if (initIndexes != null) {
             for (final MetadataIndex index : initIndexes) {
                 log.trace("Initializing manager for index: {}", index);
-                indexes.put(index, new MetadataIndexStore<T>());
+                indexes.put(index, createStore(index));
             }
         }
     }
+
+    /**
+     * Create the {@link MetadataIndexStore} to use for the specified {@link MetadataIndex}.
+     *
+     * <p>
+     * Indexes which implement {@link MetadataIndexStoreProvider} supply their own store,
+     * otherwise the default hash-based store is used.
+     * </p>
+     *
+     * @param index the index for which to create storage
+     * @return the new index store
+     */
+    @Nonnull protected MetadataIndexStore<T> createStore(@Nonnull final MetadataIndex index) {
+        if (index instanceof MetadataIndexStoreProvider) {
+            return Constraint.isNotNull(((MetadataIndexStoreProvider) index).<T>createStore(),
+                    "MetadataIndexStoreProvider produced a null store");
+        }
+        return new MetadataIndexStore<>();
+    }
     
     /**
      * Get the set of all {@link MetadataIndex} instances currently initialized.
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.saml.metadata.resolver.index.impl;
+
+import javax.annotation.Nonnull;
+
+import org.opensaml.saml.metadata.resolver.index.MetadataIndex;
+
+/**
+ * Optional interface which may be implemented by a {@link MetadataIndex} whose keys require
+ * a specialized {@link MetadataIndexStore} rather than simple key equality lookup.
+ * 
+ * <p>
+ * {@link MetadataIndexManager} will use the store produced here for such indexes in place
+ * of the default hash-based store.
+ * </p>
+ */
+public interface MetadataIndexStoreProvider {
+    
+    /**
+     * Create a new, empty store instance for use with this index.
+     * 
+     * @param <T> the type of data being indexed
+     * 
+     * @return a new store instance
+     */
+    @Nonnull <T> MetadataIndexStore<T> createStore();
+
+}
@@ -62,11 +62,11 @@ public class RoleMetadataIndex implements MetadataIndex {
         Constraint.isNotNull(descriptor, "EntityDescriptor was null");
         final HashSet<MetadataIndexKey> result = new HashSet<>();
         for (final RoleDescriptor role : descriptor.getRoleDescriptors()) {
+            // Roles are looked up by either element name or schema type, so index under both.
+            result.add(new RoleMetadataIndexKey(role.getElementQName()));
             final QName type = role.getSchemaType();
             if (type != null) {
                 result.add(new RoleMetadataIndexKey(type));
-            } else {
-                result.add(new RoleMetadataIndexKey(role.getElementQName()));
             }
         }
         return result;
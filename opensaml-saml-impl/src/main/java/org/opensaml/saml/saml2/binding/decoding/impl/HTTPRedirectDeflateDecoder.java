@@ -20,8 +20,8 @@ package org.opensaml.saml.saml2.binding.decoding.impl;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.zip.Inflater;
-import java.util.zip.InflaterInputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -29,6 +29,7 @@ import javax.servlet.http.HttpServletRequest;
 
 import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
 import net.shibboleth.utilities.java.support.codec.Base64Support;
+import net.shibboleth.utilities.java.support.logic.Constraint;
 import net.shibboleth.utilities.java.support.primitive.StringSupport;
 
 import org.opensaml.messaging.context.MessageContext;
@@ -40,6 +41,7 @@ import org.opensaml.saml.common.binding.SAMLBindingSupport;
 import org.opensaml.saml.common.binding.decoding.SAMLMessageDecoder;
 import org.opensaml.saml.common.messaging.context.SAMLBindingContext;
 import org.opensaml.saml.common.xml.SAMLConstants;
+import org.opensaml.saml.saml2.binding.impl.DeflateSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,12 +54,18 @@ import com.google.common.base.Strings;
  */
 public class HTTPRedirectDeflateDecoder extends BaseHttpServletRequestXMLMessageDecoder implements SAMLMessageDecoder {
 
+    /** Default maximum size in bytes of an inflated message: {@value}. */
+    public static final int DEFAULT_MAX_INFLATED_SIZE = 1024 * 1024;
+
     /** Class logger. */
     @Nonnull private final Logger log = LoggerFactory.getLogger(HTTPRedirectDeflateDecoder.class);
 
     /** Optional {@link BindingDescriptor} to inject into {@link SAMLBindingContext} created. */
     @Nullable private BindingDescriptor bindingDescriptor;
     
+    /** Maximum size in bytes of an inflated message. */
+    private int maxInflatedSize = DEFAULT_MAX_INFLATED_SIZE;
+    
     /** {@inheritDoc} */
     @Nonnull @NotEmpty public String getBindingURI() {
         return SAMLConstants.SAML2_REDIRECT_BINDING_URI;
@@ -80,6 +88,28 @@ public class HTTPRedirectDeflateDecoder extends BaseHttpServletRequestXMLMessage
     public void setBindingDescriptor(@Nullable final BindingDescriptor descriptor) {
         bindingDescriptor = descriptor;
     }
+    
+    /**
+     * Get the maximum size in bytes of an inflated message.
+     * 
+     * <p>Defaults to {@link #DEFAULT_MAX_INFLATED_SIZE}.</p>
+     * 
+     * @return maximum inflated message size
+     */
+    public int getMaxInflatedSize() {
+        return maxInflatedSize;
+    }
+    
+    /**
+     * Set the maximum size in bytes of an inflated message.
+     * 
+     * <p>Messages which inflate beyond this size are rejected, guarding against compression bombs.</p>
+     * 
+     * @param size maximum inflated message size
+     */
+    public void setMaxInflatedSize(final int size) {
+        maxInflatedSize = (int) Constraint.isGreaterThan(0, size, "Maximum inflated size must be greater than 0");
+    }
 
     /** {@inheritDoc} */
     protected void doDecode() throws MessageDecodingException {
@@ -139,8 +169,10 @@ public class HTTPRedirectDeflateDecoder extends BaseHttpServletRequestXMLMessage
         }
         
         try {
-            return new NoWrapAutoEndInflaterInputStream(new ByteArrayInputStream(decodedBytes));
-        } catch (final Exception e) {
+            final ByteBuffer inflated = DeflateSupport.inflate(decodedBytes, maxInflatedSize);
+            return new ByteArrayInputStream(inflated.array(), inflated.arrayOffset() + inflated.position(),
+                    inflated.remaining());
+        } catch (final DataFormatException e) {
             log.error("Unable to Base64 decode and inflate SAML message", e);
             throw new MessageDecodingException("Unable to Base64 decode and inflate SAML message", e);
         }
@@ -159,29 +191,5 @@ public class HTTPRedirectDeflateDecoder extends BaseHttpServletRequestXMLMessage
                 !Strings.isNullOrEmpty(getHttpServletRequest().getParameter("Signature")));
         bindingContext.setIntendedDestinationEndpointURIRequired(SAMLBindingSupport.isMessageSigned(messageContext));
     }
-    
-    /** A subclass of {@link InflaterInputStream} which defaults in a no-wrap {@link Inflater} instance and
-     * closes it when the stream is closed.
-     */
-    private class NoWrapAutoEndInflaterInputStream extends InflaterInputStream {
-
-        /**
-         * Creates a new input stream with a default no-wrap decompressor and buffer size.
-         *
-         * @param is the input stream
-         */
-        public NoWrapAutoEndInflaterInputStream(final InputStream is) {
-            super(is, new Inflater(true));
-        }
-
-        /** {@inheritDoc} */
-        public void close() throws IOException {
-            if (inf != null) {
-                inf.end();
-            }
-            super.close();
-        }
-
-    }
 
 }
\ No newline at end of file
@@ -17,9 +17,7 @@
 
 package org.opensaml.saml.saml2.binding.encoding.impl;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
@@ -27,7 +25,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.zip.Deflater;
-import java.util.zip.DeflaterOutputStream;
 
 import javax.annotation.Nonnull;
 import javax.servlet.http.HttpServletResponse;
@@ -37,7 +34,6 @@ import net.shibboleth.utilities.java.support.collection.Pair;
 import net.shibboleth.utilities.java.support.net.HttpServletSupport;
 import net.shibboleth.utilities.java.support.net.URLBuilder;
 import net.shibboleth.utilities.java.support.primitive.StringSupport;
-import net.shibboleth.utilities.java.support.xml.SerializeSupport;
 
 import org.opensaml.messaging.context.MessageContext;
 import org.opensaml.messaging.encoder.MessageEncodingException;
@@ -46,6 +42,7 @@ import org.opensaml.saml.common.SignableSAMLObject;
 import org.opensaml.saml.common.binding.SAMLBindingSupport;
 import org.opensaml.saml.common.messaging.SAMLMessageSecuritySupport;
 import org.opensaml.saml.common.xml.SAMLConstants;
+import org.opensaml.saml.saml2.binding.impl.DeflateSupport;
 import org.opensaml.saml.saml2.core.RequestAbstractType;
 import org.opensaml.saml.saml2.core.StatusResponseType;
 import org.opensaml.security.SecurityException;
@@ -55,6 +52,7 @@ import org.opensaml.xmlsec.SignatureSigningParameters;
 import org.opensaml.xmlsec.crypto.XMLSigningUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.ls.LSException;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -137,18 +135,8 @@ public class HTTPRedirectDeflateEncoder extends BaseSAML2MessageEncoder {
     protected String deflateAndBase64Encode(final SAMLObject message) throws MessageEncodingException {
         log.debug("Deflating and Base64 encoding SAML message");
         try {
-            final String messageStr = SerializeSupport.nodeToString(marshallMessage(message));
-
-            try (final ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
-                    final DeflaterOutputStream deflaterStream =
-                            new NoWrapAutoEndDeflaterOutputStream(bytesOut, Deflater.DEFLATED)) {
-
-                deflaterStream.write(messageStr.getBytes("UTF-8"));
-                deflaterStream.finish();
-
-                return Base64Support.encode(bytesOut.toByteArray(), Base64Support.UNCHUNKED);
-            }
-        } catch (final IOException e) {
+            return DeflateSupport.deflateAndBase64Encode(marshallMessage(message), Deflater.DEFLATED);
+        } catch (final LSException e) {
             throw new MessageEncodingException("Unable to DEFLATE and Base64 encode SAML message", e);
         }
     }
@@ -296,30 +284,4 @@ public class HTTPRedirectDeflateEncoder extends BaseSAML2MessageEncoder {
 
         return b64Signature;
     }
-
-    /** A subclass of {@link DeflaterOutputStream} which defaults in a no-wrap {@link Deflater} instance and
-     * closes it when the stream is closed.
-     */
-    private class NoWrapAutoEndDeflaterOutputStream extends DeflaterOutputStream {
-
-        /**
-         * Creates a new output stream with a default no-wrap compressor and buffer size,
-         * and the specified compression level.
-         *
-         * @param os the output stream
-         * @param level the compression level (0-9)
-         */
-        public NoWrapAutoEndDeflaterOutputStream(final OutputStream os, final int level) {
-            super(os, new Deflater(level, true));
-        }
-
-        /** {@inheritDoc} */
-        public void close() throws IOException {
-            if (def != null) {
-                def.end();
-            }
-            super.close();
-        }
-
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,296 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.saml2.binding.encoding.impl;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletResponse;
+
+import net.shibboleth.utilities.java.support.codec.HTMLEncoder;
+import net.shibboleth.utilities.java.support.net.HttpServletSupport;
+import net.shibboleth.utilities.java.support.xml.SerializeSupport;
+
+import org.opensaml.messaging.context.MessageContext;
+import org.opensaml.messaging.encoder.MessageEncodingException;
+import org.opensaml.saml.common.SAMLObject;
+import org.opensaml.saml.common.binding.SAMLBindingSupport;
+import org.opensaml.saml.common.xml.SAMLConstants;
+import org.opensaml.saml.saml2.core.RequestAbstractType;
+import org.opensaml.saml.saml2.core.StatusResponseType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+
+/**
+ * SAML 2.0 HTTP Post binding message encoder which streams the message directly to the response.
+ * 
+ * <p>
+ * Unlike {@link HTTPPostEncoder}, the marshalled message is serialized through a Base64 encoder straight
+ * into the servlet output stream, inside a fixed HTML form with the same markup as the default
+ * <code>/templates/saml2-post-binding.vm</code> template. No intermediate XML string, byte array or
+ * Base64 string copies of the message are produced, and no Velocity engine is required.
+ * </p>
+ * 
+ * <p>
+ * Since no Velocity engine is used, the <code>/templates/add-html-head-content.vm</code> and
+ * <code>/templates/add-html-body-content.vm</code> templates included by the default template are
+ * <strong>not</strong> evaluated, and any content a deployment has placed in them is not emitted. Such content
+ * must instead be written by overriding {@link #writeHeadContent(OutputStream)} and
+ * {@link #writeBodyContent(OutputStream)}, which are called at the same points in the page. Deployments which
+ * need to customize the form itself should continue to use {@link HTTPPostEncoder}, or override
+ * {@link #writeFormStart(OutputStream, String, String)} and {@link #writeFormEnd(OutputStream)}.
+ * </p>
+ */
+public class StreamingHTTPPostEncoder extends BaseSAML2MessageEncoder {
+    
+    /** Markup preceding the additional head content. */
+    private static final String HTML_START =
+            "<!DOCTYPE html>\n"
+            + "<html>\n"
+            + "    <head>\n"
+            + "        <meta charset=\"utf-8\" />\n";
+    
+    /** Markup following the additional head content and preceding the form action URL. */
+    private static final String BODY_START =
+            "    </head>\n"
+            + "    <body onload=\"document.forms[0].submit()\">\n"
+            + "        <noscript>\n"
+            + "            <p>\n"
+            + "                <strong>Note:</strong> Since your browser does not support JavaScript,\n"
+            + "                you must press the Continue button once to proceed.\n"
+            + "            </p>\n"
+            + "        </noscript>\n"
+            + "        \n"
+            + "        <form action=\"";
+    
+    /** Markup following the form action URL. */
+    private static final String FORM_START = "\" method=\"post\">\n            <div>\n";
+
+    /** Markup following the message parameter value and preceding the additional body content. */
+    private static final String FORM_END =
+            "\"/>\n"
+            + "            </div>\n"
+            + "            <noscript>\n"
+            + "                <div>\n"
+            + "                    <input type=\"submit\" value=\"Continue\"/>\n"
+            + "                </div>\n"
+            + "            </noscript>\n"
+            + "        </form>\n";
+    
+    /** Markup following the additional body content. */
+    private static final String HTML_END =
+            "    </body>\n"
+            + "</html>\n";
+
+    /** Class logger. */
+    private final Logger log = LoggerFactory.getLogger(StreamingHTTPPostEncoder.class);
+
+    /** {@inheritDoc} */
+    public String getBindingURI() {
+        return SAMLConstants.SAML2_POST_BINDING_URI;
+    }
+
+    /** {@inheritDoc} */
+    protected void doEncode() throws MessageEncodingException {
+        final MessageContext messageContext = getMessageContext();
+
+        final Object outboundMessage = messageContext.getMessage();
+        if (outboundMessage == null || !(outboundMessage instanceof SAMLObject)) {
+            throw new MessageEncodingException("No outbound SAML message contained in message context");
+        }
+        
+        final String endpointURL = getEndpointURL(messageContext).toString();
+
+        postEncode(messageContext, endpointURL);
+    }
+
+    /**
+     * Base64 and POST encodes the outbound message and writes it to the outbound transport.
+     * 
+     * @param messageContext current message context
+     * @param endpointURL endpoint URL to which to encode message
+     * 
+     * @throws MessageEncodingException thrown if there is a problem encoding the message
+     */
+    protected void postEncode(@Nonnull final MessageContext messageContext, @Nonnull final String endpointURL) 
+            throws MessageEncodingException {
+        
+        final SAMLObject outboundMessage = (SAMLObject) messageContext.getMessage();
+        final String messageParameter;
+        if (outboundMessage instanceof RequestAbstractType) {
+            messageParameter = "SAMLRequest";
+        } else if (outboundMessage instanceof StatusResponseType) {
+            messageParameter = "SAMLResponse";
+        } else {
+            throw new MessageEncodingException(
+                    "SAML message is neither a SAML RequestAbstractType or StatusResponseType");
+        }
+        
+        final String encodedEndpointURL = HTMLEncoder.encodeForHTMLAttribute(endpointURL);
+        log.debug("Encoding action url of '{}' with encoded value '{}'", endpointURL, encodedEndpointURL);
+        
+        String encodedRelayState = null;
+        final String relayState = SAMLBindingSupport.getRelayState(messageContext);
+        if (SAMLBindingSupport.checkRelayState(relayState)) {
+            encodedRelayState = HTMLEncoder.encodeForHTMLAttribute(relayState);
+            log.debug("Setting RelayState parameter to: '{}', encoded as '{}'", relayState, encodedRelayState);
+        }
+        
+        log.debug("Marshalling SAML message");
+        final Element domMessage = marshallMessage(outboundMessage);
+        
+        final HttpServletResponse response = getHttpServletResponse();
+        
+        HttpServletSupport.addNoCacheHeaders(response);
+        HttpServletSupport.setUTF8Encoding(response);
+        HttpServletSupport.setContentType(response, "text/html");
+        
+        try {
+            final OutputStream out = response.getOutputStream();
+            writeFormStart(out, encodedEndpointURL, encodedRelayState);
+            write(out, "                <input type=\"hidden\" name=\"" + messageParameter + "\" value=\"");
+            
+            log.debug("Streaming Base64 encoded SAML message");
+            try (final OutputStream base64Out = Base64.getEncoder().wrap(new NonClosingOutputStream(out))) {
+                SerializeSupport.writeNode(domMessage, base64Out);
+            }
+            
+            writeFormEnd(out);
+            out.flush();
+        } catch (final IOException e) {
+            log.error("Error writing POST body", e);
+            throw new MessageEncodingException("Error creating output document", e);
+        }
+    }
+    
+    /**
+     * Write the markup preceding the message parameter value.
+     * 
+     * <p>The output must end with an open <code>input</code> element, ready for the message parameter
+     * value.</p>
+     * 
+     * @param out the output stream
+     * @param encodedEndpointURL the HTML attribute-encoded form action URL
+     * @param encodedRelayState the HTML attribute-encoded relay state, may be null
+     * 
+     * @throws IOException if there is a problem writing the output
+     */
+    protected void writeFormStart(@Nonnull final OutputStream out, @Nonnull final String encodedEndpointURL,
+            @Nullable final String encodedRelayState) throws IOException {
+        write(out, HTML_START);
+        writeHeadContent(out);
+        write(out, BODY_START);
+        write(out, encodedEndpointURL);
+        write(out, FORM_START);
+        if (encodedRelayState != null) {
+            write(out, "                <input type=\"hidden\" name=\"RelayState\" value=\"");
+            write(out, encodedRelayState);
+            write(out, "\"/>\n");
+        }
+    }
+    
+    /**
+     * Write the markup following the message parameter value, starting with the close of the
+     * message parameter <code>input</code> element.
+     * 
+     * @param out the output stream
+     * 
+     * @throws IOException if there is a problem writing the output
+     */
+    protected void writeFormEnd(@Nonnull final OutputStream out) throws IOException {
+        write(out, FORM_END);
+        writeBodyContent(out);
+        write(out, HTML_END);
+    }
+    
+    /**
+     * Write additional content into the HEAD section of the page, in place of the
+     * <code>/templates/add-html-head-content.vm</code> template used by {@link HTTPPostEncoder}.
+     * 
+     * <p>This implementation writes nothing.</p>
+     * 
+     * @param out the output stream
+     * 
+     * @throws IOException if there is a problem writing the output
+     */
+    protected void writeHeadContent(@Nonnull final OutputStream out) throws IOException {
+        
+    }
+    
+    /**
+     * Write additional content into the BODY section of the page following the form, in place of the
+     * <code>/templates/add-html-body-content.vm</code> template used by {@link HTTPPostEncoder}.
+     * 
+     * <p>This implementation writes nothing.</p>
+     * 
+     * @param out the output stream
+     * 
+     * @throws IOException if there is a problem writing the output
+     */
+    protected void writeBodyContent(@Nonnull final OutputStream out) throws IOException {
+        
+    }
+    
+    /**
+     * Write a string to the output stream as UTF-8.
+     * 
+     * @param out the output stream
+     * @param value the string to write
+     * 
+     * @throws IOException if there is a problem writing the output
+     */
+    protected void write(@Nonnull final OutputStream out, @Nonnull final String value) throws IOException {
+        out.write(value.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Output stream wrapper which flushes rather than closes the wrapped stream, so the Base64 encoder
+     * can be closed to emit its final padding without closing the servlet output stream.
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+
+        /**
+         * Constructor.
+         *
+         * @param out the wrapped stream
+         */
+        NonClosingOutputStream(@Nonnull final OutputStream out) {
+            super(out);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+        
+    }
+    
+}
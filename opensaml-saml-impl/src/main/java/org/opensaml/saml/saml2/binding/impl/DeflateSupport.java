@@ -0,0 +1,196 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.saml2.binding.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nonnull;
+
+import org.w3c.dom.Node;
+
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.xml.SerializeSupport;
+
+/**
+ * Support for the raw DEFLATE (RFC1951) compression used by the SAML 2 HTTP-Redirect binding.
+ * 
+ * <p>
+ * {@link Deflater} and {@link Inflater} instances hold native zlib state which is expensive to allocate.
+ * Instances are therefore reset and returned to small bounded pools after use rather than being ended.
+ * Instances in excess of the pool size are ended immediately.
+ * </p>
+ */
+public final class DeflateSupport {
+    
+    /** Maximum number of idle compressors and decompressors to retain. */
+    private static final int POOL_SIZE = 32;
+    
+    /** Pool of no-wrap compressors. */
+    @Nonnull private static final BlockingQueue<Deflater> DEFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+    
+    /** Pool of no-wrap decompressors. */
+    @Nonnull private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    /** Constructor. */
+    private DeflateSupport() {
+        
+    }
+    
+    /**
+     * Serialize, DEFLATE compress and Base64 encode a DOM node.
+     * 
+     * @param node the node to encode
+     * @param level the compression level (0-9)
+     * 
+     * @return the unchunked Base64 encoding of the compressed serialized node
+     */
+    @Nonnull public static String deflateAndBase64Encode(@Nonnull final Node node, final int level) {
+        Constraint.isNotNull(node, "Node cannot be null");
+        
+        final ExposedByteArrayOutputStream serialized = new ExposedByteArrayOutputStream();
+        SerializeSupport.writeNode(node, serialized);
+        
+        final ByteBuffer deflated = deflate(serialized.getBuffer(), 0, serialized.size(), level);
+        final ByteBuffer encoded = Base64.getEncoder().encode(deflated);
+        return new String(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining(),
+                StandardCharsets.US_ASCII);
+    }
+    
+    /**
+     * DEFLATE compress a range of bytes.
+     * 
+     * @param input the input data
+     * @param offset the offset of the first byte to compress
+     * @param length the number of bytes to compress
+     * @param level the compression level (0-9)
+     * 
+     * @return a buffer wrapping the compressed data
+     */
+    @Nonnull public static ByteBuffer deflate(@Nonnull final byte[] input, final int offset, final int length,
+            final int level) {
+        
+        Deflater deflater = DEFLATERS.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+        } else {
+            deflater.setLevel(level);
+        }
+        
+        try {
+            deflater.setInput(input, offset, length);
+            deflater.finish();
+            
+            byte[] output = new byte[Math.max(64, length / 2)];
+            int count = 0;
+            while (!deflater.finished()) {
+                if (count == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                count += deflater.deflate(output, count, output.length - count);
+            }
+            return ByteBuffer.wrap(output, 0, count);
+        } finally {
+            deflater.reset();
+            if (!DEFLATERS.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+    
+    /**
+     * Decompress DEFLATE compressed data, failing if the decompressed size would exceed a bound.
+     * 
+     * @param input the compressed data
+     * @param maxLength the maximum permitted decompressed size in bytes
+     * 
+     * @return a buffer wrapping the decompressed data
+     * 
+     * @throws DataFormatException if the data is invalid or truncated, or exceeds the maximum size
+     */
+    @Nonnull public static ByteBuffer inflate(@Nonnull final byte[] input, final int maxLength)
+            throws DataFormatException {
+        Constraint.isGreaterThan(0, maxLength, "Maximum length must be greater than 0");
+        
+        Inflater inflater = INFLATERS.poll();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        
+        try {
+            inflater.setInput(input);
+            
+            byte[] output = new byte[(int) Math.min(maxLength, Math.max(256, input.length * 4L))];
+            int count = 0;
+            while (!inflater.finished()) {
+                if (count == output.length) {
+                    if (output.length >= maxLength) {
+                        // Output is at the bound, so anything further is an overrun
+                        if (inflater.inflate(new byte[1]) > 0) {
+                            throw new DataFormatException("Inflated data exceeds maximum size of " + maxLength
+                                    + " bytes");
+                        } else if (inflater.finished()) {
+                            break;
+                        }
+                        throw new DataFormatException("Unexpected end of DEFLATE input");
+                    }
+                    output = Arrays.copyOf(output, (int) Math.min(maxLength, output.length * 2L));
+                }
+                final int inflated = inflater.inflate(output, count, output.length - count);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Unexpected end of DEFLATE input");
+                }
+                count += inflated;
+            }
+            return ByteBuffer.wrap(output, 0, count);
+        } finally {
+            inflater.reset();
+            if (!INFLATERS.offer(inflater)) {
+                inflater.end();
+            }
+        }
+    }
+    
+    /** A {@link ByteArrayOutputStream} which exposes its internal buffer to avoid a copy. */
+    private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+
+        /** Constructor. */
+        ExposedByteArrayOutputStream() {
+            super(4096);
+        }
+        
+        /**
+         * Get the internal buffer, valid up to {@link #size()}.
+         * 
+         * @return the internal buffer
+         */
+        @Nonnull byte[] getBuffer() {
+            return buf;
+        }
+        
+    }
+
+}
@@ -30,6 +30,7 @@ import javax.xml.namespace.QName;
 import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
 import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
 import net.shibboleth.utilities.java.support.collection.LockableClassToInstanceMultiMap;
+import net.shibboleth.utilities.java.support.collection.Pair;
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import net.shibboleth.utilities.java.support.component.ComponentSupport;
 import net.shibboleth.utilities.java.support.component.InitializableComponent;
@@ -41,6 +42,7 @@ import org.opensaml.core.criterion.EntityIdCriterion;
 import org.opensaml.saml.criterion.EntityRoleCriterion;
 import org.opensaml.saml.criterion.ProtocolCriterion;
 import org.opensaml.saml.criterion.RoleDescriptorCriterion;
+import org.opensaml.saml.metadata.RoleDescriptorSnapshot;
 import org.opensaml.saml.metadata.resolver.RoleDescriptorResolver;
 import org.opensaml.saml.saml2.metadata.EntityDescriptor;
 import org.opensaml.saml.saml2.metadata.KeyDescriptor;
@@ -298,6 +300,11 @@ public class MetadataCredentialResolver extends AbstractCriteriaFilteringCredent
     /**
      * Process a RoleDescriptor by examing each of its KeyDescriptors.
      * 
+     * <p>
+     * If the role carries a {@link RoleDescriptorSnapshot} with credentials precomputed by this resolver's
+     * {@link KeyInfoCredentialResolver}, those are used directly, without locking the KeyDescriptor object metadata.
+     * </p>
+     * 
      * @param accumulator the collection of credentials being accumulated for return to the caller
      * @param roleDescriptor the KeyDescriptor being processed
      * @param entityID the entity ID of the KeyDescriptor being processed
@@ -309,6 +316,18 @@ public class MetadataCredentialResolver extends AbstractCriteriaFilteringCredent
             @Nonnull final RoleDescriptor roleDescriptor, @Nullable final String entityID, 
             @Nonnull final UsageType usage) throws ResolverException {
         
+        final RoleDescriptorSnapshot snapshot = RoleDescriptorSnapshot.get(roleDescriptor);
+        if (snapshot != null && snapshot.isCredentialsResolved()
+                && snapshot.getCredentialResolver() == getKeyInfoCredentialResolver()) {
+            log.trace("Resolved precomputed credentials from RoleDescriptor snapshot");
+            for (final Pair<UsageType, Credential> entry : snapshot.getCredentials()) {
+                if (matchUsage(entry.getFirst(), usage)) {
+                    accumulator.add(entry.getSecond());
+                }
+            }
+            return;
+        }
+        
         final List<KeyDescriptor> keyDescriptors = roleDescriptor.getKeyDescriptors();
         for (final KeyDescriptor keyDescriptor : keyDescriptors) {
             UsageType mdUsage = keyDescriptor.getUse();
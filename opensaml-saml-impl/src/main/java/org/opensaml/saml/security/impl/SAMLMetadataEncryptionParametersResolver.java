@@ -33,7 +33,9 @@ import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
 import net.shibboleth.utilities.java.support.resolver.ResolverException;
 
 import org.opensaml.core.xml.XMLObject;
+import org.opensaml.saml.criterion.RoleDescriptorCriterion;
 import org.opensaml.saml.saml2.metadata.EncryptionMethod;
+import org.opensaml.saml.saml2.metadata.RoleDescriptor;
 import org.opensaml.security.credential.Credential;
 import org.opensaml.security.credential.CredentialSupport;
 import org.opensaml.security.credential.UsageType;
@@ -127,16 +129,63 @@ public class SAMLMetadataEncryptionParametersResolver extends BasicEncryptionPar
         return credentialResolver;
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * Parameters are scoped to the peer {@link RoleDescriptor} supplied via {@link RoleDescriptorCriterion},
+     * so that a metadata refresh which replaces that instance invalidates the cached results. Without that
+     * criterion the metadata inputs can not be identified, and so results are not cached.
+     * </p>
+     * 
+     * <p>
+     * The key transport credential resolved from metadata references the role descriptor via its
+     * {@link SAMLMDCredentialContext}, so only its key is cached and the credential itself is re-resolved
+     * on each hit by {@link #resolveCachedKeyTransportCredential(CriteriaSet, Key)}. This allows the role
+     * descriptor, and the cached results scoped to it, to be collected once the metadata is replaced.
+     * </p>
+     */
+    @Override
+    @Nullable protected Object resolveCacheScope(@Nonnull final CriteriaSet criteria) {
+        final RoleDescriptorCriterion roleCriterion = criteria.get(RoleDescriptorCriterion.class);
+        if (roleCriterion != null) {
+            return roleCriterion.getRole();
+        }
+        return null;
+    }
+    
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * This implementation returns the credential resolved from metadata which carries the specified key.
+     * </p>
+     */
+    @Override
+    @Nullable protected Credential resolveCachedKeyTransportCredential(@Nonnull final CriteriaSet criteria,
+            @Nullable final Key key) {
+        if (key == null) {
+            return null;
+        }
+        try {
+            for (final Credential keyTransportCredential :
+                    getMetadataCredentialResolver().resolve(buildMetadataCredentialResolverCriteria(criteria))) {
+                if (key.equals(CredentialSupport.extractEncryptionKey(keyTransportCredential))) {
+                    return keyTransportCredential;
+                }
+            }
+        } catch (final ResolverException e) {
+            log.warn("Problem resolving cached key transport credential from metadata", e);
+        }
+        return null;
+    }
+
     /** {@inheritDoc} */
     @Override
     protected void resolveAndPopulateCredentialsAndAlgorithms(@Nonnull final EncryptionParameters params,
             @Nonnull final CriteriaSet criteria, @Nonnull final Predicate<String> whitelistBlacklistPredicate) {
         
-        // Create a new CriteriaSet for input to the metadata credential resolver, explicitly 
-        // setting/forcing an encryption usage criterion.
-        final CriteriaSet mdCredResolverCriteria = new CriteriaSet();
-        mdCredResolverCriteria.addAll(criteria);
-        mdCredResolverCriteria.add(new UsageCriterion(UsageType.ENCRYPTION), true);
+        final CriteriaSet mdCredResolverCriteria = buildMetadataCredentialResolverCriteria(criteria);
         
         // Note: Here we assume that we will only ever resolve a key transport credential from metadata.
         // Even if it's a symmetric key credential (via a key agreement protocol, or resolved from a KeyName, etc),
@@ -188,6 +237,24 @@ public class SAMLMetadataEncryptionParametersResolver extends BasicEncryptionPar
         super.resolveAndPopulateCredentialsAndAlgorithms(params, criteria, whitelistBlacklistPredicate);
     }
 
+    /**
+     * Build the criteria for input to the metadata credential resolver.
+     * 
+     * <p>
+     * This is a copy of the input criteria, explicitly setting/forcing an encryption usage criterion.
+     * </p>
+     * 
+     * @param criteria the input criteria being evaluated
+     * 
+     * @return the metadata credential resolver criteria
+     */
+    @Nonnull protected CriteriaSet buildMetadataCredentialResolverCriteria(@Nonnull final CriteriaSet criteria) {
+        final CriteriaSet mdCredResolverCriteria = new CriteriaSet();
+        mdCredResolverCriteria.addAll(criteria);
+        mdCredResolverCriteria.add(new UsageCriterion(UsageType.ENCRYPTION), true);
+        return mdCredResolverCriteria;
+    }
+
     /**
      * Resolve and populate an instance of {@link RSAOAEPParameters}, if appropriate for the selected
      * key transport encryption algorithm.
@@ -60,6 +60,24 @@ public class SAMLMetadataSignatureSigningParametersResolver extends BasicSignatu
     /** Logger. */
     @Nonnull private Logger log = LoggerFactory.getLogger(SAMLMetadataSignatureSigningParametersResolver.class);
 
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * Parameters resolved against a peer's metadata are scoped to the {@link RoleDescriptor} supplied via
+     * {@link RoleDescriptorCriterion}, so that a metadata refresh which replaces that instance invalidates
+     * the cached results.
+     * </p>
+     */
+    @Override
+    @Nullable protected Object resolveCacheScope(@Nonnull final CriteriaSet criteria) {
+        final RoleDescriptorCriterion roleCriterion = criteria.get(RoleDescriptorCriterion.class);
+        if (roleCriterion != null) {
+            return roleCriterion.getRole();
+        }
+        return super.resolveCacheScope(criteria);
+    }
+
 // Checkstyle: CyclomaticComplexity|ReturnCount OFF
     /** {@inheritDoc} */
     @Override
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.common.binding.artifact.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import net.shibboleth.utilities.java.support.xml.XMLAssertTestNG;
+
+import org.custommonkey.xmlunit.Diff;
+import org.opensaml.core.xml.XMLObjectBaseTestCase;
+import org.opensaml.saml.common.SAMLObject;
+import org.opensaml.saml.common.binding.artifact.SAMLArtifactMap.SAMLArtifactMapEntry;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+
+/**
+ * Test the compact storage-backed SAML artifact map entry factory.
+ */
+public class CompactStorageServiceSAMLArtifactMapEntryFactoryTest extends XMLObjectBaseTestCase {
+
+    private String artifact = "the-artifact";
+    private String issuerId = "urn:test:issuer";
+    private String rpId = "urn:test:rp";
+    
+    private CompactStorageServiceSAMLArtifactMapEntryFactory factory;
+    private SAMLObject samlObject;
+    
+    @BeforeMethod
+    protected void setUp() throws Exception {
+        factory = new CompactStorageServiceSAMLArtifactMapEntryFactory();
+        
+        samlObject = (SAMLObject) unmarshallElement("/org/opensaml/saml/saml1/core/SignedAssertion.xml");
+    }
+    
+    @DataProvider
+    public Object[][] thresholds() {
+        return new Object[][] {
+            new Object[] {0},
+            new Object[] {Integer.MAX_VALUE},
+        };
+    }
+
+    @Test(dataProvider="thresholds")
+    public void testWithSerialization(final int threshold) throws Exception {
+        factory.setCompressionThreshold(threshold);
+        factory.initialize();
+        
+        final SAMLArtifactMapEntry entry = factory.newEntry(artifact, issuerId, rpId, samlObject);
+        
+        final String s = factory.serialize(entry);
+        Assert.assertFalse(s.startsWith("<"));
+        
+        final SAMLArtifactMapEntry newEntry = factory.deserialize(
+                1, StorageServiceSAMLArtifactMap.STORAGE_CONTEXT, entry.getArtifact(), s, null);
+        
+        Assert.assertEquals(newEntry.getArtifact(), entry.getArtifact());
+        Assert.assertEquals(newEntry.getIssuerId(), entry.getIssuerId());
+        Assert.assertEquals(newEntry.getRelyingPartyId(), entry.getRelyingPartyId());
+        
+        final SAMLObject newMessage = newEntry.getSamlMessage();
+        Assert.assertSame(newEntry.getSamlMessage(), newMessage);
+        Assert.assertFalse(newMessage.hasParent());
+
+        final Document origDocument = samlObject.getDOM().getOwnerDocument();
+        origDocument.appendChild(samlObject.getDOM());
+        final Document newDocument = newMessage.getDOM().getOwnerDocument();
+        XMLAssertTestNG.assertXMLIdentical(new Diff(origDocument, newDocument), true);
+    }
+    
+    @Test
+    public void testCompressionReducesSize() throws Exception {
+        final SAMLArtifactMapEntry entry = factory.newEntry(artifact, issuerId, rpId, samlObject);
+        
+        factory.setCompressionThreshold(0);
+        final String compressed = factory.serialize(entry);
+        factory.setCompressionThreshold(Integer.MAX_VALUE);
+        final String uncompressed = factory.serialize(entry);
+        
+        Assert.assertTrue(compressed.length() < uncompressed.length());
+    }
+    
+    @Test
+    public void testLegacyFormat() throws Exception {
+        final StorageServiceSAMLArtifactMapEntryFactory legacyFactory = new StorageServiceSAMLArtifactMapEntryFactory();
+        final String s = legacyFactory.serialize(legacyFactory.newEntry(artifact, issuerId, rpId, samlObject));
+        
+        final SAMLArtifactMapEntry newEntry = factory.deserialize(
+                1, StorageServiceSAMLArtifactMap.STORAGE_CONTEXT, artifact, s, null);
+        Assert.assertEquals(newEntry.getIssuerId(), issuerId);
+        Assert.assertEquals(newEntry.getRelyingPartyId(), rpId);
+        Assert.assertNotNull(newEntry.getSamlMessage());
+    }
+    
+    @Test(expectedExceptions=IOException.class)
+    public void testInvalidBase64() throws Exception {
+        factory.deserialize(1, StorageServiceSAMLArtifactMap.STORAGE_CONTEXT, artifact, "#1!!!!", null);
+    }
+    
+    @Test(expectedExceptions=IOException.class)
+    public void testTruncated() throws Exception {
+        final String s = factory.serialize(factory.newEntry(artifact, issuerId, rpId, samlObject));
+        factory.deserialize(1, StorageServiceSAMLArtifactMap.STORAGE_CONTEXT, artifact, s.substring(0, 8), null);
+    }
+    
+    @Test(expectedExceptions=IOException.class)
+    public void testCorruptMessage() throws Exception {
+        final String s = buildCompactValue("<saml:Assertion xmlns:saml=\"urn:oasis:names:tc:SAML:1.0:assertion\">"
+                + "<saml:Conditions></saml:Assertion>");
+        factory.deserialize(1, StorageServiceSAMLArtifactMap.STORAGE_CONTEXT, artifact, s, null);
+    }
+    
+    @Test(expectedExceptions=IOException.class)
+    public void testMessageWithDTD() throws Exception {
+        final String s = buildCompactValue("<!DOCTYPE foo [<!ENTITY bar \"baz\">]><foo>&bar;</foo>");
+        factory.deserialize(1, StorageServiceSAMLArtifactMap.STORAGE_CONTEXT, artifact, s, null);
+    }
+    
+    /**
+     * Build a stored value in the compact format carrying the supplied uncompressed message.
+     * 
+     * @param message the serialized message
+     * 
+     * @return the stored value
+     * 
+     * @throws IOException if the value can not be built
+     */
+    private String buildCompactValue(final String message) throws IOException {
+        final ByteArrayOutputStream envelope = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(envelope)) {
+            out.writeByte(0);
+            out.writeUTF(issuerId);
+            out.writeUTF(rpId);
+            out.write(message.getBytes(StandardCharsets.UTF_8));
+        }
+        return "#1" + Base64.getEncoder().encodeToString(envelope.toByteArray());
+    }
+
+}
@@ -42,6 +42,7 @@ import org.opensaml.saml.common.xml.SAMLConstants;
 import org.opensaml.saml.criterion.BindingCriterion;
 import org.opensaml.saml.criterion.EndpointCriterion;
 import org.opensaml.saml.criterion.RoleDescriptorCriterion;
+import org.opensaml.saml.metadata.RoleDescriptorSnapshot;
 import org.opensaml.saml.saml2.metadata.AssertionConsumerService;
 import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
 import org.testng.Assert;
@@ -235,6 +236,66 @@ public class DefaultEndpointResolverTest extends XMLObjectBaseTestCase {
         Assert.assertEquals(eps.size(), 2);
     }
     
+    /** Resolution via the endpoint tables of a role snapshot matches resolution via the role. */
+    @Test
+    public void testSnapshot() throws UnmarshallingException, ResolverException {
+        endpointCrit.getEndpoint().setLocation(null);
+        endpointCrit.getEndpoint().setBinding(null);
+        final SPSSODescriptor role = loadMetadata("/org/opensaml/saml/common/binding/SPWithEndpoints.xml");
+        final SPSSODescriptor snapshotRole = loadMetadata("/org/opensaml/saml/common/binding/SPWithEndpoints.xml");
+        snapshotRole.getObjectMetadata().put(new RoleDescriptorSnapshot(snapshotRole));
+        
+        final RoleDescriptorSnapshot snapshot = RoleDescriptorSnapshot.get(snapshotRole);
+        Assert.assertNotNull(snapshot);
+        Assert.assertEquals(snapshot.getOrderedEndpoints(AssertionConsumerService.DEFAULT_ELEMENT_NAME).size(), 4);
+        Assert.assertEquals(snapshot.getOrderedEndpoints(AssertionConsumerService.DEFAULT_ELEMENT_NAME,
+                SAMLConstants.SAML2_POST_BINDING_URI).size(), 2);
+        
+        // Default.
+        AssertionConsumerService ep = resolver.resolveSingle(new CriteriaSet(endpointCrit,
+                new RoleDescriptorCriterion(snapshotRole)));
+        Assert.assertNotNull(ep);
+        Assert.assertEquals(ep.getIndex(), Integer.valueOf(4));
+        assertSameResolution(new CriteriaSet(endpointCrit, new RoleDescriptorCriterion(role)),
+                new CriteriaSet(endpointCrit, new RoleDescriptorCriterion(snapshotRole)));
+        
+        // Default for binding.
+        final BindingCriterion bindingCrit =
+                new BindingCriterion(Collections.singletonList(SAMLConstants.SAML2_POST_BINDING_URI));
+        assertSameResolution(new CriteriaSet(endpointCrit, new RoleDescriptorCriterion(role), bindingCrit),
+                new CriteriaSet(endpointCrit, new RoleDescriptorCriterion(snapshotRole), bindingCrit));
+        
+        // By index.
+        endpointCrit.getEndpoint().setIndex(2);
+        ep = resolver.resolveSingle(new CriteriaSet(endpointCrit, new RoleDescriptorCriterion(snapshotRole)));
+        Assert.assertNotNull(ep);
+        Assert.assertEquals(ep.getLocation(), LOCATION_POST);
+        endpointCrit.getEndpoint().setIndex(5);
+        Assert.assertNull(resolver.resolveSingle(new CriteriaSet(endpointCrit,
+                new RoleDescriptorCriterion(snapshotRole))));
+        
+        // By binding.
+        endpointCrit.getEndpoint().setIndex(null);
+        endpointCrit.getEndpoint().setBinding(SAMLConstants.SAML2_POST_BINDING_URI);
+        assertSameResolution(new CriteriaSet(endpointCrit, new RoleDescriptorCriterion(role)),
+                new CriteriaSet(endpointCrit, new RoleDescriptorCriterion(snapshotRole)));
+    }
+    
+    private void assertSameResolution(@Nonnull final CriteriaSet expected, @Nonnull final CriteriaSet actual)
+            throws ResolverException {
+        final List<String> expectedLocations = new ArrayList<>();
+        for (final AssertionConsumerService ep : resolver.resolve(expected)) {
+            expectedLocations.add(ep.getLocation());
+        }
+        final List<String> actualLocations = new ArrayList<>();
+        for (final AssertionConsumerService ep : resolver.resolve(actual)) {
+            actualLocations.add(ep.getLocation());
+        }
+        Assert.assertFalse(actualLocations.isEmpty());
+        Assert.assertEquals(actualLocations, expectedLocations);
+        Assert.assertEquals(resolver.resolveSingle(actual).getLocation(), expectedLocations.get(0));
+    }
+    
     @Nonnull private SPSSODescriptor loadMetadata(@Nonnull @NotEmpty final String path) throws UnmarshallingException {
         
         try {
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.metadata.resolver.filter.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+
+import org.opensaml.core.criterion.EntityIdCriterion;
+import org.opensaml.core.xml.XMLObjectBaseTestCase;
+import org.opensaml.saml.common.SAMLTestSupport;
+import org.opensaml.saml.criterion.EntityRoleCriterion;
+import org.opensaml.saml.metadata.EntityDescriptorSnapshot;
+import org.opensaml.saml.metadata.RoleDescriptorSnapshot;
+import org.opensaml.saml.metadata.resolver.filter.MetadataNodeProcessor;
+import org.opensaml.saml.metadata.resolver.impl.DOMMetadataResolver;
+import org.opensaml.saml.metadata.resolver.impl.PredicateRoleDescriptorResolver;
+import org.opensaml.saml.common.xml.SAMLConstants;
+import org.opensaml.saml.saml2.metadata.AssertionConsumerService;
+import org.opensaml.saml.saml2.metadata.Endpoint;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.saml.saml2.metadata.IDPSSODescriptor;
+import org.opensaml.saml.saml2.metadata.KeyDescriptor;
+import org.opensaml.saml.saml2.metadata.RoleDescriptor;
+import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
+import org.opensaml.saml.saml2.metadata.SingleLogoutService;
+import org.opensaml.saml.saml2.metadata.impl.SPSSODescriptorImpl;
+import org.opensaml.saml.security.impl.MetadataCredentialResolver;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.credential.UsageType;
+import org.opensaml.security.criteria.UsageCriterion;
+import org.opensaml.xmlsec.keyinfo.KeyInfoCredentialResolver;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+
+public class MetadataSnapshotProcessorTest extends XMLObjectBaseTestCase {
+    
+    private String idpEntityID = "http://idp.example.org/shibboleth";
+    
+    private String mdFileName = "/org/opensaml/saml/security/test1-metadata.xml";
+    
+    private DOMMetadataResolver metadataProvider;
+    
+    private KeyInfoCredentialResolver keyInfoResolver;
+    
+    @BeforeMethod
+    protected void setUp() throws Exception {
+        Document mdDoc = parserPool.parse(MetadataSnapshotProcessorTest.class.getResourceAsStream(mdFileName));
+        
+        keyInfoResolver = SAMLTestSupport.buildBasicInlineKeyInfoResolver();
+        
+        ArrayList<MetadataNodeProcessor> processors = new ArrayList<>();
+        processors.add(new MetadataSnapshotProcessor(keyInfoResolver));
+        
+        NodeProcessingMetadataFilter metadataFilter = new NodeProcessingMetadataFilter();
+        metadataFilter.setNodeProcessors(processors);
+        metadataFilter.initialize();
+        
+        metadataProvider = new DOMMetadataResolver(mdDoc.getDocumentElement());
+        metadataProvider.setMetadataFilter(metadataFilter);
+        metadataProvider.setId("test");
+        metadataProvider.initialize();
+    }
+    
+    @Test
+    public void testSnapshots() throws ResolverException {
+        EntityDescriptor entityDescriptor =
+                metadataProvider.resolveSingle(new CriteriaSet(new EntityIdCriterion(idpEntityID)));
+        Assert.assertNotNull(entityDescriptor);
+        
+        EntityDescriptorSnapshot snapshot = EntityDescriptorSnapshot.get(entityDescriptor);
+        Assert.assertNotNull(snapshot);
+        Assert.assertEquals(snapshot.getEntityID(), idpEntityID);
+        Assert.assertEquals(snapshot.getRoles().size(), entityDescriptor.getRoleDescriptors().size());
+        Assert.assertEquals(snapshot.getRoles(IDPSSODescriptor.DEFAULT_ELEMENT_NAME).size(),
+                entityDescriptor.getRoleDescriptors(IDPSSODescriptor.DEFAULT_ELEMENT_NAME).size());
+        
+        int allCredentials = 0;
+        for (RoleDescriptor role : entityDescriptor.getRoleDescriptors()) {
+            RoleDescriptorSnapshot roleSnapshot = RoleDescriptorSnapshot.get(role);
+            Assert.assertNotNull(roleSnapshot);
+            Assert.assertTrue(snapshot.getRoles().contains(roleSnapshot));
+            Assert.assertTrue(roleSnapshot.isCredentialsResolved());
+            Assert.assertSame(roleSnapshot.getCredentialResolver(), keyInfoResolver);
+            Assert.assertEquals(roleSnapshot.getEndpoints(), role.getEndpoints());
+            Assert.assertEquals(roleSnapshot.getSupportedProtocols().size(), role.getSupportedProtocols().size());
+            
+            int keyDescriptorCredentials = 0;
+            for (KeyDescriptor keyDescriptor : role.getKeyDescriptors()) {
+                keyDescriptorCredentials += keyDescriptor.getObjectMetadata().get(Credential.class).size();
+            }
+            Assert.assertEquals(roleSnapshot.getCredentials().size(), keyDescriptorCredentials);
+            allCredentials += keyDescriptorCredentials;
+            
+            for (Pair<UsageType, Credential> entry : roleSnapshot.getCredentials()) {
+                Assert.assertEquals(entry.getSecond().getUsageType(), entry.getFirst());
+                Assert.assertEquals(entry.getSecond().getEntityId(), idpEntityID);
+            }
+        }
+        Assert.assertTrue(allCredentials > 0);
+    }
+    
+    @Test
+    public void testNoKeyInfoResolver() throws Exception {
+        RoleDescriptor role = buildXMLObject(IDPSSODescriptor.DEFAULT_ELEMENT_NAME);
+        RoleDescriptorSnapshot snapshot = new RoleDescriptorSnapshot(role);
+        Assert.assertFalse(snapshot.isCredentialsResolved());
+        Assert.assertNull(snapshot.getCredentialResolver());
+        Assert.assertTrue(snapshot.getCredentials().isEmpty());
+        Assert.assertEquals(snapshot.getRoleType(), IDPSSODescriptor.DEFAULT_ELEMENT_NAME);
+        Assert.assertEquals(snapshot.getEndpoints(), Collections.emptyList());
+    }
+    
+    @Test
+    public void testInterleavedEndpoints() throws Exception {
+        final Endpoint acs1 = buildXMLObject(AssertionConsumerService.DEFAULT_ELEMENT_NAME);
+        final Endpoint slo = buildXMLObject(SingleLogoutService.DEFAULT_ELEMENT_NAME);
+        final Endpoint acs2 = buildXMLObject(AssertionConsumerService.DEFAULT_ELEMENT_NAME);
+        final List<Endpoint> interleaved = List.of(acs1, slo, acs2);
+        
+        final RoleDescriptor role = new SPSSODescriptorImpl(SAMLConstants.SAML20MD_NS,
+                SPSSODescriptor.DEFAULT_ELEMENT_LOCAL_NAME, SAMLConstants.SAML20MD_PREFIX) {
+            public List<Endpoint> getEndpoints() {
+                return interleaved;
+            }
+        };
+        
+        RoleDescriptorSnapshot snapshot = new RoleDescriptorSnapshot(role);
+        Assert.assertEquals(snapshot.getEndpoints(), interleaved);
+        Assert.assertEquals(snapshot.getEndpoints(AssertionConsumerService.DEFAULT_ELEMENT_NAME), List.of(acs1, acs2));
+        Assert.assertEquals(snapshot.getEndpoints(SingleLogoutService.DEFAULT_ELEMENT_NAME), List.of(slo));
+    }
+    
+    @Test
+    public void testCredentialResolution() throws Exception {
+        final AtomicInteger extractions = new AtomicInteger();
+        MetadataCredentialResolver mdCredResolver = buildCredentialResolver(keyInfoResolver, extractions, false);
+        
+        CriteriaSet criteriaSet = new CriteriaSet(new EntityIdCriterion(idpEntityID),
+                new EntityRoleCriterion(IDPSSODescriptor.DEFAULT_ELEMENT_NAME));
+        
+        List<Credential> resolved = new ArrayList<>();
+        mdCredResolver.resolve(criteriaSet).forEach(resolved::add);
+        Assert.assertEquals(resolved.size(), 3);
+        
+        criteriaSet.add(new UsageCriterion(UsageType.SIGNING));
+        resolved.clear();
+        mdCredResolver.resolve(criteriaSet).forEach(resolved::add);
+        Assert.assertEquals(resolved.size(), 2);
+        
+        // The snapshot was built with the same KeyInfo resolver, so the key descriptors are never consulted.
+        Assert.assertEquals(extractions.get(), 0);
+    }
+    
+    @Test
+    public void testCredentialResolutionOtherKeyInfoResolver() throws Exception {
+        final AtomicInteger extractions = new AtomicInteger();
+        MetadataCredentialResolver mdCredResolver =
+                buildCredentialResolver(SAMLTestSupport.buildBasicInlineKeyInfoResolver(), extractions, false);
+        
+        CriteriaSet criteriaSet = new CriteriaSet(new EntityIdCriterion(idpEntityID),
+                new EntityRoleCriterion(IDPSSODescriptor.DEFAULT_ELEMENT_NAME));
+        
+        List<Credential> resolved = new ArrayList<>();
+        mdCredResolver.resolve(criteriaSet).forEach(resolved::add);
+        Assert.assertEquals(resolved.size(), 3);
+        Assert.assertTrue(extractions.get() > 0);
+    }
+    
+    @Test
+    public void testCredentialResolutionOverriddenUsageMatch() throws Exception {
+        MetadataCredentialResolver mdCredResolver = buildCredentialResolver(keyInfoResolver, new AtomicInteger(), true);
+        
+        CriteriaSet criteriaSet = new CriteriaSet(new EntityIdCriterion(idpEntityID),
+                new EntityRoleCriterion(IDPSSODescriptor.DEFAULT_ELEMENT_NAME));
+        
+        List<Credential> resolved = new ArrayList<>();
+        mdCredResolver.resolve(criteriaSet).forEach(resolved::add);
+        Assert.assertTrue(resolved.isEmpty());
+    }
+    
+    /**
+     * Build a metadata credential resolver over the test metadata.
+     * 
+     * @param resolver the KeyInfo credential resolver to use
+     * @param extractions counter of calls to extract credentials from a key descriptor
+     * @param rejectUsage whether the resolver's usage match should reject every key descriptor
+     * 
+     * @return the initialized resolver
+     * 
+     * @throws Exception if the resolver cannot be initialized
+     */
+    private MetadataCredentialResolver buildCredentialResolver(final KeyInfoCredentialResolver resolver,
+            final AtomicInteger extractions, final boolean rejectUsage) throws Exception {
+        PredicateRoleDescriptorResolver roleResolver = new PredicateRoleDescriptorResolver(metadataProvider);
+        roleResolver.initialize();
+        
+        MetadataCredentialResolver mdCredResolver = new MetadataCredentialResolver() {
+            protected void extractCredentials(final Collection<Credential> accumulator,
+                    final KeyDescriptor keyDescriptor, final String entityID, final UsageType mdUsage)
+                            throws ResolverException {
+                extractions.incrementAndGet();
+                super.extractCredentials(accumulator, keyDescriptor, entityID, mdUsage);
+            }
+            
+            protected boolean matchUsage(final UsageType metadataUsage, final UsageType criteriaUsage) {
+                return !rejectUsage && super.matchUsage(metadataUsage, criteriaUsage);
+            }
+        };
+        mdCredResolver.setRoleDescriptorResolver(roleResolver);
+        mdCredResolver.setKeyInfoCredentialResolver(resolver);
+        mdCredResolver.initialize();
+        return mdCredResolver;
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.saml.metadata.resolver.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+
+import org.opensaml.core.criterion.EntityIdCriterion;
+import org.opensaml.core.xml.XMLObjectBaseTestCase;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+/**
+ * Test of {@link CompositeMetadataResolver}.
+ */
+public class CompositeMetadataResolverTest extends XMLObjectBaseTestCase {
+
+    private static final String INCOMMON_ENTITY_ID = "urn:mace:incommon:washington.edu";
+
+    private static final String SWITCH_ENTITY_ID = "urn:mace:switch.ch:SWITCHaai:ethz.ch";
+
+    private ExecutorService executor;
+
+    private FilesystemMetadataResolver incommon1;
+
+    private FilesystemMetadataResolver incommon2;
+
+    private FilesystemMetadataResolver switchaai;
+
+    @BeforeClass
+    protected void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        incommon1 = buildResolver("incommon1", "/org/opensaml/saml/saml2/metadata/InCommon-metadata.xml");
+        incommon2 = buildResolver("incommon2", "/org/opensaml/saml/saml2/metadata/InCommon-metadata.xml");
+        switchaai = buildResolver("switch", "/org/opensaml/saml/saml2/metadata/metadata.switchaai_signed.xml");
+    }
+
+    @AfterClass
+    protected void tearDown() {
+        executor.shutdownNow();
+        incommon1.destroy();
+        incommon2.destroy();
+        switchaai.destroy();
+    }
+
+    @DataProvider(name = "parallel")
+    public Object[][] parallel() {
+        return new Object[][] {{Boolean.FALSE}, {Boolean.TRUE}};
+    }
+
+    @Test(dataProvider = "parallel")
+    public void resolveSingle(final Boolean parallel) throws Exception {
+        final CompositeMetadataResolver resolver = buildComposite(parallel);
+
+        EntityDescriptor descriptor =
+                resolver.resolveSingle(new CriteriaSet(new EntityIdCriterion(SWITCH_ENTITY_ID)));
+        Assert.assertNotNull(descriptor);
+        Assert.assertEquals(descriptor.getEntityID(), SWITCH_ENTITY_ID);
+
+        final CriteriaSet criteria = new CriteriaSet(new EntityIdCriterion(INCOMMON_ENTITY_ID));
+        descriptor = resolver.resolveSingle(criteria);
+        Assert.assertNotNull(descriptor);
+        // First child in order wins, even if a later one answers too.
+        Assert.assertSame(descriptor, incommon1.resolveSingle(criteria));
+
+        Assert.assertNull(resolver.resolveSingle(new CriteriaSet(new EntityIdCriterion("urn:example:none"))));
+
+        Assert.assertEquals(getHits(resolver, "incommon1"), 1);
+        Assert.assertEquals(getHits(resolver, "switch"), 1);
+        Assert.assertEquals(getLookups(resolver, "incommon1"), 3);
+        resolver.destroy();
+    }
+
+    @Test(dataProvider = "parallel")
+    public void resolve(final Boolean parallel) throws Exception {
+        final CompositeMetadataResolver resolver = buildComposite(parallel);
+
+        int count = 0;
+        for (final EntityDescriptor descriptor
+                : resolver.resolve(new CriteriaSet(new EntityIdCriterion(INCOMMON_ENTITY_ID)))) {
+            Assert.assertEquals(descriptor.getEntityID(), INCOMMON_ENTITY_ID);
+            count++;
+        }
+        Assert.assertEquals(count, 2);
+
+        Assert.assertFalse(
+                resolver.resolve(new CriteriaSet(new EntityIdCriterion("urn:example:none"))).iterator().hasNext());
+        Assert.assertEquals(getHits(resolver, "incommon2"), 1);
+        resolver.destroy();
+    }
+
+    @Test
+    public void resolveCancelsOutstandingAfterHit() throws Exception {
+        final List<Runnable> queue = new ArrayList<>();
+        final CompositeMetadataResolver resolver =
+                buildComposite(List.of(incommon1, incommon2, switchaai), incommon1, queue::add);
+        
+        final Iterator<EntityDescriptor> iterator =
+                resolver.resolve(new CriteriaSet(new EntityIdCriterion(INCOMMON_ENTITY_ID))).iterator();
+        Assert.assertEquals(queue.size(), 2);
+        Assert.assertEquals(iterator.next().getEntityID(), INCOMMON_ENTITY_ID);
+        
+        // The queued queries were cancelled once the first child answered, so never reach the children.
+        queue.forEach(Runnable::run);
+        Assert.assertEquals(getLookups(resolver, "incommon2"), 0);
+        Assert.assertEquals(getLookups(resolver, "switch"), 0);
+        
+        // Continuing the iteration consults the remaining children directly.
+        Assert.assertTrue(iterator.hasNext());
+        Assert.assertEquals(iterator.next().getEntityID(), INCOMMON_ENTITY_ID);
+        Assert.assertFalse(iterator.hasNext());
+        Assert.assertEquals(getLookups(resolver, "incommon2"), 1);
+        resolver.destroy();
+    }
+    
+    @Test
+    public void resolveCancelsOutstandingAfterError() throws Exception {
+        final File mdFile = new File(CompositeMetadataResolverTest.class
+                .getResource("/org/opensaml/saml/saml2/metadata/InCommon-metadata.xml").toURI());
+        final FilesystemMetadataResolver failing = new FilesystemMetadataResolver(mdFile) {
+            public Iterable<EntityDescriptor> resolve(final CriteriaSet criteria) throws ResolverException {
+                throw new ResolverException("Failed");
+            }
+        };
+        failing.setParserPool(parserPool);
+        failing.setId("failing");
+        failing.initialize();
+        
+        final List<Runnable> queue = new ArrayList<>();
+        final CompositeMetadataResolver resolver = buildComposite(List.of(failing, incommon2), failing, queue::add);
+        
+        Assert.assertFalse(
+                resolver.resolve(new CriteriaSet(new EntityIdCriterion(INCOMMON_ENTITY_ID))).iterator().hasNext());
+        queue.forEach(Runnable::run);
+        Assert.assertEquals(getLookups(resolver, "incommon2"), 0);
+        resolver.destroy();
+        failing.destroy();
+    }
+
+    private CompositeMetadataResolver buildComposite(final boolean parallel) throws Exception {
+        return buildComposite(List.of(incommon1, incommon2, switchaai), incommon1, parallel ? executor : null);
+    }
+    
+    private CompositeMetadataResolver buildComposite(final List<MetadataResolver> children,
+            final MetadataResolver sequential, final Executor parallelExecutor) throws Exception {
+        final CompositeMetadataResolver resolver = new CompositeMetadataResolver() {
+            protected boolean isParallelCandidate(final MetadataResolver child) {
+                return child != sequential;
+            }
+        };
+        resolver.setId("composite");
+        resolver.setResolvers(children);
+        resolver.setParallelExecutor(parallelExecutor);
+        resolver.initialize();
+        return resolver;
+    }
+
+    private FilesystemMetadataResolver buildResolver(final String id, final String path) throws Exception {
+        final File mdFile = new File(CompositeMetadataResolverTest.class.getResource(path).toURI());
+        final FilesystemMetadataResolver resolver = new FilesystemMetadataResolver(mdFile);
+        resolver.setParserPool(parserPool);
+        // metadata.switchaai_signed.xml has an expired validUntil
+        resolver.setRequireValidMetadata(false);
+        resolver.setId(id);
+        resolver.initialize();
+        return resolver;
+    }
+
+    private long getHits(final CompositeMetadataResolver resolver, final String id) {
+        return ((Meter) resolver.getMetrics().get(CompositeMetadataResolver.METRIC_METER_HITS_PREFIX + id))
+                .getCount();
+    }
+
+    private long getLookups(final CompositeMetadataResolver resolver, final String id) {
+        return ((Timer) resolver.getMetrics().get(CompositeMetadataResolver.METRIC_TIMER_RESOLVE_PREFIX + id))
+                .getCount();
+    }
+
+}
@@ -21,6 +21,10 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
@@ -234,4 +238,163 @@ public class FilesystemMetadataResolverTest extends XMLObjectBaseTestCase {
         EntityDescriptor entity = metadataProvider.resolveSingle(new CriteriaSet(new EntityIdCriterion("https://idp.example.org")));
         Assert.assertNull(entity);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Tests that a file whose modification time changes, but whose content does not, is not reprocessed.
+     * 
+     * @throws IOException 
+     * @throws ResolverException
+     * @throws ComponentInitializationException 
+     */
+    @Test
+    public void testUnchangedContent() throws IOException, ResolverException, ComponentInitializationException {
+        File targetFile = new File(System.getProperty("java.io.tmpdir"), "filesystem-md-provider-unchanged.xml");
+        if (targetFile.exists()) {
+            Assert.assertTrue(targetFile.delete());
+        }
+        Files.copy(mdFile, targetFile);
+        
+        try {
+            metadataProvider = new FilesystemMetadataResolver(targetFile);
+            metadataProvider.setParserPool(parserPool);
+            metadataProvider.setId("test");
+            metadataProvider.initialize();
+            
+            final Instant lastUpdate = metadataProvider.getLastUpdate();
+            Assert.assertNotNull(lastUpdate);
+            Assert.assertTrue(targetFile.setLastModified(System.currentTimeMillis() + 5000));
+            
+            metadataProvider.refresh();
+            Assert.assertEquals(metadataProvider.getLastUpdate(), lastUpdate);
+            Assert.assertTrue(metadataProvider.wasLastRefreshSuccess());
+            Assert.assertNotNull(metadataProvider.resolveSingle(criteriaSet));
+        } finally {
+            metadataProvider.destroy();
+            targetFile.delete();
+        }
+    }
+    
+    /**
+     * Tests that a file whose content was found to be unchanged is not read again until it is next modified.
+     * 
+     * @throws IOException 
+     * @throws ResolverException
+     * @throws ComponentInitializationException 
+     */
+    @Test
+    public void testUnchangedContentNotReread() throws IOException, ResolverException,
+            ComponentInitializationException {
+        File targetFile = new File(System.getProperty("java.io.tmpdir"), "filesystem-md-provider-reread.xml");
+        if (targetFile.exists()) {
+            Assert.assertTrue(targetFile.delete());
+        }
+        Files.copy(mdFile, targetFile);
+        
+        final AtomicInteger reads = new AtomicInteger();
+        try {
+            metadataProvider = new FilesystemMetadataResolver(targetFile) {
+                protected byte[] fileToByteArray(final File file) throws IOException {
+                    reads.incrementAndGet();
+                    return super.fileToByteArray(file);
+                }
+            };
+            metadataProvider.setParserPool(parserPool);
+            metadataProvider.setId("test");
+            metadataProvider.initialize();
+            Assert.assertEquals(reads.get(), 1);
+            
+            final Instant lastUpdate = metadataProvider.getLastUpdate();
+            Assert.assertTrue(targetFile.setLastModified(System.currentTimeMillis() + 5000));
+            
+            metadataProvider.refresh();
+            Assert.assertEquals(reads.get(), 2);
+            Assert.assertEquals(metadataProvider.getLastUpdate(), lastUpdate);
+            
+            metadataProvider.refresh();
+            Assert.assertEquals(reads.get(), 2);
+            Assert.assertEquals(metadataProvider.getLastUpdate(), lastUpdate);
+            
+            Assert.assertTrue(targetFile.setLastModified(System.currentTimeMillis() + 10000));
+            metadataProvider.refresh();
+            Assert.assertEquals(reads.get(), 3);
+            Assert.assertTrue(metadataProvider.wasLastRefreshSuccess());
+        } finally {
+            metadataProvider.destroy();
+            targetFile.delete();
+        }
+    }
+    
+    /**
+     * Tests that changes to the file are picked up by the watch service without a scheduled refresh.
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testWatchForChanges() throws Exception {
+        File targetFile = new File(System.getProperty("java.io.tmpdir"), "filesystem-md-provider-watch.xml");
+        if (targetFile.exists()) {
+            Assert.assertTrue(targetFile.delete());
+        }
+        Files.copy(mdFile, targetFile);
+        
+        final String switchEntityID = "urn:mace:switch.ch:SWITCHaai:ethz.ch";
+        final CriteriaSet switchCriteria = new CriteriaSet(new EntityIdCriterion(switchEntityID));
+        
+        try {
+            metadataProvider = new FilesystemMetadataResolver(targetFile);
+            metadataProvider.setParserPool(parserPool);
+            metadataProvider.setId("test");
+            // metadata.switchaai_signed.xml has an expired validUntil
+            metadataProvider.setRequireValidMetadata(false);
+            metadataProvider.setMinRefreshDelay(Duration.ofHours(1));
+            metadataProvider.setMaxRefreshDelay(Duration.ofHours(1));
+            metadataProvider.setWatchForChanges(true);
+            metadataProvider.setChangeNotificationDelay(Duration.ofMillis(100));
+            metadataProvider.initialize();
+            
+            Assert.assertNotNull(metadataProvider.resolveSingle(criteriaSet));
+            Assert.assertNull(metadataProvider.resolveSingle(switchCriteria));
+            
+            URL mdURL2 = FilesystemMetadataResolverTest.class
+                    .getResource("/org/opensaml/saml/saml2/metadata/metadata.switchaai_signed.xml");
+            // Filesystem timestamp may only have 1-second precision.
+            Thread.sleep(1100);
+            Files.copy(new File(mdURL2.toURI()), targetFile);
+            
+            EntityDescriptor descriptor = null;
+            for (int i = 0; i < 150 && descriptor == null; i++) {
+                Thread.sleep(100);
+                descriptor = metadataProvider.resolveSingle(switchCriteria);
+            }
+            Assert.assertNotNull(descriptor, "Change to metadata file was not picked up");
+            Assert.assertNull(metadataProvider.resolveSingle(criteriaSet));
+        } finally {
+            metadataProvider.destroy();
+            targetFile.delete();
+        }
+    }
+    
+    /**
+     * Tests reading and writing files in slices.
+     * 
+     * @throws IOException 
+     */
+    @Test
+    public void testFileByteArrayRoundTrip() throws IOException {
+        File targetFile = File.createTempFile("filesystem-md-provider-roundtrip", ".bin");
+        try {
+            final byte[] data = new byte[200 * 1024 + 17];
+            new Random(42).nextBytes(data);
+            
+            metadataProvider.byteArrayToFile(data, targetFile);
+            Assert.assertEquals(targetFile.length(), data.length);
+            Assert.assertEquals(metadataProvider.fileToByteArray(targetFile), data);
+            
+            metadataProvider.byteArrayToFile(new byte[0], targetFile);
+            Assert.assertEquals(targetFile.length(), 0);
+            Assert.assertEquals(metadataProvider.fileToByteArray(targetFile).length, 0);
+        } finally {
+            targetFile.delete();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.saml.metadata.resolver.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+import javax.xml.namespace.QName;
+
+import net.shibboleth.utilities.java.support.logic.ConstraintViolationException;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+
+import org.opensaml.core.criterion.EntityIdCriterion;
+import org.opensaml.saml.criterion.EntityRoleCriterion;
+import org.opensaml.saml.metadata.criteria.entity.impl.EvaluableEntityRoleEntityDescriptorCriterion;
+import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Gauge;
+
+/**
+ * Test of {@link PredicateEvaluationPlanner}.
+ */
+public class PredicateEvaluationPlannerTest {
+    
+    private final List<Integer> candidates = List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+    
+    @Test
+    public void testFilteredIterable() {
+        final PredicateEvaluationPlanner<Integer> planner = new PredicateEvaluationPlanner<>(0);
+        final List<Predicate<Integer>> predicates = List.of(new EvenPredicate(), new SmallPredicate());
+        
+        Assert.assertEquals(toList(planner.getFilteredIterable(candidates, predicates, false, false)),
+                List.of(2, 4));
+        Assert.assertEquals(toList(planner.getFilteredIterable(candidates, predicates, true, false)),
+                List.of(1, 2, 3, 4, 6, 8, 10));
+        
+        Assert.assertEquals(toList(planner.getFilteredIterable(candidates, Collections.emptyList(), false, false)),
+                candidates);
+        Assert.assertFalse(planner.getFilteredIterable(candidates, Collections.emptyList(), false, true)
+                .iterator().hasNext());
+    }
+    
+    @Test
+    public void testOrderBySelectivity() {
+        final PredicateEvaluationPlanner<Integer> planner = new PredicateEvaluationPlanner<>(5, 1, 100);
+        final EvenPredicate even = new EvenPredicate();
+        final SmallPredicate small = new SmallPredicate();
+        
+        // Without statistics the original order is preserved.
+        Assert.assertEquals(planner.order(List.of(even, small), false), List.of(even, small));
+        
+        // Gather statistics: 'even' passes 1/2, 'small' passes 2/5 of the candidates.
+        toList(planner.getFilteredIterable(candidates, List.of(even), false, false));
+        toList(planner.getFilteredIterable(candidates, List.of(small), false, false));
+        Assert.assertEquals(even.count, 10);
+        Assert.assertEquals(small.count, 10);
+        
+        final Gauge<?> passRate = (Gauge<?>) planner.getMetrics().get(
+                PredicateEvaluationPlanner.METRIC_GAUGE_PASS_RATE_PREFIX + SmallPredicate.class.getName());
+        Assert.assertNotNull(passRate);
+        Assert.assertEquals(passRate.getValue(), 0.4);
+        
+        // A predicate which rejects every candidate is never decisive when any may be satisfied.
+        final Predicate<Integer> never = new NeverPredicate();
+        toList(planner.getFilteredIterable(candidates, List.of(never), false, false));
+        Assert.assertEquals(planner.order(List.of(never, even, small), true).get(2), never);
+        
+        // A predicate which rejects every candidate is evaluated before one which accepts every candidate, so the
+        // latter is never evaluated when all must be satisfied.
+        final AlwaysPredicate always = new AlwaysPredicate();
+        toList(planner.getFilteredIterable(candidates, List.of(always), false, false));
+        Assert.assertEquals(planner.order(List.of(always, never), false), List.of(never, always));
+        always.count = 0;
+        Assert.assertTrue(toList(planner.getFilteredIterable(candidates, List.of(always, never), false, false))
+                .isEmpty());
+        Assert.assertEquals(always.count, 0);
+    }
+    
+    @Test
+    public void testSampling() {
+        final PredicateEvaluationPlanner<Integer> planner = new PredicateEvaluationPlanner<>(0, 4, 100);
+        final SmallPredicate small = new SmallPredicate();
+        
+        // Every candidate is evaluated, but only 1, 5 and 9 are sampled.
+        Assert.assertEquals(toList(planner.getFilteredIterable(candidates, List.of(small), false, false)),
+                List.of(1, 2, 3, 4));
+        Assert.assertEquals(small.count, 10);
+        
+        final Gauge<?> passRate = (Gauge<?>) planner.getMetrics().get(
+                PredicateEvaluationPlanner.METRIC_GAUGE_PASS_RATE_PREFIX + SmallPredicate.class.getName());
+        Assert.assertNotNull(passRate);
+        Assert.assertEquals((Double) passRate.getValue(), 1.0 / 3, 1e-9);
+    }
+    
+    @Test
+    public void testSettledStatistics() {
+        final PredicateEvaluationPlanner<Integer> planner = new PredicateEvaluationPlanner<>(0, 1, 10);
+        final EvenPredicate even = new EvenPredicate();
+        
+        toList(planner.getFilteredIterable(candidates, List.of(even), false, false));
+        final Gauge<?> passRate = (Gauge<?>) planner.getMetrics().get(
+                PredicateEvaluationPlanner.METRIC_GAUGE_PASS_RATE_PREFIX + EvenPredicate.class.getName());
+        Assert.assertNotNull(passRate);
+        Assert.assertEquals(passRate.getValue(), 0.5);
+        
+        // Once settled, the predicate is still evaluated but no longer recorded.
+        Assert.assertEquals(toList(planner.getFilteredIterable(List.of(2, 4, 6), List.of(even), false, false)),
+                List.of(2, 4, 6));
+        Assert.assertEquals(even.count, 13);
+        Assert.assertEquals(passRate.getValue(), 0.5);
+    }
+    
+    @Test(expectedExceptions = ConstraintViolationException.class)
+    public void testInvalidMaximumSamples() {
+        new PredicateEvaluationPlanner<Integer>(10, 1, 5);
+    }
+    
+    @Test
+    public void testIndexCriteria() {
+        final PredicateEvaluationPlanner<Integer> planner = new PredicateEvaluationPlanner<>();
+        final QName role = SPSSODescriptor.DEFAULT_ELEMENT_NAME;
+        final CriteriaSet criteria = new CriteriaSet(new EntityIdCriterion("foo"),
+                new EvaluableEntityRoleEntityDescriptorCriterion(role));
+        
+        Assert.assertNull(planner.getIndexCriteria(criteria, false));
+        
+        planner.registerIndexCriterionMapping(EvaluableEntityRoleEntityDescriptorCriterion.class,
+                criterion -> new EntityRoleCriterion(criterion.getRole()));
+        
+        final CriteriaSet indexCriteria = planner.getIndexCriteria(criteria, false);
+        Assert.assertNotNull(indexCriteria);
+        Assert.assertEquals(indexCriteria.size(), 1);
+        Assert.assertEquals(indexCriteria.get(EntityRoleCriterion.class).getRole(), role);
+        
+        Assert.assertNull(planner.getIndexCriteria(criteria, true));
+        Assert.assertNull(planner.getIndexCriteria(new CriteriaSet(new EntityIdCriterion("foo")), false));
+    }
+    
+    private List<Integer> toList(final Iterable<Integer> iterable) {
+        final List<Integer> result = new ArrayList<>();
+        iterable.forEach(result::add);
+        return result;
+    }
+    
+    private static class EvenPredicate implements Predicate<Integer> {
+        
+        private int count;
+
+        public boolean test(final Integer input) {
+            count++;
+            return input % 2 == 0;
+        }
+    }
+    
+    private static class SmallPredicate implements Predicate<Integer> {
+        
+        private int count;
+
+        public boolean test(final Integer input) {
+            count++;
+            return input <= 4;
+        }
+    }
+    
+    private static class AlwaysPredicate implements Predicate<Integer> {
+        
+        private int count;
+
+        public boolean test(final Integer input) {
+            count++;
+            return true;
+        }
+    }
+    
+    private static class NeverPredicate implements Predicate<Integer> {
+
+        public boolean test(final Integer input) {
+            return false;
+        }
+    }
+    
+}
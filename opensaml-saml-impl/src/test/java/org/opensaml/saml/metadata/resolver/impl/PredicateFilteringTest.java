@@ -19,19 +19,25 @@ package org.opensaml.saml.metadata.resolver.impl;
 
 import java.io.File;
 import java.net.URL;
+import java.util.Collections;
 import java.util.Set;
 
 import org.opensaml.core.criterion.EntityIdCriterion;
+import org.opensaml.core.criterion.SatisfyAnyCriterion;
 import org.opensaml.core.xml.XMLObjectBaseTestCase;
 import org.opensaml.saml.criterion.EntityRoleCriterion;
+import org.opensaml.saml.ext.saml2mdquery.AttributeQueryDescriptorType;
 import org.opensaml.saml.metadata.criteria.entity.impl.EvaluableEntityRoleEntityDescriptorCriterion;
+import org.opensaml.saml.metadata.resolver.index.impl.RoleMetadataIndex;
 import org.opensaml.saml.saml2.metadata.EntityDescriptor;
 import org.opensaml.saml.saml2.metadata.IDPSSODescriptor;
+import org.opensaml.saml.saml2.metadata.RoleDescriptor;
 import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.codahale.metrics.Meter;
 import com.google.common.collect.Sets;
 
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
@@ -145,4 +151,71 @@ public class PredicateFilteringTest extends XMLObjectBaseTestCase {
         Assert.assertEquals(descriptors.size(), 0);
     }
 
+    @Test
+    public void testResolveByEvaluableRoleViaMappedIndex() throws ResolverException,
+            ComponentInitializationException {
+        metadataProvider.setIndexes(Collections.singleton(new RoleMetadataIndex()));
+        metadataProvider.setResolveViaPredicatesOnly(true);
+        metadataProvider.initialize();
+        
+        final PredicateEvaluationPlanner<EntityDescriptor> planner = metadataProvider.getPredicateEvaluationPlanner();
+        
+        Set<EntityDescriptor> descriptors;
+        
+        criteriaSet.clear();
+        criteriaSet.add(new EvaluableEntityRoleEntityDescriptorCriterion(IDPSSODescriptor.DEFAULT_ELEMENT_NAME));
+        descriptors = Sets.newHashSet(metadataProvider.resolve(criteriaSet));
+        
+        Assert.assertEquals(descriptors.size(), 15);
+        for (EntityDescriptor descriptor : descriptors) {
+            Assert.assertTrue(descriptor.getRoleDescriptors(IDPSSODescriptor.DEFAULT_ELEMENT_NAME).size() > 0);
+        }
+        Assert.assertEquals(((Meter) planner.getMetrics().get(
+                PredicateEvaluationPlanner.METRIC_METER_PLAN_MAPPED_INDEX)).getCount(), 1);
+        Assert.assertEquals(((Meter) planner.getMetrics().get(
+                PredicateEvaluationPlanner.METRIC_METER_PLAN_SCAN)).getCount(), 0);
+        
+        // The index cannot be used when any predicate may be satisfied.
+        criteriaSet.add(new SatisfyAnyCriterion());
+        descriptors = Sets.newHashSet(metadataProvider.resolve(criteriaSet));
+        
+        Assert.assertEquals(descriptors.size(), 15);
+        Assert.assertEquals(((Meter) planner.getMetrics().get(
+                PredicateEvaluationPlanner.METRIC_METER_PLAN_SCAN)).getCount(), 1);
+    }
+    
+    @Test
+    public void testResolveByEvaluableSchemaTypeViaMappedIndex() throws Exception {
+        final URL mdURL = FilesystemMetadataResolverTest.class
+                .getResource("/org/opensaml/saml/saml2/metadata/support/metadata-AttributeConsumingService.xml");
+        metadataProvider = new FilesystemMetadataResolver(new File(mdURL.toURI()));
+        metadataProvider.setParserPool(parserPool);
+        metadataProvider.setId("test");
+        metadataProvider.setIndexes(Collections.singleton(new RoleMetadataIndex()));
+        metadataProvider.setResolveViaPredicatesOnly(true);
+        metadataProvider.initialize();
+        
+        final PredicateEvaluationPlanner<EntityDescriptor> planner = metadataProvider.getPredicateEvaluationPlanner();
+        
+        Set<EntityDescriptor> descriptors;
+        
+        // The role is an md:RoleDescriptor with an xsi:type, so must be found by both names.
+        criteriaSet.clear();
+        criteriaSet.add(new EvaluableEntityRoleEntityDescriptorCriterion(AttributeQueryDescriptorType.TYPE_NAME));
+        descriptors = Sets.newHashSet(metadataProvider.resolve(criteriaSet));
+        
+        Assert.assertEquals(descriptors.size(), 1);
+        Assert.assertEquals(descriptors.iterator().next().getEntityID(), "urn:test:entity:A");
+        
+        criteriaSet.clear();
+        criteriaSet.add(new EvaluableEntityRoleEntityDescriptorCriterion(RoleDescriptor.DEFAULT_ELEMENT_NAME));
+        descriptors = Sets.newHashSet(metadataProvider.resolve(criteriaSet));
+        
+        Assert.assertEquals(descriptors.size(), 1);
+        Assert.assertEquals(descriptors.iterator().next().getEntityID(), "urn:test:entity:A");
+        
+        Assert.assertEquals(((Meter) planner.getMetrics().get(
+                PredicateEvaluationPlanner.METRIC_METER_PLAN_MAPPED_INDEX)).getCount(), 2);
+    }
+
 }
@@ -17,6 +17,7 @@
 
 package org.opensaml.saml.metadata.resolver.impl;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.annotation.Nonnull;
@@ -27,9 +28,13 @@ import org.opensaml.saml.common.xml.SAMLConstants;
 import org.opensaml.saml.criterion.EntityRoleCriterion;
 import org.opensaml.saml.criterion.ProtocolCriterion;
 import org.opensaml.saml.ext.saml2mdquery.AttributeQueryDescriptorType;
+import org.opensaml.saml.metadata.EntityDescriptorSnapshot;
 import org.opensaml.saml.metadata.criteria.role.EvaluableRoleDescriptorCriterion;
 import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.metadata.resolver.filter.FilterException;
 import org.opensaml.saml.metadata.resolver.filter.MetadataFilter;
+import org.opensaml.saml.metadata.resolver.filter.impl.MetadataSnapshotProcessor;
+import org.opensaml.saml.saml2.metadata.AttributeAuthorityDescriptor;
 import org.opensaml.saml.saml2.metadata.EntityDescriptor;
 import org.opensaml.saml.saml2.metadata.RoleDescriptor;
 import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
@@ -370,6 +375,44 @@ public class PredicateRoleDescriptorResolverTest extends XMLObjectBaseTestCase {
         Assert.assertEquals(6, count, "Resolved unexpected number of RoleDescriptors");
     }
 
+    @Test
+    public void testSnapshotIndexedRoles() throws ResolverException, ComponentInitializationException,
+            FilterException {
+        EntityDescriptor entityDescriptor = buildTestDescriptor();
+        new MetadataSnapshotProcessor().process(entityDescriptor);
+        EntityDescriptorSnapshot snapshot = EntityDescriptorSnapshot.get(entityDescriptor);
+        Assert.assertNotNull(snapshot);
+        
+        PredicateRoleDescriptorResolver roleResolver = 
+                new PredicateRoleDescriptorResolver(new StaticMetadataResolver(Lists.newArrayList(entityDescriptor)));
+        roleResolver.setRequireValidMetadata(false);
+        roleResolver.initialize();
+        
+        List<RoleDescriptor> roleDescriptors = new ArrayList<>();
+        roleResolver.resolve(new CriteriaSet(new EntityRoleCriterion(SPSSODescriptor.DEFAULT_ELEMENT_NAME),
+                new ProtocolCriterion(SAMLConstants.SAML20P_NS))).forEach(roleDescriptors::add);
+        Assert.assertEquals(roleDescriptors, entityDescriptor.getRoleDescriptors(
+                SPSSODescriptor.DEFAULT_ELEMENT_NAME, SAMLConstants.SAML20P_NS));
+        Assert.assertEquals(roleDescriptors.size(), 1);
+        
+        roleDescriptors = new ArrayList<>();
+        roleResolver.resolve(new CriteriaSet(new EntityRoleCriterion(SPSSODescriptor.DEFAULT_ELEMENT_NAME)))
+                .forEach(roleDescriptors::add);
+        Assert.assertEquals(roleDescriptors, entityDescriptor.getRoleDescriptors(
+                SPSSODescriptor.DEFAULT_ELEMENT_NAME));
+        Assert.assertEquals(roleDescriptors.size(), 2);
+        
+        // Roles are indexed under both their element name and their schema type.
+        Assert.assertEquals(snapshot.getRoleDescriptors(AttributeQueryDescriptorType.TYPE_NAME),
+                entityDescriptor.getRoleDescriptors(AttributeQueryDescriptorType.TYPE_NAME));
+        Assert.assertEquals(snapshot.getRoleDescriptors(RoleDescriptor.DEFAULT_ELEMENT_NAME,
+                SAMLConstants.SAML20P_NS), entityDescriptor.getRoleDescriptors(RoleDescriptor.DEFAULT_ELEMENT_NAME,
+                        SAMLConstants.SAML20P_NS));
+        Assert.assertEquals(snapshot.getRoleDescriptors(AttributeQueryDescriptorType.TYPE_NAME,
+                SAMLConstants.SAML11P_NS).size(), 0);
+        Assert.assertEquals(snapshot.getRoleDescriptors(AttributeAuthorityDescriptor.DEFAULT_ELEMENT_NAME).size(), 0);
+        Assert.assertEquals(snapshot.getRoles(AttributeQueryDescriptorType.TYPE_NAME).size(), 1);
+    }
     
     // Helper methods
     
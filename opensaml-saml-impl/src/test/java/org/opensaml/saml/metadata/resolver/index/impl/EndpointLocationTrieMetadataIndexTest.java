@@ -0,0 +1,172 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.saml.metadata.resolver.index.impl;
+
+import java.util.Set;
+
+import org.opensaml.core.xml.XMLObjectBaseTestCase;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.common.xml.SAMLConstants;
+import org.opensaml.saml.criterion.EndpointCriterion;
+import org.opensaml.saml.criterion.EntityRoleCriterion;
+import org.opensaml.saml.criterion.StartsWithLocationCriterion;
+import org.opensaml.saml.metadata.resolver.index.MetadataIndex;
+import org.opensaml.saml.metadata.resolver.index.MetadataIndexKey;
+import org.opensaml.saml.saml2.metadata.AssertionConsumerService;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Sets;
+
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+
+/**
+ *
+ */
+public class EndpointLocationTrieMetadataIndexTest extends XMLObjectBaseTestCase {
+    
+    private EntityDescriptor host, cas, casEndpoint, casEndpointSlash, other;
+    
+    private EndpointLocationTrieMetadataIndex metadataIndex;
+    
+    private MetadataIndexManager<EntityDescriptor> manager;
+    
+    @BeforeMethod
+    protected void setUp() {
+        host = buildEntity("urn:test:host", "https://www.example.com");
+        cas = buildEntity("urn:test:cas", "https://www.example.com/cas/");
+        casEndpoint = buildEntity("urn:test:casEndpoint", "HTTPS://WWW.EXAMPLE.COM:443/cas/someEndpoint1");
+        casEndpointSlash = buildEntity("urn:test:casEndpointSlash", "https://www.example.com/cas/someEndpoint1/foo/");
+        other = buildEntity("urn:test:other", "https://www.example.com/cassandra");
+        
+        metadataIndex = new EndpointLocationTrieMetadataIndex();
+        manager = new MetadataIndexManager<>(Sets.<MetadataIndex>newHashSet(metadataIndex),
+                new MetadataIndexManager.IdentityExtractionFunction());
+        for (final EntityDescriptor descriptor : Sets.newHashSet(host, cas, casEndpoint, casEndpointSlash, other)) {
+            manager.indexEntityDescriptor(descriptor);
+        }
+    }
+    
+    @Test
+    public void testGenerateKeysFromCriteria() {
+        final CriteriaSet criteriaSet = new CriteriaSet();
+        criteriaSet.add(new EntityRoleCriterion(SPSSODescriptor.DEFAULT_ELEMENT_NAME));
+        Assert.assertNull(metadataIndex.generateKeys(criteriaSet));
+        
+        criteriaSet.add(new EndpointCriterion<>(buildEndpoint("https://www.example.com/cas/someEndpoint1/foo/bar/")));
+        criteriaSet.add(new StartsWithLocationCriterion());
+        final Set<MetadataIndexKey> keys = metadataIndex.generateKeys(criteriaSet);
+        Assert.assertNotNull(keys);
+        Assert.assertEquals(keys.size(), 1);
+        Assert.assertTrue(keys.contains(new EndpointLocationTrieMetadataIndex.EndpointLocationIndexKey(
+                SPSSODescriptor.DEFAULT_ELEMENT_NAME, AssertionConsumerService.DEFAULT_ELEMENT_NAME, 
+                "https://www.example.com/cas/someEndpoint1/foo/bar/", false, true)));
+    }
+    
+    @Test
+    public void testGenerateKeysFromDescriptor() {
+        final Set<MetadataIndexKey> keys = metadataIndex.generateKeys(casEndpoint);
+        Assert.assertEquals(keys.size(), 1);
+        Assert.assertTrue(keys.contains(new EndpointLocationTrieMetadataIndex.EndpointLocationIndexKey(
+                SPSSODescriptor.DEFAULT_ELEMENT_NAME, AssertionConsumerService.DEFAULT_ELEMENT_NAME, 
+                "https://www.example.com/cas/someEndpoint1", false, false)));
+    }
+    
+    @Test
+    public void testExactLookup() {
+        Optional<Set<EntityDescriptor>> result = manager.lookupIndexedItems(
+                buildCriteria("https://www.example.com/cas/someEndpoint1?foo=bar", false));
+        Assert.assertTrue(result.isPresent());
+        Assert.assertEquals(result.get(), Sets.newHashSet(casEndpoint));
+        
+        result = manager.lookupIndexedItems(buildCriteria("https://www.example.com/cas/someEndpoint1/foo/bar", false));
+        Assert.assertTrue(result.isPresent());
+        Assert.assertTrue(result.get().isEmpty());
+    }
+    
+    @Test
+    public void testStartsWithLookup() {
+        Optional<Set<EntityDescriptor>> result = manager.lookupIndexedItems(
+                buildCriteria("https://www.example.com/cas/someEndpoint1/foo/bar/", true));
+        Assert.assertTrue(result.isPresent());
+        Assert.assertEquals(result.get(), Sets.newHashSet(host, cas, casEndpoint, casEndpointSlash));
+        
+        result = manager.lookupIndexedItems(buildCriteria("https://www.example.com/cas/someEndpoint1", true));
+        Assert.assertTrue(result.isPresent());
+        Assert.assertEquals(result.get(), Sets.newHashSet(host, cas, casEndpoint));
+        
+        result = manager.lookupIndexedItems(buildCriteria("https://www.example.com/cassandra/foo", true));
+        Assert.assertTrue(result.isPresent());
+        Assert.assertEquals(result.get(), Sets.newHashSet(host, other));
+        
+        result = manager.lookupIndexedItems(buildCriteria("https://www.example.org/cas/someEndpoint1", true));
+        Assert.assertTrue(result.isPresent());
+        Assert.assertTrue(result.get().isEmpty());
+    }
+    
+    @Test
+    public void testDeindex() {
+        manager.deindexEntityDescriptor(cas);
+        manager.deindexEntityDescriptor(casEndpoint);
+        
+        Optional<Set<EntityDescriptor>> result = manager.lookupIndexedItems(
+                buildCriteria("https://www.example.com/cas/someEndpoint1/foo/bar/", true));
+        Assert.assertTrue(result.isPresent());
+        Assert.assertEquals(result.get(), Sets.newHashSet(host, casEndpointSlash));
+        
+        final MetadataIndexStore<EntityDescriptor> store = manager.getStore(metadataIndex);
+        Assert.assertNotNull(store);
+        Assert.assertEquals(store.getKeys().size(), 3);
+        
+        store.clear();
+        Assert.assertTrue(store.getKeys().isEmpty());
+    }
+    
+    private CriteriaSet buildCriteria(final String location, final boolean startsWith) {
+        final CriteriaSet criteriaSet = new CriteriaSet();
+        criteriaSet.add(new EntityRoleCriterion(SPSSODescriptor.DEFAULT_ELEMENT_NAME));
+        criteriaSet.add(new EndpointCriterion<>(buildEndpoint(location)));
+        if (startsWith) {
+            criteriaSet.add(new StartsWithLocationCriterion());
+        }
+        return criteriaSet;
+    }
+    
+    private AssertionConsumerService buildEndpoint(final String location) {
+        final AssertionConsumerService endpoint = buildXMLObject(AssertionConsumerService.DEFAULT_ELEMENT_NAME);
+        endpoint.setLocation(location);
+        endpoint.setBinding(SAMLConstants.SAML2_POST_BINDING_URI);
+        return endpoint;
+    }
+    
+    private EntityDescriptor buildEntity(final String entityID, final String location) {
+        final EntityDescriptor descriptor =
+                (EntityDescriptor) XMLObjectSupport.buildXMLObject(EntityDescriptor.DEFAULT_ELEMENT_NAME);
+        descriptor.setEntityID(entityID);
+        final SPSSODescriptor role = buildXMLObject(SPSSODescriptor.DEFAULT_ELEMENT_NAME);
+        role.getAssertionConsumerServices().add(buildEndpoint(location));
+        descriptor.getRoleDescriptors().add(role);
+        return descriptor;
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.metadata.resolver.index.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import net.shibboleth.ext.spring.resource.ResourceHelper;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+
+import org.opensaml.core.xml.XMLObjectBaseTestCase;
+import org.opensaml.saml.common.profile.logic.EntityAttributesPredicate;
+import org.opensaml.saml.common.profile.logic.EntityAttributesPredicate.Candidate;
+import org.opensaml.saml.metadata.EntityAttributeTags;
+import org.opensaml.saml.metadata.criteria.entity.impl.EvaluableEntityAttributesEntityDescriptorCriterion;
+import org.opensaml.saml.metadata.resolver.index.MetadataIndex;
+import org.opensaml.saml.metadata.resolver.index.MetadataIndexKey;
+import org.opensaml.saml.metadata.resolver.impl.ResourceBackedMetadataResolver;
+import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for {@link EntityAttributesMetadataIndex}.
+ */
+public class EntityAttributesMetadataIndexTest extends XMLObjectBaseTestCase {
+    
+    private ResourceBackedMetadataResolver metadataProvider;
+    
+    @BeforeMethod
+    protected void setUp() throws Exception {
+        final Resource resource =
+                new ClassPathResource("/org/opensaml/saml/metadata/resolver/filter/impl/EntitiesDescriptor-Name-metadata.xml");
+        metadataProvider = new ResourceBackedMetadataResolver(null, ResourceHelper.of(resource));
+        metadataProvider.setId("test");
+        metadataProvider.setParserPool(parserPool);
+        metadataProvider.setIndexes(Collections.<MetadataIndex>singleton(new EntityAttributesMetadataIndex()));
+        metadataProvider.initialize();
+    }
+    
+    @Test
+    public void testCriteriaKeys() {
+        final EntityAttributesMetadataIndex index = new EntityAttributesMetadataIndex();
+        
+        Assert.assertNull(index.generateKeys(new CriteriaSet()));
+        
+        final Candidate candidate1 = new Candidate("urn:foo", Attribute.URI_REFERENCE);
+        candidate1.setValues(Arrays.asList("bar", "baz"));
+        final Candidate candidate2 = new Candidate("urn:other");
+        candidate2.setRegexps(Collections.singletonList(Pattern.compile(".*")));
+        final Candidate candidate3 = new Candidate("urn:any");
+        
+        Set<MetadataIndexKey> keys = index.generateKeys(new CriteriaSet(
+                new EvaluableEntityAttributesEntityDescriptorCriterion(new EntityAttributesPredicate(
+                        Arrays.asList(candidate1, candidate2, candidate3)))));
+        Assert.assertEquals(keys, new HashSet<>(Arrays.asList(
+                new EntityAttributesMetadataIndex.EntityAttributesIndexKey("urn:foo", "bar"),
+                new EntityAttributesMetadataIndex.EntityAttributesIndexKey("urn:other", null),
+                new EntityAttributesMetadataIndex.EntityAttributesIndexKey(null, null))));
+        
+        keys = index.generateKeys(new CriteriaSet(
+                new EvaluableEntityAttributesEntityDescriptorCriterion(new EntityAttributesPredicate(
+                        Arrays.asList(candidate1, candidate2), true, true))));
+        Assert.assertEquals(keys, Collections.singleton(
+                new EntityAttributesMetadataIndex.EntityAttributesIndexKey("urn:foo", "bar")));
+    }
+    
+    @Test
+    public void testResolveByValue() throws Exception {
+        final Candidate candidate = new Candidate("urn:foo", Attribute.URI_REFERENCE);
+        candidate.setValues(Collections.singletonList("baz"));
+        
+        final Set<String> entityIDs = resolveEntityIDs(new EntityAttributesPredicate(
+                Collections.singletonList(candidate), false));
+        Assert.assertEquals(entityIDs, Collections.singleton("https://idp-sub1.example.org"));
+    }
+    
+    @Test
+    public void testResolveByGroupValue() throws Exception {
+        final Candidate candidate = new Candidate("urn:foo", null);
+        candidate.setValues(Collections.singletonList("bar"));
+        
+        final Set<String> entityIDs = resolveEntityIDs(new EntityAttributesPredicate(
+                Collections.singletonList(candidate), false));
+        Assert.assertTrue(entityIDs.contains("https://idp-top.example.org"));
+        Assert.assertTrue(entityIDs.contains("https://idp-sub1.example.org"));
+        Assert.assertTrue(entityIDs.contains("https://idp-sub2a.example.org"));
+    }
+    
+    @Test
+    public void testResolveWrongNameFormat() throws Exception {
+        final Candidate candidate = new Candidate("urn:foo", Attribute.BASIC);
+        candidate.setValues(Collections.singletonList("bar"));
+        
+        Assert.assertTrue(resolveEntityIDs(new EntityAttributesPredicate(
+                Collections.singletonList(candidate), false)).isEmpty());
+    }
+    
+    @Test
+    public void testResolveByRegexp() throws Exception {
+        final Candidate candidate = new Candidate("urn:foo", Attribute.URI_REFERENCE);
+        candidate.setRegexps(Collections.singletonList(Pattern.compile("^ba[z]$")));
+        
+        final Set<String> entityIDs = resolveEntityIDs(new EntityAttributesPredicate(
+                Collections.singletonList(candidate), false));
+        Assert.assertEquals(entityIDs, Collections.singleton("https://idp-sub1.example.org"));
+    }
+    
+    @Test
+    public void testTagsAttached() throws Exception {
+        final Candidate candidate = new Candidate("urn:foo");
+        final Set<String> entityIDs = resolveEntityIDs(new EntityAttributesPredicate(
+                Collections.singletonList(candidate), false));
+        Assert.assertFalse(entityIDs.isEmpty());
+        
+        for (final EntityDescriptor entity : metadataProvider) {
+            final EntityAttributeTags tags = EntityAttributeTags.get(entity);
+            Assert.assertNotNull(tags);
+            Assert.assertTrue(tags.hasValue("urn:foo", null, "bar", false));
+            Assert.assertTrue(tags.hasValue("urn:foo", Attribute.URI_REFERENCE, "bar", false));
+            Assert.assertFalse(tags.hasValue("urn:foo", Attribute.BASIC, "bar", false));
+        }
+    }
+    
+    private Set<String> resolveEntityIDs(final EntityAttributesPredicate predicate) throws Exception {
+        final Set<String> entityIDs = new HashSet<>();
+        for (final EntityDescriptor entity : metadataProvider.resolve(
+                new CriteriaSet(new EvaluableEntityAttributesEntityDescriptorCriterion(predicate)))) {
+            entityIDs.add(entity.getEntityID());
+        }
+        return entityIDs;
+    }
+
+}
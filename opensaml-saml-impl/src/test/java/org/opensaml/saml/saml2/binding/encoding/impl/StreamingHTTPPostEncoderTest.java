@@ -0,0 +1,262 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.saml2.binding.encoding.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.XMLObjectBaseTestCase;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.messaging.context.MessageContext;
+import org.opensaml.messaging.encoder.MessageEncodingException;
+import org.opensaml.saml.common.SAMLObject;
+import org.opensaml.saml.common.SAMLObjectBuilder;
+import org.opensaml.saml.common.SAMLVersion;
+import org.opensaml.saml.common.binding.SAMLBindingSupport;
+import org.opensaml.saml.common.binding.impl.SAMLOutboundDestinationHandler;
+import org.opensaml.saml.common.messaging.context.SAMLEndpointContext;
+import org.opensaml.saml.common.messaging.context.SAMLPeerEntityContext;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.saml.saml2.core.Status;
+import org.opensaml.saml.saml2.core.StatusCode;
+import org.opensaml.saml.saml2.metadata.AssertionConsumerService;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import net.shibboleth.utilities.java.support.codec.Base64Support;
+
+/**
+ * Test case for {@link StreamingHTTPPostEncoder}.
+ */
+public class StreamingHTTPPostEncoderTest extends XMLObjectBaseTestCase {
+
+    @Test
+    public void testResponseEncoding() throws Exception {
+        final Response samlMessage = buildResponse();
+        
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final StreamingHTTPPostEncoder encoder = new StreamingHTTPPostEncoder();
+        encoder.setMessageContext(buildMessageContext(samlMessage, "relay"));
+        encoder.setHttpServletResponse(response);
+        encoder.initialize();
+        encoder.prepareContext();
+        encoder.encode();
+
+        Assert.assertEquals(response.getContentType(), "text/html", "Unexpected content type");
+        Assert.assertEquals("UTF-8", response.getCharacterEncoding(), "Unexpected character encoding");
+        Assert.assertEquals(response.getHeader("Cache-control"), "no-cache, no-store", "Unexpected cache controls");
+        
+        final Document webDoc = Jsoup.parse(response.getContentAsString());
+        
+        final Element head = webDoc.selectFirst("html > head");
+        Assert.assertNotNull(head);
+        Assert.assertEquals(head.selectFirst("meta[charset]").attr("charset").toLowerCase(), "utf-8");
+        
+        final Element body = webDoc.selectFirst("html > body");
+        Assert.assertNotNull(body);
+        Assert.assertEquals(body.attr("onload"), "document.forms[0].submit()");
+        
+        final Element form = body.selectFirst("form");
+        Assert.assertNotNull(form);
+        Assert.assertEquals(form.attr("method").toLowerCase(), "post");
+        Assert.assertEquals(form.attr("action"), "http://example.org/response");
+        Assert.assertEquals(form.selectFirst("input[name=RelayState]").val(), "relay");
+        Assert.assertNull(form.selectFirst("input[name=SAMLRequest]"));
+        
+        final Element samlResponse = form.selectFirst("input[name=SAMLResponse]");
+        Assert.assertNotNull(samlResponse);
+        try (ByteArrayInputStream inputStream = new ByteArrayInputStream(Base64Support.decode(samlResponse.val()))) {
+            final XMLObject xmlObject = XMLObjectSupport.unmarshallFromInputStream(parserPool, inputStream);
+            Assert.assertTrue(xmlObject instanceof Response);
+            assertXMLEquals(xmlObject.getDOM().getOwnerDocument(), samlMessage);
+        }
+        
+        final Element submit = body.selectFirst("noscript > div > input[type=submit]");
+        Assert.assertNotNull(submit);
+        Assert.assertEquals(submit.val(), "Continue");
+    }
+
+    @Test
+    public void testRequestEncodingWithoutRelayState() throws Exception {
+        final AuthnRequest samlMessage = buildAuthnRequest();
+        
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final StreamingHTTPPostEncoder encoder = new StreamingHTTPPostEncoder();
+        encoder.setMessageContext(buildMessageContext(samlMessage, null));
+        encoder.setHttpServletResponse(response);
+        encoder.initialize();
+        encoder.prepareContext();
+        encoder.encode();
+        
+        final Element form = Jsoup.parse(response.getContentAsString()).selectFirst("form");
+        Assert.assertNotNull(form);
+        Assert.assertEquals(form.attr("action"), "http://example.org");
+        Assert.assertNull(form.selectFirst("input[name=RelayState]"));
+        Assert.assertNull(form.selectFirst("input[name=SAMLResponse]"));
+        
+        final Element samlRequest = form.selectFirst("input[name=SAMLRequest]");
+        Assert.assertNotNull(samlRequest);
+        try (ByteArrayInputStream inputStream = new ByteArrayInputStream(Base64Support.decode(samlRequest.val()))) {
+            final XMLObject xmlObject = XMLObjectSupport.unmarshallFromInputStream(parserPool, inputStream);
+            Assert.assertTrue(xmlObject instanceof AuthnRequest);
+            assertXMLEquals(xmlObject.getDOM().getOwnerDocument(), samlMessage);
+        }
+    }
+    
+    @Test
+    public void testEquivalentToVelocityEncoder() throws Exception {
+        final VelocityEngine velocityEngine = new VelocityEngine();
+        velocityEngine.setProperty(RuntimeConstants.RESOURCE_LOADER, "classpath");
+        velocityEngine.setProperty("classpath.resource.loader.class",
+                "org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader");
+        velocityEngine.init();
+        
+        final MockHttpServletResponse velocityResponse = new MockHttpServletResponse();
+        final HTTPPostEncoder velocityEncoder = new HTTPPostEncoder();
+        velocityEncoder.setMessageContext(buildMessageContext(buildResponse(), "relay&state"));
+        velocityEncoder.setHttpServletResponse(velocityResponse);
+        velocityEncoder.setVelocityEngine(velocityEngine);
+        velocityEncoder.initialize();
+        velocityEncoder.prepareContext();
+        velocityEncoder.encode();
+        
+        final MockHttpServletResponse streamingResponse = new MockHttpServletResponse();
+        final StreamingHTTPPostEncoder streamingEncoder = new StreamingHTTPPostEncoder();
+        streamingEncoder.setMessageContext(buildMessageContext(buildResponse(), "relay&state"));
+        streamingEncoder.setHttpServletResponse(streamingResponse);
+        streamingEncoder.initialize();
+        streamingEncoder.prepareContext();
+        streamingEncoder.encode();
+        
+        final Element velocityForm = Jsoup.parse(velocityResponse.getContentAsString()).selectFirst("form");
+        final Element streamingForm = Jsoup.parse(streamingResponse.getContentAsString()).selectFirst("form");
+        Assert.assertEquals(streamingForm.attr("action"), velocityForm.attr("action"));
+        Assert.assertEquals(streamingForm.selectFirst("input[name=RelayState]").val(),
+                velocityForm.selectFirst("input[name=RelayState]").val());
+        
+        final XMLObject velocityMessage = XMLObjectSupport.unmarshallFromInputStream(parserPool,
+                new ByteArrayInputStream(Base64Support.decode(
+                        velocityForm.selectFirst("input[name=SAMLResponse]").val())));
+        final XMLObject streamingMessage = XMLObjectSupport.unmarshallFromInputStream(parserPool,
+                new ByteArrayInputStream(Base64Support.decode(
+                        streamingForm.selectFirst("input[name=SAMLResponse]").val())));
+        assertXMLEquals(streamingMessage.getDOM().getOwnerDocument(), velocityMessage);
+    }
+    
+    @Test
+    public void testAdditionalContent() throws Exception {
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final StreamingHTTPPostEncoder encoder = new StreamingHTTPPostEncoder() {
+            protected void writeHeadContent(final OutputStream out) throws IOException {
+                write(out, "        <title>Redirecting</title>\n");
+            }
+            
+            protected void writeBodyContent(final OutputStream out) throws IOException {
+                write(out, "        <p id=\"footer\">Footer</p>\n");
+            }
+        };
+        encoder.setMessageContext(buildMessageContext(buildResponse(), null));
+        encoder.setHttpServletResponse(response);
+        encoder.initialize();
+        encoder.prepareContext();
+        encoder.encode();
+        
+        final Document document = Jsoup.parse(response.getContentAsString());
+        Assert.assertEquals(document.head().selectFirst("title").text(), "Redirecting");
+        final Element footer = document.body().selectFirst("p#footer");
+        Assert.assertNotNull(footer);
+        Assert.assertEquals(footer.elementSiblingIndex(), document.body().selectFirst("form").elementSiblingIndex() + 1);
+        Assert.assertNotNull(document.selectFirst("form input[name=SAMLResponse]"));
+    }
+    
+    @Test(expectedExceptions=MessageEncodingException.class)
+    public void testNoMessage() throws Exception {
+        final MessageContext messageContext = buildMessageContext(buildResponse(), null);
+        messageContext.setMessage(null);
+        
+        final StreamingHTTPPostEncoder encoder = new StreamingHTTPPostEncoder();
+        encoder.setMessageContext(messageContext);
+        encoder.setHttpServletResponse(new MockHttpServletResponse());
+        encoder.initialize();
+        encoder.encode();
+    }
+    
+    private Response buildResponse() {
+        final SAMLObjectBuilder<StatusCode> statusCodeBuilder =
+                (SAMLObjectBuilder<StatusCode>) builderFactory.<StatusCode>getBuilderOrThrow(
+                        StatusCode.DEFAULT_ELEMENT_NAME);
+        final StatusCode statusCode = statusCodeBuilder.buildObject();
+        statusCode.setValue(StatusCode.SUCCESS);
+
+        final SAMLObjectBuilder<Status> statusBuilder =
+                (SAMLObjectBuilder<Status>) builderFactory.<Status>getBuilderOrThrow(Status.DEFAULT_ELEMENT_NAME);
+        final Status responseStatus = statusBuilder.buildObject();
+        responseStatus.setStatusCode(statusCode);
+
+        final SAMLObjectBuilder<Response> responseBuilder =
+                (SAMLObjectBuilder<Response>) builderFactory.<Response>getBuilderOrThrow(Response.DEFAULT_ELEMENT_NAME);
+        final Response samlMessage = responseBuilder.buildObject();
+        samlMessage.setID("foo");
+        samlMessage.setVersion(SAMLVersion.VERSION_20);
+        samlMessage.setIssueInstant(Instant.ofEpochMilli(0));
+        samlMessage.setStatus(responseStatus);
+        return samlMessage;
+    }
+    
+    private AuthnRequest buildAuthnRequest() {
+        final SAMLObjectBuilder<AuthnRequest> requestBuilder =
+                (SAMLObjectBuilder<AuthnRequest>) builderFactory.<AuthnRequest>getBuilderOrThrow(
+                        AuthnRequest.DEFAULT_ELEMENT_NAME);
+        final AuthnRequest samlMessage = requestBuilder.buildObject();
+        samlMessage.setID("foo");
+        samlMessage.setVersion(SAMLVersion.VERSION_20);
+        samlMessage.setIssueInstant(Instant.ofEpochMilli(0));
+        return samlMessage;
+    }
+    
+    private MessageContext buildMessageContext(final SAMLObject samlMessage, final String relayState)
+            throws Exception {
+        final SAMLObjectBuilder<AssertionConsumerService> endpointBuilder =
+                (SAMLObjectBuilder<AssertionConsumerService>) builderFactory.<AssertionConsumerService>getBuilderOrThrow(
+                        AssertionConsumerService.DEFAULT_ELEMENT_NAME);
+        final AssertionConsumerService samlEndpoint = endpointBuilder.buildObject();
+        samlEndpoint.setLocation("http://example.org");
+        samlEndpoint.setResponseLocation("http://example.org/response");
+
+        final MessageContext messageContext = new MessageContext();
+        messageContext.setMessage(samlMessage);
+        SAMLBindingSupport.setRelayState(messageContext, relayState);
+        messageContext.getSubcontext(SAMLPeerEntityContext.class, true)
+            .getSubcontext(SAMLEndpointContext.class, true).setEndpoint(samlEndpoint);
+        
+        final SAMLOutboundDestinationHandler handler = new SAMLOutboundDestinationHandler();
+        handler.invoke(messageContext);
+        return messageContext;
+    }
+    
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.saml2.binding.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+
+import net.shibboleth.utilities.java.support.codec.Base64Support;
+
+/** Unit test for {@link DeflateSupport}. */
+public class DeflateSupportTest {
+    
+    private final byte[] data = ("<samlp:AuthnRequest xmlns:samlp=\"urn:oasis:names:tc:SAML:2.0:protocol\" "
+            + "ID=\"foo\" Version=\"2.0\" IssueInstant=\"1970-01-01T00:00:00.000Z\"/>")
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        // Repeat to exercise pooled instances
+        for (int i = 0; i < 3; i++) {
+            final ByteBuffer deflated = DeflateSupport.deflate(data, 0, data.length, Deflater.DEFLATED);
+            final ByteBuffer inflated = DeflateSupport.inflate(toArray(deflated), 1024);
+            Assert.assertEquals(toArray(inflated), data);
+        }
+    }
+    
+    @Test
+    public void testInteropWithStreams() throws Exception {
+        final ByteBuffer deflated = DeflateSupport.deflate(data, 0, data.length, Deflater.DEFLATED);
+        try (final InflaterInputStream in = new InflaterInputStream(
+                new ByteArrayInputStream(toArray(deflated)), new Inflater(true))) {
+            Assert.assertEquals(in.readAllBytes(), data);
+        }
+        
+        final ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        try (final DeflaterOutputStream out = new DeflaterOutputStream(bytesOut, new Deflater(9, true))) {
+            out.write(data);
+        }
+        Assert.assertEquals(toArray(DeflateSupport.inflate(bytesOut.toByteArray(), 1024)), data);
+    }
+    
+    @Test
+    public void testLargeInput() throws Exception {
+        final byte[] large = new byte[100000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) ('a' + (i * 7 % 26));
+        }
+        final ByteBuffer deflated = DeflateSupport.deflate(large, 0, large.length, Deflater.DEFLATED);
+        Assert.assertEquals(toArray(DeflateSupport.inflate(toArray(deflated), large.length)), large);
+    }
+    
+    @Test(expectedExceptions=DataFormatException.class)
+    public void testMaxInflatedSizeExceeded() throws Exception {
+        final byte[] large = new byte[100000];
+        final ByteBuffer deflated = DeflateSupport.deflate(large, 0, large.length, Deflater.DEFLATED);
+        DeflateSupport.inflate(toArray(deflated), large.length - 1);
+    }
+    
+    @Test(expectedExceptions=DataFormatException.class)
+    public void testTruncatedInput() throws Exception {
+        final byte[] deflated = toArray(DeflateSupport.deflate(data, 0, data.length, Deflater.DEFLATED));
+        DeflateSupport.inflate(Arrays.copyOf(deflated, deflated.length / 2), 1024);
+    }
+    
+    @Test
+    public void testBase64Encoding() throws Exception {
+        final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        document.appendChild(document.createElementNS("urn:test", "test:Foo"));
+        
+        final String encoded = DeflateSupport.deflateAndBase64Encode(document.getDocumentElement(),
+                Deflater.DEFLATED);
+        final byte[] inflated = toArray(DeflateSupport.inflate(Base64Support.decode(encoded), 1024));
+        Assert.assertTrue(new String(inflated, StandardCharsets.UTF_8).contains("test:Foo"));
+    }
+    
+    private byte[] toArray(final ByteBuffer buffer) {
+        final byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return result;
+    }
+
+}
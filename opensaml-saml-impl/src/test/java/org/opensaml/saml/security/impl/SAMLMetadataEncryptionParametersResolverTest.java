@@ -17,6 +17,7 @@
 
 package org.opensaml.saml.security.impl;
 
+import java.lang.ref.WeakReference;
 import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
@@ -65,6 +66,7 @@ import org.opensaml.xmlsec.encryption.OAEPparams;
 import org.opensaml.xmlsec.encryption.support.EncryptionConstants;
 import org.opensaml.xmlsec.encryption.support.RSAOAEPParameters;
 import org.opensaml.xmlsec.impl.BasicEncryptionConfiguration;
+import org.opensaml.xmlsec.impl.SecurityParametersCache;
 import org.opensaml.xmlsec.keyinfo.KeyInfoSupport;
 import org.opensaml.xmlsec.keyinfo.NamedKeyInfoGeneratorManager;
 import org.opensaml.xmlsec.keyinfo.impl.BasicKeyInfoGeneratorFactory;
@@ -694,8 +696,71 @@ public class SAMLMetadataEncryptionParametersResolverTest extends XMLObjectBaseT
     
     
     
+    @Test
+    public void testCachedResolutionReleasesRole() throws ResolverException, InterruptedException {
+        final SecurityParametersCache<EncryptionParameters> cache = new SecurityParametersCache<>();
+        resolver.setParametersCache(cache);
+        
+        final WeakReference<RoleDescriptor> oldRoleRef = resolveCached();
+        Assert.assertEquals(cache.getScopeCount(), 1);
+        
+        // Simulate a metadata refresh which replaces the role descriptor.
+        final RoleDescriptor newRole = buildRoleDescriptorSkeleton();
+        newRole.getKeyDescriptors().add(buildKeyDescriptor(rsaCred1KeyName, UsageType.ENCRYPTION,
+                rsaCred1.getPublicKey()));
+        final EncryptionParameters params =
+                resolver.resolveSingle(new CriteriaSet(configCriterion, new RoleDescriptorCriterion(newRole)));
+        Assert.assertNotNull(params);
+        Assert.assertEquals(params.getKeyTransportEncryptionAlgorithm(), EncryptionConstants.ALGO_ID_KEYTRANSPORT_RSA15);
+        
+        for (int i = 0; i < 50 && oldRoleRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        
+        Assert.assertNull(oldRoleRef.get());
+        Assert.assertEquals(cache.getScopeCount(), 1);
+    }
+    
+    
+    
+    
     // Helper methods
     
+    /**
+     * Resolve parameters for a role descriptor which is not otherwise retained, checking that the second
+     * resolution is satisfied from the cache with the credential resolved from the role's metadata.
+     * 
+     * @return a weak reference to the role descriptor
+     * 
+     * @throws ResolverException if resolution fails
+     */
+    private WeakReference<RoleDescriptor> resolveCached() throws ResolverException {
+        final RoleDescriptor role = buildRoleDescriptorSkeleton();
+        role.getKeyDescriptors().add(buildKeyDescriptor(rsaCred1KeyName, UsageType.ENCRYPTION,
+                rsaCred1.getPublicKey()));
+        final CriteriaSet criteria = new CriteriaSet(configCriterion, new RoleDescriptorCriterion(role));
+        
+        final EncryptionParameters first = resolver.resolveSingle(criteria);
+        Assert.assertNotNull(first);
+        Assert.assertEquals(first.getKeyTransportEncryptionAlgorithm(), defaultRSAKeyTransportAlgo);
+        
+        // Configuration instances are assumed immutable once used, so this should be a cache hit.
+        config2.setKeyTransportEncryptionAlgorithms(
+                Collections.singletonList(EncryptionConstants.ALGO_ID_KEYTRANSPORT_RSA15));
+        
+        final EncryptionParameters second = resolver.resolveSingle(criteria);
+        Assert.assertNotNull(second);
+        Assert.assertEquals(second.getKeyTransportEncryptionAlgorithm(), defaultRSAKeyTransportAlgo);
+        Assert.assertEquals(second.getKeyTransportEncryptionCredential().getPublicKey(), rsaCred1.getPublicKey());
+        final SAMLMDCredentialContext context = second.getKeyTransportEncryptionCredential()
+                .getCredentialContextSet().get(SAMLMDCredentialContext.class);
+        Assert.assertNotNull(context);
+        Assert.assertSame(context.getRoleDescriptor(), role);
+        
+        return new WeakReference<>(role);
+    }
+    
     private RoleDescriptor buildRoleDescriptorSkeleton() {
         EntityDescriptor entityDesc = buildXMLObject(EntityDescriptor.DEFAULT_ELEMENT_NAME);
         entityDesc.setEntityID(targetEntityID);
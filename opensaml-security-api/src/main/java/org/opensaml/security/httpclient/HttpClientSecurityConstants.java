@@ -40,6 +40,10 @@ public final class HttpClientSecurityConstants {
      * of HttpClient socket factories. Type will be a {@link Boolean}. */
     public static final String CONTEXT_KEY_SERVER_TLS_CREDENTIAL_TRUSTED = "opensaml.ServerTLSCredentialTrusted";
     
+    /** {@link javax.net.ssl.SSLSession} value name under which server TLS credential evaluation results are
+     * recorded per {@link TLSConnectionPartitionKey}, for use when a pooled connection is reused. */
+    public static final String SESSION_KEY_SERVER_TLS_CREDENTIAL_TRUSTED = "opensaml.ServerTLSCredentialTrusted";
+    
     /** Context key for indicating whether server TLS evaluation failure should be treated as a fatal error.
      * Type will be a {@link Boolean}. */
     public static final String CONTEXT_KEY_SERVER_TLS_FAILURE_IS_FATAL = "opensaml.ServerTLSFailureIsFatal";
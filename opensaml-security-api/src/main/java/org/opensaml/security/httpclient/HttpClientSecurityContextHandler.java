@@ -65,6 +65,7 @@ public class HttpClientSecurityContextHandler extends AbstractInitializableCompo
         
         HttpClientSecuritySupport.marshalSecurityParameters(context, httpClientSecurityParameters, false);
         HttpClientSecuritySupport.addDefaultTLSTrustEngineCriteria(context, request);
+        HttpClientSecuritySupport.setTLSConnectionPartitionKey(context, request);
     }
 
     /** {@inheritDoc} */
@@ -25,15 +25,22 @@ import static org.opensaml.security.httpclient.HttpClientSecurityConstants.CONTE
 import static org.opensaml.security.httpclient.HttpClientSecurityConstants.CONTEXT_KEY_TLS_PROTOCOLS;
 import static org.opensaml.security.httpclient.HttpClientSecurityConstants.CONTEXT_KEY_TRUST_ENGINE;
 import static org.opensaml.security.httpclient.HttpClientSecurityConstants.CONTEXT_KEY_SERVER_TLS_FAILURE_IS_FATAL;
+import static org.opensaml.security.httpclient.HttpClientSecurityConstants.SESSION_KEY_SERVER_TLS_CREDENTIAL_TRUSTED;
 
 import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
 
+import org.apache.http.HttpConnection;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.protocol.HttpContext;
 import org.opensaml.core.config.ConfigurationService;
 import org.opensaml.security.credential.UsageType;
 import org.opensaml.security.criteria.UsageCriterion;
@@ -93,10 +100,68 @@ public final class HttpClientSecuritySupport {
         }
     }
     
+    /**
+     * Partition pooled connections by the effective TLS trust parameters in the {@link HttpClientContext}.
+     * 
+     * <p>
+     * If the scheme is HTTPS, a trust engine is present and no user token has been established, a
+     * {@link TLSConnectionPartitionKey} is set as the context user token. HttpClient connection managers
+     * will then only reuse a pooled connection for a request with equivalent TLS trust parameters.
+     * This should be called after all security parameters have been populated in the context.
+     * </p>
+     * 
+     * @param context the current HTTP context instance in use
+     * @param request the current HTTP request
+     */
+    public static void setTLSConnectionPartitionKey(@Nonnull final HttpClientContext context, 
+            @Nonnull final HttpUriRequest request) {
+        
+        if ("https".equalsIgnoreCase(request.getURI().getScheme()) 
+                && context.getAttribute(CONTEXT_KEY_TRUST_ENGINE) != null
+                && context.getUserToken() == null) {
+            context.setUserToken(new TLSConnectionPartitionKey(context));
+        }
+    }
+    
+    /**
+     * Record the result of server TLS credential evaluation against the TLS session, so that it may be
+     * recovered if the connection is reused from a pool under the same {@link TLSConnectionPartitionKey}.
+     * 
+     * <p>Nothing is recorded if the context user token is not a {@link TLSConnectionPartitionKey}.</p>
+     * 
+     * @param context the current HTTP context instance in use
+     * @param session the TLS session of the connection which was evaluated
+     * @param trusted the evaluation result
+     */
+    public static void recordTLSCredentialTrustResult(@Nonnull final HttpContext context,
+            @Nonnull final SSLSession session, final boolean trusted) {
+        final Object token = context.getAttribute(HttpClientContext.USER_TOKEN);
+        if (!(token instanceof TLSConnectionPartitionKey)) {
+            return;
+        }
+        
+        synchronized (session) {
+            @SuppressWarnings("unchecked")
+            Map<Object, Boolean> results = (Map<Object, Boolean>) session.getValue(
+                    SESSION_KEY_SERVER_TLS_CREDENTIAL_TRUSTED);
+            if (results == null) {
+                results = new ConcurrentHashMap<>();
+                session.putValue(SESSION_KEY_SERVER_TLS_CREDENTIAL_TRUSTED, results);
+            }
+            results.put(token, trusted);
+        }
+    }
+    
     /**
      * Check that trust engine evaluation of the server TLS credential was actually performed when the 
      * scheme is HTTPS.
      * 
+     * <p>
+     * If no evaluation was performed because a pooled connection was reused, the result recorded
+     * when that connection was established under the same {@link TLSConnectionPartitionKey} is
+     * restored to the context.
+     * </p>
+     * 
      * @param context the current HTTP context instance in use
      * @param scheme the HTTP request scheme
      * @throws SSLPeerUnverifiedException thrown if the TLS credential was not actually evaluated by the trust engine
@@ -105,6 +170,9 @@ public final class HttpClientSecuritySupport {
             @Nonnull final String scheme) throws SSLPeerUnverifiedException {
         if (context.getAttribute(CONTEXT_KEY_TRUST_ENGINE) != null 
                 && "https".equalsIgnoreCase(scheme)) {
+            if (context.getAttribute(CONTEXT_KEY_SERVER_TLS_CREDENTIAL_TRUSTED) == null) {
+                restoreTLSCredentialTrustResult(context);
+            }
             if (context.getAttribute(CONTEXT_KEY_SERVER_TLS_CREDENTIAL_TRUSTED) == null) {
                 LOG.warn("Configured TLS trust engine was not used to verify server TLS credential, " 
                         + "the appropriate socket factory was likely not configured");
@@ -114,6 +182,45 @@ public final class HttpClientSecuritySupport {
         }
     }
     
+    /**
+     * Restore to the context the server TLS credential evaluation result recorded against the TLS session
+     * of a reused connection, if available.
+     * 
+     * @param context the current HTTP context instance in use
+     */
+    private static void restoreTLSCredentialTrustResult(@Nonnull final HttpClientContext context) {
+        final Object token = context.getUserToken();
+        if (!(token instanceof TLSConnectionPartitionKey)) {
+            return;
+        }
+        
+        final HttpConnection connection = context.getConnection();
+        if (!(connection instanceof ManagedHttpClientConnection)) {
+            return;
+        }
+        
+        final SSLSession session;
+        try {
+            session = ((ManagedHttpClientConnection) connection).getSSLSession();
+        } catch (final RuntimeException e) {
+            // Connection was already released back to the pool
+            LOG.debug("Unable to obtain TLS session from connection", e);
+            return;
+        }
+        if (session == null) {
+            return;
+        }
+        
+        final Object results = session.getValue(SESSION_KEY_SERVER_TLS_CREDENTIAL_TRUSTED);
+        if (results instanceof Map) {
+            final Object trusted = ((Map<?, ?>) results).get(token);
+            if (trusted instanceof Boolean) {
+                LOG.debug("Reused connection, restoring server TLS credential evaluation result: {}", trusted);
+                context.setAttribute(CONTEXT_KEY_SERVER_TLS_CREDENTIAL_TRUSTED, trusted);
+            }
+        }
+    }
+    
     /**
      * Marshal the supplied {@link HttpClientSecurityParameters} to the supplied {@link HttpClientContext}.
      * 
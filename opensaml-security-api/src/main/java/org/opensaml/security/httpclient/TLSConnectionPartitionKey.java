@@ -0,0 +1,157 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.security.httpclient;
+
+import static org.opensaml.security.httpclient.HttpClientSecurityConstants.CONTEXT_KEY_CLIENT_TLS_CREDENTIAL;
+import static org.opensaml.security.httpclient.HttpClientSecurityConstants.CONTEXT_KEY_CRITERIA_SET;
+import static org.opensaml.security.httpclient.HttpClientSecurityConstants.CONTEXT_KEY_HOSTNAME_VERIFIER;
+import static org.opensaml.security.httpclient.HttpClientSecurityConstants.CONTEXT_KEY_SERVER_TLS_FAILURE_IS_FATAL;
+import static org.opensaml.security.httpclient.HttpClientSecurityConstants.CONTEXT_KEY_TLS_CIPHER_SUITES;
+import static org.opensaml.security.httpclient.HttpClientSecurityConstants.CONTEXT_KEY_TLS_PROTOCOLS;
+import static org.opensaml.security.httpclient.HttpClientSecurityConstants.CONTEXT_KEY_TRUST_ENGINE;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.http.protocol.HttpContext;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.Criterion;
+
+/**
+ * Connection state token which partitions pooled HttpClient connections by the effective TLS trust and
+ * client credential parameters with which they were established.
+ * 
+ * <p>
+ * When supplied as the HttpClient user token, a pooled connection is only leased to a subsequent request
+ * whose token is equal, that is, one which would have performed the same TLS trust evaluation and presented
+ * the same client TLS credential. The trust engine, client TLS credential and hostname verifier are compared
+ * by identity. The trust criteria, protocols and cipher suites are compared by value.
+ * </p>
+ */
+public final class TLSConnectionPartitionKey {
+    
+    /** The trust engine. */
+    @Nullable private final Object trustEngine;
+    
+    /** The trust criteria. */
+    @Nonnull private final Set<Criterion> criteria;
+    
+    /** The client TLS credential. */
+    @Nullable private final Object clientCredential;
+    
+    /** The hostname verifier. */
+    @Nullable private final Object hostnameVerifier;
+    
+    /** The enabled TLS protocols. */
+    @Nullable private final ImmutableList<Object> protocols;
+    
+    /** The enabled TLS cipher suites. */
+    @Nullable private final ImmutableList<Object> cipherSuites;
+    
+    /** Whether server TLS trust failure is fatal. */
+    @Nullable private final Object failureIsFatal;
+    
+    /** Cached hash code. */
+    private final int hashCode;
+    
+    /**
+     * Constructor.
+     *
+     * @param context the HTTP context from which to obtain the TLS parameters
+     */
+    public TLSConnectionPartitionKey(@Nonnull final HttpContext context) {
+        trustEngine = context.getAttribute(CONTEXT_KEY_TRUST_ENGINE);
+        clientCredential = context.getAttribute(CONTEXT_KEY_CLIENT_TLS_CREDENTIAL);
+        hostnameVerifier = context.getAttribute(CONTEXT_KEY_HOSTNAME_VERIFIER);
+        failureIsFatal = context.getAttribute(CONTEXT_KEY_SERVER_TLS_FAILURE_IS_FATAL);
+        
+        final CriteriaSet criteriaSet = (CriteriaSet) context.getAttribute(CONTEXT_KEY_CRITERIA_SET);
+        criteria = criteriaSet != null ? ImmutableSet.copyOf(criteriaSet) : ImmutableSet.of();
+        
+        protocols = copyList(context.getAttribute(CONTEXT_KEY_TLS_PROTOCOLS));
+        cipherSuites = copyList(context.getAttribute(CONTEXT_KEY_TLS_CIPHER_SUITES));
+        
+        hashCode = Objects.hash(System.identityHashCode(trustEngine), criteria, 
+                System.identityHashCode(clientCredential), System.identityHashCode(hostnameVerifier),
+                protocols, cipherSuites, failureIsFatal);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        
+        if (!(obj instanceof TLSConnectionPartitionKey)) {
+            return false;
+        }
+        
+        final TLSConnectionPartitionKey other = (TLSConnectionPartitionKey) obj;
+        return trustEngine == other.trustEngine
+                && clientCredential == other.clientCredential
+                && hostnameVerifier == other.hostnameVerifier
+                && criteria.equals(other.criteria)
+                && Objects.equals(protocols, other.protocols)
+                && Objects.equals(cipherSuites, other.cipherSuites)
+                && Objects.equals(failureIsFatal, other.failureIsFatal);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("trustEngine", trustEngine)
+                .add("criteria", criteria)
+                .add("clientCredential", clientCredential != null ? "present" : null)
+                .add("protocols", protocols)
+                .add("cipherSuites", cipherSuites)
+                .toString();
+    }
+    
+    /**
+     * Copy a collection-valued context attribute.
+     * 
+     * @param value the attribute value
+     * 
+     * @return an immutable copy, or null
+     */
+    @Nullable private static ImmutableList<Object> copyList(@Nullable final Object value) {
+        if (value instanceof Collection) {
+            return ImmutableList.<Object>copyOf((Collection<?>) value);
+        }
+        return null;
+    }
+
+}
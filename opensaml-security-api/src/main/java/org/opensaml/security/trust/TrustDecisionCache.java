@@ -0,0 +1,64 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.security.trust;
+
+import java.time.Instant;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Cache of trust decisions which a {@link TrustEngine} may consult before performing
+ * expensive trust evaluation processing.
+ * 
+ * <p>
+ * Keys are opaque to the cache and are constructed by the trust engine, which is responsible for
+ * including in the key everything on which the decision depends. Keys must implement value-based
+ * {@link Object#equals(Object)} and {@link Object#hashCode()}.
+ * </p>
+ */
+public interface TrustDecisionCache {
+    
+    /**
+     * Get the cached trust decision for the specified key.
+     * 
+     * @param key the decision key
+     * 
+     * @return the cached decision, or null if no unexpired decision is cached
+     */
+    @Nullable Boolean getDecision(@Nonnull final Object key);
+    
+    /**
+     * Record a trust decision for the specified key.
+     * 
+     * <p>
+     * The cache may choose not to retain the decision, and will never retain it beyond the
+     * supplied upper bound.
+     * </p>
+     * 
+     * @param key the decision key
+     * @param trusted the trust decision
+     * @param notAfter the instant after which the decision must not be used, may be null
+     */
+    void recordDecision(@Nonnull final Object key, final boolean trusted, @Nullable final Instant notAfter);
+    
+    /** Discard all cached decisions. */
+    void invalidateAll();
+
+}
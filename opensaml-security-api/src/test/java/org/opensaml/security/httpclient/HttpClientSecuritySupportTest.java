@@ -332,6 +332,71 @@ public class HttpClientSecuritySupportTest {
         Assert.assertNull(context.getAttribute(CONTEXT_KEY_CRITERIA_SET));
     }
     
+    @Test
+    public void testSetTLSConnectionPartitionKey() {
+        final MockTrustEngine trustEngine = new MockTrustEngine();
+        
+        HttpGet request = new HttpGet("https://www.example.com/foobar");
+        HttpClientContext context = new HttpClientContext();
+        context.setAttribute(CONTEXT_KEY_TRUST_ENGINE, trustEngine);
+        HttpClientSecuritySupport.addDefaultTLSTrustEngineCriteria(context, request);
+        HttpClientSecuritySupport.setTLSConnectionPartitionKey(context, request);
+        final Object token1 = context.getUserToken();
+        Assert.assertTrue(token1 instanceof TLSConnectionPartitionKey);
+        
+        // Equivalent parameters produce an equal key
+        context = new HttpClientContext();
+        context.setAttribute(CONTEXT_KEY_TRUST_ENGINE, trustEngine);
+        HttpClientSecuritySupport.addDefaultTLSTrustEngineCriteria(context, request);
+        HttpClientSecuritySupport.setTLSConnectionPartitionKey(context, request);
+        Assert.assertEquals(context.getUserToken(), token1);
+        Assert.assertEquals(context.getUserToken().hashCode(), token1.hashCode());
+        
+        // Different trusted names
+        request = new HttpGet("https://www.example.org/foobar");
+        context = new HttpClientContext();
+        context.setAttribute(CONTEXT_KEY_TRUST_ENGINE, trustEngine);
+        HttpClientSecuritySupport.addDefaultTLSTrustEngineCriteria(context, request);
+        HttpClientSecuritySupport.setTLSConnectionPartitionKey(context, request);
+        Assert.assertNotEquals(context.getUserToken(), token1);
+        
+        // Different trust engine instance
+        request = new HttpGet("https://www.example.com/foobar");
+        context = new HttpClientContext();
+        context.setAttribute(CONTEXT_KEY_TRUST_ENGINE, new MockTrustEngine());
+        HttpClientSecuritySupport.addDefaultTLSTrustEngineCriteria(context, request);
+        HttpClientSecuritySupport.setTLSConnectionPartitionKey(context, request);
+        Assert.assertNotEquals(context.getUserToken(), token1);
+        
+        // Different client TLS credential
+        context = new HttpClientContext();
+        context.setAttribute(CONTEXT_KEY_TRUST_ENGINE, trustEngine);
+        context.setAttribute(CONTEXT_KEY_CLIENT_TLS_CREDENTIAL, new BasicX509Credential(cert));
+        HttpClientSecuritySupport.addDefaultTLSTrustEngineCriteria(context, request);
+        HttpClientSecuritySupport.setTLSConnectionPartitionKey(context, request);
+        Assert.assertNotEquals(context.getUserToken(), token1);
+        
+        // Existing user token is not replaced
+        context = new HttpClientContext();
+        context.setAttribute(CONTEXT_KEY_TRUST_ENGINE, trustEngine);
+        context.setUserToken("foo");
+        HttpClientSecuritySupport.setTLSConnectionPartitionKey(context, request);
+        Assert.assertEquals(context.getUserToken(), "foo");
+        
+        // Not https
+        request = new HttpGet("http://www.example.com/foobar");
+        context = new HttpClientContext();
+        context.setAttribute(CONTEXT_KEY_TRUST_ENGINE, trustEngine);
+        HttpClientSecuritySupport.setTLSConnectionPartitionKey(context, request);
+        Assert.assertNull(context.getUserToken());
+        
+        // No trust engine
+        request = new HttpGet("https://www.example.com/foobar");
+        context = new HttpClientContext();
+        HttpClientSecuritySupport.setTLSConnectionPartitionKey(context, request);
+        Assert.assertNull(context.getUserToken());
+    }
+    
     
     // Helpers
     
@@ -40,6 +40,7 @@ import org.opensaml.security.SecurityException;
 import org.opensaml.security.credential.UsageType;
 import org.opensaml.security.criteria.UsageCriterion;
 import org.opensaml.security.httpclient.HttpClientSecurityConstants;
+import org.opensaml.security.httpclient.HttpClientSecuritySupport;
 import org.opensaml.security.trust.TrustEngine;
 import org.opensaml.security.x509.BasicX509Credential;
 import org.opensaml.security.x509.TrustedNamesCriterion;
@@ -298,9 +299,11 @@ public class SecurityEnhancedTLSSocketFactory implements LayeredConnectionSocket
                 log.debug("Credential evaluated as trusted");
                 context.setAttribute(HttpClientSecurityConstants.CONTEXT_KEY_SERVER_TLS_CREDENTIAL_TRUSTED, 
                         Boolean.TRUE);
+                HttpClientSecuritySupport.recordTLSCredentialTrustResult(context, sslSocket.getSession(), true);
             } else {
                 context.setAttribute(HttpClientSecurityConstants.CONTEXT_KEY_SERVER_TLS_CREDENTIAL_TRUSTED, 
                         Boolean.FALSE);
+                HttpClientSecuritySupport.recordTLSCredentialTrustResult(context, sslSocket.getSession(), false);
                 final Boolean fatal = (Boolean)context.getAttribute(
                         HttpClientSecurityConstants.CONTEXT_KEY_SERVER_TLS_FAILURE_IS_FATAL);
                 if (fatal == null || fatal) {
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.security.trust.impl;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.opensaml.security.trust.TrustDecisionCache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * Basic in-memory implementation of {@link TrustDecisionCache}.
+ * 
+ * <p>
+ * Decisions are retained for at most the configured lifetime, and never beyond the upper bound
+ * supplied when the decision is recorded. Negative decisions are only retained if so configured.
+ * </p>
+ */
+public class BasicTrustDecisionCache implements TrustDecisionCache {
+    
+    /** Default maximum number of cached decisions. */
+    public static final long DEFAULT_MAX_SIZE = 1000;
+    
+    /** Default lifetime of a cached decision. */
+    @Nonnull public static final Duration DEFAULT_LIFETIME = Duration.ofMinutes(5);
+    
+    /** Maximum lifetime of a cached decision. */
+    @Nonnull private final Duration lifetime;
+    
+    /** Whether negative decisions are cached. */
+    private boolean cacheNegativeDecisions;
+    
+    /** The cached decisions. */
+    @Nonnull private final Cache<Object, Decision> decisions;
+    
+    /** Constructor. */
+    public BasicTrustDecisionCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_LIFETIME);
+    }
+    
+    /**
+     * Constructor.
+     *
+     * @param maxSize maximum number of cached decisions
+     * @param maxLifetime maximum lifetime of a cached decision
+     */
+    public BasicTrustDecisionCache(final long maxSize, @Nonnull final Duration maxLifetime) {
+        Constraint.isGreaterThan(0, maxSize, "Maximum size must be greater than 0");
+        Constraint.isNotNull(maxLifetime, "Lifetime cannot be null");
+        Constraint.isFalse(maxLifetime.isNegative() || maxLifetime.isZero(), "Lifetime must be positive");
+        
+        lifetime = maxLifetime;
+        decisions = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(maxLifetime.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+    
+    /**
+     * Get the maximum lifetime of a cached decision.
+     * 
+     * @return the maximum lifetime
+     */
+    @Nonnull public Duration getLifetime() {
+        return lifetime;
+    }
+    
+    /**
+     * Get whether negative decisions are cached.
+     * 
+     * <p>Defaults to: false</p>
+     * 
+     * @return true if negative decisions are cached, false otherwise
+     */
+    public boolean isCacheNegativeDecisions() {
+        return cacheNegativeDecisions;
+    }
+    
+    /**
+     * Set whether negative decisions are cached.
+     * 
+     * <p>Defaults to: false</p>
+     * 
+     * @param flag true if negative decisions are cached, false otherwise
+     */
+    public void setCacheNegativeDecisions(final boolean flag) {
+        cacheNegativeDecisions = flag;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    @Nullable public Boolean getDecision(@Nonnull final Object key) {
+        Constraint.isNotNull(key, "Key cannot be null");
+        final Decision decision = decisions.getIfPresent(key);
+        if (decision == null) {
+            return null;
+        }
+        
+        if (Instant.now().isAfter(decision.getNotAfter())) {
+            decisions.invalidate(key);
+            return null;
+        }
+        
+        return decision.isTrusted();
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public void recordDecision(@Nonnull final Object key, final boolean trusted, @Nullable final Instant notAfter) {
+        Constraint.isNotNull(key, "Key cannot be null");
+        if (!trusted && !isCacheNegativeDecisions()) {
+            return;
+        }
+        
+        final Instant now = Instant.now();
+        Instant expiry = now.plus(lifetime);
+        if (notAfter != null) {
+            if (!notAfter.isAfter(now)) {
+                return;
+            }
+            if (notAfter.isBefore(expiry)) {
+                expiry = notAfter;
+            }
+        }
+        
+        decisions.put(key, new Decision(trusted, expiry));
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public void invalidateAll() {
+        decisions.invalidateAll();
+    }
+    
+    /** A cached trust decision. */
+    private static final class Decision {
+        
+        /** The decision. */
+        private final boolean trusted;
+        
+        /** The instant after which the decision expires. */
+        @Nonnull private final Instant notAfter;
+        
+        /**
+         * Constructor.
+         *
+         * @param decision the decision
+         * @param expiry the instant after which the decision expires
+         */
+        Decision(final boolean decision, @Nonnull final Instant expiry) {
+            trusted = decision;
+            notAfter = expiry;
+        }
+        
+        /**
+         * Get the decision.
+         * 
+         * @return the decision
+         */
+        boolean isTrusted() {
+            return trusted;
+        }
+        
+        /**
+         * Get the instant after which the decision expires.
+         * 
+         * @return the expiry
+         */
+        @Nonnull Instant getNotAfter() {
+            return notAfter;
+        }
+    }
+
+}
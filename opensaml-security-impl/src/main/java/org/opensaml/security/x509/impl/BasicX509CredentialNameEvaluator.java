@@ -22,6 +22,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 import javax.annotation.Nonnull;
@@ -43,6 +44,8 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Predicates;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableSet;
 
@@ -72,11 +75,20 @@ import com.google.common.collect.ImmutableSet;
  * instance of {@link X500DNHandler}. The resulting distinguished name is then compared with the certificate subject
  * using {@link X500Principal#equals(Object)}. The default X500DNHandler used is {@link InternalX500DNHandler}.
  * </p>
+ * 
+ * <p>
+ * The names extracted from each entity certificate, and the results of parsing each trusted name as a
+ * distinguished name, are cached so that repeated evaluations reduce to set membership tests. The caches
+ * are cleared whenever the subject alternative name types or the X500DNHandler are changed.
+ * </p>
  */
 public class BasicX509CredentialNameEvaluator implements X509CredentialNameEvaluator {
 
     /** Class logger. */
     private final Logger log = LoggerFactory.getLogger(BasicX509CredentialNameEvaluator.class);
+    
+    /** Maximum number of entries in each of the certificate name and trusted name caches. */
+    private static final long CACHE_SIZE = 1000;
 
     /** Flag as to whether to perform name checking using credential's subject alt names. */
     private boolean checkSubjectAltNames;
@@ -89,12 +101,24 @@ public class BasicX509CredentialNameEvaluator implements X509CredentialNameEvalu
 
     /** The set of types of subject alternative names to process. */
     private Set<Integer> subjectAltNameTypes;
+    
+    /** The types of subject alternative names to process, in the form consumed by {@link X509Support}. */
+    private Integer[] subjectAltNameTypesArray;
 
     /** Responsible for parsing and serializing X.500 names to/from {@link X500Principal} instances. */
     private X500DNHandler x500DNHandler;
+    
+    /** Cache of names extracted from entity certificates. */
+    @Nonnull private final Cache<X509Certificate, CertificateNames> certificateNames;
+    
+    /** Cache of trusted names parsed as distinguished names, absent if the name is not a DN. */
+    @Nonnull private final Cache<String, Optional<X500Principal>> parsedTrustedNames;
 
     /** Constructor. */
     public BasicX509CredentialNameEvaluator() {
+        
+        certificateNames = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+        parsedTrustedNames = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
 
         x500DNHandler = new InternalX500DNHandler();
 
@@ -141,6 +165,8 @@ public class BasicX509CredentialNameEvaluator implements X509CredentialNameEvalu
             subjectAltNameTypes = new HashSet<>();
             subjectAltNameTypes.addAll(Collections2.filter(nameTypes, Predicates.notNull()));
         }
+        subjectAltNameTypesArray = subjectAltNameTypes.toArray(new Integer[subjectAltNameTypes.size()]);
+        certificateNames.invalidateAll();
     }
 
     /**
@@ -228,6 +254,7 @@ public class BasicX509CredentialNameEvaluator implements X509CredentialNameEvalu
      */
     public void setX500DNHandler(@Nonnull final X500DNHandler handler) {
         x500DNHandler = Constraint.isNotNull(handler, "X500DNHandler cannot be null");
+        parsedTrustedNames.invalidateAll();
     }
 
     /**
@@ -315,14 +342,10 @@ public class BasicX509CredentialNameEvaluator implements X509CredentialNameEvalu
             @Nonnull final Set<String> trustedNames) {
         
         log.debug("Processing subject DN common name");
-        final X500Principal subjectPrincipal = certificate.getSubjectX500Principal();
-        final List<String> commonNames = X509Support.getCommonNames(subjectPrincipal);
-        if (commonNames == null || commonNames.isEmpty()) {
+        final String commonName = getCertificateNames(certificate).getCommonName();
+        if (commonName == null) {
             return false;
         }
-        // TODO We only check the first one returned by X509Support. Maybe we should check all,
-        // if there are multiple CN AVA's from the same (first) RDN.
-        final String commonName = commonNames.get(0);
         log.debug("Extracted common name from certificate: {}", commonName);
 
         if (!Strings.isNullOrEmpty(commonName) && trustedNames.contains(commonName)) {
@@ -344,28 +367,18 @@ public class BasicX509CredentialNameEvaluator implements X509CredentialNameEvalu
             @Nonnull final Set<String> trustedNames) {
         
         log.debug("Processing subject DN");
-        final X500Principal subjectPrincipal = certificate.getSubjectX500Principal();
+        final X500Principal subjectPrincipal = getCertificateNames(certificate).getSubject();
 
         if (log.isDebugEnabled()) {
             log.debug("Extracted X500Principal from certificate: {}", x500DNHandler.getName(subjectPrincipal));
         }        
         for (final String trustedName : trustedNames) {
-            X500Principal trustedNamePrincipal = null;
-            try {
-                trustedNamePrincipal = x500DNHandler.parse(trustedName);
-                log.debug("Evaluating principal successfully parsed from trusted name: {}", trustedName);
-                if (subjectPrincipal.equals(trustedNamePrincipal)) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("Matched subject DN to trusted names: {}", x500DNHandler.getName(subjectPrincipal));
-                    }
-                    return true;
+            final X500Principal trustedNamePrincipal = parseTrustedName(trustedName);
+            if (trustedNamePrincipal != null && subjectPrincipal.equals(trustedNamePrincipal)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Matched subject DN to trusted names: {}", x500DNHandler.getName(subjectPrincipal));
                 }
-            } catch (final IllegalArgumentException e) {
-                // Do nothing, probably wasn't a distinguished name.
-                // TODO maybe try and match only the "suspected" DN values above
-                // - maybe match with regex for '='or something
-                log.debug("Trusted name was not a DN or could not be parsed: {}", trustedName);
-                continue;
+                return true;
             }
         }
         return false;
@@ -383,11 +396,9 @@ public class BasicX509CredentialNameEvaluator implements X509CredentialNameEvalu
             @Nonnull final Set<String> trustedNames) {
         
         log.debug("Processing subject alt names");
-        final Integer[] nameTypes = new Integer[getSubjectAltNameTypes().size()];
-        getSubjectAltNameTypes().toArray(nameTypes);
-        final List<?> altNames = X509Support.getAltNames(certificate, nameTypes);
+        final Set<Object> altNames = getCertificateNames(certificate).getAltNames();
 
-        if (altNames != null) {
+        if (!altNames.isEmpty()) {
             log.debug("Extracted subject alt names from certificate: {}", altNames);
     
             for (final Object altName : altNames) {
@@ -400,4 +411,111 @@ public class BasicX509CredentialNameEvaluator implements X509CredentialNameEvalu
         return false;
     }
     
+    /**
+     * Get the names extracted from the specified certificate, using the cached values if available.
+     * 
+     * @param certificate the certificate to process
+     * 
+     * @return the extracted names
+     */
+    @Nonnull protected CertificateNames getCertificateNames(@Nonnull final X509Certificate certificate) {
+        CertificateNames names = certificateNames.getIfPresent(certificate);
+        if (names == null) {
+            final X500Principal subject = certificate.getSubjectX500Principal();
+            
+            // TODO We only check the first one returned by X509Support. Maybe we should check all,
+            // if there are multiple CN AVA's from the same (first) RDN.
+            final List<String> commonNames = X509Support.getCommonNames(subject);
+            final String commonName = commonNames != null && !commonNames.isEmpty() 
+                    ? Strings.emptyToNull(commonNames.get(0)) : null;
+            
+            final List<?> altNames = X509Support.getAltNames(certificate, subjectAltNameTypesArray);
+            
+            names = new CertificateNames(subject, commonName, 
+                    altNames != null ? ImmutableSet.<Object>copyOf(Collections2.filter(altNames, Predicates.notNull())) 
+                            : Collections.<Object>emptySet());
+            certificateNames.put(certificate, names);
+        }
+        return names;
+    }
+    
+    /**
+     * Parse the trusted name as a distinguished name, using the cached result if available.
+     * 
+     * @param trustedName the trusted name
+     * 
+     * @return the parsed principal, or null if the name is not a distinguished name
+     */
+    @Nullable protected X500Principal parseTrustedName(@Nonnull final String trustedName) {
+        Optional<X500Principal> principal = parsedTrustedNames.getIfPresent(trustedName);
+        if (principal == null) {
+            try {
+                principal = Optional.ofNullable(x500DNHandler.parse(trustedName));
+                log.debug("Evaluating principal successfully parsed from trusted name: {}", trustedName);
+            } catch (final IllegalArgumentException e) {
+                // Do nothing, probably wasn't a distinguished name.
+                // TODO maybe try and match only the "suspected" DN values above
+                // - maybe match with regex for '='or something
+                log.debug("Trusted name was not a DN or could not be parsed: {}", trustedName);
+                principal = Optional.empty();
+            }
+            parsedTrustedNames.put(trustedName, principal);
+        }
+        return principal.orElse(null);
+    }
+    
+    /** Names extracted from a certificate for name checking purposes. */
+    protected static final class CertificateNames {
+        
+        /** The subject DN. */
+        @Nonnull private final X500Principal subject;
+        
+        /** The first common name from the subject DN. */
+        @Nullable private final String commonName;
+        
+        /** The subject alt names of the configured types. */
+        @Nonnull private final Set<Object> altNames;
+        
+        /**
+         * Constructor.
+         *
+         * @param subjectPrincipal the subject DN
+         * @param cn the first common name from the subject DN
+         * @param names the subject alt names
+         */
+        CertificateNames(@Nonnull final X500Principal subjectPrincipal, @Nullable final String cn,
+                @Nonnull final Set<Object> names) {
+            subject = subjectPrincipal;
+            commonName = cn;
+            altNames = names;
+        }
+        
+        /**
+         * Get the subject DN.
+         * 
+         * @return the subject DN
+         */
+        @Nonnull public X500Principal getSubject() {
+            return subject;
+        }
+        
+        /**
+         * Get the first common name from the subject DN.
+         * 
+         * @return the common name, or null
+         */
+        @Nullable public String getCommonName() {
+            return commonName;
+        }
+        
+        /**
+         * Get the subject alt names of the configured types.
+         * 
+         * @return the subject alt names
+         */
+        @Nonnull @NonnullElements @Unmodifiable public Set<Object> getAltNames() {
+            return altNames;
+        }
+    }
+    
 }
\ No newline at end of file
@@ -17,12 +17,19 @@
 
 package org.opensaml.security.x509.impl;
 
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.opensaml.security.SecurityException;
+import org.opensaml.security.trust.TrustDecisionCache;
 import org.opensaml.security.x509.PKIXTrustEngine;
 import org.opensaml.security.x509.PKIXTrustEvaluator;
 import org.opensaml.security.x509.PKIXValidationInformation;
@@ -31,6 +38,11 @@ import org.opensaml.security.x509.X509Credential;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
 import net.shibboleth.utilities.java.support.annotation.ParameterName;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
@@ -39,6 +51,12 @@ import net.shibboleth.utilities.java.support.resolver.ResolverException;
 /**
  * Trust engine implementation which evaluates an {@link X509Credential} token based on PKIX validation processing using
  * validation information from a trusted source.
+ * 
+ * <p>
+ * If a {@link TrustDecisionCache} is configured, the outcome of name checking and PKIX validation is cached,
+ * keyed on the digests of the untrusted certificates, the trusted names and the identity of the resolved
+ * validation information. Cached decisions never outlive the untrusted certificates.
+ * </p>
  */
 public class PKIXX509CredentialTrustEngine implements PKIXTrustEngine<X509Credential> {
 
@@ -53,6 +71,9 @@ public class PKIXX509CredentialTrustEngine implements PKIXTrustEngine<X509Creden
     
     /** The external credential name evaluator used to establish trusted name compliance. */
     private final X509CredentialNameEvaluator credNameEvaluator;
+    
+    /** Optional cache of trust decisions. */
+    @Nullable private TrustDecisionCache trustDecisionCache;
 
     /**
      * Constructor.
@@ -127,6 +148,26 @@ public class PKIXX509CredentialTrustEngine implements PKIXTrustEngine<X509Creden
     @Nullable public X509CredentialNameEvaluator getX509CredentialNameEvaluator() {
         return credNameEvaluator;
     }
+    
+    /**
+     * Get the optional cache of trust decisions.
+     * 
+     * @return the trust decision cache, or null
+     */
+    @Nullable public TrustDecisionCache getTrustDecisionCache() {
+        return trustDecisionCache;
+    }
+    
+    /**
+     * Set the optional cache of trust decisions.
+     * 
+     * <p>Defaults to: null, decisions are not cached.</p>
+     * 
+     * @param cache the trust decision cache, may be null
+     */
+    public void setTrustDecisionCache(@Nullable final TrustDecisionCache cache) {
+        trustDecisionCache = cache;
+    }
 
     /** {@inheritDoc} */
     @Override
@@ -182,6 +223,43 @@ public class PKIXX509CredentialTrustEngine implements PKIXTrustEngine<X509Creden
             @Nonnull final Iterable<PKIXValidationInformation> validationInfoSet) throws SecurityException {
         
         log.debug("Beginning PKIX validation using trusted validation information");
+        
+        final TrustDecisionCache cache = getTrustDecisionCache();
+        if (cache == null) {
+            return evaluate(untrustedX509Credential, trustedNames, validationInfoSet);
+        }
+        
+        final List<PKIXValidationInformation> validationInfos = ImmutableList.copyOf(validationInfoSet);
+        final Object cacheKey = buildDecisionCacheKey(untrustedX509Credential, trustedNames, validationInfos);
+        if (cacheKey == null) {
+            return evaluate(untrustedX509Credential, trustedNames, validationInfos);
+        }
+        
+        final Boolean cached = cache.getDecision(cacheKey);
+        if (cached != null) {
+            log.debug("Using cached PKIX trust decision for untrusted credential: {}", cached);
+            return cached;
+        }
+        
+        final boolean trusted = evaluate(untrustedX509Credential, trustedNames, validationInfos);
+        cache.recordDecision(cacheKey, trusted, getDecisionNotAfter(untrustedX509Credential));
+        return trusted;
+    }
+    
+    /**
+     * Perform name checking and PKIX validation on the untrusted credential.
+     * 
+     * @param untrustedX509Credential the credential to evaluate
+     * @param trustedNames the set of trusted names for name checking purposes
+     * @param validationInfoSet the set of validation information which serves as the basis for trust evaluation
+     * 
+     * @return true if PKIX validation of the untrusted credential is successful, otherwise false
+     * @throws SecurityException thrown if there is an error validating the untrusted credential
+     *          against trusted names or validation information
+     */
+    private boolean evaluate(@Nonnull final X509Credential untrustedX509Credential,
+            @Nullable final Set<String> trustedNames,
+            @Nonnull final Iterable<PKIXValidationInformation> validationInfoSet) throws SecurityException {
 
         if (!checkNames(trustedNames, untrustedX509Credential)) {
             log.debug("Evaluation of credential against trusted names failed. Aborting PKIX validation");
@@ -203,6 +281,64 @@ public class PKIXX509CredentialTrustEngine implements PKIXTrustEngine<X509Creden
         return false;
     }
     
+    /**
+     * Build the key under which the trust decision for the specified inputs is cached.
+     * 
+     * <p>
+     * The key comprises this engine instance, the digest of the untrusted entity certificate, the set of
+     * digests of the certificate chain, the trusted names, and the validation information instances.
+     * </p>
+     * 
+     * @param untrustedX509Credential the credential being evaluated
+     * @param trustedNames the set of trusted names for name checking purposes
+     * @param validationInfos the validation information which serves as the basis for trust evaluation
+     * 
+     * @return the cache key, or null if the decision can not be cached
+     */
+    @Nullable protected Object buildDecisionCacheKey(@Nonnull final X509Credential untrustedX509Credential,
+            @Nullable final Set<String> trustedNames, @Nonnull final List<PKIXValidationInformation> validationInfos) {
+        
+        final HashCode entityDigest;
+        final Set<HashCode> chainDigests = new HashSet<>();
+        try {
+            entityDigest = Hashing.sha256().hashBytes(untrustedX509Credential.getEntityCertificate().getEncoded());
+            if (untrustedX509Credential.getEntityCertificateChain() != null) {
+                for (final X509Certificate cert : untrustedX509Credential.getEntityCertificateChain()) {
+                    chainDigests.add(Hashing.sha256().hashBytes(cert.getEncoded()));
+                }
+            }
+        } catch (final CertificateEncodingException e) {
+            log.debug("Unable to encode untrusted certificate, trust decision will not be cached", e);
+            return null;
+        }
+        
+        return ImmutableList.of(this, entityDigest, chainDigests,
+                Optional.ofNullable(trustedNames != null ? ImmutableSet.copyOf(trustedNames) : null),
+                validationInfos);
+    }
+    
+    /**
+     * Get the instant after which a trust decision for the specified credential must not be used.
+     * 
+     * <p>This is the earliest expiration of the entity certificate and certificate chain.</p>
+     * 
+     * @param untrustedX509Credential the credential being evaluated
+     * 
+     * @return the upper bound on the decision's validity
+     */
+    @Nonnull protected Instant getDecisionNotAfter(@Nonnull final X509Credential untrustedX509Credential) {
+        Instant notAfter = untrustedX509Credential.getEntityCertificate().getNotAfter().toInstant();
+        if (untrustedX509Credential.getEntityCertificateChain() != null) {
+            for (final X509Certificate cert : untrustedX509Credential.getEntityCertificateChain()) {
+                final Instant certNotAfter = cert.getNotAfter().toInstant();
+                if (certNotAfter.isBefore(notAfter)) {
+                    notAfter = certNotAfter;
+                }
+            }
+        }
+        return notAfter;
+    }
+    
     /**
      * Evaluate the credential against the set of trusted names.
      * 
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.security.trust.impl;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link BasicTrustDecisionCache} implementation.
+ */
+public class BasicTrustDecisionCacheTest {
+    
+    private BasicTrustDecisionCache cache;
+    
+    @BeforeMethod
+    public void setUp() {
+        cache = new BasicTrustDecisionCache();
+    }
+    
+    @Test
+    public void testPositiveDecision() {
+        Assert.assertNull(cache.getDecision("key"));
+        
+        cache.recordDecision("key", true, null);
+        Assert.assertEquals(cache.getDecision("key"), Boolean.TRUE);
+        Assert.assertNull(cache.getDecision("other"));
+        
+        cache.invalidateAll();
+        Assert.assertNull(cache.getDecision("key"));
+    }
+    
+    @Test
+    public void testNegativeDecision() {
+        cache.recordDecision("key", false, null);
+        Assert.assertNull(cache.getDecision("key"));
+        
+        cache.setCacheNegativeDecisions(true);
+        cache.recordDecision("key", false, null);
+        Assert.assertEquals(cache.getDecision("key"), Boolean.FALSE);
+    }
+    
+    @Test
+    public void testNotAfter() throws InterruptedException {
+        cache.recordDecision("expired", true, Instant.now().minusSeconds(1));
+        Assert.assertNull(cache.getDecision("expired"));
+        
+        cache.recordDecision("future", true, Instant.now().plus(Duration.ofDays(1)));
+        Assert.assertEquals(cache.getDecision("future"), Boolean.TRUE);
+        
+        cache.recordDecision("soon", true, Instant.now().plusMillis(50));
+        Assert.assertEquals(cache.getDecision("soon"), Boolean.TRUE);
+        Thread.sleep(100);
+        Assert.assertNull(cache.getDecision("soon"));
+    }
+    
+    @Test
+    public void testLifetime() throws InterruptedException {
+        cache = new BasicTrustDecisionCache(10, Duration.ofMillis(50));
+        cache.recordDecision("key", true, Instant.now().plus(Duration.ofDays(1)));
+        Assert.assertEquals(cache.getDecision("key"), Boolean.TRUE);
+        Thread.sleep(100);
+        Assert.assertNull(cache.getDecision("key"));
+    }
+
+}
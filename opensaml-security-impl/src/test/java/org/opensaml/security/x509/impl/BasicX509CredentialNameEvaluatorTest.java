@@ -255,6 +255,35 @@ public class BasicX509CredentialNameEvaluatorTest extends XMLObjectBaseTestCase
         testEvaluateFailure("Trusted name set was null", null, cred);
     }
     
+    @Test
+    public void testRepeatedEvaluation() {
+        names.add(altNameURL);
+        testEvaluateSuccess("URL subject alt name was valid", names, cred);
+        testEvaluateSuccess("URL subject alt name was valid, cached names", names, cred);
+        
+        Set<String> otherNames = new HashSet<>();
+        otherNames.add("cn=blah.internet2.edu,OU=ShibDev,O=Internet2");
+        testEvaluateFailure("Trusted names were invalid", otherNames, cred);
+        testEvaluateFailure("Trusted names were invalid, cached names", otherNames, cred);
+        
+        otherNames.add(subjectDN);
+        testEvaluateSuccess("Subject DN was valid, cached names", otherNames, cred);
+    }
+    
+    @Test
+    public void testAltNameTypesChangeInvalidatesCache() {
+        evaluator.setCheckSubjectAltNames(true);
+        evaluator.setCheckSubjectDN(false);
+        evaluator.setCheckSubjectDNCommonName(false);
+        evaluator.setSubjectAltNameTypes(Collections.singleton(X509Support.DNS_ALT_NAME));
+        
+        names.add(altNameURL);
+        testEvaluateFailure("URL subject alt name was not a checked type", names, cred);
+        
+        evaluator.setSubjectAltNameTypes(Collections.singleton(X509Support.URI_ALT_NAME));
+        testEvaluateSuccess("URL subject alt name was valid after changing types", names, cred);
+    }
+    
     /********************
      * Helper methods.  *
      ********************/
@@ -22,6 +22,7 @@ import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -31,6 +32,7 @@ import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
 import org.opensaml.core.criterion.EntityIdCriterion;
 import org.opensaml.core.xml.XMLObjectBaseTestCase;
 import org.opensaml.security.SecurityException;
+import org.opensaml.security.trust.impl.BasicTrustDecisionCache;
 import org.opensaml.security.x509.BasicX509Credential;
 import org.opensaml.security.x509.PKIXValidationInformation;
 import org.opensaml.security.x509.X509Credential;
@@ -169,6 +171,56 @@ public class PKIXX509CredentialTrustEngineTest extends XMLObjectBaseTestCase {
     }
     
     
+    @Test
+    public void testCachedDecision() throws SecurityException {
+        cred = getCredential("foo-1A1-good.crt", "inter1A-ca.crt", "inter1A1-ca.crt");
+        
+        PKIXValidationInformation info = getPKIXInfoSet(getCertificates("root1-ca.crt"), EMPTY_CRLS, MAX_DEPTH);
+        Set<String> names = new HashSet<>();
+        names.add(subjectCN);
+        CountingPKIXTrustEvaluator evaluator = new CountingPKIXTrustEvaluator();
+        engine = new PKIXX509CredentialTrustEngine(
+                new StaticPKIXValidationInformationResolver(Collections.singletonList(info), names),
+                evaluator, new BasicX509CredentialNameEvaluator());
+        engine.setTrustDecisionCache(new BasicTrustDecisionCache());
+        
+        testValidateSuccess("Entity cert was good, full path in cred");
+        Assert.assertEquals(evaluator.count, 1);
+        
+        testValidateSuccess("Entity cert was good, full path in cred, cached");
+        Assert.assertEquals(evaluator.count, 1);
+        
+        // Equivalent credential instance should hit the same cache entry.
+        cred = getCredential("foo-1A1-good.crt", "inter1A1-ca.crt", "inter1A-ca.crt");
+        testValidateSuccess("Entity cert was good, full path in cred, cached");
+        Assert.assertEquals(evaluator.count, 1);
+        
+        // Different chain is a different cache entry.
+        cred = getCredential("foo-1A1-good.crt");
+        testValidateFailure("Entity cert was good, but incomplete path in cred");
+        Assert.assertEquals(evaluator.count, 2);
+        
+        engine.getTrustDecisionCache().invalidateAll();
+        cred = getCredential("foo-1A1-good.crt", "inter1A-ca.crt", "inter1A1-ca.crt");
+        testValidateSuccess("Entity cert was good, full path in cred");
+        Assert.assertEquals(evaluator.count, 3);
+    }
+    
+    @Test
+    public void testCachedDecisionNewValidationInfo() throws SecurityException {
+        cred = getCredential("foo-1A1-good.crt", "inter1A-ca.crt", "inter1A1-ca.crt");
+        BasicTrustDecisionCache cache = new BasicTrustDecisionCache();
+        
+        engine = getEngine(getCertificates("root1-ca.crt"), EMPTY_CRLS, MAX_DEPTH, subjectCN);
+        engine.setTrustDecisionCache(cache);
+        testValidateSuccess("Entity cert was good, full path in cred");
+        
+        // New validation information, e.g. following a metadata refresh, must not reuse the cached decision.
+        engine = getEngine(getCertificates("root2-ca.crt"), EMPTY_CRLS, MAX_DEPTH, subjectCN);
+        engine.setTrustDecisionCache(cache);
+        testValidateFailure("Entity cert was good, but trust anchor was replaced");
+    }
+    
     /********************
      * Helper methods.  *
      ********************/
@@ -278,5 +330,19 @@ public class PKIXX509CredentialTrustEngineTest extends XMLObjectBaseTestCase {
     private InputStream getInputStream(String fileName) {
         return  PKIXX509CredentialTrustEngineTest.class.getResourceAsStream(DATA_PATH + fileName);
     }
+    
+    /** PKIX trust evaluator which counts evaluations. */
+    private static class CountingPKIXTrustEvaluator extends CertPathPKIXTrustEvaluator {
+        
+        private int count;
+        
+        /** {@inheritDoc} */
+        @Override
+        public boolean validate(PKIXValidationInformation validationInfo, X509Credential untrustedCredential)
+                throws SecurityException {
+            count++;
+            return super.validate(validationInfo, untrustedCredential);
+        }
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.soap.client;
+
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.opensaml.messaging.context.InOutOperationContext;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+
+/**
+ * An asynchronous variant of {@link SOAPClient}.
+ * 
+ * <p>
+ * The returned future is completed with the supplied operation context once the inbound response has been
+ * received and processed. Failures are signaled by completing the future exceptionally with the
+ * {@link org.opensaml.soap.common.SOAPException} or {@link org.opensaml.security.SecurityException} which
+ * the equivalent synchronous call would have thrown.
+ * </p>
+ */
+@ThreadSafe
+public interface AsyncSOAPClient {
+
+    /**
+     * Sends a message without waiting for a response.
+     * 
+     * @param endpoint the endpoint to which to send the message
+     * @param context the operation context containing the outbound SOAP message
+     * 
+     * @return a future which completes with the operation context once the response has been processed
+     */
+    @Nonnull CompletableFuture<InOutOperationContext> send(@Nonnull @NotEmpty final String endpoint,
+            @Nonnull final InOutOperationContext context);
+
+}
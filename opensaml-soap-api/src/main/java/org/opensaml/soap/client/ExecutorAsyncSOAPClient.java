@@ -0,0 +1,134 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.soap.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.opensaml.messaging.context.InOutOperationContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * Adapter exposing a blocking {@link SOAPClient} as an {@link AsyncSOAPClient} by running its calls on an
+ * {@link Executor}.
+ * 
+ * <p>
+ * The wrapped client, typically a {@link org.opensaml.soap.client.http.AbstractPipelineHttpSOAPClient},
+ * performs all message encoding, decoding and security processing as usual. The calling thread is released
+ * as soon as the call has been handed to the executor, so that calls to several peers may proceed
+ * concurrently, bounded by the executor's own thread and queue limits.
+ * </p>
+ * 
+ * <p>
+ * This is not non-blocking I/O and does not remove the need for a thread per call: each call holds an
+ * executor thread for its entire round trip, including the wait for the peer's response, so the number of
+ * calls in flight can never exceed the executor's threads. It moves the blocking off the calling thread,
+ * it does not eliminate it.
+ * </p>
+ * 
+ * <p>
+ * A call rejected by the executor completes its future exceptionally with a {@link SOAPClientException}.
+ * Anything else thrown by the wrapped client, including an {@link Error}, completes the future exceptionally
+ * with that throwable, so callers waiting on the future are always released; an {@link Error} is then
+ * rethrown to the executor.
+ * </p>
+ * 
+ * <p>
+ * A future which is cancelled before its call has started will not be sent.
+ * </p>
+ */
+@ThreadSafe
+public class ExecutorAsyncSOAPClient implements AsyncSOAPClient {
+    
+    /** Logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(ExecutorAsyncSOAPClient.class);
+    
+    /** The wrapped synchronous client. */
+    @Nonnull private final SOAPClient soapClient;
+    
+    /** The executor on which calls are run. */
+    @Nonnull private final Executor executor;
+
+    /**
+     * Constructor.
+     *
+     * @param client the synchronous client to wrap
+     * @param exec the executor on which to run calls
+     */
+    public ExecutorAsyncSOAPClient(@Nonnull final SOAPClient client, @Nonnull final Executor exec) {
+        soapClient = Constraint.isNotNull(client, "SOAPClient cannot be null");
+        executor = Constraint.isNotNull(exec, "Executor cannot be null");
+    }
+    
+    /**
+     * Get the wrapped synchronous client.
+     * 
+     * @return the wrapped client
+     */
+    @Nonnull public SOAPClient getSOAPClient() {
+        return soapClient;
+    }
+    
+    /**
+     * Get the executor on which calls are run.
+     * 
+     * @return the executor
+     */
+    @Nonnull public Executor getExecutor() {
+        return executor;
+    }
+
+    /** {@inheritDoc} */
+    @Nonnull public CompletableFuture<InOutOperationContext> send(@Nonnull @NotEmpty final String endpoint,
+            @Nonnull final InOutOperationContext context) {
+        Constraint.isNotNull(endpoint, "Endpoint cannot be null");
+        Constraint.isNotNull(context, "Operation context cannot be null");
+        
+        final CompletableFuture<InOutOperationContext> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) {
+                    log.debug("SOAP call to '{}' was cancelled before being sent", endpoint);
+                    return;
+                }
+                try {
+                    soapClient.send(endpoint, context);
+                    future.complete(context);
+                } catch (final Throwable t) {
+                    future.completeExceptionally(t);
+                    if (t instanceof Error) {
+                        throw (Error) t;
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            log.warn("SOAP call to '{}' was rejected by executor", endpoint);
+            future.completeExceptionally(new SOAPClientException("SOAP call was rejected by executor", e));
+        }
+        return future;
+    }
+
+}
@@ -348,6 +348,7 @@ public abstract class AbstractPipelineHttpSOAPClient
         }
         
         HttpClientSecuritySupport.addDefaultTLSTrustEngineCriteria(clientContext, request);
+        HttpClientSecuritySupport.setTLSConnectionPartitionKey(clientContext, request);
         
         return clientContext;
     }
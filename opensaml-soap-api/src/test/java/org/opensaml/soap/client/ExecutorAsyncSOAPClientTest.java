@@ -0,0 +1,158 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.soap.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opensaml.messaging.context.InOutOperationContext;
+import org.opensaml.security.SecurityException;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Test the {@link ExecutorAsyncSOAPClient} implementation.
+ */
+public class ExecutorAsyncSOAPClientTest {
+    
+    private static final String ENDPOINT = "https://sp.example.org/soap";
+    
+    private InOutOperationContext opContext;
+    
+    private AtomicInteger calls;
+    
+    @BeforeMethod
+    public void setUp() {
+        opContext = new InOutOperationContext(null, null);
+        calls = new AtomicInteger();
+    }
+    
+    @Test
+    public void testSuccess() throws Exception {
+        final ExecutorAsyncSOAPClient client = new ExecutorAsyncSOAPClient((endpoint, context) -> {
+            Assert.assertEquals(endpoint, ENDPOINT);
+            Assert.assertSame(context, opContext);
+            calls.incrementAndGet();
+        }, Runnable::run);
+        
+        final CompletableFuture<InOutOperationContext> future = client.send(ENDPOINT, opContext);
+        Assert.assertSame(future.get(), opContext);
+        Assert.assertEquals(calls.get(), 1);
+    }
+    
+    @Test
+    public void testSOAPException() throws Exception {
+        final SOAPClientException exception = new SOAPClientException("failed");
+        final ExecutorAsyncSOAPClient client = new ExecutorAsyncSOAPClient((endpoint, context) -> {
+            throw exception;
+        }, Runnable::run);
+        
+        assertFailure(client.send(ENDPOINT, opContext), exception);
+    }
+    
+    @Test
+    public void testSecurityException() throws Exception {
+        final SecurityException exception = new SecurityException("failed");
+        final ExecutorAsyncSOAPClient client = new ExecutorAsyncSOAPClient((endpoint, context) -> {
+            throw exception;
+        }, Runnable::run);
+        
+        assertFailure(client.send(ENDPOINT, opContext), exception);
+    }
+    
+    @Test
+    public void testError() throws Exception {
+        final Error error = new NoClassDefFoundError("missing");
+        final List<Throwable> rethrown = new ArrayList<>();
+        final ExecutorAsyncSOAPClient client = new ExecutorAsyncSOAPClient((endpoint, context) -> {
+            throw error;
+        }, command -> {
+            try {
+                command.run();
+            } catch (final Error e) {
+                rethrown.add(e);
+            }
+        });
+        
+        assertFailure(client.send(ENDPOINT, opContext), error);
+        Assert.assertEquals(rethrown, List.of(error));
+    }
+    
+    @Test
+    public void testRejected() throws Exception {
+        final RejectedExecutionException exception = new RejectedExecutionException("full");
+        final ExecutorAsyncSOAPClient client = new ExecutorAsyncSOAPClient((endpoint, context) -> {
+            calls.incrementAndGet();
+        }, command -> {
+            throw exception;
+        });
+        
+        final CompletableFuture<InOutOperationContext> future = client.send(ENDPOINT, opContext);
+        Assert.assertTrue(future.isCompletedExceptionally());
+        try {
+            future.get();
+            Assert.fail("Future should have failed");
+        } catch (final ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof SOAPClientException);
+            Assert.assertSame(e.getCause().getCause(), exception);
+        }
+        Assert.assertEquals(calls.get(), 0);
+    }
+    
+    @Test
+    public void testCancelledBeforeStart() {
+        final List<Runnable> queue = new ArrayList<>();
+        final Executor executor = queue::add;
+        final ExecutorAsyncSOAPClient client = new ExecutorAsyncSOAPClient((endpoint, context) -> {
+            calls.incrementAndGet();
+        }, executor);
+        
+        final CompletableFuture<InOutOperationContext> future = client.send(ENDPOINT, opContext);
+        Assert.assertFalse(future.isDone());
+        Assert.assertTrue(future.cancel(false));
+        
+        Assert.assertEquals(queue.size(), 1);
+        queue.get(0).run();
+        Assert.assertEquals(calls.get(), 0);
+    }
+    
+    /**
+     * Assert that a future failed with the supplied exception.
+     * 
+     * @param future the future to check
+     * @param expected the expected cause of failure
+     * 
+     * @throws InterruptedException if interrupted while waiting for the future
+     */
+    private void assertFailure(final CompletableFuture<InOutOperationContext> future, final Throwable expected)
+            throws InterruptedException {
+        try {
+            future.get();
+            Assert.fail("Future should have failed");
+        } catch (final ExecutionException e) {
+            Assert.assertSame(e.getCause(), expected);
+        }
+    }
+
+}
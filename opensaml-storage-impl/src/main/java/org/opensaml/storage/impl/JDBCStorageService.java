@@ -0,0 +1,680 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.storage.impl;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimerTask;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.primitive.StringSupport;
+
+import org.opensaml.storage.AbstractStorageService;
+import org.opensaml.storage.MutableStorageRecord;
+import org.opensaml.storage.StorageCapabilitiesEx;
+import org.opensaml.storage.StorageRecord;
+import org.opensaml.storage.VersionMismatchException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of {@link org.opensaml.storage.StorageService} that uses plain JDBC to persist to a database.
+ * 
+ * <p>The table layout is the same as that used by {@link JPAStorageService}, so the two implementations may be
+ * used interchangeably against the same schema. Every operation is issued as a single parameterized statement with
+ * constant SQL text, so statement caching in the supplied {@link DataSource} (e.g. a connection pool configured to
+ * pool prepared statements) applies to all of them. Updates and versioned updates are performed as one conditional
+ * <code>UPDATE</code>, which avoids the read-lock-write round trips needed by the JPA implementation.</p>
+ * 
+ * <p>Expired records are removed by the cleanup task in chunks of {@link #getCleanupBatchSize()} records, each in
+ * its own short transaction, to avoid holding long-running locks on a busy table.</p>
+ */
+public class JDBCStorageService extends AbstractStorageService implements StorageCapabilitiesEx {
+
+    /** Default table name. */
+    @Nonnull @NotEmpty public static final String DEFAULT_TABLE_NAME = "StorageRecords";
+
+    /** Default number of records removed per cleanup transaction. */
+    public static final int DEFAULT_CLEANUP_BATCH_SIZE = 100;
+
+    /** Class logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(JDBCStorageService.class);
+
+    /** Data source. */
+    @Nonnull private final DataSource dataSource;
+
+    /** Name of the table holding records. */
+    @Nonnull @NotEmpty private String tableName;
+
+    /** Number of records removed per cleanup transaction. */
+    @Positive private int cleanupBatchSize;
+
+    /** Statement to read a record. */
+    private String readSQL;
+
+    /** Statement to insert a record. */
+    private String insertSQL;
+
+    /** Statement to overwrite an expired record. */
+    private String replaceExpiredSQL;
+
+    /** Statement to update an unexpired record. */
+    private String updateSQL;
+
+    /** Statement to update an unexpired record with a matching version. */
+    private String updateWithVersionSQL;
+
+    /** Statement to update the expiration of an unexpired record. */
+    private String updateExpirationSQL;
+
+    /** Statement to delete a record. */
+    private String deleteSQL;
+
+    /** Statement to delete a record with a matching version. */
+    private String deleteWithVersionSQL;
+
+    /** Statement to update the expiration of all unexpired records in a context. */
+    private String updateContextExpirationSQL;
+
+    /** Statement to delete a context. */
+    private String deleteContextSQL;
+
+    /** Statement to delete the expired records in a context. */
+    private String reapContextSQL;
+
+    /** Statement to select a chunk of expired records. */
+    private String selectExpiredSQL;
+
+    /** Statement to delete a single expired record. */
+    private String deleteExpiredSQL;
+
+    /**
+     * Creates a new JDBC storage service.
+     * 
+     * @param source data source
+     */
+    public JDBCStorageService(@Nonnull final DataSource source) {
+        dataSource = Constraint.isNotNull(source, "DataSource cannot be null");
+
+        setContextSize(JPAStorageRecord.CONTEXT_SIZE);
+        setKeySize(JPAStorageRecord.KEY_SIZE);
+        setValueSize(Integer.MAX_VALUE);
+        tableName = DEFAULT_TABLE_NAME;
+        cleanupBatchSize = DEFAULT_CLEANUP_BATCH_SIZE;
+    }
+
+    /**
+     * Returns the name of the table holding records.
+     * 
+     * @return table name
+     */
+    @Nonnull @NotEmpty public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Sets the name of the table holding records (default is {@value #DEFAULT_TABLE_NAME}).
+     * 
+     * @param name table name
+     */
+    public void setTableName(@Nonnull @NotEmpty final String name) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        tableName = Constraint.isNotNull(StringSupport.trimOrNull(name), "Table name cannot be null or empty");
+    }
+
+    /**
+     * Returns the number of expired records removed per cleanup transaction.
+     * 
+     * @return cleanup batch size
+     */
+    @Positive public int getCleanupBatchSize() {
+        return cleanupBatchSize;
+    }
+
+    /**
+     * Sets the number of expired records removed per cleanup transaction (default is
+     * {@value #DEFAULT_CLEANUP_BATCH_SIZE}).
+     * 
+     * @param size cleanup batch size
+     */
+    public void setCleanupBatchSize(@Positive final int size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        cleanupBatchSize = (int) Constraint.isGreaterThan(0, size, "Cleanup batch size must be greater than zero");
+    }
+
+    /** {@inheritDoc} */
+    public boolean isServerSide() {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    public boolean isClustered() {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override protected void doInitialize() throws ComponentInitializationException {
+        final String keyClause = " WHERE context = ? AND id = ?";
+        final String unexpiredClause = " AND (expires IS NULL OR expires > ?)";
+
+        readSQL = "SELECT value, expires, version FROM " + tableName + keyClause;
+        insertSQL = "INSERT INTO " + tableName + " (context, id, value, expires, version) VALUES (?, ?, ?, ?, 1)";
+        replaceExpiredSQL = "UPDATE " + tableName + " SET value = ?, expires = ?, version = 1" + keyClause
+                + " AND expires <= ?";
+        updateSQL = "UPDATE " + tableName + " SET value = ?, expires = ?, version = version + 1" + keyClause
+                + unexpiredClause;
+        updateWithVersionSQL = updateSQL + " AND version = ?";
+        updateExpirationSQL = "UPDATE " + tableName + " SET expires = ?" + keyClause + unexpiredClause;
+        deleteSQL = "DELETE FROM " + tableName + keyClause;
+        deleteWithVersionSQL = deleteSQL + " AND version = ?";
+        updateContextExpirationSQL = "UPDATE " + tableName + " SET expires = ? WHERE context = ?" + unexpiredClause;
+        deleteContextSQL = "DELETE FROM " + tableName + " WHERE context = ?";
+        reapContextSQL = deleteContextSQL + " AND expires <= ?";
+        selectExpiredSQL = "SELECT context, id FROM " + tableName + " WHERE expires <= ?";
+        deleteExpiredSQL = deleteSQL + " AND expires <= ?";
+
+        super.doInitialize();
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean create(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable @Positive final Long expiration) throws IOException {
+        try (final Connection connection = getConnection()) {
+            try (final PreparedStatement statement = connection.prepareStatement(insertSQL)) {
+                statement.setString(1, context);
+                statement.setString(2, key);
+                statement.setString(3, value);
+                setExpiration(statement, 4, expiration);
+                statement.executeUpdate();
+                log.debug("Create record '{}' in context '{}' with expiration '{}'", key, context, expiration);
+                return true;
+            } catch (final SQLException e) {
+                if (!isConstraintViolation(e)) {
+                    throw e;
+                }
+            }
+
+            // A record exists, but may be overwritten if it's dead.
+            try (final PreparedStatement statement = connection.prepareStatement(replaceExpiredSQL)) {
+                statement.setString(1, value);
+                setExpiration(statement, 2, expiration);
+                statement.setString(3, context);
+                statement.setString(4, key);
+                statement.setLong(5, System.currentTimeMillis());
+                if (statement.executeUpdate() > 0) {
+                    log.debug("Create record '{}' in context '{}' with expiration '{}'", key, context, expiration);
+                    return true;
+                }
+            }
+            log.debug("Duplicate record '{}' in context '{}'", key, context);
+            return false;
+        } catch (final SQLException e) {
+            log.error("Error creating record '{}' in context '{}' with expiration '{}'", key, context, expiration, e);
+            throw new IOException(e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override @Nullable public <T> StorageRecord<T> read(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException {
+        return this.<T>readImpl(context, key, null).getSecond();
+    }
+
+    /** {@inheritDoc} */
+    @Override @Nonnull public <T> Pair<Long, StorageRecord<T>> read(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Positive final long version) throws IOException {
+        return readImpl(context, key, version);
+    }
+
+    /**
+     * Reads the record matching the supplied parameters. Returns an empty pair if the record cannot be found or is
+     * expired.
+     * 
+     * @param <T> type of object
+     * @param context to search for
+     * @param key to search for
+     * @param version to match
+     * 
+     * @return pair of version and storage record
+     * @throws IOException if errors occur in the read process
+     */
+    @Nonnull protected <T> Pair<Long, StorageRecord<T>> readImpl(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nullable @Positive final Long version) throws IOException {
+        try (final Connection connection = getConnection()) {
+            final JDBCStorageRecord<T> record = readRecord(connection, context, key);
+            if (record == null) {
+                log.debug("Read failed, key '{}' not found in context '{}'", key, context);
+                return new Pair<>();
+            } else if (record.isExpired(System.currentTimeMillis())) {
+                log.debug("Read failed, key '{}' expired in context '{}'", key, context);
+                return new Pair<>();
+            } else if (version != null && record.getVersion() == version) {
+                // Nothing's changed, so just echo back the version.
+                return new Pair<>(version, null);
+            }
+            return new Pair<>(record.getVersion(), record);
+        } catch (final SQLException e) {
+            log.error("Error reading record '{}' in context '{}'", key, context, e);
+            throw new IOException(e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean update(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable @Positive final Long expiration) throws IOException {
+        try (final Connection connection = getConnection();
+                final PreparedStatement statement = connection.prepareStatement(updateSQL)) {
+            statement.setString(1, value);
+            setExpiration(statement, 2, expiration);
+            statement.setString(3, context);
+            statement.setString(4, key);
+            statement.setLong(5, System.currentTimeMillis());
+            if (statement.executeUpdate() == 0) {
+                log.debug("Update failed, key '{}' not found or expired in context '{}'", key, context);
+                return false;
+            }
+            log.debug("Update record '{}' in context '{}' with expiration '{}'", key, context, expiration);
+            return true;
+        } catch (final SQLException e) {
+            log.error("Error updating record '{}' in context '{}'", key, context, e);
+            throw new IOException(e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override @Nullable public Long updateWithVersion(@Positive final long version,
+            @Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable @Positive final Long expiration) throws IOException,
+            VersionMismatchException {
+        return updateImpl(version, context, key, value, expiration);
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean updateExpiration(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nullable @Positive final Long expiration) throws IOException {
+        try (final Connection connection = getConnection();
+                final PreparedStatement statement = connection.prepareStatement(updateExpirationSQL)) {
+            setExpiration(statement, 1, expiration);
+            statement.setString(2, context);
+            statement.setString(3, key);
+            statement.setLong(4, System.currentTimeMillis());
+            if (statement.executeUpdate() == 0) {
+                log.debug("Update failed, key '{}' not found or expired in context '{}'", key, context);
+                return false;
+            }
+            log.debug("Update expiration of record '{}' in context '{}' to '{}'", key, context, expiration);
+            return true;
+        } catch (final SQLException e) {
+            log.error("Error updating record '{}' in context '{}'", key, context, e);
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Updates the record matching the supplied parameters if its version matches. Returns null if the record cannot
+     * be found or is expired.
+     * 
+     * <p>The update is applied with a single conditional statement; only if it fails to match a record is the
+     * record read back to distinguish a version mismatch from a missing or expired record.</p>
+     * 
+     * @param version to check
+     * @param context to search for
+     * @param key to search for
+     * @param value to update
+     * @param expiration to update
+     * 
+     * @return the new version of the record, or null if it was not updated
+     * @throws IOException if errors occur in the update process
+     * @throws VersionMismatchException if the record found contains a version that does not match the parameter
+     */
+    @Nullable protected Long updateImpl(@Positive final long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nonnull @NotEmpty final String value,
+            @Nullable @Positive final Long expiration) throws IOException, VersionMismatchException {
+        try (final Connection connection = getConnection()) {
+            final long now = System.currentTimeMillis();
+            try (final PreparedStatement statement = connection.prepareStatement(updateWithVersionSQL)) {
+                statement.setString(1, value);
+                setExpiration(statement, 2, expiration);
+                statement.setString(3, context);
+                statement.setString(4, key);
+                statement.setLong(5, now);
+                statement.setLong(6, version);
+                if (statement.executeUpdate() > 0) {
+                    log.debug("Update record '{}' in context '{}' with expiration '{}'", key, context, expiration);
+                    return version + 1;
+                }
+            }
+
+            final JDBCStorageRecord<?> record = readRecord(connection, context, key);
+            if (record == null) {
+                log.debug("Update failed, key '{}' not found in context '{}'", key, context);
+                return null;
+            } else if (record.isExpired(now)) {
+                log.debug("Update failed, key '{}' expired in context '{}'", key, context);
+                return null;
+            }
+            // Caller is out of sync.
+            throw new VersionMismatchException();
+        } catch (final SQLException e) {
+            log.error("Error updating record '{}' in context '{}'", key, context, e);
+            throw new IOException(e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean deleteWithVersion(@Positive final long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException, VersionMismatchException {
+        return deleteImpl(version, context, key);
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean delete(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key)
+            throws IOException {
+        try {
+            return deleteImpl(null, context, key);
+        } catch (final VersionMismatchException e) {
+            throw new IllegalStateException("Unexpected exception thrown by delete.", e);
+        }
+    }
+
+    /**
+     * Deletes the record matching the supplied parameters.
+     * 
+     * @param version to check
+     * @param context to search for
+     * @param key to search for
+     * 
+     * @return whether the record was deleted
+     * @throws IOException if errors occur in the delete process
+     * @throws VersionMismatchException if the record found contains a version that does not match the parameter
+     */
+    protected boolean deleteImpl(@Nullable @Positive final Long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException, VersionMismatchException {
+        try (final Connection connection = getConnection()) {
+            try (final PreparedStatement statement =
+                    connection.prepareStatement(version != null ? deleteWithVersionSQL : deleteSQL)) {
+                statement.setString(1, context);
+                statement.setString(2, key);
+                if (version != null) {
+                    statement.setLong(3, version);
+                }
+                if (statement.executeUpdate() > 0) {
+                    log.debug("Deleted record '{}' in context '{}'", key, context);
+                    return true;
+                }
+            }
+            if (version != null && readRecord(connection, context, key) != null) {
+                throw new VersionMismatchException();
+            }
+            log.debug("Deleting record '{}' in context '{}'....key not found", key, context);
+            return false;
+        } catch (final SQLException e) {
+            log.error("Error deleting record '{}' in context '{}'", key, context, e);
+            throw new IOException(e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public void updateContextExpiration(@Nonnull @NotEmpty final String context,
+            @Nullable @Positive final Long expiration) throws IOException {
+        try (final Connection connection = getConnection();
+                final PreparedStatement statement = connection.prepareStatement(updateContextExpirationSQL)) {
+            setExpiration(statement, 1, expiration);
+            statement.setString(2, context);
+            statement.setLong(3, System.currentTimeMillis());
+            final int count = statement.executeUpdate();
+            log.debug("Updated expiration of {} record(s) in context '{}' to '{}'", count, context, expiration);
+        } catch (final SQLException e) {
+            log.error("Error updating context expiration in context '{}'", context, e);
+            throw new IOException(e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public void deleteContext(@Nonnull @NotEmpty final String context) throws IOException {
+        deleteContextImpl(context, null);
+        log.debug("Deleted all entities in context '{}'", context);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void reap(@Nonnull @NotEmpty final String context) throws IOException {
+        deleteContextImpl(context, System.currentTimeMillis());
+        log.debug("Reaped all entities in context '{}'", context);
+    }
+
+    /**
+     * Deletes every record with the supplied context. If expiration is supplied, only records with an expiration before
+     * the supplied expiration will be removed.
+     * 
+     * @param context to delete
+     * @param expiration (optional) to require for deletion
+     * 
+     * @throws IOException if errors occur in the delete process
+     */
+    protected void deleteContextImpl(@Nonnull @NotEmpty final String context, @Nullable final Long expiration)
+            throws IOException {
+        try (final Connection connection = getConnection();
+                final PreparedStatement statement =
+                        connection.prepareStatement(expiration != null ? reapContextSQL : deleteContextSQL)) {
+            statement.setString(1, context);
+            if (expiration != null) {
+                statement.setLong(2, expiration);
+            }
+            final int count = statement.executeUpdate();
+            log.debug("Deleted {} record(s) in context '{}' with expiration '{}'", count, context, expiration);
+        } catch (final SQLException e) {
+            log.error("Error deleting context '{}'", context, e);
+            throw new IOException(e);
+        }
+    }
+
+    // Checkstyle: CyclomaticComplexity OFF
+    /**
+     * Deletes every record with an expiration before the supplied expiration, in chunks of
+     * {@link #getCleanupBatchSize()} records per transaction.
+     * 
+     * @param expiration of records to delete
+     * 
+     * @return the number of records deleted
+     * @throws IOException if errors occur in the cleanup process
+     */
+    protected int deleteImpl(@Nonnull final Long expiration) throws IOException {
+        int total = 0;
+        try (final Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                final List<String[]> chunk = new ArrayList<>(cleanupBatchSize);
+                do {
+                    chunk.clear();
+                    try (final PreparedStatement select = connection.prepareStatement(selectExpiredSQL)) {
+                        select.setMaxRows(cleanupBatchSize);
+                        select.setLong(1, expiration);
+                        try (final ResultSet rs = select.executeQuery()) {
+                            while (rs.next() && chunk.size() < cleanupBatchSize) {
+                                chunk.add(new String[] {rs.getString(1), rs.getString(2)});
+                            }
+                        }
+                    }
+                    if (!chunk.isEmpty()) {
+                        try (final PreparedStatement delete = connection.prepareStatement(deleteExpiredSQL)) {
+                            for (final String[] id : chunk) {
+                                delete.setString(1, id[0]);
+                                delete.setString(2, id[1]);
+                                delete.setLong(3, expiration);
+                                delete.addBatch();
+                            }
+                            delete.executeBatch();
+                        }
+                        connection.commit();
+                        total += chunk.size();
+                    }
+                } while (chunk.size() == cleanupBatchSize);
+            } catch (final SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            log.debug("Deleted {} record(s) with expiration '{}'", total, expiration);
+            return total;
+        } catch (final SQLException e) {
+            log.error("Error deleting with expiration '{}'", expiration, e);
+            throw new IOException(e);
+        }
+    }
+    // Checkstyle: CyclomaticComplexity ON
+
+    /** {@inheritDoc} */
+    @Override @Nullable protected TimerTask getCleanupTask() {
+        return new TimerTask() {
+
+            /** {@inheritDoc} */
+            @Override public void run() {
+                final Long now = System.currentTimeMillis();
+                log.debug("Running cleanup task at {}", now);
+                try {
+                    deleteImpl(now);
+                } catch (final IOException e) {
+                    log.error("Error running cleanup task for {}", now, e);
+                }
+                log.debug("Finished cleanup task for {}", now);
+            }
+        };
+    }
+
+    /**
+     * Obtains a connection from the data source, in auto-commit mode.
+     * 
+     * @return connection
+     * @throws SQLException if a connection cannot be obtained
+     */
+    @Nonnull private Connection getConnection() throws SQLException {
+        final Connection connection = dataSource.getConnection();
+        if (!connection.getAutoCommit()) {
+            connection.setAutoCommit(true);
+        }
+        return connection;
+    }
+
+    /**
+     * Reads the record matching the supplied parameters, regardless of expiration.
+     * 
+     * @param <T> type of object
+     * @param connection to use
+     * @param context to search for
+     * @param key to search for
+     * 
+     * @return the record, or null
+     * @throws SQLException if an error occurs executing the query
+     */
+    @Nullable private <T> JDBCStorageRecord<T> readRecord(@Nonnull final Connection connection,
+            @Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key) throws SQLException {
+        try (final PreparedStatement statement = connection.prepareStatement(readSQL)) {
+            statement.setString(1, context);
+            statement.setString(2, key);
+            try (final ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                final String value = rs.getString(1);
+                final long exp = rs.getLong(2);
+                final Long expiration = rs.wasNull() ? null : exp;
+                return new JDBCStorageRecord<>(value, expiration, rs.getLong(3));
+            }
+        }
+    }
+
+    /**
+     * Binds a possibly null expiration parameter.
+     * 
+     * @param statement statement to bind to
+     * @param index parameter index
+     * @param expiration expiration to bind
+     * 
+     * @throws SQLException if the parameter cannot be bound
+     */
+    private void setExpiration(@Nonnull final PreparedStatement statement, final int index,
+            @Nullable final Long expiration) throws SQLException {
+        if (expiration != null) {
+            statement.setLong(index, expiration);
+        } else {
+            statement.setNull(index, Types.BIGINT);
+        }
+    }
+
+    /**
+     * Returns whether the supplied exception signals an integrity constraint violation, i.e. a duplicate key.
+     * 
+     * @param e exception to check
+     * 
+     * @return whether the exception is an integrity constraint violation
+     */
+    private boolean isConstraintViolation(@Nonnull final SQLException e) {
+        final String state = e.getSQLState();
+        return state != null && state.startsWith("23");
+    }
+
+    /**
+     * Storage record populated from a result row.
+     * 
+     * @param <T> type of object
+     */
+    private static class JDBCStorageRecord<T> extends MutableStorageRecord<T> {
+
+        /**
+         * Constructor.
+         * 
+         * @param val value
+         * @param exp expiration, or null
+         * @param ver version
+         */
+        public JDBCStorageRecord(@Nonnull @NotEmpty final String val, @Nullable final Long exp, final long ver) {
+            super(val, exp);
+            setVersion(ver);
+        }
+
+        /**
+         * Returns whether the record has expired.
+         * 
+         * @param now current time in milliseconds
+         * 
+         * @return whether the record has expired
+         */
+        public boolean isExpired(final long now) {
+            final Long exp = getExpiration();
+            return exp != null && now >= exp;
+        }
+    }
+
+}
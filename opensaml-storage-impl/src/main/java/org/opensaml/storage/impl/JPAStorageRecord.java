@@ -27,6 +27,7 @@ import javax.persistence.Embeddable;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.IdClass;
+import javax.persistence.Index;
 import javax.persistence.Lob;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
@@ -42,7 +43,7 @@ import org.opensaml.storage.MutableStorageRecord;
  * @param <T> type of object
  */
 @Entity
-@Table(name = "StorageRecords")
+@Table(name = "StorageRecords", indexes = {@Index(name = "StorageRecords_expires_idx", columnList = "expires")})
 @NamedQueries({
     @NamedQuery(name = "JPAStorageRecord.findAll",
             query = "SELECT r FROM JPAStorageRecord r"),
@@ -57,6 +58,8 @@ import org.opensaml.storage.MutableStorageRecord;
             query = "DELETE FROM JPAStorageRecord r WHERE r.context = :context"),
     @NamedQuery(name = "JPAStorageRecord.deleteByContextAndExpiration",
             query = "DELETE FROM JPAStorageRecord r WHERE r.context = :context AND r.expiration <= :exp"),
+    @NamedQuery(name = "JPAStorageRecord.findByExpiration",
+            query = "SELECT r FROM JPAStorageRecord r WHERE r.expiration <= :exp ORDER BY r.expiration"),
     @NamedQuery(name = "JPAStorageRecord.deleteByExpiration",
             query = "DELETE FROM JPAStorageRecord r WHERE r.expiration <= :exp")})
 @IdClass(JPAStorageRecord.RecordId.class)
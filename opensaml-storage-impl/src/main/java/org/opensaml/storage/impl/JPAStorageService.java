@@ -18,11 +18,13 @@
 package org.opensaml.storage.impl;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -37,7 +39,9 @@ import javax.persistence.RollbackException;
 import net.shibboleth.utilities.java.support.annotation.constraint.NonNegative;
 import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
 import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotLive;
 import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.annotation.constraint.Unmodifiable;
 import net.shibboleth.utilities.java.support.collection.Pair;
 import net.shibboleth.utilities.java.support.component.ComponentSupport;
 import net.shibboleth.utilities.java.support.logic.Constraint;
@@ -49,10 +53,28 @@ import org.opensaml.storage.VersionMismatchException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Timer;
+
 /**
  * Implementation of {@link org.opensaml.storage.StorageService} that uses JPA to persist to a database.
+ * 
+ * <p>By default the cleanup task removes all expired records with a single bulk delete. On large tables this can
+ * hold locks for long enough to stall other traffic, so a positive {@link #setCleanupBatchSize(int)} switches to
+ * an incremental sweep which removes expired records in expiration order, a bounded batch per transaction, with an
+ * optional pause between batches. The pause is taken on the cleanup timer's thread, which is therefore busy for
+ * the duration of a sweep; services sharing a timer should keep the pause short. The number of records reaped and
+ * the duration of each cleanup run are exposed via {@link #getMetrics()}.</p>
  */
-public class JPAStorageService extends AbstractStorageService implements StorageCapabilitiesEx {
+public class JPAStorageService extends AbstractStorageService implements StorageCapabilitiesEx, MetricSet {
+
+    /** Metric name for the meter of records removed by cleanup. */
+    @Nonnull @NotEmpty public static final String METRIC_METER_REAPED_RECORDS = "meter.reapedRecords";
+
+    /** Metric name for the timer of cleanup runs. */
+    @Nonnull @NotEmpty public static final String METRIC_TIMER_CLEANUP = "timer.cleanup";
 
     /** Class logger. */
     @Nonnull private final Logger log = LoggerFactory.getLogger(JPAStorageService.class);
@@ -63,6 +85,18 @@ public class JPAStorageService extends AbstractStorageService implements Storage
     /** Number of times to retry a transaction if it rolls back. */
     @NonNegative private int transactionRetry;
 
+    /** Maximum number of expired records removed per cleanup transaction, or 0 for a single bulk delete. */
+    @NonNegative private int cleanupBatchSize;
+
+    /** Pause between cleanup batches. */
+    @Nonnull private Duration cleanupBatchDelay;
+
+    /** Meter of records removed by cleanup. */
+    @Nonnull private final Meter reapedRecords;
+
+    /** Timer of cleanup runs. */
+    @Nonnull private final Timer cleanupTimer;
+
     /**
      * Creates a new JPA storage service.
      * 
@@ -75,6 +109,9 @@ public class JPAStorageService extends AbstractStorageService implements Storage
         setKeySize(JPAStorageRecord.KEY_SIZE);
         setValueSize(Integer.MAX_VALUE);
         setTransactionRetry(3);
+        cleanupBatchDelay = Duration.ZERO;
+        reapedRecords = new Meter();
+        cleanupTimer = new Timer();
     }
 
     /**
@@ -98,6 +135,57 @@ public class JPAStorageService extends AbstractStorageService implements Storage
                         "Transaction retry must be greater than or equal to zero");
     }
 
+    /**
+     * Returns the maximum number of expired records removed per cleanup transaction.
+     * 
+     * @return cleanup batch size, or 0 if cleanup uses a single bulk delete
+     */
+    @NonNegative public int getCleanupBatchSize() {
+        return cleanupBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of expired records removed per cleanup transaction (default is 0, meaning all expired
+     * records are removed by a single bulk delete).
+     * 
+     * @param size cleanup batch size
+     */
+    public void setCleanupBatchSize(@NonNegative final int size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        cleanupBatchSize = (int) Constraint.isGreaterThanOrEqual(0, size,
+                "Cleanup batch size must be greater than or equal to zero");
+    }
+
+    /**
+     * Returns the pause between cleanup batches.
+     * 
+     * @return pause between cleanup batches
+     */
+    @Nonnull public Duration getCleanupBatchDelay() {
+        return cleanupBatchDelay;
+    }
+
+    /**
+     * Sets the pause between cleanup batches (default is zero). Only applies if a cleanup batch size is set.
+     * 
+     * <p>The pause is taken on the thread running the cleanup task, so a sweep occupies the cleanup task
+     * {@link java.util.Timer} for its whole duration. If that timer is shared with other services via
+     * {@link #setCleanupTaskTimer(java.util.Timer)}, their tasks are delayed accordingly.</p>
+     * 
+     * @param delay pause between cleanup batches
+     */
+    public void setCleanupBatchDelay(@Nonnull final Duration delay) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        Constraint.isNotNull(delay, "Cleanup batch delay cannot be null");
+        Constraint.isFalse(delay.isNegative(), "Cleanup batch delay cannot be negative");
+        cleanupBatchDelay = delay;
+    }
+
+    /** {@inheritDoc} */
+    @Nonnull @NonnullElements @Unmodifiable @NotLive public Map<String, Metric> getMetrics() {
+        return Map.of(METRIC_METER_REAPED_RECORDS, reapedRecords, METRIC_TIMER_CLEANUP, cleanupTimer);
+    }
+
     /** {@inheritDoc} */
     public boolean isServerSide() {
         return true;
@@ -617,6 +705,7 @@ public class JPAStorageService extends AbstractStorageService implements Storage
                     queryResults.setParameter("exp", expiration);
                     final int count = queryResults.executeUpdate();
                     transaction.commit();
+                    reapedRecords.mark(count);
                     log.debug("Deleted {} record(s) with expiration '{}'", count, expiration);
                     return;
                 } catch (final RollbackException e) {
@@ -639,6 +728,91 @@ public class JPAStorageService extends AbstractStorageService implements Storage
 
     // Checkstyle: CyclomaticComplexity ON
 
+    /**
+     * Deletes every record with an expiration before the supplied expiration, in batches of
+     * {@link #getCleanupBatchSize()} records per transaction, pausing for {@link #getCleanupBatchDelay()}
+     * between batches.
+     * 
+     * @param expiration of records to delete
+     * 
+     * @return the number of records deleted
+     * @throws IOException if errors occur in the cleanup process
+     */
+    protected int deleteIncrementalImpl(@Nonnull final Long expiration) throws IOException {
+        int total = 0;
+        int count;
+        do {
+            count = deleteBatchImpl(expiration, cleanupBatchSize);
+            total += count;
+            if (count == cleanupBatchSize && !cleanupBatchDelay.isZero()) {
+                try {
+                    Thread.sleep(cleanupBatchDelay.toMillis());
+                } catch (final InterruptedException e) {
+                    log.debug("Cleanup interrupted after deleting {} record(s)", total);
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } while (count == cleanupBatchSize && !isDestroyed());
+        log.debug("Deleted {} record(s) with expiration '{}'", total, expiration);
+        return total;
+    }
+
+    // Checkstyle: CyclomaticComplexity OFF
+    /**
+     * Deletes up to the supplied number of records with an expiration before the supplied expiration, oldest first,
+     * in a single transaction.
+     * 
+     * @param expiration of records to delete
+     * @param batchSize maximum number of records to delete
+     * 
+     * @return the number of records deleted
+     * @throws IOException if errors occur in the cleanup process
+     */
+    protected int deleteBatchImpl(@Nonnull final Long expiration, @Positive final int batchSize)
+            throws IOException {
+        EntityManager manager = null;
+        try {
+            int retry = -1;
+            RollbackException lastThrown;
+            do {
+                EntityTransaction transaction = null;
+                try {
+                    manager = entityManagerFactory.createEntityManager();
+                    transaction = manager.getTransaction();
+                    transaction.begin();
+                    final List<?> batch = manager.createNamedQuery("JPAStorageRecord.findByExpiration")
+                            .setParameter("exp", expiration)
+                            .setMaxResults(batchSize)
+                            .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                            .getResultList();
+                    for (final Object entity : batch) {
+                        manager.remove(entity);
+                    }
+                    transaction.commit();
+                    reapedRecords.mark(batch.size());
+                    log.trace("Deleted batch of {} record(s) with expiration '{}'", batch.size(), expiration);
+                    return batch.size();
+                } catch (final RollbackException e) {
+                    lastThrown = e;
+                    retry++;
+                } catch (final Exception e) {
+                    log.error("Error deleting with expiration '{}'", expiration, e);
+                    rollbackTransaction(transaction);
+                    throw new IOException(e);
+                } finally {
+                    commitTransaction(transaction);
+                    closeEntityManager(manager);
+                }
+            } while (retry < transactionRetry);
+            throw lastThrown;
+        } finally {
+            closeEntityManager(manager);
+        }
+    }
+
+    // Checkstyle: CyclomaticComplexity ON
+
     // Checkstyle: CyclomaticComplexity OFF
     /**
      * Executes the supplied named query.
@@ -689,10 +863,17 @@ public class JPAStorageService extends AbstractStorageService implements Storage
             @Override public void run() {
                 final Long now = System.currentTimeMillis();
                 log.debug("Running cleanup task at {}", now);
+                final long start = System.nanoTime();
                 try {
-                    deleteImpl(now);
+                    if (cleanupBatchSize > 0) {
+                        deleteIncrementalImpl(now);
+                    } else {
+                        deleteImpl(now);
+                    }
                 } catch (final IOException e) {
                     log.error("Error running cleanup task for {}", now, e);
+                } finally {
+                    cleanupTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
                 }
                 log.debug("Finished cleanup task for {}", now);
             }
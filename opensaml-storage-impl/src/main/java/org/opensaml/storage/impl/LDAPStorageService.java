@@ -18,14 +18,23 @@
 package org.opensaml.storage.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import net.shibboleth.utilities.java.support.annotation.constraint.Live;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
 import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
 import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
 import net.shibboleth.utilities.java.support.collection.Pair;
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 
 import org.ldaptive.AttributeModification;
@@ -56,6 +65,15 @@ import org.slf4j.LoggerFactory;
 /**
  * Implementation of {@link org.opensaml.storage.StorageService} that stores data in an LDAP. Does not support
  * expiration or versioning at this time.
+ * 
+ * <p>Each context is stored as a single entry, with each key an attribute of that entry. By default the context
+ * itself is used as the DN of the entry; a {@link #setContextDNStrategy(Function)} may be supplied to map contexts
+ * onto DNs instead, for example to spread contexts across several subtrees with
+ * {@link PartitionedLDAPContextDNStrategy}.</p>
+ * 
+ * <p>Because all keys of a context share an entry, the multi-key {@link #readAll(String, Collection)},
+ * {@link #updateAll(String, Map)} and {@link #deleteAll(String, Collection)} methods each require only one
+ * round trip per context, rather than one per key.</p>
  */
 public class LDAPStorageService extends AbstractStorageService implements StorageCapabilitiesEx {
 
@@ -68,6 +86,9 @@ public class LDAPStorageService extends AbstractStorageService implements Storag
     /** Attributes to include in merge operations. */
     private LdapAttribute[] defaultAttributes;
 
+    /** Strategy for mapping a context to the DN of its entry. */
+    @Nonnull private Function<String,String> contextDNStrategy;
+
     /**
      * Creates a new LDAP storage service.
      * 
@@ -77,12 +98,25 @@ public class LDAPStorageService extends AbstractStorageService implements Storag
     public LDAPStorageService(@Nonnull final PooledConnectionFactory factory, final LdapAttribute... attrs) {
         connectionFactory = Constraint.isNotNull(factory, "ConnectionFactory cannot be null");
         defaultAttributes = attrs;
+        contextDNStrategy = Function.identity();
 
         setContextSize(Integer.MAX_VALUE);
         setKeySize(Integer.MAX_VALUE);
         setValueSize(Integer.MAX_VALUE);
     }
     
+    /**
+     * Set the strategy for mapping a context to the DN of the entry holding its records.
+     * 
+     * <p>Defaults to using the context as the DN.</p>
+     * 
+     * @param strategy mapping strategy
+     */
+    public void setContextDNStrategy(@Nonnull final Function<String,String> strategy) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        contextDNStrategy = Constraint.isNotNull(strategy, "Context DN strategy cannot be null");
+    }
+
     /** {@inheritDoc} */
     public boolean isServerSide() {
         return true;
@@ -114,7 +148,7 @@ public class LDAPStorageService extends AbstractStorageService implements Storag
         if (expiration != null) {
             throw new UnsupportedOperationException("Expiration not supported");
         }
-        final LdapEntry entry = new LdapEntry(context, defaultAttributes);
+        final LdapEntry entry = new LdapEntry(getDN(context), defaultAttributes);
         entry.addAttribute(new LdapAttribute(key, value));
         try {
             merge(entry);
@@ -130,7 +164,7 @@ public class LDAPStorageService extends AbstractStorageService implements Storag
             @Nonnull @NotEmpty final String key) throws IOException {
         SearchResult result = null;
         try {
-            result = search(context, key).getResult();
+            result = search(getDN(context), key).getResult();
         } catch (final LdapException e) {
             if (e.getResultCode() != ResultCode.NO_SUCH_OBJECT) {
                 log.error("LDAP search operation failed", e);
@@ -162,7 +196,7 @@ public class LDAPStorageService extends AbstractStorageService implements Storag
         if (expiration != null) {
             throw new UnsupportedOperationException("Expiration not supported");
         }
-        final LdapEntry entry = new LdapEntry(context, defaultAttributes);
+        final LdapEntry entry = new LdapEntry(getDN(context), defaultAttributes);
         entry.addAttribute(new LdapAttribute(key, value));
         try {
             merge(entry);
@@ -191,7 +225,7 @@ public class LDAPStorageService extends AbstractStorageService implements Storag
     @Override public boolean delete(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key)
             throws IOException {
         try {
-            deleteAttribute(context, key);
+            deleteAttribute(getDN(context), key);
             return true;
         } catch (final LdapException e) {
             log.error("LDAP modify operation failed", e);
@@ -219,13 +253,140 @@ public class LDAPStorageService extends AbstractStorageService implements Storag
     /** {@inheritDoc} */
     @Override public void deleteContext(@Nonnull @NotEmpty final String context) throws IOException {
         try {
-            delete(context);
+            delete(getDN(context));
         } catch (final LdapException e) {
             log.error("LDAP delete operation failed", e);
             throw new IOException(e);
         }
     }
 
+    /**
+     * Reads the records for several keys of a context with a single search.
+     * 
+     * @param <T> type of object
+     * @param context context to read from
+     * @param keys keys to read
+     * 
+     * @return map of key to record, omitting keys which were not found
+     * 
+     * @throws IOException if an error occurs reading the records
+     */
+    @Nonnull @NonnullElements @Live public <T> Map<String,StorageRecord<T>> readAll(
+            @Nonnull @NotEmpty final String context, @Nonnull @NonnullElements final Collection<String> keys)
+                    throws IOException {
+        final Map<String,StorageRecord<T>> records = new HashMap<>(keys.size());
+        if (keys.isEmpty()) {
+            return records;
+        }
+        final LdapEntry entry = searchEntry(getDN(context), keys);
+        if (entry != null) {
+            for (final String key : keys) {
+                final LdapAttribute attr = entry.getAttribute(key);
+                if (attr != null) {
+                    records.put(key, new StorageRecord<>(attr.getStringValue(), null));
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Creates or updates several keys of a context with a single merge.
+     * 
+     * @param context context to update
+     * @param values map of key to value
+     * 
+     * @throws IOException if an error occurs writing the records
+     */
+    public void updateAll(@Nonnull @NotEmpty final String context,
+            @Nonnull @NonnullElements final Map<String,String> values) throws IOException {
+        if (values.isEmpty()) {
+            return;
+        }
+        final LdapEntry entry = new LdapEntry(getDN(context), defaultAttributes);
+        for (final Map.Entry<String,String> value : values.entrySet()) {
+            entry.addAttribute(new LdapAttribute(value.getKey(), value.getValue()));
+        }
+        try {
+            merge(entry);
+        } catch (final LdapException e) {
+            log.error("LDAP merge operation failed", e);
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Deletes several keys of a context, using one search and at most one modify.
+     * 
+     * @param context context to delete from
+     * @param keys keys to delete
+     * 
+     * @return the number of keys deleted
+     * 
+     * @throws IOException if an error occurs deleting the records
+     */
+    public int deleteAll(@Nonnull @NotEmpty final String context,
+            @Nonnull @NonnullElements final Collection<String> keys) throws IOException {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        final String dn = getDN(context);
+        final LdapEntry entry = searchEntry(dn, keys);
+        if (entry == null) {
+            return 0;
+        }
+        final List<AttributeModification> mods = new ArrayList<>(keys.size());
+        for (final String key : keys) {
+            if (entry.getAttribute(key) != null) {
+                mods.add(new AttributeModification(AttributeModificationType.REMOVE, new LdapAttribute(key)));
+            }
+        }
+        if (!mods.isEmpty()) {
+            try {
+                modify(new ModifyRequest(dn, mods.toArray(new AttributeModification[mods.size()])));
+            } catch (final LdapException e) {
+                log.error("LDAP modify operation failed", e);
+                throw new IOException(e);
+            }
+        }
+        return mods.size();
+    }
+
+    /**
+     * Map a context to the DN of the entry holding its records.
+     * 
+     * @param context context to map
+     * 
+     * @return the DN
+     */
+    @Nonnull @NotEmpty protected String getDN(@Nonnull @NotEmpty final String context) {
+        return Constraint.isNotNull(contextDNStrategy.apply(context), "Context DN strategy returned null");
+    }
+
+    /**
+     * Searches for the entry at the supplied DN, returning the supplied attributes.
+     * 
+     * @param dn to search on
+     * @param attrs to return
+     * 
+     * @return the entry, or null if it does not exist
+     * 
+     * @throws IOException if the search fails
+     */
+    @Nullable private LdapEntry searchEntry(@Nonnull final String dn, @Nonnull final Collection<String> attrs)
+            throws IOException {
+        try {
+            final SearchResult result = search(dn, attrs.toArray(new String[attrs.size()])).getResult();
+            return result != null ? result.getEntry() : null;
+        } catch (final LdapException e) {
+            if (e.getResultCode() != ResultCode.NO_SUCH_OBJECT) {
+                log.error("LDAP search operation failed", e);
+                throw new IOException(e);
+            }
+            return null;
+        }
+    }
+
     /**
      * Executes a {@link MergeOperation} with the supplied entry.
      * 
@@ -282,12 +443,25 @@ public class LDAPStorageService extends AbstractStorageService implements Storag
      */
     @Nonnull private Response<Void> deleteAttribute(@Nonnull final String dn, @Nonnull final String attrName)
             throws LdapException {
+        return modify(new ModifyRequest(dn, new AttributeModification(AttributeModificationType.REMOVE,
+                new LdapAttribute(attrName))));
+    }
+
+    /**
+     * Executes a {@link ModifyOperation} with the supplied request.
+     * 
+     * @param request to execute
+     * 
+     * @return response for the modify operation
+     * 
+     * @throws LdapException if the operation fails
+     */
+    @Nonnull private Response<Void> modify(@Nonnull final ModifyRequest request) throws LdapException {
         Connection conn = null;
         try {
             conn = connectionFactory.getConnection();
             final ModifyOperation modify = new ModifyOperation(conn);
-            return modify.execute(new ModifyRequest(dn, new AttributeModification(AttributeModificationType.REMOVE,
-                    new LdapAttribute(attrName))));
+            return modify.execute(request);
         } finally {
             conn.close();
         }
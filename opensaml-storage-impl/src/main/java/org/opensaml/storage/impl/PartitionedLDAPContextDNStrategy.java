@@ -0,0 +1,128 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.storage.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotLive;
+import net.shibboleth.utilities.java.support.annotation.constraint.Unmodifiable;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.primitive.StringSupport;
+
+/**
+ * Strategy for {@link LDAPStorageService} which maps a context onto an entry named by the context, located in one
+ * of several subtrees.
+ * 
+ * <p>The DN produced for a context is <code>rdnAttribute=context,baseDN</code>, with the context escaped as an
+ * RDN value and the base DN chosen by hashing the context. {@link String#hashCode()} is specified by the platform,
+ * so every node of a cluster sharing the same configuration maps a given context to the same subtree.</p>
+ */
+public class PartitionedLDAPContextDNStrategy implements Function<String,String> {
+
+    /** Attribute naming the context entries. */
+    @Nonnull @NotEmpty private final String rdnAttribute;
+
+    /** Base DNs of the subtrees. */
+    @Nonnull @NonnullElements private final List<String> baseDNs;
+
+    /**
+     * Constructor.
+     *
+     * @param attribute attribute naming the context entries
+     * @param bases base DNs of the subtrees across which to partition contexts
+     */
+    public PartitionedLDAPContextDNStrategy(@Nonnull @NotEmpty final String attribute,
+            @Nonnull @NonnullElements final List<String> bases) {
+        rdnAttribute = Constraint.isNotNull(StringSupport.trimOrNull(attribute),
+                "RDN attribute cannot be null or empty");
+        Constraint.isNotNull(bases, "Base DN list cannot be null");
+        baseDNs = new ArrayList<>(StringSupport.normalizeStringCollection(bases));
+        Constraint.isFalse(baseDNs.isEmpty(), "Base DN list cannot be empty");
+    }
+
+    /**
+     * Get the base DNs of the subtrees.
+     * 
+     * @return base DNs
+     */
+    @Nonnull @NonnullElements @Unmodifiable @NotLive public List<String> getBaseDNs() {
+        return List.copyOf(baseDNs);
+    }
+
+    /** {@inheritDoc} */
+    @Nullable public String apply(@Nullable final String context) {
+        if (context == null) {
+            return null;
+        }
+        final String base = baseDNs.get(Math.floorMod(context.hashCode(), baseDNs.size()));
+        return rdnAttribute + '=' + escapeValue(context) + ',' + base;
+    }
+
+    /**
+     * Escape a string for use as an attribute value in a DN, per RFC 4514.
+     * 
+     * @param value value to escape
+     * 
+     * @return the escaped value
+     */
+    @Nonnull protected String escapeValue(@Nonnull final String value) {
+        final StringBuilder builder = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '+':
+                case ',':
+                case ';':
+                case '<':
+                case '=':
+                case '>':
+                case '\\':
+                    builder.append('\\').append(c);
+                    break;
+                case '\0':
+                    builder.append("\\00");
+                    break;
+                case '#':
+                    if (i == 0) {
+                        builder.append('\\');
+                    }
+                    builder.append(c);
+                    break;
+                case ' ':
+                    if (i == 0 || i == value.length() - 1) {
+                        builder.append('\\');
+                    }
+                    builder.append(c);
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+}
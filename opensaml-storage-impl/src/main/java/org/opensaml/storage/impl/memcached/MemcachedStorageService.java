@@ -40,9 +40,13 @@ import org.opensaml.storage.annotation.AnnotationSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -76,6 +80,13 @@ import java.util.concurrent.TimeoutException;
  * slab size, which decreases overall cache memory consumption efficiency. When key tracking is disabled, there is no
  * limit on the number of keys per context other than overall cache capacity.
  * <p>
+ * An optional local cache of context namespaces may be enabled via {@link #setNamespaceCacheLifetime(Duration)}.
+ * Every operation otherwise requires a memcached round trip to resolve the context namespace before the operation
+ * itself. With the cache enabled and key tracking disabled, create, read, update and delete operations on a known
+ * context require a single round trip. The trade-off is bounded staleness: after
+ * {@link #deleteContext(String)} is invoked on another node sharing the cache, this node may continue to use the
+ * old namespace for up to the configured lifetime. Records written in that window are orphaned and left to expire.
+ * <p>
  * <strong>Limitations and requirements</strong>
  * <ol>
  *     <li>The memcached binary protocol is strong recommended for efficiency and full versioning support.
@@ -126,6 +137,10 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
     /** Flag that controls context key tracking. */
     private boolean trackContextKeys;
 
+    /** Local cache of context namespaces, null if disabled. */
+    @Nullable
+    private Cache<String, String> namespaceCache;
+
     /**
      * Creates a new instance.
      *
@@ -184,6 +199,24 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
         storageCapabilities = capabilities;
     }
 
+    /**
+     * Sets the lifetime of locally cached context namespaces. A zero duration, the default, disables the cache.
+     *
+     * @param lifetime Maximum time a context namespace is cached locally, which bounds the time this node may
+     *                 continue to use a namespace after its context is deleted by another node.
+     */
+    public void setNamespaceCacheLifetime(@Nonnull final Duration lifetime) {
+        Constraint.isNotNull(lifetime, "Lifetime cannot be null");
+        Constraint.isFalse(lifetime.isNegative(), "Lifetime cannot be negative");
+        if (lifetime.isZero()) {
+            namespaceCache = null;
+        } else {
+            namespaceCache = CacheBuilder.newBuilder()
+                    .expireAfterWrite(lifetime.toMillis(), TimeUnit.MILLISECONDS)
+                    .build();
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public boolean create(@Nonnull @NotEmpty final String context,
@@ -557,6 +590,10 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
             logger.debug("Namespace for context {} does not exist. Context values effectively deleted.", context);
             return;
         }
+        final Cache<String, String> cache = namespaceCache;
+        if (cache != null) {
+            cache.invalidate(context);
+        }
         final OperationFuture<Boolean> ctxResult = memcacheClient.delete(context);
         final OperationFuture<Boolean> nsResult = memcacheClient.delete(namespace);
         if (trackContextKeys) {
@@ -587,10 +624,21 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
      * @throws java.io.IOException On memcached operation errors.
      */
     protected String lookupNamespace(final String context) throws IOException {
+        final Cache<String, String> cache = namespaceCache;
+        if (cache != null) {
+            final String namespace = cache.getIfPresent(context);
+            if (namespace != null) {
+                return namespace;
+            }
+        }
         try {
             final CASValue<String> result = handleAsyncResult(
                     memcacheClient.asyncGets(memcachedKey(context), stringTranscoder));
-            return result == null ? null : result.getValue();
+            final String namespace = result == null ? null : result.getValue();
+            if (namespace != null && cache != null) {
+                cache.put(context, namespace);
+            }
+            return namespace;
         } catch (final RuntimeException e) {
             throw new IOException("Memcached operation failed", e);
         }
@@ -619,6 +667,10 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
         if (!handleAsyncResult(memcacheClient.add(memcachedKey(context), 0, namespace, stringTranscoder))) {
             throw new IllegalStateException(context + " already exists");
         }
+        final Cache<String, String> cache = namespaceCache;
+        if (cache != null) {
+            cache.put(context, namespace);
+        }
         return namespace;
     }
 
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.storage.impl;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import javax.annotation.Nonnull;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.opensaml.storage.StorageRecord;
+import org.opensaml.storage.StorageService;
+import org.opensaml.storage.StorageServiceTest;
+import org.opensaml.storage.VersionMismatchException;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Test of {@link JDBCStorageService} implementation.
+ */
+public class JDBCStorageServiceTest extends StorageServiceTest {
+
+    /** Data source. */
+    private BasicDataSource dataSource;
+
+    /** Storage service. */
+    private JDBCStorageService storageService;
+
+    @BeforeClass public void setUp() throws ComponentInitializationException {
+        dataSource = new BasicDataSource();
+        dataSource.setDriverClassName("org.hsqldb.jdbcDriver");
+        dataSource.setUrl("jdbc:hsqldb:mem:JDBCStorageService");
+        dataSource.setUsername("SA");
+        dataSource.setPassword("");
+        dataSource.setPoolPreparedStatements(true);
+
+        try (final Connection connection = dataSource.getConnection();
+                final Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE StorageRecords (context VARCHAR(255) NOT NULL, "
+                    + "id VARCHAR(255) NOT NULL, value CLOB NOT NULL, expires BIGINT, version BIGINT NOT NULL, "
+                    + "PRIMARY KEY (context, id))");
+        } catch (final SQLException e) {
+            throw new ComponentInitializationException(e);
+        }
+
+        storageService = new JDBCStorageService(dataSource);
+        storageService.setId("test");
+        storageService.setCleanupInterval(Duration.ofSeconds(5));
+        storageService.setCleanupBatchSize(7);
+        super.setUp();
+    }
+
+    @AfterClass
+    protected void tearDown() {
+        super.tearDown();
+        try (final Connection connection = dataSource.getConnection();
+                final Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE StorageRecords");
+            dataSource.close();
+        } catch (final SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Nonnull protected StorageService getStorageService() {
+        return storageService;
+    }
+
+    @Test
+    public void cleanup() throws IOException, InterruptedException {
+        String context = Long.toString(random.nextLong());
+        for (int i = 1; i <= 100; i++) {
+            storageService.create(context, Integer.toString(i), Integer.toString(i + 1),
+                    System.currentTimeMillis() + 100);
+        }
+        Thread.sleep(7500);
+        Assert.assertEquals(countRecords(context), 0);
+    }
+
+    @Test
+    public void chunkedDelete() throws IOException, InterruptedException {
+        String context = Long.toString(random.nextLong());
+        for (int i = 1; i <= 30; i++) {
+            storageService.create(context, Integer.toString(i), "value", System.currentTimeMillis() + 1);
+        }
+        storageService.create(context, "live", "value", null);
+        Thread.sleep(10);
+        
+        storageService.deleteImpl(System.currentTimeMillis());
+        Assert.assertEquals(countRecords(context), 1);
+        Assert.assertNotNull(storageService.read(context, "live"));
+        storageService.deleteContext(context);
+    }
+
+    @Test
+    public void expiredCreate() throws IOException, InterruptedException {
+        String context = Long.toString(random.nextLong());
+        Assert.assertTrue(storageService.create(context, "key", "value1", System.currentTimeMillis() + 1));
+        Assert.assertTrue(storageService.update(context, "key", "value2", System.currentTimeMillis() + 1));
+        Thread.sleep(10);
+        
+        Assert.assertTrue(storageService.create(context, "key", "value3", null));
+        Assert.assertFalse(storageService.create(context, "key", "value4", null));
+        final StorageRecord<?> rec = storageService.read(context, "key");
+        Assert.assertNotNull(rec);
+        Assert.assertEquals(rec.getValue(), "value3");
+        Assert.assertEquals(rec.getVersion(), 1);
+        storageService.deleteContext(context);
+    }
+
+    @Test
+    public void versions() throws IOException, VersionMismatchException {
+        String context = Long.toString(random.nextLong());
+        Assert.assertNull(storageService.updateWithVersion(1, context, "key", "value", null));
+        Assert.assertFalse(storageService.deleteWithVersion(1, context, "key"));
+
+        Assert.assertTrue(storageService.create(context, "key", "value1", null));
+        Assert.assertEquals(storageService.updateWithVersion(1, context, "key", "value2", null), Long.valueOf(2));
+        try {
+            storageService.updateWithVersion(1, context, "key", "value3", null);
+            Assert.fail("Version mismatch should have been detected");
+        } catch (final VersionMismatchException e) {
+            // expected
+        }
+        try {
+            storageService.deleteWithVersion(1, context, "key");
+            Assert.fail("Version mismatch should have been detected");
+        } catch (final VersionMismatchException e) {
+            // expected
+        }
+        Assert.assertEquals(storageService.read(context, "key", 2).getFirst(), Long.valueOf(2));
+        Assert.assertNull(storageService.read(context, "key", 2).getSecond());
+        Assert.assertTrue(storageService.deleteWithVersion(2, context, "key"));
+        Assert.assertNull(storageService.read(context, "key"));
+    }
+
+    /**
+     * Count the records in a context, regardless of expiration.
+     * 
+     * @param context context to count
+     * 
+     * @return number of records
+     * 
+     * @throws IOException if the query fails
+     */
+    private int countRecords(@Nonnull final String context) throws IOException {
+        try (final Connection connection = dataSource.getConnection();
+                final PreparedStatement statement =
+                        connection.prepareStatement("SELECT COUNT(*) FROM StorageRecords WHERE context = ?")) {
+            statement.setString(1, context);
+            try (final ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        } catch (final SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+}
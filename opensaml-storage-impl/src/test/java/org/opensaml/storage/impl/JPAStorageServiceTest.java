@@ -42,6 +42,8 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import com.codahale.metrics.Meter;
+
 /**
  * Test of {@link JPAStorageService} implementation.
  */
@@ -65,7 +67,7 @@ public class JPAStorageServiceTest extends StorageServiceTest {
      * Creates the shared instance of the entity manager factory.
      */
     @BeforeClass public void setUp() throws ComponentInitializationException {
-        storageService = new JPAStorageService(createEntityManagerFactory());
+        storageService = new JPAStorageService(createEntityManagerFactory("jpa-spring-context.xml"));
         storageService.setId("test");
         storageService.setCleanupInterval(Duration.ofSeconds(5));
         storageService.setTransactionRetry(2);
@@ -74,10 +76,13 @@ public class JPAStorageServiceTest extends StorageServiceTest {
 
     /**
      * Creates an entity manager factory instance.
+     * 
+     * @param name name of the Spring context resource defining the factory
      */
-    private EntityManagerFactory createEntityManagerFactory() throws ComponentInitializationException
+    private EntityManagerFactory createEntityManagerFactory(@Nonnull final String name)
+            throws ComponentInitializationException
     {
-        final Resource resource = new ClassPathResource("/org/opensaml/storage/impl/jpa-spring-context.xml");
+        final Resource resource = new ClassPathResource("/org/opensaml/storage/impl/" + name);
         final GenericApplicationContext context =
                 new ApplicationContextBuilder()
                     .setName("JPAStorageService")
@@ -126,6 +131,37 @@ public class JPAStorageServiceTest extends StorageServiceTest {
         Assert.assertEquals(recs.size(), 0);
     }
 
+    @Test
+    public void incrementalCleanup() throws ComponentInitializationException, IOException, InterruptedException {
+        // A separate service over its own database, with no scheduled cleanup, so that the sweep below
+        // sees exactly the records created here.
+        final JPAStorageService batchService =
+                new JPAStorageService(createEntityManagerFactory("jpa-batch-spring-context.xml"));
+        batchService.setId("batch");
+        batchService.setCleanupBatchSize(10);
+        batchService.setCleanupBatchDelay(Duration.ofMillis(10));
+        batchService.initialize();
+        
+        try {
+            String context = Long.toString(random.nextLong());
+            for (int i = 1; i <= 25; i++) {
+                batchService.create(context, Integer.toString(i), "value", System.currentTimeMillis() + 1);
+            }
+            batchService.create(context, "live", "value", null);
+            Thread.sleep(10);
+    
+            final Meter meter = (Meter) batchService.getMetrics().get(JPAStorageService.METRIC_METER_REAPED_RECORDS);
+            final long reaped = meter.getCount();
+            Assert.assertEquals(batchService.deleteIncrementalImpl(System.currentTimeMillis()), 25);
+            Assert.assertEquals(meter.getCount(), reaped + 25);
+            Assert.assertEquals(batchService.readAll(context).size(), 1);
+            Assert.assertNotNull(batchService.read(context, "live"));
+            batchService.deleteContext(context);
+        } finally {
+            batchService.destroy();
+        }
+    }
+
     @DataProvider(name = "contexts")
     public Object[][] contexts() throws Exception {
         return contexts;
@@ -19,6 +19,8 @@ package org.opensaml.storage.impl;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 
@@ -182,6 +184,46 @@ public class LDAPStorageServiceTest {
         Assert.assertNull(rec);
     }
 
+    @Test
+    public void multipleKeys() throws IOException {
+        storageService.updateAll(context, Map.of("mail", "principal@shibboleth.net", "description", "test user"));
+        Map<String, StorageRecord<Object>> recs =
+                storageService.readAll(context, List.of("mail", "description", "title"));
+        Assert.assertEquals(recs.size(), 2);
+        Assert.assertEquals(recs.get("mail").getValue(), "principal@shibboleth.net");
+        Assert.assertEquals(recs.get("description").getValue(), "test user");
+
+        Assert.assertEquals(storageService.deleteAll(context, List.of("description", "title")), 1);
+        recs = storageService.readAll(context, List.of("mail", "description"));
+        Assert.assertEquals(recs.size(), 1);
+        Assert.assertTrue(recs.containsKey("mail"));
+
+        storageService.deleteContext(context);
+        Assert.assertTrue(storageService.readAll(context, List.of("mail")).isEmpty());
+        Assert.assertEquals(storageService.deleteAll(context, List.of("mail")), 0);
+    }
+
+    @Test
+    public void partitionedContext() throws ComponentInitializationException, IOException {
+        final LDAPStorageService ss = getStorageService();
+        ss.setContextDNStrategy(
+                new PartitionedLDAPContextDNStrategy("cn", List.of("ou=people,dc=shibboleth,dc=net")));
+        ss.initialize();
+        try {
+            ss.create("Principal", "mail", "principal@shibboleth.net", null);
+            StorageRecord<?> rec = storageService.read(context, "mail");
+            Assert.assertNotNull(rec);
+            Assert.assertEquals(rec.getValue(), "principal@shibboleth.net");
+            rec = ss.read("Principal", "mail");
+            Assert.assertNotNull(rec);
+            Assert.assertEquals(rec.getValue(), "principal@shibboleth.net");
+            ss.deleteContext("Principal");
+            Assert.assertNull(storageService.read(context, "mail"));
+        } finally {
+            ss.destroy();
+        }
+    }
+
     @Test public void invalidConfig() {
         LDAPStorageService ss = new LDAPStorageService(getPooledConnectionFactory());
         ss.setCleanupInterval(Duration.ofSeconds(1));
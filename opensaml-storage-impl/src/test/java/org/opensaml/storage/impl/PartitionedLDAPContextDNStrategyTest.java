@@ -0,0 +1,68 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.storage.impl;
+
+import java.util.List;
+
+import net.shibboleth.utilities.java.support.logic.ConstraintViolationException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Test of {@link PartitionedLDAPContextDNStrategy}.
+ */
+public class PartitionedLDAPContextDNStrategyTest {
+
+    @Test
+    public void partitioning() {
+        final List<String> bases =
+                List.of("ou=a,dc=example,dc=org", "ou=b,dc=example,dc=org", "ou=c,dc=example,dc=org");
+        final PartitionedLDAPContextDNStrategy strategy = new PartitionedLDAPContextDNStrategy("cn", bases);
+
+        final boolean[] used = new boolean[bases.size()];
+        for (int i = 0; i < 100; i++) {
+            final String context = "context" + i;
+            final String dn = strategy.apply(context);
+            Assert.assertEquals(dn, strategy.apply(context));
+            Assert.assertTrue(dn.startsWith("cn=" + context + ",ou="));
+            used[bases.indexOf(dn.substring(dn.indexOf(',') + 1))] = true;
+        }
+        for (final boolean u : used) {
+            Assert.assertTrue(u);
+        }
+    }
+
+    @Test
+    public void escaping() {
+        final PartitionedLDAPContextDNStrategy strategy =
+                new PartitionedLDAPContextDNStrategy("cn", List.of("dc=example,dc=org"));
+        Assert.assertEquals(strategy.apply("a,b+c=d"), "cn=a\\,b\\+c\\=d,dc=example,dc=org");
+        Assert.assertEquals(strategy.apply("#x y "), "cn=\\#x y\\ ,dc=example,dc=org");
+        Assert.assertEquals(strategy.apply("http://idp.example.org/shibboleth"),
+                "cn=http://idp.example.org/shibboleth,dc=example,dc=org");
+        Assert.assertNull(strategy.apply(null));
+    }
+
+    @Test(expectedExceptions = ConstraintViolationException.class)
+    public void noBases() {
+        new PartitionedLDAPContextDNStrategy("cn", List.of());
+    }
+
+}
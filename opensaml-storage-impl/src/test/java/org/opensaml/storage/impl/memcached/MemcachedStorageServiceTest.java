@@ -31,6 +31,7 @@ import org.testng.annotations.Test;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -53,6 +54,8 @@ public class MemcachedStorageServiceTest {
 
     private MemcachedStorageService keyTrackingService;
 
+    private MemcachedStorageService namespaceCachingService;
+
     @BeforeClass
     public void setUp() throws IOException {
         final MemcachedClient client = new MemcachedClient(
@@ -65,6 +68,8 @@ public class MemcachedStorageServiceTest {
         }
         service = new MemcachedStorageService(client, 1);
         keyTrackingService = new MemcachedStorageService(client, 1, true);
+        namespaceCachingService = new MemcachedStorageService(client, 1);
+        namespaceCachingService.setNamespaceCacheLifetime(Duration.ofMinutes(1));
     }
 
     @DataProvider
@@ -170,6 +175,35 @@ public class MemcachedStorageServiceTest {
     }
 
 
+    @Test(dataProvider = "testValues")
+    public void testCreateReadUpdateDeleteNamespaceCaching(
+            final String context, final String key, final String value, final String updatedValue)
+            throws IOException {
+        assertNull(namespaceCachingService.read(context, key));
+        assertTrue(namespaceCachingService.create(context, key, value, 5000L));
+        // Uncached service must see the same namespace
+        assertEquals(service.read(context, key).getValue(), value);
+        assertTrue(namespaceCachingService.update(context, key, updatedValue, 5000L));
+        assertEquals(namespaceCachingService.read(context, key).getValue(), updatedValue);
+        assertTrue(namespaceCachingService.delete(context, key));
+        assertNull(namespaceCachingService.read(context, key));
+    }
+
+    @Test
+    public void testDeleteContextNamespaceCaching() throws IOException {
+        final IdGenerator generator = new RandomIdGenerator(50);
+        final String context = generator.generate();
+        final String key = generator.generate();
+        final String val = generator.generate();
+        assertTrue(namespaceCachingService.create(context, key, val, 1000L));
+        assertEquals(namespaceCachingService.read(context, key).getValue(), val);
+        namespaceCachingService.deleteContext(context);
+        assertNull(namespaceCachingService.read(context, key));
+        // Context is recreated under a new namespace
+        assertTrue(namespaceCachingService.create(context, key, val, 1000L));
+        assertEquals(service.read(context, key).getValue(), val);
+    }
+
     @Test
     public void testUpdateExpiration() throws IOException {
         final IdGenerator generator = new RandomIdGenerator(20);
@@ -20,6 +20,7 @@ package org.opensaml.xmlsec;
 import javax.annotation.Nullable;
 
 import org.opensaml.xmlsec.encryption.support.EncryptedKeyResolver;
+import org.opensaml.xmlsec.encryption.support.KEKCredentialIndex;
 import org.opensaml.xmlsec.keyinfo.KeyInfoCredentialResolver;
 
 /**
@@ -35,6 +36,9 @@ public class DecryptionParameters extends WhitelistBlacklistParameters {
     
     /** The EncryptedKey resolver. */
     @Nullable private EncryptedKeyResolver encryptedKeyResolver;
+    
+    /** The index of local KEK credentials. */
+    @Nullable private KEKCredentialIndex kekCredentialIndex;
         
     /** Constructor. */
     public DecryptionParameters() {
@@ -97,4 +101,22 @@ public class DecryptionParameters extends WhitelistBlacklistParameters {
        encryptedKeyResolver = resolver; 
     }
     
-}
\ No newline at end of file
+    /**
+     * Get the index of local KEK credentials consulted before trial decryption of an EncryptedKey.
+     * 
+     * @return the KEK credential index
+     */
+    @Nullable public KEKCredentialIndex getKEKCredentialIndex() {
+        return kekCredentialIndex;
+    }
+    
+    /**
+     * Set the index of local KEK credentials consulted before trial decryption of an EncryptedKey.
+     * 
+     * @param index the KEK credential index
+     */
+    public void setKEKCredentialIndex(@Nullable final KEKCredentialIndex index) {
+        kekCredentialIndex = index;
+    }
+
+}
@@ -22,6 +22,7 @@ import java.io.InputStream;
 import java.security.Key;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -52,6 +53,7 @@ import org.opensaml.core.xml.io.UnmarshallingException;
 import org.opensaml.security.credential.Credential;
 import org.opensaml.security.credential.CredentialSupport;
 import org.opensaml.security.credential.UsageType;
+import org.opensaml.security.criteria.PeerEntityIDCriterion;
 import org.opensaml.security.criteria.KeyAlgorithmCriterion;
 import org.opensaml.security.criteria.KeyLengthCriterion;
 import org.opensaml.security.criteria.UsageCriterion;
@@ -216,6 +218,9 @@ public class Decrypter {
 
     /** Additional criteria to use when resolving credentials based on an EncryptedKey's KeyInfo. */
     private CriteriaSet kekResolverCriteria;
+    
+    /** Index of local KEK credentials consulted before trial decryption. */
+    @Nullable private KEKCredentialIndex kekCredentialIndex;
 
     /** The name of the JCA security provider to use. */
     private String jcaProviderName;
@@ -236,6 +241,7 @@ public class Decrypter {
                 params.getWhitelistedAlgorithms(),
                 params.getBlacklistedAlgorithms()
                 );
+        kekCredentialIndex = params.getKEKCredentialIndex();
     }
     
     /**
@@ -391,6 +397,37 @@ public class Decrypter {
         return decryptData(encryptedData, isRootInNewDocument());
     }
 
+    /**
+     * Get the optional index of local KEK credentials which is consulted before attempting
+     * decryption with each credential resolved by the KEK resolver.
+     * 
+     * @return the KEK credential index, or null
+     */
+    @Nullable public KEKCredentialIndex getKEKCredentialIndex() {
+        return kekCredentialIndex;
+    }
+    
+    /**
+     * Set the optional index of local KEK credentials which is consulted before attempting
+     * decryption with each credential resolved by the KEK resolver.
+     * 
+     * <p>
+     * The index only affects the order in which the credentials resolved by the KEK resolver are attempted;
+     * a candidate from the index which the KEK resolver did not resolve for the EncryptedKey is never used.
+     * </p>
+     * 
+     * <p>
+     * If the static KEK resolver criteria contains a {@link PeerEntityIDCriterion}, the credential which
+     * successfully decrypts a key is recorded in the index as a hint for that peer. The hint is discarded if
+     * it fails to decrypt a key, or if the data encrypted under the key it produced cannot be decrypted.
+     * </p>
+     * 
+     * @param index the KEK credential index, or null
+     */
+    public void setKEKCredentialIndex(@Nullable final KEKCredentialIndex index) {
+        kekCredentialIndex = index;
+    }
+
     /**
      * Decrypts the supplied EncryptedData and returns the resulting XMLObject.
      * 
@@ -629,15 +666,24 @@ public class Decrypter {
             throw new DecryptionException("Algorithm of encrypted key not supplied, key decryption cannot proceed.");
         }
 
+        final String peer = getPeerHint();
         final CriteriaSet criteriaSet = buildCredentialCriteria(encryptedKey, kekResolverCriteria);
         try {
-            for (final Credential cred : kekResolver.resolve(criteriaSet)) {
+            final Credential hint = kekCredentialIndex != null ? kekCredentialIndex.getLearnedHint(peer) : null;
+            for (final Credential cred : orderKEKCredentials(encryptedKey, peer, kekResolver.resolve(criteriaSet))) {
                 try {
-                    return decryptKey(encryptedKey, algorithm, CredentialSupport.extractDecryptionKey(cred));
+                    final Key key = decryptKey(encryptedKey, algorithm, CredentialSupport.extractDecryptionKey(cred));
+                    if (kekCredentialIndex != null) {
+                        kekCredentialIndex.recordSuccess(peer, cred);
+                    }
+                    return key;
                 } catch (final DecryptionException e) {
                     final String msg =
                             "Attempt to decrypt EncryptedKey using credential from KEK KeyInfo resolver failed: ";
                     log.debug(msg, e);
+                    if (cred == hint) {
+                        kekCredentialIndex.clearLearnedHint(peer);
+                    }
                     continue;
                 }
             }
@@ -718,6 +764,55 @@ public class Decrypter {
         }
     }
 
+    /**
+     * Order the credentials resolved by the KEK resolver so that those suggested by the KEK credential index,
+     * if any, are attempted first.
+     * 
+     * <p>
+     * Only credentials which were resolved by the KEK resolver, and so satisfy the criteria derived from the
+     * EncryptedKey and the static KEK resolver criteria, are returned. Index candidates are matched by identity.
+     * </p>
+     * 
+     * @param encryptedKey the EncryptedKey being decrypted
+     * @param peer the peer identifier for learned hints, may be null
+     * @param resolved the credentials resolved by the KEK resolver
+     * 
+     * @return the ordered credentials
+     */
+    @Nonnull private Iterable<Credential> orderKEKCredentials(@Nonnull final EncryptedKey encryptedKey,
+            @Nullable final String peer, @Nonnull final Iterable<Credential> resolved) {
+        if (kekCredentialIndex == null) {
+            return resolved;
+        }
+        
+        final Set<Credential> remaining = new LinkedHashSet<>();
+        resolved.forEach(remaining::add);
+        
+        final Set<Credential> ordered = new LinkedHashSet<>(remaining.size());
+        for (final Credential cred : kekCredentialIndex.getCandidates(encryptedKey.getKeyInfo(), peer)) {
+            if (remaining.contains(cred)) {
+                ordered.add(cred);
+            }
+        }
+        ordered.addAll(remaining);
+        return ordered;
+    }
+
+    /**
+     * Get the peer identifier used to record and look up learned KEK credential hints.
+     * 
+     * @return the peer entityID from the static KEK resolver criteria, or null
+     */
+    @Nullable private String getPeerHint() {
+        if (kekResolverCriteria != null) {
+            final PeerEntityIDCriterion peerCrit = kekResolverCriteria.get(PeerEntityIDCriterion.class);
+            if (peerCrit != null) {
+                return peerCrit.getPeerID();
+            }
+        }
+        return null;
+    }
+
     /**
      * Preprocess the EncryptedKey. For example, check for supported algorithms.
      * 
@@ -772,13 +867,26 @@ public class Decrypter {
             @Nonnull final String algorithm) {
         if (encKeyResolver != null) {
             for (final EncryptedKey encryptedKey : encKeyResolver.resolve(encryptedData)) {
+                final Key decryptedKey;
+                try {
+                    decryptedKey = decryptKey(encryptedKey, algorithm);
+                } catch (final DecryptionException e) {
+                    final String msg =
+                            "Attempt to decrypt EncryptedData using key extracted from EncryptedKey failed: ";
+                    log.debug(msg, e);
+                    continue;
+                }
                 try {
-                    final Key decryptedKey = decryptKey(encryptedKey, algorithm);
                     return decryptDataToDOM(encryptedData, decryptedKey);
                 } catch (final DecryptionException e) {
                     final String msg =
                             "Attempt to decrypt EncryptedData using key extracted from EncryptedKey failed: ";
                     log.debug(msg, e);
+                    // Some key transport algorithms (e.g. RSA v1.5) may yield a bogus key rather than failing
+                    // when the wrong KEK is used, so don't trust a learned hint that led to this point.
+                    if (kekCredentialIndex != null) {
+                        kekCredentialIndex.clearLearnedHint(getPeerHint());
+                    }
                     continue;
                 }
             }
@@ -0,0 +1,405 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.xmlsec.encryption.support;
+
+import java.math.BigInteger;
+import java.security.KeyException;
+import java.security.PublicKey;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.security.auth.x500.X500Principal;
+
+import org.opensaml.security.SecurityException;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.x509.InternalX500DNHandler;
+import org.opensaml.security.x509.X500DNHandler;
+import org.opensaml.security.x509.X509Credential;
+import org.opensaml.security.x509.X509Support;
+import org.opensaml.xmlsec.algorithm.AlgorithmSupport;
+import org.opensaml.xmlsec.keyinfo.KeyInfoSupport;
+import org.opensaml.xmlsec.signature.KeyInfo;
+import org.opensaml.xmlsec.signature.X509Data;
+import org.opensaml.xmlsec.signature.X509Digest;
+import org.opensaml.xmlsec.signature.X509IssuerSerial;
+import org.opensaml.xmlsec.signature.X509SKI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotLive;
+import net.shibboleth.utilities.java.support.annotation.constraint.Unmodifiable;
+import net.shibboleth.utilities.java.support.codec.Base64Support;
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.primitive.StringSupport;
+
+/**
+ * An index of local key encryption key (KEK) credentials, used by {@link Decrypter} to select the
+ * credential(s) with which to attempt decryption of an {@link org.opensaml.xmlsec.encryption.EncryptedKey}
+ * before falling back to trial decryption with every other credential produced by the KEK resolver.
+ * Candidates are only attempted if the KEK resolver also produced them.
+ * 
+ * <p>
+ * Credentials are indexed by key name, X.509 subject key identifier, issuer name and serial number,
+ * certificate digest and public key. Candidates are located using the corresponding information from
+ * the EncryptedKey's {@link KeyInfo}.
+ * </p>
+ * 
+ * <p>
+ * In addition, the credential which last successfully decrypted a key for a given peer is remembered,
+ * and offered as the first candidate for that peer, for the common case in which the peer does not
+ * supply a precise KeyInfo.  The number of peers remembered is bounded.
+ * </p>
+ */
+@ThreadSafe
+public class KEKCredentialIndex {
+    
+    /** Default maximum number of peers for which learned hints are retained. */
+    public static final int DEFAULT_MAX_LEARNED_HINTS = 1000;
+    
+    /** Class logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(KEKCredentialIndex.class);
+    
+    /** The indexed credentials. */
+    @Nonnull @NonnullElements private final List<Credential> credentials;
+    
+    /** Credentials indexed by key name. */
+    @Nonnull private final Map<String, List<Credential>> byKeyName;
+    
+    /** Credentials indexed by base64-encoded subject key identifier. */
+    @Nonnull private final Map<String, List<Credential>> bySKI;
+    
+    /** Credentials indexed by issuer and serial number. */
+    @Nonnull private final Map<Pair<X500Principal, BigInteger>, List<Credential>> byIssuerSerial;
+    
+    /** Credentials indexed by public key. */
+    @Nonnull private final Map<PublicKey, List<Credential>> byPublicKey;
+    
+    /** Credentials indexed by base64-encoded certificate digest, computed on demand per JCA digest algorithm. */
+    @Nonnull private final Map<String, Map<String, List<Credential>>> byDigest;
+    
+    /** Learned hints, the credential which last succeeded, indexed by peer. */
+    @Nonnull private final Map<String, Credential> learnedHints;
+    
+    /** Handler for parsing issuer names. */
+    @Nonnull private X500DNHandler x500DNHandler;
+
+    /**
+     * Constructor.
+     *
+     * @param localCredentials the local credentials to index
+     */
+    public KEKCredentialIndex(@Nonnull @NonnullElements final Collection<? extends Credential> localCredentials) {
+        this(localCredentials, DEFAULT_MAX_LEARNED_HINTS);
+    }
+    
+    /**
+     * Constructor.
+     *
+     * @param localCredentials the local credentials to index
+     * @param maxLearnedHints the maximum number of peers for which learned hints are retained
+     */
+    public KEKCredentialIndex(@Nonnull @NonnullElements final Collection<? extends Credential> localCredentials,
+            final int maxLearnedHints) {
+        Constraint.isNotNull(localCredentials, "Local credentials cannot be null");
+        Constraint.isGreaterThanOrEqual(0, maxLearnedHints, "Maximum learned hints must be >= 0");
+        
+        credentials = ImmutableList.copyOf(localCredentials);
+        byKeyName = new HashMap<>();
+        bySKI = new HashMap<>();
+        byIssuerSerial = new HashMap<>();
+        byPublicKey = new HashMap<>();
+        byDigest = new ConcurrentHashMap<>();
+        x500DNHandler = new InternalX500DNHandler();
+        
+        learnedHints = Collections.synchronizedMap(new LinkedHashMap<String, Credential>(16, 0.75f, true) {
+            /** Serial version UID. */
+            private static final long serialVersionUID = 3493215278962011497L;
+
+            /** {@inheritDoc} */
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Credential> eldest) {
+                return size() > maxLearnedHints;
+            }
+        });
+        
+        for (final Credential credential : credentials) {
+            index(credential);
+        }
+    }
+    
+    /**
+     * Get the handler used to parse X.509 issuer names.
+     * 
+     * @return the X.500 DN handler
+     */
+    @Nonnull public X500DNHandler getX500DNHandler() {
+        return x500DNHandler;
+    }
+    
+    /**
+     * Set the handler used to parse X.509 issuer names.
+     * 
+     * @param handler the new X.500 DN handler
+     */
+    public void setX500DNHandler(@Nonnull final X500DNHandler handler) {
+        x500DNHandler = Constraint.isNotNull(handler, "X500DNHandler cannot be null");
+    }
+    
+    /**
+     * Get the indexed credentials.
+     * 
+     * @return the indexed credentials
+     */
+    @Nonnull @NonnullElements @Unmodifiable @NotLive public List<Credential> getCredentials() {
+        return credentials;
+    }
+    
+    /**
+     * Get the ordered candidate credentials with which decryption should first be attempted.
+     * 
+     * <p>
+     * The learned hint for the peer, if any, is returned first, followed by any credentials
+     * which match the supplied KeyInfo.  An empty result indicates the index has no information
+     * which would avoid trial decryption.
+     * </p>
+     * 
+     * @param keyInfo the EncryptedKey's KeyInfo, may be null
+     * @param peer an identifier for the peer which produced the EncryptedKey, may be null
+     * 
+     * @return the candidate credentials
+     */
+    @Nonnull @NonnullElements @NotLive public Collection<Credential> getCandidates(@Nullable final KeyInfo keyInfo,
+            @Nullable final String peer) {
+        final LinkedHashSet<Credential> candidates = new LinkedHashSet<>();
+        
+        final String peerID = StringSupport.trimOrNull(peer);
+        if (peerID != null) {
+            final Credential hint = learnedHints.get(peerID);
+            if (hint != null) {
+                log.trace("Found learned KEK credential hint for peer '{}'", peerID);
+                candidates.add(hint);
+            }
+        }
+        
+        if (keyInfo != null) {
+            for (final String keyName : KeyInfoSupport.getKeyNames(keyInfo)) {
+                addAll(candidates, byKeyName.get(keyName));
+            }
+            for (final X509Data x509Data : keyInfo.getX509Datas()) {
+                processX509Data(candidates, x509Data);
+            }
+            try {
+                for (final PublicKey key : KeyInfoSupport.getPublicKeys(keyInfo)) {
+                    addAll(candidates, byPublicKey.get(key));
+                }
+            } catch (final KeyException e) {
+                log.debug("Unable to extract public keys from KeyInfo for KEK credential lookup", e);
+            }
+        }
+        
+        return candidates;
+    }
+    
+    /**
+     * Get the learned hint for the supplied peer.
+     * 
+     * @param peer an identifier for the peer, may be null
+     * 
+     * @return the credential which last succeeded for the peer, or null
+     */
+    @Nullable public Credential getLearnedHint(@Nullable final String peer) {
+        final String peerID = StringSupport.trimOrNull(peer);
+        return peerID != null ? learnedHints.get(peerID) : null;
+    }
+    
+    /**
+     * Record that the supplied credential successfully decrypted a key produced by the supplied peer.
+     * 
+     * @param peer an identifier for the peer, may be null in which case nothing is recorded
+     * @param credential the credential which succeeded
+     */
+    public void recordSuccess(@Nullable final String peer, @Nonnull final Credential credential) {
+        final String peerID = StringSupport.trimOrNull(peer);
+        if (peerID != null && credential != null) {
+            learnedHints.put(peerID, credential);
+        }
+    }
+    
+    /**
+     * Forget any learned hint for the supplied peer.
+     * 
+     * @param peer an identifier for the peer
+     */
+    public void clearLearnedHint(@Nullable final String peer) {
+        final String peerID = StringSupport.trimOrNull(peer);
+        if (peerID != null) {
+            learnedHints.remove(peerID);
+        }
+    }
+    
+    /**
+     * Add the indexed credentials which match the supplied X509Data.
+     * 
+     * @param candidates the candidate accumulator
+     * @param x509Data the X509Data to process
+     */
+    private void processX509Data(@Nonnull final Set<Credential> candidates, @Nonnull final X509Data x509Data) {
+        for (final X509SKI ski : x509Data.getX509SKIs()) {
+            if (!Strings.isNullOrEmpty(ski.getValue())) {
+                addAll(candidates, bySKI.get(normalize(ski.getValue())));
+            }
+        }
+        
+        for (final X509IssuerSerial issuerSerial : x509Data.getX509IssuerSerials()) {
+            if (issuerSerial.getX509IssuerName() == null || issuerSerial.getX509SerialNumber() == null
+                    || Strings.isNullOrEmpty(issuerSerial.getX509IssuerName().getValue())) {
+                continue;
+            }
+            try {
+                final X500Principal issuer = x500DNHandler.parse(issuerSerial.getX509IssuerName().getValue());
+                addAll(candidates, byIssuerSerial.get(
+                        new Pair<>(issuer, issuerSerial.getX509SerialNumber().getValue())));
+            } catch (final IllegalArgumentException e) {
+                log.debug("X500 issuer name '{}' could not be parsed", issuerSerial.getX509IssuerName().getValue());
+            }
+        }
+        
+        for (final X509Digest digest : x509Data.getX509Digests()) {
+            if (!Strings.isNullOrEmpty(digest.getValue()) && !Strings.isNullOrEmpty(digest.getAlgorithm())) {
+                final String alg = AlgorithmSupport.getAlgorithmID(digest.getAlgorithm());
+                if (alg != null) {
+                    addAll(candidates, getDigestIndex(alg).get(normalize(digest.getValue())));
+                }
+            }
+        }
+        
+        try {
+            for (final X509Certificate cert : KeyInfoSupport.getCertificates(x509Data)) {
+                addAll(candidates, byPublicKey.get(cert.getPublicKey()));
+            }
+        } catch (final CertificateException e) {
+            log.debug("Unable to extract certificates from X509Data for KEK credential lookup", e);
+        }
+    }
+    
+    /**
+     * Get the digest index for the specified JCA digest algorithm, computing it if necessary.
+     * 
+     * @param jcaAlgorithm the JCA digest algorithm
+     * @return the index of credentials by base64-encoded certificate digest
+     */
+    @Nonnull private Map<String, List<Credential>> getDigestIndex(@Nonnull final String jcaAlgorithm) {
+        return byDigest.computeIfAbsent(jcaAlgorithm, alg -> {
+            final Map<String, List<Credential>> index = new HashMap<>();
+            for (final Credential credential : credentials) {
+                if (credential instanceof X509Credential) {
+                    try {
+                        final byte[] value = 
+                                X509Support.getX509Digest(((X509Credential) credential).getEntityCertificate(), alg);
+                        put(index, Base64Support.encode(value, Base64Support.UNCHUNKED), credential);
+                    } catch (final SecurityException e) {
+                        log.debug("Unable to compute certificate digest using algorithm '{}'", alg);
+                    }
+                }
+            }
+            return index;
+        });
+    }
+    
+    /**
+     * Index the supplied credential.
+     * 
+     * @param credential the credential to index
+     */
+    private void index(@Nonnull final Credential credential) {
+        for (final String keyName : credential.getKeyNames()) {
+            put(byKeyName, keyName, credential);
+        }
+        
+        if (credential.getPublicKey() != null) {
+            put(byPublicKey, credential.getPublicKey(), credential);
+        }
+        
+        if (credential instanceof X509Credential) {
+            final X509Certificate cert = ((X509Credential) credential).getEntityCertificate();
+            final byte[] ski = X509Support.getSubjectKeyIdentifier(cert);
+            if (ski != null) {
+                put(bySKI, Base64Support.encode(ski, Base64Support.UNCHUNKED), credential);
+            }
+            put(byIssuerSerial, new Pair<>(cert.getIssuerX500Principal(), cert.getSerialNumber()), credential);
+            if (credential.getPublicKey() == null) {
+                put(byPublicKey, cert.getPublicKey(), credential);
+            }
+        }
+    }
+    
+    /**
+     * Normalize a base64 value by decoding and re-encoding it without line breaks.
+     * 
+     * @param value the base64 value
+     * @return the normalized value
+     */
+    @Nonnull private String normalize(@Nonnull final String value) {
+        return Base64Support.encode(Base64Support.decode(value), Base64Support.UNCHUNKED);
+    }
+    
+    /**
+     * Add a credential to a multi-valued index.
+     * 
+     * @param <K> the key type
+     * @param index the index
+     * @param key the key
+     * @param credential the credential
+     */
+    private static <K> void put(@Nonnull final Map<K, List<Credential>> index, @Nonnull final K key,
+            @Nonnull final Credential credential) {
+        index.computeIfAbsent(key, k -> new ArrayList<>(1)).add(credential);
+    }
+    
+    /**
+     * Add the supplied credentials, if any, to the candidates.
+     * 
+     * @param candidates the candidate accumulator
+     * @param matches the matching credentials, may be null
+     */
+    private static void addAll(@Nonnull final Set<Credential> candidates, @Nullable final List<Credential> matches) {
+        if (matches != null) {
+            candidates.addAll(matches);
+        }
+    }
+
+}
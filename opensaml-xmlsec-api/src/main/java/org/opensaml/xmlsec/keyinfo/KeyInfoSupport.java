@@ -47,6 +47,7 @@ import javax.annotation.Nullable;
 import net.shibboleth.utilities.java.support.codec.Base64Support;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 
+import org.opensaml.core.config.ConfigurationService;
 import org.opensaml.core.xml.XMLObjectBuilder;
 import org.opensaml.core.xml.XMLObjectBuilderFactory;
 import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
@@ -192,6 +193,10 @@ public class KeyInfoSupport {
     /**
      * Convert an {@link org.opensaml.xmlsec.signature.X509Certificate} into a native Java representation.
      * 
+     * <p>
+     * If a {@link ParsedCertificateCache} is registered with the {@link ConfigurationService}, it will be used.
+     * </p>
+     * 
      * @param xmlCert an {@link org.opensaml.xmlsec.signature.X509Certificate}
      * 
      * @return a {@link java.security.cert.X509Certificate}
@@ -206,6 +211,11 @@ public class KeyInfoSupport {
             return null;
         }
 
+        final ParsedCertificateCache cache = ConfigurationService.get(ParsedCertificateCache.class);
+        if (cache != null) {
+            return cache.getCertificate(Base64Support.decode(xmlCert.getValue()));
+        }
+
         return X509Support.decodeCertificate(xmlCert.getValue());
     }
 
@@ -800,6 +810,10 @@ public class KeyInfoSupport {
     /**
      * Extracts the public key within the {@link DEREncodedKeyValue}.
      * 
+     * <p>
+     * If a {@link ParsedCertificateCache} is registered with the {@link ConfigurationService}, it will be used.
+     * </p>
+     * 
      * @param keyValue the {@link DEREncodedKeyValue} to extract the key from
      * 
      * @return a native Java security {@link java.security.Key} object
@@ -807,13 +821,30 @@ public class KeyInfoSupport {
      * @throws KeyException thrown if the given key data can not be converted into {@link PublicKey}
      */
     @Nonnull public static PublicKey getKey(@Nonnull final DEREncodedKeyValue keyValue) throws KeyException{
-        final String[] supportedKeyTypes = { "RSA", "DSA", "EC"};
-        
         Constraint.isNotNull(keyValue, "DEREncodedKeyValue cannot be null");
         if (keyValue.getValue() == null) {
             throw new KeyException("No data found in key value element");
         }
         final byte[] encodedKey = Base64Support.decode(keyValue.getValue());
+        
+        final ParsedCertificateCache cache = ConfigurationService.get(ParsedCertificateCache.class);
+        if (cache != null) {
+            return cache.getPublicKey(encodedKey, KeyInfoSupport::decodeDEREncodedKey);
+        }
+        return decodeDEREncodedKey(encodedKey);
+    }
+    
+    /**
+     * Decode a DER-encoded SubjectPublicKeyInfo as an RSA, DSA or EC public key.
+     * 
+     * @param encodedKey the DER-encoded key
+     * 
+     * @return a native Java security {@link java.security.Key} object
+     * 
+     * @throws KeyException thrown if the given key data can not be converted into {@link PublicKey}
+     */
+    @Nonnull private static PublicKey decodeDEREncodedKey(@Nonnull final byte[] encodedKey) throws KeyException {
+        final String[] supportedKeyTypes = { "RSA", "DSA", "EC"};
 
         // Iterate over the supported key types until one produces a public key.
         for (final String keyType : supportedKeyTypes) {
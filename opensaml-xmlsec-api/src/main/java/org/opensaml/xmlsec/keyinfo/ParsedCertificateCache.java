@@ -0,0 +1,217 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.xmlsec.keyinfo;
+
+import java.security.KeyException;
+import java.security.PublicKey;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.opensaml.security.x509.X509Support;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.RatioGauge;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotLive;
+import net.shibboleth.utilities.java.support.annotation.constraint.Unmodifiable;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * A bounded, concurrent cache of certificates and public keys decoded from KeyInfo content, keyed on
+ * a digest of the raw DER encoding.
+ * 
+ * <p>
+ * When an instance is registered with the {@link org.opensaml.core.config.ConfigurationService}, it is used by
+ * {@link KeyInfoSupport#getCertificate(org.opensaml.xmlsec.signature.X509Certificate)} and
+ * {@link KeyInfoSupport#getKey(org.opensaml.xmlsec.signature.DEREncodedKeyValue)}, and so by the KeyInfo
+ * providers which use those methods, avoiding repeated parsing of frequently seen peer certificates.
+ * </p>
+ * 
+ * <p>
+ * The instance is a {@link MetricSet} exposing hit ratio and size gauges, which may be registered
+ * with a metric registry by the deployer.
+ * </p>
+ */
+@ThreadSafe
+public class ParsedCertificateCache implements MetricSet {
+    
+    /** Default maximum number of entries for each of the certificate and public key caches. */
+    public static final long DEFAULT_MAX_SIZE = 5000;
+    
+    /** Metric name for the certificate cache hit ratio gauge. */
+    public static final String METRIC_RATIOGAUGE_CERTIFICATE_HIT_RATIO = "ratioGauge.certificateHitRatio";
+    
+    /** Metric name for the certificate cache size gauge. */
+    public static final String METRIC_GAUGE_CERTIFICATE_SIZE = "gauge.certificateSize";
+    
+    /** Metric name for the public key cache hit ratio gauge. */
+    public static final String METRIC_RATIOGAUGE_PUBLIC_KEY_HIT_RATIO = "ratioGauge.publicKeyHitRatio";
+    
+    /** Metric name for the public key cache size gauge. */
+    public static final String METRIC_GAUGE_PUBLIC_KEY_SIZE = "gauge.publicKeySize";
+    
+    /**
+     * Function which decodes a DER-encoded value.
+     * 
+     * @param <T> the type of decoded value
+     * @param <E> the type of exception thrown on decoding failure
+     */
+    @FunctionalInterface
+    public interface Decoder<T, E extends Exception> {
+        
+        /**
+         * Decode the supplied value.
+         * 
+         * @param der the DER-encoded value
+         * @return the decoded value, or null
+         * @throws E if the value can not be decoded
+         */
+        @Nullable T decode(@Nonnull byte[] der) throws E;
+    }
+    
+    /** The certificate cache. */
+    @Nonnull private final Cache<HashCode, X509Certificate> certificates;
+    
+    /** The public key cache. */
+    @Nonnull private final Cache<HashCode, PublicKey> publicKeys;
+    
+    /** Constructor. */
+    public ParsedCertificateCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+    
+    /**
+     * Constructor.
+     *
+     * @param maxSize the maximum number of entries for each of the certificate and public key caches
+     */
+    public ParsedCertificateCache(final long maxSize) {
+        Constraint.isGreaterThan(0, maxSize, "Maximum size must be > 0");
+        certificates = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().build();
+        publicKeys = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().build();
+    }
+    
+    /**
+     * Get the certificate with the supplied DER encoding, decoding and caching it if necessary.
+     * 
+     * @param der the DER-encoded certificate
+     * @return the certificate
+     * @throws CertificateException if the certificate can not be decoded
+     */
+    @Nullable public X509Certificate getCertificate(@Nonnull final byte[] der) throws CertificateException {
+        return get(certificates, der, X509Support::decodeCertificate);
+    }
+    
+    /**
+     * Get the public key with the supplied DER encoding, decoding and caching it if necessary.
+     * 
+     * @param der the DER-encoded SubjectPublicKeyInfo
+     * @param decoder the function used to decode the key on a cache miss
+     * @return the public key
+     * @throws KeyException if the key can not be decoded
+     */
+    @Nullable public PublicKey getPublicKey(@Nonnull final byte[] der,
+            @Nonnull final Decoder<PublicKey, KeyException> decoder) throws KeyException {
+        return get(publicKeys, der, decoder);
+    }
+    
+    /**
+     * Get the statistics for the certificate cache.
+     * 
+     * @return the certificate cache statistics
+     */
+    @Nonnull public CacheStats getCertificateStats() {
+        return certificates.stats();
+    }
+    
+    /**
+     * Get the statistics for the public key cache.
+     * 
+     * @return the public key cache statistics
+     */
+    @Nonnull public CacheStats getPublicKeyStats() {
+        return publicKeys.stats();
+    }
+    
+    /**
+     * Discard all cached entries.
+     */
+    public void invalidateAll() {
+        certificates.invalidateAll();
+        publicKeys.invalidateAll();
+    }
+
+    /** {@inheritDoc} */
+    @Nonnull @NonnullElements @Unmodifiable @NotLive public Map<String, Metric> getMetrics() {
+        final Map<String, Metric> metrics = new HashMap<>(4);
+        metrics.put(METRIC_RATIOGAUGE_CERTIFICATE_HIT_RATIO, new RatioGauge() {
+            protected Ratio getRatio() {
+                final CacheStats stats = certificates.stats();
+                return Ratio.of(stats.hitCount(), stats.requestCount());
+            }});
+        metrics.put(METRIC_GAUGE_CERTIFICATE_SIZE, (Gauge<Long>) certificates::size);
+        metrics.put(METRIC_RATIOGAUGE_PUBLIC_KEY_HIT_RATIO, new RatioGauge() {
+            protected Ratio getRatio() {
+                final CacheStats stats = publicKeys.stats();
+                return Ratio.of(stats.hitCount(), stats.requestCount());
+            }});
+        metrics.put(METRIC_GAUGE_PUBLIC_KEY_SIZE, (Gauge<Long>) publicKeys::size);
+        return Map.copyOf(metrics);
+    }
+    
+    /**
+     * Get a value from the supplied cache, decoding and caching it if necessary.
+     * 
+     * @param <T> the type of decoded value
+     * @param <E> the type of exception thrown on decoding failure
+     * @param cache the cache
+     * @param der the DER-encoded value
+     * @param decoder the function used to decode the value on a cache miss
+     * @return the decoded value
+     * @throws E if the value can not be decoded
+     */
+    @Nullable private <T, E extends Exception> T get(@Nonnull final Cache<HashCode, T> cache, 
+            @Nonnull final byte[] der, @Nonnull final Decoder<T, E> decoder) throws E {
+        Constraint.isNotNull(der, "DER-encoded value cannot be null");
+        final HashCode key = Hashing.sha256().hashBytes(der);
+        T value = cache.getIfPresent(key);
+        if (value == null) {
+            value = decoder.decode(der);
+            if (value != null) {
+                cache.put(key, value);
+            }
+        }
+        return value;
+    }
+
+}
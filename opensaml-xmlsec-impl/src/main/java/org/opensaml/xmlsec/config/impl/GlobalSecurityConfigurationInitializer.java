@@ -24,6 +24,7 @@ import org.opensaml.xmlsec.DecryptionConfiguration;
 import org.opensaml.xmlsec.EncryptionConfiguration;
 import org.opensaml.xmlsec.SignatureSigningConfiguration;
 import org.opensaml.xmlsec.SignatureValidationConfiguration;
+import org.opensaml.xmlsec.keyinfo.ParsedCertificateCache;
 
 /**
  * An initializer which initializes the global security configuration.
@@ -43,6 +44,8 @@ public class GlobalSecurityConfigurationInitializer implements Initializer {
         
         ConfigurationService.register(SignatureValidationConfiguration.class, 
                 DefaultSecurityConfigurationBootstrap.buildDefaultSignatureValidationConfiguration());
+        
+        ConfigurationService.register(ParsedCertificateCache.class, new ParsedCertificateCache());
     }
 
 }
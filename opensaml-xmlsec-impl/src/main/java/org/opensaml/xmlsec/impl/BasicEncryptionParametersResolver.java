@@ -20,6 +20,7 @@ package org.opensaml.xmlsec.impl;
 import java.security.Key;
 import java.security.KeyException;
 import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -27,7 +28,9 @@ import java.util.function.Predicate;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.crypto.SecretKey;
 
+import org.opensaml.security.credential.BasicCredential;
 import org.opensaml.security.credential.Credential;
 import org.opensaml.security.credential.CredentialSupport;
 import org.opensaml.xmlsec.EncryptionConfiguration;
@@ -63,6 +66,17 @@ import net.shibboleth.utilities.java.support.resolver.ResolverException;
  * <li>{@link EncryptionOptionalCriterion} - optional</li> 
  * </ul>
  * </p>
+ * 
+ * <p>
+ * If a {@link SecurityParametersCache} is configured, successfully resolved parameters are cached against
+ * the configuration chain in effect and the scope returned by {@link #resolveCacheScope(CriteriaSet)}.
+ * Copies of the cached parameters are returned on subsequent matching requests. Auto-generated data
+ * encryption credentials are never cached; a fresh credential is generated for every request. A key
+ * transport credential which was not supplied by the configuration (for example, one resolved from a peer's
+ * metadata) is not retained either, since it may reference the scope of the cache entry and so prevent its
+ * eviction; only its key is cached, and the credential is recovered on each hit via
+ * {@link #resolveCachedKeyTransportCredential(CriteriaSet, Key)}.
+ * </p>
  */
 public class BasicEncryptionParametersResolver extends AbstractSecurityParametersResolver<EncryptionParameters> 
         implements EncryptionParametersResolver {
@@ -76,6 +90,9 @@ public class BasicEncryptionParametersResolver extends AbstractSecurityParameter
     /** Flag indicating whether the resolver should auto-generate data encryption credentials. */
     private boolean autoGenerateDataEncryptionCredential;
     
+    /** Optional cache of resolved parameters. */
+    @Nullable private SecurityParametersCache<EncryptionParameters> parametersCache;
+    
     /** Constructor. */
     public BasicEncryptionParametersResolver() {
         algorithmRegistry = AlgorithmSupport.getGlobalAlgorithmRegistry();
@@ -123,6 +140,26 @@ public class BasicEncryptionParametersResolver extends AbstractSecurityParameter
         autoGenerateDataEncryptionCredential = flag;
     }
 
+    /**
+     * Get the optional cache of resolved parameters.
+     * 
+     * @return the parameters cache, or null if caching is disabled
+     */
+    @Nullable public SecurityParametersCache<EncryptionParameters> getParametersCache() {
+        return parametersCache;
+    }
+
+    /**
+     * Set the optional cache of resolved parameters.
+     * 
+     * <p>Defaults to: null, caching disabled.</p>
+     * 
+     * @param cache the parameters cache, may be null
+     */
+    public void setParametersCache(@Nullable final SecurityParametersCache<EncryptionParameters> cache) {
+        parametersCache = cache;
+    }
+
     /** {@inheritDoc} */
     @Override
     @Nonnull public Iterable<EncryptionParameters> resolve(@Nonnull final CriteriaSet criteria) 
@@ -141,6 +178,19 @@ public class BasicEncryptionParametersResolver extends AbstractSecurityParameter
         Constraint.isNotNull(criteria.get(EncryptionConfigurationCriterion.class), 
                 "Resolver requires an instance of EncryptionConfigurationCriterion");
         
+        final SecurityParametersCache.Key cacheKey = buildCacheKey(criteria);
+        if (cacheKey != null) {
+            final EncryptionParameters cached = parametersCache.get(cacheKey);
+            if (cached != null) {
+                final EncryptionParameters params = restoreCachedResult(cached, criteria);
+                if (params != null) {
+                    log.trace("Returning cached EncryptionParameters for key: {}", cacheKey);
+                    return params;
+                }
+                log.trace("Cached EncryptionParameters for key could not be restored, re-resolving: {}", cacheKey);
+            }
+        }
+        
         final Predicate<String> whitelistBlacklistPredicate = getWhitelistBlacklistPredicate(criteria);
         
         final EncryptionParameters params = new EncryptionParameters();
@@ -164,11 +214,182 @@ public class BasicEncryptionParametersResolver extends AbstractSecurityParameter
         
         if (validate(params, encryptionOptional)) {
             logResult(params);
+            if (cacheKey != null) {
+                cacheResult(cacheKey, params, criteria);
+            }
             return params;
         }
         return null;
         
     }
+    
+    /**
+     * Build the parameters to return for a cache hit from a copy of the cached parameters.
+     * 
+     * <p>
+     * An auto-generated data encryption credential is regenerated, and a key transport credential
+     * which was not obtained from the effective configuration is recovered via
+     * {@link #resolveCachedKeyTransportCredential(CriteriaSet, Key)}.
+     * </p>
+     * 
+     * @param cached the cached parameters
+     * @param criteria the input criteria being evaluated
+     * 
+     * @return the parameters, or null if the cached parameters could not be restored
+     */
+    @Nullable protected EncryptionParameters restoreCachedResult(@Nonnull final EncryptionParameters cached,
+            @Nonnull final CriteriaSet criteria) {
+        final EncryptionParameters params = copy(cached);
+        
+        final Credential kekCredential = cached.getKeyTransportEncryptionCredential();
+        if (kekCredential != null
+                && getEffectiveKeyTransportCredentials(criteria).stream().noneMatch(c -> c == kekCredential)) {
+            final Credential resolved = resolveCachedKeyTransportCredential(criteria,
+                    CredentialSupport.extractEncryptionKey(kekCredential));
+            if (resolved == null) {
+                return null;
+            }
+            params.setKeyTransportEncryptionCredential(resolved);
+        }
+        
+        if (params.getDataEncryptionCredential() == null) {
+            processDataEncryptionCredentialAutoGeneration(params);
+            params.setDataKeyInfoGenerator(
+                    resolveDataKeyInfoGenerator(criteria, params.getDataEncryptionCredential()));
+        }
+        return params;
+    }
+    
+    /**
+     * Recover the key transport credential for a cache hit whose credential was not obtained from the
+     * effective configuration.
+     * 
+     * <p>
+     * This implementation only resolves credentials from the configuration and so returns null, causing the
+     * parameters to be resolved afresh. Subclasses which resolve credentials from other sources should return
+     * the credential from that source which carries the specified key.
+     * </p>
+     * 
+     * @param criteria the input criteria being evaluated
+     * @param key the key of the credential which was resolved
+     * 
+     * @return the credential, or null if it could not be recovered
+     */
+    @Nullable protected Credential resolveCachedKeyTransportCredential(@Nonnull final CriteriaSet criteria,
+            @Nullable final Key key) {
+        return null;
+    }
+    
+    /**
+     * Store a copy of the resolved parameters in the cache.
+     * 
+     * <p>
+     * A data encryption credential which was not obtained from the effective configuration
+     * must have been auto-generated, and is omitted from the cached copy along with its
+     * KeyInfo generator, so that it is regenerated on each cache hit. A key transport credential which
+     * was not obtained from the effective configuration is replaced in the cached copy by a credential
+     * carrying only its key, so that the cache does not retain anything else it references.
+     * </p>
+     * 
+     * @param cacheKey the cache key
+     * @param params the resolved parameters
+     * @param criteria the input criteria being evaluated
+     */
+    protected void cacheResult(@Nonnull final SecurityParametersCache.Key cacheKey, 
+            @Nonnull final EncryptionParameters params, @Nonnull final CriteriaSet criteria) {
+        final EncryptionParameters cached = copy(params);
+        final Credential dataCredential = params.getDataEncryptionCredential();
+        if (dataCredential != null && isAutoGenerateDataEncryptionCredential()
+                && getEffectiveDataEncryptionCredentials(criteria).stream().noneMatch(c -> c == dataCredential)) {
+            cached.setDataEncryptionCredential(null);
+            cached.setDataKeyInfoGenerator(null);
+        }
+        
+        final Credential kekCredential = params.getKeyTransportEncryptionCredential();
+        if (kekCredential != null
+                && getEffectiveKeyTransportCredentials(criteria).stream().noneMatch(c -> c == kekCredential)) {
+            final Key key = CredentialSupport.extractEncryptionKey(kekCredential);
+            if (key instanceof PublicKey) {
+                cached.setKeyTransportEncryptionCredential(new BasicCredential((PublicKey) key));
+            } else if (key instanceof SecretKey) {
+                cached.setKeyTransportEncryptionCredential(new BasicCredential((SecretKey) key));
+            } else {
+                log.trace("Key transport credential could not be detached, parameters will not be cached");
+                return;
+            }
+        }
+        parametersCache.put(cacheKey, cached);
+    }
+    
+    /**
+     * Build the key under which the parameters resolved for the specified criteria are cached.
+     * 
+     * @param criteria the input criteria being evaluated
+     * 
+     * @return the cache key, or null if caching is disabled or not possible for the criteria
+     */
+    @Nullable protected SecurityParametersCache.Key buildCacheKey(@Nonnull final CriteriaSet criteria) {
+        if (parametersCache == null) {
+            return null;
+        }
+        
+        final Object scope = resolveCacheScope(criteria);
+        if (scope == null) {
+            log.trace("No cache scope could be established for criteria, parameters will not be cached");
+            return null;
+        }
+        
+        final KeyInfoGenerationProfileCriterion profileCriterion = 
+                criteria.get(KeyInfoGenerationProfileCriterion.class);
+        final EncryptionOptionalCriterion optionalCriterion = criteria.get(EncryptionOptionalCriterion.class);
+        
+        return new SecurityParametersCache.Key(scope, 
+                criteria.get(EncryptionConfigurationCriterion.class).getConfigurations(),
+                profileCriterion != null ? profileCriterion.getName() : null,
+                optionalCriterion != null ? optionalCriterion.isEncryptionOptional() : null);
+    }
+    
+    /**
+     * Resolve the scope with which cached parameters are associated.
+     * 
+     * <p>
+     * This implementation depends only on the encryption configurations and so returns
+     * {@link SecurityParametersCache#UNSCOPED}. Subclasses which consult additional inputs should return
+     * an object which uniquely identifies those inputs, or null if the result may not be cached.
+     * </p>
+     * 
+     * @param criteria the input criteria being evaluated
+     * 
+     * @return the cache scope, or null if the result may not be cached
+     */
+    @Nullable protected Object resolveCacheScope(@Nonnull final CriteriaSet criteria) {
+        return SecurityParametersCache.UNSCOPED;
+    }
+    
+    /**
+     * Create a shallow copy of the specified parameters instance.
+     * 
+     * <p>The {@link RSAOAEPParameters}, being mutable, is itself copied.</p>
+     * 
+     * @param params the parameters to copy
+     * 
+     * @return the copy
+     */
+    @Nonnull protected EncryptionParameters copy(@Nonnull final EncryptionParameters params) {
+        final EncryptionParameters copy = new EncryptionParameters();
+        copy.setDataEncryptionCredential(params.getDataEncryptionCredential());
+        copy.setDataEncryptionAlgorithm(params.getDataEncryptionAlgorithm());
+        copy.setDataKeyInfoGenerator(params.getDataKeyInfoGenerator());
+        copy.setKeyTransportEncryptionCredential(params.getKeyTransportEncryptionCredential());
+        copy.setKeyTransportEncryptionAlgorithm(params.getKeyTransportEncryptionAlgorithm());
+        copy.setKeyTransportKeyInfoGenerator(params.getKeyTransportKeyInfoGenerator());
+        final RSAOAEPParameters rsaParams = params.getRSAOAEPParameters();
+        if (rsaParams != null) {
+            copy.setRSAOAEPParameters(new RSAOAEPParameters(rsaParams.getDigestMethod(), 
+                    rsaParams.getMaskGenerationFunction(), rsaParams.getOAEPParams()));
+        }
+        return copy;
+    }
 
     /**
      * Log the resolved parameters.
@@ -57,6 +57,12 @@ import com.google.common.collect.Collections2;
  * <li>{@link KeyInfoGenerationProfileCriterion} - optional</li> 
  * </ul>
  * </p>
+ * 
+ * <p>
+ * If a {@link SecurityParametersCache} is configured, successfully resolved parameters are cached against
+ * the configuration chain in effect and the scope returned by {@link #resolveCacheScope(CriteriaSet)}.
+ * Copies of the cached parameters are returned on subsequent matching requests.
+ * </p>
  */
 public class BasicSignatureSigningParametersResolver 
         extends AbstractSecurityParametersResolver<SignatureSigningParameters> 
@@ -68,6 +74,9 @@ public class BasicSignatureSigningParametersResolver
     /** The AlgorithmRegistry used when processing algorithm URIs. */
     private AlgorithmRegistry algorithmRegistry;
     
+    /** Optional cache of resolved parameters. */
+    @Nullable private SecurityParametersCache<SignatureSigningParameters> parametersCache;
+    
     /** Constructor. */
     public BasicSignatureSigningParametersResolver() {
         algorithmRegistry = AlgorithmSupport.getGlobalAlgorithmRegistry();
@@ -97,6 +106,26 @@ public class BasicSignatureSigningParametersResolver
         algorithmRegistry = Constraint.isNotNull(registry, "AlgorithmRegistry was null");
     }
 
+    /**
+     * Get the optional cache of resolved parameters.
+     * 
+     * @return the parameters cache, or null if caching is disabled
+     */
+    @Nullable public SecurityParametersCache<SignatureSigningParameters> getParametersCache() {
+        return parametersCache;
+    }
+
+    /**
+     * Set the optional cache of resolved parameters.
+     * 
+     * <p>Defaults to: null, caching disabled.</p>
+     * 
+     * @param cache the parameters cache, may be null
+     */
+    public void setParametersCache(@Nullable final SecurityParametersCache<SignatureSigningParameters> cache) {
+        parametersCache = cache;
+    }
+
     /** {@inheritDoc} */
     @Nonnull
     public Iterable<SignatureSigningParameters> resolve(@Nonnull final CriteriaSet criteria) throws ResolverException {
@@ -114,6 +143,15 @@ public class BasicSignatureSigningParametersResolver
         Constraint.isNotNull(criteria.get(SignatureSigningConfigurationCriterion.class), 
                 "Resolver requires an instance of SignatureSigningConfigurationCriterion");
         
+        final SecurityParametersCache.Key cacheKey = buildCacheKey(criteria);
+        if (cacheKey != null) {
+            final SignatureSigningParameters cached = parametersCache.get(cacheKey);
+            if (cached != null) {
+                log.trace("Returning cached SignatureSigningParameters for key: {}", cacheKey);
+                return copy(cached);
+            }
+        }
+        
         final Predicate<String> whitelistBlacklistPredicate = getWhitelistBlacklistPredicate(criteria);
         
         final SignatureSigningParameters params = new SignatureSigningParameters();
@@ -133,11 +171,76 @@ public class BasicSignatureSigningParametersResolver
         
         if (validate(params)) {
             logResult(params);
+            if (cacheKey != null) {
+                parametersCache.put(cacheKey, copy(params));
+            }
             return params;
         }
         return null;
     }
     
+    /**
+     * Build the key under which the parameters resolved for the specified criteria are cached.
+     * 
+     * @param criteria the input criteria being evaluated
+     * 
+     * @return the cache key, or null if caching is disabled or not possible for the criteria
+     */
+    @Nullable protected SecurityParametersCache.Key buildCacheKey(@Nonnull final CriteriaSet criteria) {
+        if (parametersCache == null) {
+            return null;
+        }
+        
+        final Object scope = resolveCacheScope(criteria);
+        if (scope == null) {
+            log.trace("No cache scope could be established for criteria, parameters will not be cached");
+            return null;
+        }
+        
+        final KeyInfoGenerationProfileCriterion profileCriterion = 
+                criteria.get(KeyInfoGenerationProfileCriterion.class);
+        
+        return new SecurityParametersCache.Key(scope, 
+                criteria.get(SignatureSigningConfigurationCriterion.class).getConfigurations(),
+                profileCriterion != null ? profileCriterion.getName() : null);
+    }
+    
+    /**
+     * Resolve the scope with which cached parameters are associated.
+     * 
+     * <p>
+     * This implementation depends only on the signing configurations and so returns
+     * {@link SecurityParametersCache#UNSCOPED}. Subclasses which consult additional inputs should return
+     * an object which uniquely identifies those inputs, or null if the result may not be cached.
+     * </p>
+     * 
+     * @param criteria the input criteria being evaluated
+     * 
+     * @return the cache scope, or null if the result may not be cached
+     */
+    @Nullable protected Object resolveCacheScope(@Nonnull final CriteriaSet criteria) {
+        return SecurityParametersCache.UNSCOPED;
+    }
+    
+    /**
+     * Create a shallow copy of the specified parameters instance.
+     * 
+     * @param params the parameters to copy
+     * 
+     * @return the copy
+     */
+    @Nonnull protected SignatureSigningParameters copy(@Nonnull final SignatureSigningParameters params) {
+        final SignatureSigningParameters copy = new SignatureSigningParameters();
+        copy.setSigningCredential(params.getSigningCredential());
+        copy.setSignatureAlgorithm(params.getSignatureAlgorithm());
+        copy.setSignatureReferenceDigestMethod(params.getSignatureReferenceDigestMethod());
+        copy.setSignatureReferenceCanonicalizationAlgorithm(params.getSignatureReferenceCanonicalizationAlgorithm());
+        copy.setSignatureCanonicalizationAlgorithm(params.getSignatureCanonicalizationAlgorithm());
+        copy.setSignatureHMACOutputLength(params.getSignatureHMACOutputLength());
+        copy.setKeyInfoGenerator(params.getKeyInfoGenerator());
+        return copy;
+    }
+    
     /**
      * Log the resolved parameters.
      * 
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.xmlsec.impl;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * Cache of resolved security parameters, used by security parameters resolvers to avoid re-running
+ * full resolution for repeated requests against the same configuration chain and peer.
+ * 
+ * <p>
+ * Entries are grouped by a scope object, typically the peer's metadata role descriptor. Scopes are held
+ * weakly and compared by identity, so replacement of the scope object, for example on a metadata refresh,
+ * naturally invalidates all entries derived from the old instance. Callers with no peer-specific scope
+ * use {@link #UNSCOPED}.
+ * </p>
+ * 
+ * <p>
+ * Within a scope, entries are keyed by the identity of the configuration instances in effect, plus any
+ * additional value-based discriminators supplied by the resolver. Configuration instances are therefore
+ * assumed not to be mutated once they have been used for resolution.
+ * </p>
+ * 
+ * <p>
+ * Cached values are returned as-is; resolvers are responsible for copying mutable values
+ * on both insertion and retrieval. Values must not strongly reference their scope, directly or indirectly
+ * (for example via a credential context referring to the metadata from which a credential was resolved),
+ * or the scope will never be collected.
+ * </p>
+ * 
+ * @param <T> the type of parameters being cached
+ */
+public class SecurityParametersCache<T> {
+    
+    /** Scope used for entries which are not associated with any particular peer. */
+    @Nonnull public static final Object UNSCOPED = new Object();
+    
+    /** Default maximum number of entries held per scope. */
+    public static final int DEFAULT_MAX_ENTRIES_PER_SCOPE = 16;
+    
+    /** Maximum number of entries held per scope. */
+    private final int maxEntriesPerScope;
+    
+    /** Per-scope caches, keyed weakly by scope identity. */
+    @Nonnull private final Cache<Object, Cache<Key, T>> scopes;
+    
+    /** Constructor. */
+    public SecurityParametersCache() {
+        this(DEFAULT_MAX_ENTRIES_PER_SCOPE);
+    }
+    
+    /**
+     * Constructor.
+     *
+     * @param maxEntries maximum number of entries held per scope
+     */
+    public SecurityParametersCache(final int maxEntries) {
+        maxEntriesPerScope = (int) Constraint.isGreaterThan(0, maxEntries, 
+                "Maximum entries per scope must be greater than 0");
+        scopes = CacheBuilder.newBuilder().weakKeys().build();
+    }
+    
+    /**
+     * Get the maximum number of entries held per scope.
+     * 
+     * @return the maximum number of entries per scope
+     */
+    public int getMaxEntriesPerScope() {
+        return maxEntriesPerScope;
+    }
+    
+    /**
+     * Get the number of scopes currently holding entries.
+     * 
+     * @return the number of scopes
+     */
+    public long getScopeCount() {
+        scopes.cleanUp();
+        return scopes.size();
+    }
+    
+    /**
+     * Get the cached value for the specified key.
+     * 
+     * @param key the cache key
+     * 
+     * @return the cached value, or null
+     */
+    @Nullable public T get(@Nonnull final Key key) {
+        Constraint.isNotNull(key, "Key was null");
+        final Object scope = key.getScope();
+        if (scope == null) {
+            return null;
+        }
+        final Cache<Key, T> entries = scopes.getIfPresent(scope);
+        if (entries == null) {
+            return null;
+        }
+        return entries.getIfPresent(key);
+    }
+    
+    /**
+     * Store a value for the specified key.
+     * 
+     * @param key the cache key
+     * @param value the value to cache
+     */
+    public void put(@Nonnull final Key key, @Nonnull final T value) {
+        Constraint.isNotNull(key, "Key was null");
+        Constraint.isNotNull(value, "Value was null");
+        final Object scope = key.getScope();
+        if (scope == null) {
+            return;
+        }
+        scopes.asMap().computeIfAbsent(scope, 
+                k -> CacheBuilder.newBuilder().maximumSize(maxEntriesPerScope).<Key, T>build())
+            .put(key, value);
+    }
+    
+    /**
+     * Invalidate all entries associated with the specified scope.
+     * 
+     * @param scope the scope to invalidate
+     */
+    public void invalidate(@Nonnull final Object scope) {
+        Constraint.isNotNull(scope, "Scope was null");
+        scopes.invalidate(scope);
+    }
+    
+    /** Invalidate all entries. */
+    public void invalidateAll() {
+        scopes.invalidateAll();
+    }
+    
+    /**
+     * Cache key composed of a scope, an ordered list of configuration instances compared by identity,
+     * and an ordered list of discriminator values compared by equality.
+     * 
+     * <p>
+     * The scope is held weakly, since keys are retained by the per-scope cache which is itself only weakly
+     * reachable from its scope.
+     * </p>
+     */
+    public static final class Key {
+        
+        /** The scope. */
+        @Nonnull private final WeakReference<Object> scope;
+        
+        /** The configuration instances, compared by identity. */
+        @Nonnull private final List<Object> configurations;
+        
+        /** Additional discriminators, compared by equality. */
+        @Nonnull private final List<Object> discriminators;
+        
+        /** Cached hash code. */
+        private final int hashCode;
+        
+        /**
+         * Constructor.
+         *
+         * @param keyScope the scope, or {@link SecurityParametersCache#UNSCOPED}
+         * @param configs the configuration instances in effect, in order
+         * @param values additional discriminator values, may contain nulls
+         */
+        public Key(@Nonnull final Object keyScope, @Nonnull final List<?> configs, 
+                @Nullable final Object... values) {
+            scope = new WeakReference<>(Constraint.isNotNull(keyScope, "Scope was null"));
+            configurations = Collections.unmodifiableList(
+                    new ArrayList<>(Constraint.isNotNull(configs, "Configurations list was null")));
+            discriminators = values != null ? Collections.unmodifiableList(Arrays.asList(values.clone())) 
+                    : Collections.emptyList();
+            
+            int result = System.identityHashCode(keyScope);
+            for (final Object config : configurations) {
+                result = 31 * result + System.identityHashCode(config);
+            }
+            hashCode = 31 * result + discriminators.hashCode();
+        }
+        
+        /**
+         * Get the scope.
+         * 
+         * @return the scope, or null if it has since been garbage collected
+         */
+        @Nullable public Object getScope() {
+            return scope.get();
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            
+            final Key other = (Key) obj;
+            final Object thisScope = scope.get();
+            if (thisScope == null || thisScope != other.scope.get()
+                    || configurations.size() != other.configurations.size()) {
+                return false;
+            }
+            for (int i = 0; i < configurations.size(); i++) {
+                if (configurations.get(i) != other.configurations.get(i)) {
+                    return false;
+                }
+            }
+            return Objects.equals(discriminators, other.discriminators);
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("scope", scope.get() == UNSCOPED ? "unscoped" : scope.get())
+                    .add("configurations", configurations.size())
+                    .add("discriminators", discriminators)
+                    .toString();
+        }
+        
+    }
+
+}
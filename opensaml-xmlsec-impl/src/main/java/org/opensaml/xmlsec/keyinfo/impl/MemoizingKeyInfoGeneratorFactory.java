@@ -0,0 +1,171 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.xmlsec.keyinfo.impl;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.io.Unmarshaller;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.security.SecurityException;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.xmlsec.keyinfo.KeyInfoGenerator;
+import org.opensaml.xmlsec.keyinfo.KeyInfoGeneratorFactory;
+import org.opensaml.xmlsec.signature.KeyInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import net.shibboleth.utilities.java.support.annotation.ParameterName;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * A {@link KeyInfoGeneratorFactory} which wraps another factory and memoizes the {@link KeyInfo}
+ * produced for each credential.
+ * 
+ * <p>
+ * The first time a credential is seen, the wrapped factory's generator is used to produce the KeyInfo
+ * returned to the caller, and a separately generated prototype is marshalled into a private
+ * {@link Document} and retained. Subsequent requests for the same credential are satisfied by importing
+ * a copy of the prototype into a new Document and unmarshalling it, avoiding repeated certificate encoding
+ * and KeyInfo construction. The returned KeyInfo retains the cached DOM, which will be adopted when its
+ * parent is marshalled.
+ * </p>
+ * 
+ * <p>
+ * The prototype's Document is never exposed, and is only accessed while holding the prototype's lock,
+ * so each returned KeyInfo is owned by a Document which is not shared with any other caller.
+ * </p>
+ * 
+ * <p>
+ * Credentials are held weakly and compared by identity (or by their own equality semantics, if defined),
+ * so this is most effective for long-lived local signing and encryption credentials. The configuration of
+ * the wrapped factory must not be changed after it is wrapped, or {@link #clearCache()} must be called
+ * when it is.
+ * </p>
+ */
+public class MemoizingKeyInfoGeneratorFactory implements KeyInfoGeneratorFactory {
+    
+    /** Class logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(MemoizingKeyInfoGeneratorFactory.class);
+    
+    /** The wrapped factory. */
+    @Nonnull private final KeyInfoGeneratorFactory delegate;
+    
+    /** Marshalled KeyInfo prototypes, indexed by credential. */
+    @Nonnull private final Map<Credential, Element> prototypes;
+
+    /**
+     * Constructor.
+     *
+     * @param factory the factory whose generated KeyInfo is to be memoized
+     */
+    public MemoizingKeyInfoGeneratorFactory(
+            @Nonnull @ParameterName(name="factory") final KeyInfoGeneratorFactory factory) {
+        delegate = Constraint.isNotNull(factory, "Wrapped KeyInfoGeneratorFactory cannot be null");
+        prototypes = Collections.synchronizedMap(new WeakHashMap<>());
+    }
+    
+    /**
+     * Get the wrapped factory.
+     * 
+     * @return the wrapped factory
+     */
+    @Nonnull public KeyInfoGeneratorFactory getDelegate() {
+        return delegate;
+    }
+    
+    /**
+     * Discard all memoized KeyInfo prototypes.
+     */
+    public void clearCache() {
+        prototypes.clear();
+    }
+
+    /** {@inheritDoc} */
+    @Nonnull public KeyInfoGenerator newInstance() {
+        return new MemoizingKeyInfoGenerator();
+    }
+
+    /** {@inheritDoc} */
+    public boolean handles(@Nonnull final Credential credential) {
+        return delegate.handles(credential);
+    }
+
+    /** {@inheritDoc} */
+    @Nonnull public Class<? extends Credential> getCredentialType() {
+        return delegate.getCredentialType();
+    }
+    
+    /**
+     * A generator which returns copies of the memoized KeyInfo for a credential.
+     */
+    protected class MemoizingKeyInfoGenerator implements KeyInfoGenerator {
+
+        /** {@inheritDoc} */
+        @Nullable public KeyInfo generate(@Nullable final Credential credential) throws SecurityException {
+            if (credential == null) {
+                return delegate.newInstance().generate(credential);
+            }
+            
+            final Element prototype = prototypes.get(credential);
+            if (prototype != null) {
+                final Element copy;
+                synchronized (prototype) {
+                    final Document document = prototype.getOwnerDocument().getImplementation()
+                            .createDocument(null, null, null);
+                    copy = (Element) document.importNode(prototype, true);
+                    document.appendChild(copy);
+                }
+                try {
+                    final Unmarshaller unmarshaller = XMLObjectSupport.getUnmarshaller(copy);
+                    if (unmarshaller != null) {
+                        return (KeyInfo) unmarshaller.unmarshall(copy);
+                    }
+                } catch (final UnmarshallingException e) {
+                    log.warn("Error unmarshalling memoized KeyInfo, regenerating", e);
+                    prototypes.remove(credential);
+                }
+            }
+            
+            final KeyInfo keyInfo = delegate.newInstance().generate(credential);
+            if (keyInfo != null) {
+                try {
+                    // The caller's KeyInfo is left unmarshalled, the prototype is generated separately.
+                    final KeyInfo template = delegate.newInstance().generate(credential);
+                    if (template != null) {
+                        prototypes.put(credential, XMLObjectSupport.marshall(template));
+                    }
+                } catch (final MarshallingException e) {
+                    log.warn("Error marshalling generated KeyInfo, it will not be memoized", e);
+                }
+            }
+            return keyInfo;
+        }
+        
+    }
+
+}
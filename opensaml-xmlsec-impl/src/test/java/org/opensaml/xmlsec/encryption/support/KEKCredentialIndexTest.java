@@ -0,0 +1,201 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.xmlsec.encryption.support;
+
+import java.security.Key;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.XMLObjectBaseTestCase;
+import org.opensaml.security.credential.BasicCredential;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.criteria.PeerEntityIDCriterion;
+import org.opensaml.xmlsec.algorithm.AlgorithmSupport;
+import org.opensaml.xmlsec.encryption.EncryptedData;
+import org.opensaml.xmlsec.encryption.EncryptedKey;
+import org.opensaml.xmlsec.keyinfo.KeyInfoCredentialResolver;
+import org.opensaml.xmlsec.keyinfo.KeyInfoSupport;
+import org.opensaml.xmlsec.keyinfo.impl.StaticKeyInfoCredentialResolver;
+import org.opensaml.xmlsec.signature.KeyInfo;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+
+/**
+ * Tests for {@link KEKCredentialIndex}.
+ */
+public class KEKCredentialIndexTest extends XMLObjectBaseTestCase {
+    
+    private String encURI = EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES128;
+    
+    private String kekURI = EncryptionConstants.ALGO_ID_KEYTRANSPORT_RSAOAEP;
+    
+    private Key encKey;
+    
+    private BasicCredential kekCred1, kekCred2;
+    
+    private EncryptedKey encryptedKey;
+    
+    private KEKCredentialIndex index;
+    
+    @BeforeMethod
+    protected void setUp() throws Exception {
+        encKey = AlgorithmSupport.generateSymmetricKey(encURI);
+        
+        kekCred1 = (BasicCredential) AlgorithmSupport.generateKeyPairAndCredential(kekURI, 1024, true);
+        kekCred1.getKeyNames().add("kek1");
+        kekCred2 = (BasicCredential) AlgorithmSupport.generateKeyPairAndCredential(kekURI, 1024, true);
+        kekCred2.getKeyNames().add("kek2");
+        
+        final KeyEncryptionParameters kekParams = new KeyEncryptionParameters();
+        kekParams.setAlgorithm(kekURI);
+        kekParams.setEncryptionCredential(kekCred2);
+        encryptedKey = new Encrypter().encryptKey(encKey, kekParams, parserPool.newDocument());
+        
+        index = new KEKCredentialIndex(Arrays.asList(kekCred1, kekCred2));
+    }
+    
+    @Test
+    public void testCandidatesByKeyName() {
+        final KeyInfo keyInfo = buildXMLObject(KeyInfo.DEFAULT_ELEMENT_NAME);
+        KeyInfoSupport.addKeyName(keyInfo, "kek2");
+        
+        final Collection<Credential> candidates = index.getCandidates(keyInfo, null);
+        Assert.assertEquals(candidates.size(), 1);
+        Assert.assertTrue(candidates.contains(kekCred2));
+        
+        Assert.assertTrue(index.getCandidates(null, null).isEmpty());
+    }
+    
+    @Test
+    public void testCandidatesByPublicKey() {
+        final KeyInfo keyInfo = buildXMLObject(KeyInfo.DEFAULT_ELEMENT_NAME);
+        KeyInfoSupport.addPublicKey(keyInfo, kekCred1.getPublicKey());
+        
+        final Collection<Credential> candidates = index.getCandidates(keyInfo, null);
+        Assert.assertEquals(candidates.size(), 1);
+        Assert.assertTrue(candidates.contains(kekCred1));
+    }
+    
+    @Test
+    public void testDecryptUsingIndex() throws DecryptionException {
+        final KeyInfo keyInfo = buildXMLObject(KeyInfo.DEFAULT_ELEMENT_NAME);
+        KeyInfoSupport.addKeyName(keyInfo, "kek2");
+        encryptedKey.setKeyInfo(keyInfo);
+        
+        final KeyInfoCredentialResolver kekResolver =
+                new StaticKeyInfoCredentialResolver(Arrays.<Credential>asList(kekCred1, kekCred2));
+        final Decrypter decrypter = new Decrypter(null, kekResolver, null);
+        decrypter.setKEKCredentialIndex(index);
+        
+        Assert.assertEquals(decrypter.decryptKey(encryptedKey, encURI), encKey);
+    }
+    
+    @Test(expectedExceptions = DecryptionException.class)
+    public void testIndexCandidatesLimitedToResolved() throws DecryptionException {
+        final KeyInfo keyInfo = buildXMLObject(KeyInfo.DEFAULT_ELEMENT_NAME);
+        KeyInfoSupport.addKeyName(keyInfo, "kek2");
+        encryptedKey.setKeyInfo(keyInfo);
+        
+        // The index matches kekCred2, but the KEK resolver does not resolve it, so it must not be used.
+        final KeyInfoCredentialResolver kekResolver =
+                new StaticKeyInfoCredentialResolver(Collections.<Credential>singletonList(kekCred1));
+        final Decrypter decrypter = new Decrypter(null, kekResolver, null);
+        decrypter.setKEKCredentialIndex(index);
+        
+        decrypter.decryptKey(encryptedKey, encURI);
+    }
+    
+    @Test
+    public void testStaleHintReplaced() throws DecryptionException {
+        final KeyInfoCredentialResolver kekResolver =
+                new StaticKeyInfoCredentialResolver(Arrays.<Credential>asList(kekCred1, kekCred2));
+        final Decrypter decrypter = new Decrypter(null, kekResolver, null);
+        decrypter.setKEKCredentialIndex(index);
+        decrypter.setKEKResolverCriteria(new CriteriaSet(new PeerEntityIDCriterion("urn:test:peer")));
+        
+        index.recordSuccess("urn:test:peer", kekCred1);
+        
+        Assert.assertEquals(decrypter.decryptKey(encryptedKey, encURI), encKey);
+        Assert.assertSame(index.getLearnedHint("urn:test:peer"), kekCred2);
+    }
+    
+    @Test
+    public void testHintClearedOnDataDecryptionFailure() throws Exception {
+        final String dataURI = EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES128_GCM;
+        final Credential dataCred = AlgorithmSupport.generateSymmetricKeyAndCredential(dataURI);
+        final DataEncryptionParameters dataParams = new DataEncryptionParameters();
+        dataParams.setAlgorithm(dataURI);
+        dataParams.setEncryptionCredential(dataCred);
+        
+        final XMLObject target = unmarshallElement("/org/opensaml/xmlsec/encryption/support/SimpleDecryptionTest.xml");
+        final EncryptedData encryptedData = new Encrypter().encryptElement(target, dataParams);
+        
+        // Wrap a different key of the right type, so that key decryption succeeds but data decryption fails.
+        final KeyEncryptionParameters kekParams = new KeyEncryptionParameters();
+        kekParams.setAlgorithm(kekURI);
+        kekParams.setEncryptionCredential(kekCred2);
+        final EncryptedKey wrongKey = new Encrypter().encryptKey(AlgorithmSupport.generateSymmetricKey(dataURI),
+                kekParams, parserPool.newDocument());
+        if (encryptedData.getKeyInfo() == null) {
+            encryptedData.setKeyInfo(buildXMLObject(KeyInfo.DEFAULT_ELEMENT_NAME));
+        }
+        encryptedData.getKeyInfo().getEncryptedKeys().add(wrongKey);
+        
+        final KeyInfoCredentialResolver kekResolver =
+                new StaticKeyInfoCredentialResolver(Arrays.<Credential>asList(kekCred1, kekCred2));
+        final Decrypter decrypter = new Decrypter(null, kekResolver, new InlineEncryptedKeyResolver());
+        decrypter.setKEKCredentialIndex(index);
+        decrypter.setKEKResolverCriteria(new CriteriaSet(new PeerEntityIDCriterion("urn:test:peer")));
+        
+        try {
+            decrypter.decryptData(encryptedData);
+            Assert.fail("Data decryption should have failed");
+        } catch (final DecryptionException e) {
+            // expected
+        }
+        Assert.assertNull(index.getLearnedHint("urn:test:peer"));
+    }
+    
+    @Test
+    public void testLearnedHint() throws DecryptionException {
+        final KeyInfoCredentialResolver kekResolver =
+                new StaticKeyInfoCredentialResolver(Arrays.<Credential>asList(kekCred1, kekCred2));
+        final Decrypter decrypter = new Decrypter(null, kekResolver, null);
+        decrypter.setKEKCredentialIndex(index);
+        decrypter.setKEKResolverCriteria(new CriteriaSet(new PeerEntityIDCriterion("urn:test:peer")));
+        
+        Assert.assertTrue(index.getCandidates(null, "urn:test:peer").isEmpty());
+        
+        Assert.assertEquals(decrypter.decryptKey(encryptedKey, encURI), encKey);
+        
+        final Collection<Credential> candidates = index.getCandidates(null, "urn:test:peer");
+        Assert.assertEquals(candidates.size(), 1);
+        Assert.assertTrue(candidates.contains(kekCred2));
+        Assert.assertTrue(index.getCandidates(null, "urn:test:other").isEmpty());
+        
+        index.clearLearnedHint("urn:test:peer");
+        Assert.assertTrue(index.getCandidates(null, "urn:test:peer").isEmpty());
+    }
+
+}
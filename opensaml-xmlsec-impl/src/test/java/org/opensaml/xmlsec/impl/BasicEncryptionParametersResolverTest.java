@@ -509,6 +509,57 @@ public class BasicEncryptionParametersResolverTest extends XMLObjectBaseTestCase
         Assert.assertTrue(resolver.resolveKeyTransportAlgorithmPredicate(criteriaSet) == predicate);
     }
     
+    @Test
+    public void testCachedResolution() throws ResolverException {
+        resolver.setParametersCache(new SecurityParametersCache<EncryptionParameters>());
+        config1.setKeyTransportEncryptionCredentials(Collections.singletonList(rsaCred1));
+        config1.setDataEncryptionCredentials(Collections.singletonList(aes128Cred1));
+        
+        EncryptionParameters params = resolver.resolveSingle(criteriaSet);
+        Assert.assertNotNull(params);
+        Assert.assertEquals(params.getKeyTransportEncryptionCredential(), rsaCred1);
+        Assert.assertEquals(params.getDataEncryptionCredential(), aes128Cred1);
+        
+        // Configuration instances are assumed immutable once used, so this should be a cache hit.
+        config1.setDataEncryptionCredentials(Collections.singletonList(aes256Cred1));
+        
+        final EncryptionParameters cached = resolver.resolveSingle(criteriaSet);
+        Assert.assertNotNull(cached);
+        Assert.assertNotSame(cached, params);
+        Assert.assertEquals(cached.getKeyTransportEncryptionCredential(), rsaCred1);
+        Assert.assertEquals(cached.getDataEncryptionCredential(), aes128Cred1);
+        Assert.assertNotNull(cached.getDataKeyInfoGenerator());
+        Assert.assertNotNull(cached.getRSAOAEPParameters());
+        Assert.assertNotSame(cached.getRSAOAEPParameters(), params.getRSAOAEPParameters());
+        
+        resolver.getParametersCache().invalidateAll();
+        params = resolver.resolveSingle(criteriaSet);
+        Assert.assertNotNull(params);
+        Assert.assertEquals(params.getDataEncryptionCredential(), aes256Cred1);
+    }
+    
+    @Test
+    public void testCachedResolutionWithGeneratedDataCredential() throws ResolverException {
+        resolver.setParametersCache(new SecurityParametersCache<EncryptionParameters>());
+        resolver.setAutoGenerateDataEncryptionCredential(true);
+        config1.setKeyTransportEncryptionCredentials(Collections.singletonList(rsaCred1));
+        
+        final EncryptionParameters first = resolver.resolveSingle(criteriaSet);
+        Assert.assertNotNull(first);
+        Assert.assertNotNull(first.getDataEncryptionCredential());
+        Assert.assertNotNull(first.getDataKeyInfoGenerator());
+        
+        final EncryptionParameters second = resolver.resolveSingle(criteriaSet);
+        Assert.assertNotNull(second);
+        Assert.assertEquals(second.getKeyTransportEncryptionCredential(), rsaCred1);
+        Assert.assertEquals(second.getDataEncryptionAlgorithm(), first.getDataEncryptionAlgorithm());
+        Assert.assertNotNull(second.getDataEncryptionCredential());
+        Assert.assertNotSame(second.getDataEncryptionCredential(), first.getDataEncryptionCredential());
+        Assert.assertNotEquals(second.getDataEncryptionCredential().getSecretKey().getEncoded(), 
+                first.getDataEncryptionCredential().getSecretKey().getEncoded());
+        Assert.assertNotNull(second.getDataKeyInfoGenerator());
+    }
+    
     @Test(expectedExceptions=ConstraintViolationException.class)
     public void testNullCriteriaSet() throws ResolverException {
         resolver.resolve(null);
@@ -470,6 +470,48 @@ public class BasicSignatureSigningParametersResolverTest extends XMLObjectBaseTe
         Assert.assertNull(params);
     }
     
+    @Test
+    public void testCachedResolution() throws ResolverException {
+        resolver.setParametersCache(new SecurityParametersCache<SignatureSigningParameters>());
+        config1.setSigningCredentials(Collections.singletonList(rsaCred));
+        
+        SignatureSigningParameters params = resolver.resolveSingle(criteriaSet);
+        Assert.assertNotNull(params);
+        Assert.assertEquals(params.getSigningCredential(), rsaCred);
+        
+        // Configuration instances are assumed immutable once used, so this should be a cache hit.
+        config1.setSigningCredentials(Collections.singletonList(dsaCred));
+        params.setSignatureAlgorithm("urn:test:modified");
+        
+        SignatureSigningParameters cached = resolver.resolveSingle(
+                new CriteriaSet(new SignatureSigningConfigurationCriterion(config1, config2, config3)));
+        Assert.assertNotNull(cached);
+        Assert.assertNotSame(cached, params);
+        Assert.assertEquals(cached.getSigningCredential(), rsaCred);
+        Assert.assertEquals(cached.getSignatureAlgorithm(), defaultRSAAlgo);
+        Assert.assertNotNull(cached.getKeyInfoGenerator());
+        
+        // Different KeyInfo generation profile is a different cache entry.
+        criteriaSet.add(new KeyInfoGenerationProfileCriterion("testKeyInfoProfile"));
+        params = resolver.resolveSingle(criteriaSet);
+        Assert.assertNotNull(params);
+        Assert.assertEquals(params.getSigningCredential(), dsaCred);
+        
+        // Different configuration chain is a different cache entry.
+        final BasicSignatureSigningConfiguration newConfig = new BasicSignatureSigningConfiguration();
+        newConfig.setSigningCredentials(Collections.singletonList(rsaCred));
+        params = resolver.resolveSingle(
+                new CriteriaSet(new SignatureSigningConfigurationCriterion(newConfig, config3)));
+        Assert.assertNotNull(params);
+        Assert.assertEquals(params.getSigningCredential(), rsaCred);
+        
+        resolver.getParametersCache().invalidateAll();
+        params = resolver.resolveSingle(
+                new CriteriaSet(new SignatureSigningConfigurationCriterion(config1, config2, config3)));
+        Assert.assertNotNull(params);
+        Assert.assertEquals(params.getSigningCredential(), dsaCred);
+    }
+    
     @Test(expectedExceptions=ConstraintViolationException.class)
     public void testNullCriteriaSet() throws ResolverException {
         resolver.resolve(null);
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xmlsec.impl;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SecurityParametersCacheTest {
+    
+    @Test
+    public void testBasic() {
+        final SecurityParametersCache<String> cache = new SecurityParametersCache<>();
+        final Object scope = new Object();
+        final List<Object> configs = Collections.singletonList(new Object());
+        
+        cache.put(new SecurityParametersCache.Key(scope, configs, "a"), "value");
+        
+        Assert.assertEquals(cache.get(new SecurityParametersCache.Key(scope, configs, "a")), "value");
+        Assert.assertNull(cache.get(new SecurityParametersCache.Key(scope, configs, "b")));
+        Assert.assertNull(cache.get(new SecurityParametersCache.Key(new Object(), configs, "a")));
+        Assert.assertNull(cache.get(new SecurityParametersCache.Key(scope, 
+                Collections.singletonList(new Object()), "a")));
+        
+        cache.invalidate(scope);
+        Assert.assertNull(cache.get(new SecurityParametersCache.Key(scope, configs, "a")));
+    }
+    
+    @Test
+    public void testScopeEviction() throws InterruptedException {
+        final SecurityParametersCache<String> cache = new SecurityParametersCache<>();
+        
+        final WeakReference<Object> scopeRef = populate(cache);
+        Assert.assertEquals(cache.getScopeCount(), 1);
+        
+        for (int i = 0; i < 50 && scopeRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        
+        Assert.assertNull(scopeRef.get());
+        Assert.assertEquals(cache.getScopeCount(), 0);
+    }
+    
+    /**
+     * Populate the cache with an entry for a scope which is not otherwise retained.
+     * 
+     * @param cache the cache to populate
+     * 
+     * @return a weak reference to the scope
+     */
+    private WeakReference<Object> populate(final SecurityParametersCache<String> cache) {
+        final Object scope = new Object();
+        cache.put(new SecurityParametersCache.Key(scope, Collections.emptyList(), "a"), "value");
+        return new WeakReference<>(scope);
+    }
+
+}
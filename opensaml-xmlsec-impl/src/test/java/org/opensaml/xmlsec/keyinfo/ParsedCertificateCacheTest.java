@@ -0,0 +1,121 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.xmlsec.keyinfo;
+
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+
+import org.opensaml.core.config.ConfigurationService;
+import org.opensaml.core.xml.XMLObjectBaseTestCase;
+import org.opensaml.security.crypto.KeySupport;
+import org.opensaml.xmlsec.signature.DEREncodedKeyValue;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import net.shibboleth.utilities.java.support.codec.Base64Support;
+
+/**
+ * Tests for {@link ParsedCertificateCache}.
+ */
+public class ParsedCertificateCacheTest extends XMLObjectBaseTestCase {
+    
+    private ParsedCertificateCache cache;
+    
+    private String entityCertBase64 = "MIIDzjCCAragAwIBAgIBMTANBgkqhkiG9w0BAQUFADAtMRIwEAYDVQQKEwlJbnRl"
+            + "cm5ldDIxFzAVBgNVBAMTDmNhLmV4YW1wbGUub3JnMB4XDTA3MDUyMTE4MjM0MFoX"
+            + "DTE3MDUxODE4MjM0MFowMTESMBAGA1UEChMJSW50ZXJuZXQyMRswGQYDVQQDExJm"
+            + "b29iYXIuZXhhbXBsZS5vcmcwggEiMA0GCSqGSIb3DQEBAQUAA4IBDwAwggEKAoIB"
+            + "AQDNWnkFmhy1vYa6gN/xBRKkZxFy3sUq2V0LsYb6Q3pe9Qlb6+BzaM5DrN8uIqqr"
+            + "oBE3Wp0LtrgKuQTpDpNFBdS2p5afiUtOYLWBDtizTOzs3Z36MGMjIPUYQ4s03IP3"
+            + "yPh2ud6EKpDPiYqzNbkRaiIwmYSit5r+RMYvd6fuKvTOn6h7PZI5AD7Rda7VWh5O"
+            + "VSoZXlRx3qxFho+mZhW0q4fUfTi5lWwf4EhkfBlzgw/k5gf4cOi6rrGpRS1zxmbt"
+            + "X1RAg+I20z6d04g0N2WsK5stszgYKoIROJCiXwjraa8/SoFcILolWQpttVHBIUYl"
+            + "yDlm8mIFleZf4ReFpfm+nUYxAgMBAAGjgfQwgfEwCQYDVR0TBAIwADAsBglghkgB"
+            + "hvhCAQ0EHxYdT3BlblNTTCBHZW5lcmF0ZWQgQ2VydGlmaWNhdGUwHQYDVR0OBBYE"
+            + "FDgRgTkjaKoK6DoZfUZ4g9LDJUWuMFUGA1UdIwROMEyAFNXuZVPeUdqHrULqQW7y"
+            + "r9buRpQLoTGkLzAtMRIwEAYDVQQKEwlJbnRlcm5ldDIxFzAVBgNVBAMTDmNhLmV4"
+            + "YW1wbGUub3JnggEBMEAGA1UdEQQ5MDeCEmFzaW1vdi5leGFtcGxlLm9yZ4YbaHR0"
+            + "cDovL2hlaW5sZWluLmV4YW1wbGUub3JnhwQKAQIDMA0GCSqGSIb3DQEBBQUAA4IB"
+            + "AQBLiDMyQ60ldIytVO1GCpp1S1sKJyTF56GVxHh/82hiRFbyPu+2eSl7UcJfH4ZN"
+            + "bAfHL1vDKTRJ9zoD8WRzpOCUtT0IPIA/Ex+8lFzZmujO10j3TMpp8Ii6+auYwi/T"
+            + "osrfw1YCxF+GI5KO49CfDRr6yxUbMhbTN+ssK4UzFf36UbkeJ3EfDwB0WU70jnlk"
+            + "yO8f97X6mLd5QvRcwlkDMftP4+MB+inTlxDZ/w8NLXQoDW6p/8r91bupXe0xwuyE"
+            + "vow2xjxlzVcux2BZsUZYjBa07ZmNNBtF7WaQqH7l2OBCAdnBhvme5i/e0LK3Ivys" + "+hcVyvCXs5XtFTFWDAVYvzQ6";
+    
+    @BeforeMethod
+    protected void setUp() {
+        cache = new ParsedCertificateCache(10);
+    }
+    
+    @Test
+    public void testCertificate() throws Exception {
+        final byte[] der = Base64Support.decode(entityCertBase64);
+        
+        final X509Certificate first = cache.getCertificate(der);
+        Assert.assertNotNull(first);
+        final X509Certificate second = cache.getCertificate(der.clone());
+        Assert.assertSame(second, first);
+        
+        Assert.assertEquals(cache.getCertificateStats().hitCount(), 1);
+        Assert.assertEquals(cache.getCertificateStats().missCount(), 1);
+        
+        cache.invalidateAll();
+        Assert.assertNotSame(cache.getCertificate(der), first);
+    }
+    
+    @Test
+    public void testPublicKey() throws Exception {
+        final KeyPair keyPair = KeySupport.generateKeyPair("RSA", 1024, null);
+        final DEREncodedKeyValue keyValue = buildXMLObject(DEREncodedKeyValue.DEFAULT_ELEMENT_NAME);
+        keyValue.setValue(Base64Support.encode(keyPair.getPublic().getEncoded(), Base64Support.UNCHUNKED));
+        final byte[] der = Base64Support.decode(keyValue.getValue());
+        
+        final PublicKey first = cache.getPublicKey(der, d -> KeyInfoSupport.getKey(keyValue));
+        Assert.assertEquals(first, keyPair.getPublic());
+        final PublicKey second = cache.getPublicKey(der, d -> {
+            throw new AssertionError("Decoder should not be called on a cache hit");
+        });
+        Assert.assertSame(second, first);
+        Assert.assertEquals(cache.getPublicKeyStats().hitCount(), 1);
+    }
+    
+    @Test
+    public void testMetrics() throws Exception {
+        Assert.assertEquals(cache.getMetrics().size(), 4);
+        Assert.assertTrue(cache.getMetrics().containsKey(ParsedCertificateCache.METRIC_RATIOGAUGE_CERTIFICATE_HIT_RATIO));
+        Assert.assertTrue(cache.getMetrics().containsKey(ParsedCertificateCache.METRIC_GAUGE_PUBLIC_KEY_SIZE));
+    }
+    
+    @Test
+    public void testKeyInfoSupportUsesRegisteredCache() throws Exception {
+        final ParsedCertificateCache registered = ConfigurationService.get(ParsedCertificateCache.class);
+        Assert.assertNotNull(registered);
+        
+        final org.opensaml.xmlsec.signature.X509Certificate xmlCert =
+                buildXMLObject(org.opensaml.xmlsec.signature.X509Certificate.DEFAULT_ELEMENT_NAME);
+        xmlCert.setValue(entityCertBase64);
+        
+        final X509Certificate first = KeyInfoSupport.getCertificate(xmlCert);
+        Assert.assertNotNull(first);
+        Assert.assertSame(KeyInfoSupport.getCertificate(xmlCert), first);
+    }
+
+}
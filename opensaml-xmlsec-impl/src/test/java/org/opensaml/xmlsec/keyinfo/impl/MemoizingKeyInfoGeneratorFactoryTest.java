@@ -0,0 +1,127 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.opensaml.xmlsec.keyinfo.impl;
+
+import java.security.cert.X509Certificate;
+import java.util.List;
+
+import org.opensaml.core.xml.XMLObjectBaseTestCase;
+import org.opensaml.security.x509.BasicX509Credential;
+import org.opensaml.security.x509.X509Support;
+import org.opensaml.xmlsec.keyinfo.KeyInfoGenerator;
+import org.opensaml.xmlsec.keyinfo.KeyInfoSupport;
+import org.opensaml.xmlsec.signature.KeyInfo;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link MemoizingKeyInfoGeneratorFactory}.
+ */
+public class MemoizingKeyInfoGeneratorFactoryTest extends XMLObjectBaseTestCase {
+    
+    private BasicX509Credential credential;
+    
+    private X509KeyInfoGeneratorFactory x509Factory;
+    
+    private MemoizingKeyInfoGeneratorFactory factory;
+    
+    private String entityCertBase64 = "MIIDzjCCAragAwIBAgIBMTANBgkqhkiG9w0BAQUFADAtMRIwEAYDVQQKEwlJbnRl"
+            + "cm5ldDIxFzAVBgNVBAMTDmNhLmV4YW1wbGUub3JnMB4XDTA3MDUyMTE4MjM0MFoX"
+            + "DTE3MDUxODE4MjM0MFowMTESMBAGA1UEChMJSW50ZXJuZXQyMRswGQYDVQQDExJm"
+            + "b29iYXIuZXhhbXBsZS5vcmcwggEiMA0GCSqGSIb3DQEBAQUAA4IBDwAwggEKAoIB"
+            + "AQDNWnkFmhy1vYa6gN/xBRKkZxFy3sUq2V0LsYb6Q3pe9Qlb6+BzaM5DrN8uIqqr"
+            + "oBE3Wp0LtrgKuQTpDpNFBdS2p5afiUtOYLWBDtizTOzs3Z36MGMjIPUYQ4s03IP3"
+            + "yPh2ud6EKpDPiYqzNbkRaiIwmYSit5r+RMYvd6fuKvTOn6h7PZI5AD7Rda7VWh5O"
+            + "VSoZXlRx3qxFho+mZhW0q4fUfTi5lWwf4EhkfBlzgw/k5gf4cOi6rrGpRS1zxmbt"
+            + "X1RAg+I20z6d04g0N2WsK5stszgYKoIROJCiXwjraa8/SoFcILolWQpttVHBIUYl"
+            + "yDlm8mIFleZf4ReFpfm+nUYxAgMBAAGjgfQwgfEwCQYDVR0TBAIwADAsBglghkgB"
+            + "hvhCAQ0EHxYdT3BlblNTTCBHZW5lcmF0ZWQgQ2VydGlmaWNhdGUwHQYDVR0OBBYE"
+            + "FDgRgTkjaKoK6DoZfUZ4g9LDJUWuMFUGA1UdIwROMEyAFNXuZVPeUdqHrULqQW7y"
+            + "r9buRpQLoTGkLzAtMRIwEAYDVQQKEwlJbnRlcm5ldDIxFzAVBgNVBAMTDmNhLmV4"
+            + "YW1wbGUub3JnggEBMEAGA1UdEQQ5MDeCEmFzaW1vdi5leGFtcGxlLm9yZ4YbaHR0"
+            + "cDovL2hlaW5sZWluLmV4YW1wbGUub3JnhwQKAQIDMA0GCSqGSIb3DQEBBQUAA4IB"
+            + "AQBLiDMyQ60ldIytVO1GCpp1S1sKJyTF56GVxHh/82hiRFbyPu+2eSl7UcJfH4ZN"
+            + "bAfHL1vDKTRJ9zoD8WRzpOCUtT0IPIA/Ex+8lFzZmujO10j3TMpp8Ii6+auYwi/T"
+            + "osrfw1YCxF+GI5KO49CfDRr6yxUbMhbTN+ssK4UzFf36UbkeJ3EfDwB0WU70jnlk"
+            + "yO8f97X6mLd5QvRcwlkDMftP4+MB+inTlxDZ/w8NLXQoDW6p/8r91bupXe0xwuyE"
+            + "vow2xjxlzVcux2BZsUZYjBa07ZmNNBtF7WaQqH7l2OBCAdnBhvme5i/e0LK3Ivys" + "+hcVyvCXs5XtFTFWDAVYvzQ6";
+    
+    @BeforeMethod
+    protected void setUp() throws Exception {
+        credential = new BasicX509Credential(X509Support.decodeCertificate(entityCertBase64));
+        credential.getKeyNames().add("FOO");
+        
+        x509Factory = new X509KeyInfoGeneratorFactory();
+        x509Factory.setEmitEntityCertificate(true);
+        x509Factory.setEmitKeyNames(true);
+        x509Factory.setEmitX509SKI(true);
+        
+        factory = new MemoizingKeyInfoGeneratorFactory(x509Factory);
+    }
+    
+    @Test
+    public void testDelegation() {
+        Assert.assertTrue(factory.handles(credential));
+        Assert.assertEquals(factory.getCredentialType(), x509Factory.getCredentialType());
+        Assert.assertSame(factory.getDelegate(), x509Factory);
+    }
+    
+    @Test
+    public void testMemoizedCopies() throws Exception {
+        final KeyInfoGenerator generator = factory.newInstance();
+        
+        final KeyInfo first = generator.generate(credential);
+        Assert.assertNotNull(first);
+        Assert.assertNull(first.getDOM());
+        
+        final KeyInfo second = factory.newInstance().generate(credential);
+        Assert.assertNotNull(second);
+        Assert.assertNotSame(second, first);
+        Assert.assertNotNull(second.getDOM());
+        
+        final KeyInfo third = generator.generate(credential);
+        Assert.assertNotSame(third, second);
+        Assert.assertNotSame(third.getDOM(), second.getDOM());
+        Assert.assertNotSame(third.getDOM().getOwnerDocument(), second.getDOM().getOwnerDocument());
+        Assert.assertSame(third.getDOM().getOwnerDocument().getDocumentElement(), third.getDOM());
+        
+        for (final KeyInfo keyInfo : new KeyInfo[] {first, second, third}) {
+            final List<X509Certificate> certs = KeyInfoSupport.getCertificates(keyInfo);
+            Assert.assertEquals(certs.size(), 1);
+            Assert.assertEquals(certs.get(0), credential.getEntityCertificate());
+            Assert.assertEquals(KeyInfoSupport.getKeyNames(keyInfo).size(), 1);
+            Assert.assertEquals(keyInfo.getX509Datas().get(0).getX509SKIs().size(), 1);
+        }
+    }
+    
+    @Test
+    public void testClearCache() throws Exception {
+        final KeyInfo first = factory.newInstance().generate(credential);
+        
+        x509Factory.setEmitKeyNames(false);
+        Assert.assertEquals(KeyInfoSupport.getKeyNames(factory.newInstance().generate(credential)).size(), 1);
+        
+        factory.clearCache();
+        final KeyInfo cleared = factory.newInstance().generate(credential);
+        Assert.assertNotSame(cleared, first);
+        Assert.assertTrue(KeyInfoSupport.getKeyNames(cleared).isEmpty());
+    }
+
+}